@@ -0,0 +1,31 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Listener notified when a {@link MessagingTimingStage} of the Messaging extension lifecycle is completed.
+ * <p>
+ * The listener is called on the thread which completed the stage and should return quickly.
+ */
+public interface MessagingTimingListener {
+    /**
+     * Called when a stage is completed.
+     *
+     * @param stage          the completed {@link MessagingTimingStage}
+     * @param elapsedMillis  {@code long} containing the milliseconds elapsed between the Messaging extension creation and the stage completion
+     * @param durationMillis {@code long} containing the duration of the stage in milliseconds
+     */
+    void onStageCompleted(@NonNull final MessagingTimingStage stage, final long elapsedMillis, final long durationMillis);
+}
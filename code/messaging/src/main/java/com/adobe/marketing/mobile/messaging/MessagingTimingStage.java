@@ -0,0 +1,66 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging;
+
+/**
+ * Enum representing the stages of the Messaging extension lifecycle which are timed.
+ */
+public enum MessagingTimingStage {
+    /**
+     * The Messaging extension was created.
+     */
+    EXTENSION_CREATED("extensionCreated"),
+    /**
+     * The cached in-app message propositions were loaded and parsed.
+     */
+    CACHE_LOADED("cacheLoaded"),
+    /**
+     * The cached in-app message rules were loaded into the rules engine.
+     */
+    RULES_LOADED("rulesLoaded"),
+    /**
+     * The Messaging extension became ready to process events for the first time.
+     */
+    READY_FOR_EVENTS("readyForEvents"),
+    /**
+     * A request to fetch in-app messages was dispatched.
+     */
+    FETCH_MESSAGES_DISPATCHED("fetchMessagesDispatched"),
+    /**
+     * The in-app message decisions were received from the Edge network.
+     */
+    DECISIONS_RECEIVED("decisionsReceived"),
+    /**
+     * The received in-app message propositions were processed.
+     */
+    PROPOSITIONS_PROCESSED("propositionsProcessed"),
+    /**
+     * The remote assets of the in-app messages were downloaded, timed from the reception of the decisions.
+     */
+    ASSETS_DOWNLOADED("assetsDownloaded");
+
+    private final String name;
+
+    MessagingTimingStage(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name used for this stage in the Messaging timings debug event.
+     *
+     * @return {@link String} containing the name of the stage
+     */
+    public String getName() {
+        return name;
+    }
+}
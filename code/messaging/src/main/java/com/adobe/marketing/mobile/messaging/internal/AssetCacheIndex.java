@@ -0,0 +1,557 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the cached in-app message assets, used to keep the asset cache within a byte budget.
+ * <p>
+ * Each cached asset is tracked with its size and the last time it was downloaded or displayed. When the cached assets
+ * exceed the budget, the least recently used assets are removed from the asset cache. The index is persisted so
+ * eviction never needs to scan the asset cache directory.
+ * <p>
+ * The index also maps each asset url to the SHA-256 digest of its content. Assets are cached with their url as key, so
+ * the first url cached with a given content is kept as the only copy of that content and other urls serving the same
+ * content are recorded as aliases resolving to it.
+ * <p>
+ * Format (big-endian): {@code int} magic, {@code byte} format version, {@code int} payload length and {@code int} CRC32
+ * of the payload, followed by the payload: an {@code int} entry count and, for each entry from the least to the most
+ * recently used, the asset url, {@code long} size, {@code long} last use time and content digest, then an {@code int}
+ * alias count and, for each alias, the alias url and content digest.
+ */
+final class AssetCacheIndex {
+    private final static String SELF_TAG = "AssetCacheIndex";
+    // "AEPA"
+    private final static int MAGIC = 0x41455041;
+    private final static byte FORMAT_VERSION = 2;
+    private final static int HEADER_LENGTH = 13;
+    private final static String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final File indexFile;
+    private final CacheService cacheService;
+    private final String assetCacheLocation;
+    private long maxBytes = MessagingConstants.DEFAULT_ASSET_CACHE_MAX_BYTES;
+    // ordered from the least to the most recently used asset, null until the index is read
+    private LinkedHashMap<String, Entry> entries;
+    // content digest of the cached entries mapped to their url
+    private final Map<String, String> urlsByDigest = new HashMap<>();
+    // urls whose content is cached under another url, mapped to the content digest
+    private final Map<String, String> aliases = new HashMap<>();
+    private long totalBytes;
+    private boolean modified;
+    private EvictionListener evictionListener;
+
+    /**
+     * Notified when an asset is evicted from the asset cache to keep the cached assets within the budget.
+     */
+    interface EvictionListener {
+        void onAssetEvicted(final String url);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param indexFile          the {@link File} the index is persisted to, or null if the index is only kept in memory
+     * @param cacheService       the {@link CacheService} containing the cached assets
+     * @param assetCacheLocation {@code String} containing the asset cache location
+     */
+    AssetCacheIndex(final File indexFile, final CacheService cacheService, final String assetCacheLocation) {
+        this.indexFile = indexFile;
+        this.cacheService = cacheService;
+        this.assetCacheLocation = assetCacheLocation;
+    }
+
+    /**
+     * Sets the {@link EvictionListener} notified of the evicted assets, including the aliases of their content.
+     *
+     * @param listener the {@code EvictionListener} to notify, or null to stop notifying the current listener
+     */
+    synchronized void setEvictionListener(final EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Sets the maximum number of bytes used by the cached assets, evicting the least recently used assets if needed.
+     * Values lower than 1 reset the budget to its default value.
+     *
+     * @param maxBytes {@code long} containing the byte budget of the asset cache
+     */
+    synchronized void setMaxBytes(final long maxBytes) {
+        this.maxBytes = maxBytes > 0 ? maxBytes : MessagingConstants.DEFAULT_ASSET_CACHE_MAX_BYTES;
+        evict(null);
+    }
+
+    /**
+     * Records an asset which was cached or revalidated, evicting the least recently used assets if the budget is exceeded.
+     * The recorded asset itself is never evicted by this call.
+     * <p>
+     * If the content of the asset is already cached under another url, the asset is recorded as an alias of that url and
+     * the returned url differs from the recorded one. The caller is expected to remove the duplicate copy from the cache.
+     *
+     * @param url           {@code String} containing the asset url
+     * @param size          {@code long} containing the size of the cached asset in bytes
+     * @param contentDigest {@code String} containing the digest of the asset content, or null if the content is unchanged
+     * @return {@code String} containing the url the asset content is cached under
+     */
+    synchronized String recordCached(final String url, final long size, final String contentDigest) {
+        getEntries();
+        final long now = System.currentTimeMillis();
+        final String duplicateUrl = contentDigest == null ? null : urlsByDigest.get(contentDigest);
+        if (duplicateUrl != null && !duplicateUrl.equals(url)) {
+            removeEntry(url);
+            aliases.put(url, contentDigest);
+            touch(duplicateUrl, now);
+            modified = true;
+            return duplicateUrl;
+        }
+
+        aliases.remove(url);
+        final Entry previousEntry = entries.remove(url);
+        final String entryDigest = contentDigest != null ? contentDigest : (previousEntry != null ? previousEntry.contentDigest : null);
+        if (previousEntry != null) {
+            totalBytes -= previousEntry.size;
+            // aliases of the previous content no longer match the cached content
+            if (previousEntry.contentDigest != null && !previousEntry.contentDigest.equals(entryDigest)) {
+                releaseContent(previousEntry);
+            }
+        }
+
+        final long entrySize = Math.max(0, size);
+        entries.put(url, new Entry(url, entrySize, now, entryDigest));
+        if (entryDigest != null) {
+            urlsByDigest.put(entryDigest, url);
+        }
+        totalBytes += entrySize;
+        modified = true;
+        evict(url);
+        return url;
+    }
+
+    /**
+     * Returns the url the content of the provided asset is cached under.
+     *
+     * @param url {@code String} containing the asset url
+     * @return {@code String} containing the url of the cached copy of the asset content, or the provided url if it is not an alias
+     */
+    synchronized String resolve(final String url) {
+        getEntries();
+        final String contentDigest = aliases.get(url);
+        final String resolvedUrl = contentDigest == null ? null : urlsByDigest.get(contentDigest);
+        return resolvedUrl != null ? resolvedUrl : url;
+    }
+
+    /**
+     * Returns the digest of the cached content of the provided asset.
+     *
+     * @param url {@code String} containing the asset url
+     * @return {@code String} containing the digest of the content the asset resolves to, or null if it is not known
+     */
+    synchronized String getContentDigest(final String url) {
+        final Entry entry = getEntries().get(resolve(url));
+        return entry != null ? entry.contentDigest : null;
+    }
+
+    /**
+     * Adds the hashes of the urls the referenced aliases resolve to, so the shared copy of their content is retained.
+     *
+     * @param referencedHashes {@code Set<String>} containing the hashes of the referenced asset urls
+     * @return {@code Set<String>} containing the referenced hashes and the hashes of the urls their content is cached under
+     */
+    synchronized Set<String> resolveHashes(final Set<String> referencedHashes) {
+        getEntries();
+        final Set<String> resolvedHashes = new HashSet<>(referencedHashes);
+        for (final Map.Entry<String, String> alias : aliases.entrySet()) {
+            final String resolvedUrl = urlsByDigest.get(alias.getValue());
+            if (resolvedUrl != null && referencedHashes.contains(StringEncoder.sha2hash(alias.getKey()))) {
+                resolvedHashes.add(StringEncoder.sha2hash(resolvedUrl));
+            }
+        }
+        return resolvedHashes;
+    }
+
+    /**
+     * Marks the provided assets as used, called when an in-app message using them is displayed.
+     *
+     * @param urls {@code Collection<String>} containing the urls of the displayed assets
+     */
+    synchronized void recordUsed(final Collection<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        for (final String url : urls) {
+            touch(resolve(url), now);
+        }
+    }
+
+    /**
+     * Drops the assets which are not referenced by any loaded in-app message, called once their files were deleted by
+     * the {@link AssetGarbageCollector}.
+     *
+     * @param referencedHashes {@code Set<String>} containing the hashes of the referenced asset urls
+     */
+    synchronized void retainReferenced(final Set<String> referencedHashes) {
+        final Iterator<Map.Entry<String, String>> aliasIterator = getAliases().entrySet().iterator();
+        while (aliasIterator.hasNext()) {
+            if (!referencedHashes.contains(StringEncoder.sha2hash(aliasIterator.next().getKey()))) {
+                aliasIterator.remove();
+                modified = true;
+            }
+        }
+
+        final List<String> unreferencedUrls = new ArrayList<>();
+        for (final Entry entry : entries.values()) {
+            if (!referencedHashes.contains(StringEncoder.sha2hash(entry.url))) {
+                unreferencedUrls.add(entry.url);
+            }
+        }
+        for (final String url : unreferencedUrls) {
+            removeEntry(url);
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by the cached assets.
+     *
+     * @return {@code long} containing the size of the cached assets in bytes
+     */
+    synchronized long getTotalBytes() {
+        getEntries();
+        return totalBytes;
+    }
+
+    /**
+     * Returns the urls of the cached assets, from the least to the most recently used.
+     *
+     * @return {@code List<String>} containing the urls of the cached assets
+     */
+    synchronized List<String> getAssets() {
+        return new ArrayList<>(getEntries().keySet());
+    }
+
+    /**
+     * Persists the index if it was modified since it was last persisted.
+     *
+     * @return {@code boolean} indicating whether the index is persisted
+     */
+    synchronized boolean persist() {
+        if (!modified || indexFile == null) {
+            return true;
+        }
+
+        final byte[] data;
+        try {
+            final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            final DataOutputStream payload = new DataOutputStream(payloadBytes);
+            payload.writeInt(entries.size());
+            for (final Entry entry : entries.values()) {
+                PropositionCacheCodec.writeString(payload, entry.url);
+                payload.writeLong(entry.size);
+                payload.writeLong(entry.lastUsedMillis);
+                PropositionCacheCodec.writeString(payload, entry.contentDigest);
+            }
+            payload.writeInt(aliases.size());
+            for (final Map.Entry<String, String> alias : aliases.entrySet()) {
+                PropositionCacheCodec.writeString(payload, alias.getKey());
+                PropositionCacheCodec.writeString(payload, alias.getValue());
+            }
+            payload.flush();
+
+            final byte[] payloadArray = payloadBytes.toByteArray();
+            final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream(HEADER_LENGTH + payloadArray.length);
+            final DataOutputStream index = new DataOutputStream(indexBytes);
+            index.writeInt(MAGIC);
+            index.writeByte(FORMAT_VERSION);
+            index.writeInt(payloadArray.length);
+            index.writeInt(PropositionCacheCodec.getCrc(ByteBuffer.wrap(payloadArray)));
+            index.write(payloadArray);
+            index.flush();
+            data = indexBytes.toByteArray();
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to encode the asset cache index: %s", ioException.getMessage());
+            return false;
+        }
+
+        final File parentDirectory = indexFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists() && !parentDirectory.mkdirs()) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to create the asset cache index directory.");
+            return false;
+        }
+
+        final File temporaryFile = new File(indexFile.getPath() + TEMPORARY_FILE_SUFFIX);
+        if (!writeFile(temporaryFile, data) || !temporaryFile.renameTo(indexFile)) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to write the asset cache index.");
+            temporaryFile.delete();
+            return false;
+        }
+
+        modified = false;
+        return true;
+    }
+
+    /**
+     * Deletes the index, called when the asset cache is cleared.
+     */
+    synchronized void delete() {
+        if (indexFile != null && indexFile.exists() && !indexFile.delete()) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to delete the asset cache index.");
+        }
+        entries = new LinkedHashMap<>();
+        urlsByDigest.clear();
+        aliases.clear();
+        totalBytes = 0;
+        modified = false;
+    }
+
+    /**
+     * Removes the least recently used assets from the asset cache until the cached assets fit in the budget.
+     *
+     * @param retainedUrl {@code String} containing the url of an asset which must not be evicted, or null
+     */
+    private void evict(final String retainedUrl) {
+        final List<String> evictedUrls = new ArrayList<>();
+        final Iterator<Entry> iterator = getEntries().values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (entry.url.equals(retainedUrl)) {
+                continue;
+            }
+
+            Log.trace(LOG_TAG, SELF_TAG, "Evicting cached asset %s (%d bytes), the asset cache exceeds %d bytes.", entry.url, entry.size, maxBytes);
+            cacheService.remove(assetCacheLocation, entry.url);
+            iterator.remove();
+            totalBytes -= entry.size;
+            evictedUrls.add(entry.url);
+            // aliases resolving to the evicted content are no longer cached either
+            if (entry.contentDigest != null && entry.url.equals(urlsByDigest.get(entry.contentDigest))) {
+                for (final Map.Entry<String, String> alias : aliases.entrySet()) {
+                    if (entry.contentDigest.equals(alias.getValue())) {
+                        evictedUrls.add(alias.getKey());
+                    }
+                }
+            }
+            releaseContent(entry);
+            modified = true;
+        }
+
+        if (evictionListener != null) {
+            for (final String evictedUrl : evictedUrls) {
+                evictionListener.onAssetEvicted(evictedUrl);
+            }
+        }
+    }
+
+    /**
+     * Marks the provided asset as the most recently used one.
+     */
+    private void touch(final String url, final long now) {
+        final Entry entry = getEntries().remove(url);
+        if (entry != null) {
+            entries.put(url, new Entry(url, entry.size, now, entry.contentDigest));
+            modified = true;
+        }
+    }
+
+    /**
+     * Removes the entry of an asset which is no longer cached, along with the aliases of its content.
+     */
+    private void removeEntry(final String url) {
+        final Entry entry = getEntries().remove(url);
+        if (entry == null) {
+            return;
+        }
+
+        totalBytes -= entry.size;
+        releaseContent(entry);
+        modified = true;
+    }
+
+    /**
+     * Forgets the content of an entry which is no longer cached, dropping the aliases resolving to it.
+     */
+    private void releaseContent(final Entry entry) {
+        if (entry.contentDigest != null && entry.url.equals(urlsByDigest.get(entry.contentDigest))) {
+            urlsByDigest.remove(entry.contentDigest);
+            aliases.values().removeAll(Collections.singleton(entry.contentDigest));
+        }
+    }
+
+    private Map<String, String> getAliases() {
+        getEntries();
+        return aliases;
+    }
+
+    private LinkedHashMap<String, Entry> getEntries() {
+        if (entries == null) {
+            entries = read();
+            totalBytes = 0;
+            for (final Entry entry : entries.values()) {
+                totalBytes += entry.size;
+                if (entry.contentDigest != null) {
+                    urlsByDigest.put(entry.contentDigest, entry.url);
+                }
+            }
+            // aliases whose content is no longer cached are dropped
+            final Iterator<String> aliasIterator = aliases.values().iterator();
+            while (aliasIterator.hasNext()) {
+                if (!urlsByDigest.containsKey(aliasIterator.next())) {
+                    aliasIterator.remove();
+                }
+            }
+        }
+        return entries;
+    }
+
+    private LinkedHashMap<String, Entry> read() {
+        final LinkedHashMap<String, Entry> indexEntries = new LinkedHashMap<>();
+        if (indexFile == null || !indexFile.isFile()) {
+            return indexEntries;
+        }
+
+        final ByteBuffer buffer = readFile();
+        if (buffer == null) {
+            return indexEntries;
+        }
+
+        try {
+            if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC || buffer.get() != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown asset cache index format.");
+            }
+
+            final int payloadLength = buffer.getInt();
+            final int crc = buffer.getInt();
+            if (payloadLength != buffer.remaining() || crc != PropositionCacheCodec.getCrc(buffer)) {
+                throw new IllegalArgumentException("Corrupted asset cache index.");
+            }
+
+            final List<Entry> readEntries = new ArrayList<>();
+            final int entryCount = buffer.getInt();
+            for (int index = 0; index < entryCount; index++) {
+                final String url = PropositionCacheCodec.readString(buffer);
+                final long size = buffer.getLong();
+                final long lastUsedMillis = buffer.getLong();
+                final String contentDigest = PropositionCacheCodec.readString(buffer);
+                if (url == null || size < 0) {
+                    throw new IllegalArgumentException("Invalid asset cache index entry.");
+                }
+                readEntries.add(new Entry(url, size, lastUsedMillis, contentDigest));
+            }
+
+            final Map<String, String> readAliases = new HashMap<>();
+            final int aliasCount = buffer.getInt();
+            for (int index = 0; index < aliasCount; index++) {
+                final String url = PropositionCacheCodec.readString(buffer);
+                final String contentDigest = PropositionCacheCodec.readString(buffer);
+                if (url == null || contentDigest == null) {
+                    throw new IllegalArgumentException("Invalid asset cache index alias.");
+                }
+                readAliases.put(url, contentDigest);
+            }
+
+            // entries are written in use order, sorting keeps the order consistent if the clock was changed
+            Collections.sort(readEntries, (first, second) -> first.lastUsedMillis < second.lastUsedMillis ? -1 : (first.lastUsedMillis == second.lastUsedMillis ? 0 : 1));
+            for (final Entry entry : readEntries) {
+                indexEntries.put(entry.url, entry);
+            }
+            aliases.putAll(readAliases);
+            return indexEntries;
+        } catch (final IllegalArgumentException | BufferUnderflowException exception) {
+            // assets missing from the index are added back when they are revalidated
+            Log.debug(LOG_TAG, SELF_TAG, "Discarding the asset cache index: %s", exception.getMessage());
+            indexFile.delete();
+            return new LinkedHashMap<>();
+        }
+    }
+
+    private ByteBuffer readFile() {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(indexFile, "r");
+            final byte[] data = new byte[(int) randomAccessFile.length()];
+            randomAccessFile.readFully(data);
+            return ByteBuffer.wrap(data);
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to read the asset cache index: %s", ioException.getMessage());
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (final IOException ioException) {
+                    Log.warning(LOG_TAG, SELF_TAG, "Unable to close the RandomAccessFile (%s) ", ioException);
+                }
+            }
+        }
+    }
+
+    private boolean writeFile(final File file, final byte[] data) {
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(file);
+            fileOutputStream.write(data);
+            fileOutputStream.flush();
+            fileOutputStream.getFD().sync();
+            return true;
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to write the asset cache index (%s): %s", file.getName(), ioException.getMessage());
+            return false;
+        } finally {
+            if (fileOutputStream != null) {
+                try {
+                    fileOutputStream.close();
+                } catch (final IOException ioException) {
+                    Log.warning(LOG_TAG, SELF_TAG, "Unable to close the FileOutputStream (%s) ", ioException);
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        final String url;
+        final long size;
+        final long lastUsedMillis;
+        final String contentDigest;
+
+        Entry(final String url, final long size, final long lastUsedMillis, final String contentDigest) {
+            this.url = url;
+            this.size = size;
+            this.lastUsedMillis = lastUsedMillis;
+            this.contentDigest = contentDigest;
+        }
+    }
+}
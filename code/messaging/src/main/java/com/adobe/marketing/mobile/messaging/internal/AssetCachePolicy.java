@@ -0,0 +1,119 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import com.adobe.marketing.mobile.util.StringUtils;
+import com.adobe.marketing.mobile.util.TimeUtils;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Computes the freshness lifetime of a cached asset from the {@code Cache-Control}, {@code Expires} and {@code Age}
+ * headers of its response.
+ * <p>
+ * Fresh assets are used without contacting the server. Once stale, a cached asset remains usable while it is revalidated
+ * with a conditional request.
+ */
+final class AssetCachePolicy {
+    // no freshness information, the asset is revalidated every time it is downloaded
+    static final long NO_FRESHNESS = -1;
+    static final long FRESH_FOREVER = Long.MAX_VALUE;
+
+    private static final String DIRECTIVE_NO_CACHE = "no-cache";
+    private static final String DIRECTIVE_NO_STORE = "no-store";
+    private static final String DIRECTIVE_IMMUTABLE = "immutable";
+    private static final String DIRECTIVE_MAX_AGE = "max-age";
+
+    private AssetCachePolicy() {
+    }
+
+    /**
+     * Returns the time until which a response is fresh.
+     *
+     * @param cacheControl       {@code String} containing the {@code Cache-Control} header of the response, or null
+     * @param expires            {@code String} containing the {@code Expires} header of the response, or null
+     * @param age                {@code String} containing the {@code Age} header of the response, or null
+     * @param responseTimeMillis {@code long} containing the time the response was received
+     * @return {@code long} containing the epoch time in milliseconds until which the response is fresh, {@link #FRESH_FOREVER}
+     * if the response never needs revalidation or {@link #NO_FRESHNESS} if the response has no freshness information
+     */
+    static long getFreshUntil(final String cacheControl, final String expires, final String age, final long responseTimeMillis) {
+        long maxAgeSeconds = -1;
+        boolean immutable = false;
+        if (!StringUtils.isNullOrEmpty(cacheControl)) {
+            for (final String directive : cacheControl.split(",")) {
+                final String normalizedDirective = directive.trim().toLowerCase(Locale.US);
+                if (normalizedDirective.equals(DIRECTIVE_NO_CACHE) || normalizedDirective.equals(DIRECTIVE_NO_STORE)) {
+                    // the asset must be revalidated before each use
+                    return responseTimeMillis;
+                } else if (normalizedDirective.equals(DIRECTIVE_IMMUTABLE)) {
+                    immutable = true;
+                } else if (normalizedDirective.startsWith(DIRECTIVE_MAX_AGE + "=")) {
+                    maxAgeSeconds = parseSeconds(normalizedDirective.substring(DIRECTIVE_MAX_AGE.length() + 1));
+                }
+            }
+        }
+
+        if (immutable) {
+            return FRESH_FOREVER;
+        }
+
+        if (maxAgeSeconds >= 0) {
+            final long freshSeconds = Math.max(0, maxAgeSeconds - Math.max(0, parseSeconds(age)));
+            return freshSeconds < (FRESH_FOREVER - responseTimeMillis) / 1000 ? responseTimeMillis + freshSeconds * 1000 : FRESH_FOREVER;
+        }
+
+        if (!StringUtils.isNullOrEmpty(expires)) {
+            // invalid dates, like "0", mean the response is already expired
+            final Date expiresDate = TimeUtils.parseRFC2822Date(expires, TimeZone.getTimeZone("GMT"), Locale.US);
+            return expiresDate != null ? expiresDate.getTime() : responseTimeMillis;
+        }
+
+        return NO_FRESHNESS;
+    }
+
+    /**
+     * Determines whether a cached asset is fresh, in which case it does not need to be revalidated.
+     *
+     * @param metadata   {@code Map<String, String>} containing the metadata of the cached asset
+     * @param timeMillis {@code long} containing the current time
+     * @return {@code boolean} indicating whether the cached asset is fresh
+     */
+    static boolean isFresh(final Map<String, String> metadata, final long timeMillis) {
+        final String freshUntil = metadata == null ? null : metadata.get(MessagingConstants.METADATA_FRESH_UNTIL);
+        if (StringUtils.isNullOrEmpty(freshUntil)) {
+            return false;
+        }
+
+        try {
+            return Long.parseLong(freshUntil) > timeMillis;
+        } catch (final NumberFormatException exception) {
+            return false;
+        }
+    }
+
+    private static long parseSeconds(final String value) {
+        if (StringUtils.isNullOrEmpty(value)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.trim().replace("\"", ""));
+        } catch (final NumberFormatException exception) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records failed asset downloads so a failing asset is not requested again on every in-app message refresh.
+ * <p>
+ * After a failed download the asset is not requested again until its retry time, which doubles with each consecutive
+ * failure up to a maximum delay. A successful download clears the failures of the asset.
+ */
+final class AssetDownloadBackoff {
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Map<String, Failure> failures = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param baseDelayMillis {@code long} containing the retry delay after the first failure
+     * @param maxDelayMillis  {@code long} containing the maximum retry delay
+     */
+    AssetDownloadBackoff(final long baseDelayMillis, final long maxDelayMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Determines whether the download of an asset should be deferred because of its previous failures.
+     *
+     * @param url        {@code String} containing the asset url
+     * @param timeMillis {@code long} containing the current time
+     * @return {@code boolean} indicating whether the asset should not be requested yet
+     */
+    synchronized boolean isBackingOff(final String url, final long timeMillis) {
+        final Failure failure = failures.get(url);
+        return failure != null && timeMillis < failure.retryTimeMillis;
+    }
+
+    /**
+     * Records a failed download of an asset.
+     *
+     * @param url        {@code String} containing the asset url
+     * @param timeMillis {@code long} containing the time of the failure
+     * @return {@code long} containing the time before which the asset is not requested again
+     */
+    synchronized long recordFailure(final String url, final long timeMillis) {
+        Failure failure = failures.get(url);
+        if (failure == null) {
+            failure = new Failure();
+            failures.put(url, failure);
+        }
+        failure.count++;
+        failure.retryTimeMillis = timeMillis + getDelay(failure.count);
+        return failure.retryTimeMillis;
+    }
+
+    /**
+     * Records a successful download of an asset, clearing its failures.
+     *
+     * @param url {@code String} containing the asset url
+     */
+    synchronized void recordSuccess(final String url) {
+        failures.remove(url);
+    }
+
+    private long getDelay(final int failureCount) {
+        long delay = baseDelayMillis;
+        for (int i = 1; i < failureCount && delay < maxDelayMillis; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxDelayMillis);
+    }
+
+    private static final class Failure {
+        int count;
+        long retryTimeMillis;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.BUCKETS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.BUCKET_OVERFLOW;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.BYTES_DOWNLOADED;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.BYTES_SERVED_FROM_CACHE;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.COUNT;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.DISPLAYED_AFTER_WAIT;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.DISPLAYED_CACHED;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.DISPLAYED_NETWORK_FALLBACK;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.DOWNLOADED;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.DOWNLOAD_LATENCY_MS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.FAILED;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.FIRST_ASSET_READY_MS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.MAX_MS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.MAX_QUEUE_DEPTH;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.NOT_MODIFIED;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.QUEUE_DEPTH;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.REQUESTS_ISSUED;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.SKIPPED_BACKOFF;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.SKIPPED_FRESH;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.AssetMetricsDataKeys.SUM_MS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.adobe.marketing.mobile.services.Log;
+
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counters and latency histograms of the in-app message asset downloads.
+ * <p>
+ * The metrics are cumulative for the lifetime of the application process. They can be read with {@link #getMetrics()},
+ * and the Messaging extension publishes them in a debug event once the asset downloads of an in-app message refresh have completed.
+ */
+final class AssetDownloadMetrics {
+    private final static String SELF_TAG = "AssetDownloadMetrics";
+    // upper bounds of the latency histogram buckets, in milliseconds
+    private static final long[] LATENCY_BUCKETS_MS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+    private static final Object mutex = new Object();
+
+    private static long requestsIssued;
+    private static long downloadedResponses;
+    private static long notModifiedResponses;
+    private static long failedDownloads;
+    private static long skippedFreshAssets;
+    private static long skippedBackoffAssets;
+    private static long bytesDownloaded;
+    private static long bytesServedFromCache;
+    private static int queueDepth;
+    private static long messagesDisplayedCached;
+    private static long messagesDisplayedAfterWait;
+    private static long messagesDisplayedNetworkFallback;
+    private static int maxQueueDepth;
+    private static LatencyHistogram downloadLatency = new LatencyHistogram();
+    private static LatencyHistogram firstAssetReadyLatency = new LatencyHistogram();
+    private static Reporter reporter;
+
+    /**
+     * Receives the metrics when the asset downloads of a refresh have completed.
+     */
+    interface Reporter {
+        void onMetricsUpdated(final Map<String, Object> metrics);
+    }
+
+    private AssetDownloadMetrics() {
+    }
+
+    /**
+     * Returns a snapshot of the asset download metrics.
+     *
+     * @return {@code Map<String, Object>} containing the counters, the queue depth and the latency histograms
+     */
+    static Map<String, Object> getMetrics() {
+        final Map<String, Object> metrics = new HashMap<>();
+        synchronized (mutex) {
+            metrics.put(REQUESTS_ISSUED, requestsIssued);
+            metrics.put(DOWNLOADED, downloadedResponses);
+            metrics.put(NOT_MODIFIED, notModifiedResponses);
+            metrics.put(FAILED, failedDownloads);
+            metrics.put(SKIPPED_FRESH, skippedFreshAssets);
+            metrics.put(SKIPPED_BACKOFF, skippedBackoffAssets);
+            metrics.put(BYTES_DOWNLOADED, bytesDownloaded);
+            metrics.put(BYTES_SERVED_FROM_CACHE, bytesServedFromCache);
+            metrics.put(QUEUE_DEPTH, queueDepth);
+            metrics.put(MAX_QUEUE_DEPTH, maxQueueDepth);
+            metrics.put(DISPLAYED_CACHED, messagesDisplayedCached);
+            metrics.put(DISPLAYED_AFTER_WAIT, messagesDisplayedAfterWait);
+            metrics.put(DISPLAYED_NETWORK_FALLBACK, messagesDisplayedNetworkFallback);
+            metrics.put(DOWNLOAD_LATENCY_MS, downloadLatency.toMap());
+            metrics.put(FIRST_ASSET_READY_MS, firstAssetReadyLatency.toMap());
+        }
+        return metrics;
+    }
+
+    /**
+     * Sets the {@link Reporter} used by the Messaging extension to publish the metrics.
+     *
+     * @param metricsReporter the {@code Reporter} to notify, or null to stop notifying the current reporter
+     */
+    static void setReporter(final Reporter metricsReporter) {
+        synchronized (mutex) {
+            reporter = metricsReporter;
+        }
+    }
+
+    /**
+     * Notifies the {@link Reporter} of the current metrics, called once the asset downloads of a refresh have completed.
+     */
+    static void report() {
+        final Reporter currentReporter;
+        synchronized (mutex) {
+            currentReporter = reporter;
+        }
+        if (currentReporter == null) {
+            return;
+        }
+
+        try {
+            currentReporter.onMetricsUpdated(getMetrics());
+        } catch (final Exception exception) {
+            Log.warning(LOG_TAG, SELF_TAG, "The metrics reporter failed to handle the asset download metrics: %s", exception.getLocalizedMessage());
+        }
+    }
+
+    static void requestIssued() {
+        synchronized (mutex) {
+            requestsIssued++;
+        }
+    }
+
+    /**
+     * Records the response of an asset download request.
+     *
+     * @param responseCode  {@code int} containing the HTTP response code, or -1 if no response was received
+     * @param downloaded    {@code boolean} indicating whether the asset was cached or the cached asset is up to date
+     * @param latencyMillis {@code long} containing the time between the request and the handled response
+     */
+    static void responseReceived(final int responseCode, final boolean downloaded, final long latencyMillis) {
+        synchronized (mutex) {
+            if (!downloaded) {
+                failedDownloads++;
+            } else if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                notModifiedResponses++;
+            } else {
+                downloadedResponses++;
+            }
+            downloadLatency.record(latencyMillis);
+        }
+    }
+
+    /**
+     * Records a cached asset used without downloading it again.
+     *
+     * @param fresh {@code boolean} indicating whether the asset was fresh, otherwise its download was deferred after a failure
+     */
+    static void downloadSkipped(final boolean fresh) {
+        synchronized (mutex) {
+            if (fresh) {
+                skippedFreshAssets++;
+            } else {
+                skippedBackoffAssets++;
+            }
+        }
+    }
+
+    static void bytesDownloaded(final long bytes) {
+        synchronized (mutex) {
+            bytesDownloaded += bytes;
+        }
+    }
+
+    static void bytesServedFromCache(final long bytes) {
+        synchronized (mutex) {
+            bytesServedFromCache += bytes;
+        }
+    }
+
+    static void queueDepthChanged(final int depth) {
+        synchronized (mutex) {
+            queueDepth = depth;
+            maxQueueDepth = Math.max(maxQueueDepth, depth);
+        }
+    }
+
+    /**
+     * Records the time between the start of a refresh and its first available asset.
+     *
+     * @param latencyMillis {@code long} containing the time to the first available asset
+     */
+    static void firstAssetReady(final long latencyMillis) {
+        synchronized (mutex) {
+            firstAssetReadyLatency.record(latencyMillis);
+        }
+    }
+
+    /**
+     * Records the path taken to display the assets of a triggered in-app message.
+     *
+     * @param readiness the {@link AssetRegistry.Readiness} of the in-app message assets
+     */
+    static void messageAssetsResolved(final AssetRegistry.Readiness readiness) {
+        synchronized (mutex) {
+            switch (readiness) {
+                case CACHED:
+                    messagesDisplayedCached++;
+                    break;
+                case LOADED_AFTER_WAIT:
+                    messagesDisplayedAfterWait++;
+                    break;
+                default:
+                    messagesDisplayedNetworkFallback++;
+                    break;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static void reset() {
+        synchronized (mutex) {
+            requestsIssued = 0;
+            downloadedResponses = 0;
+            notModifiedResponses = 0;
+            failedDownloads = 0;
+            skippedFreshAssets = 0;
+            skippedBackoffAssets = 0;
+            bytesDownloaded = 0;
+            bytesServedFromCache = 0;
+            queueDepth = 0;
+            maxQueueDepth = 0;
+            messagesDisplayedCached = 0;
+            messagesDisplayedAfterWait = 0;
+            messagesDisplayedNetworkFallback = 0;
+            downloadLatency = new LatencyHistogram();
+            firstAssetReadyLatency = new LatencyHistogram();
+            reporter = null;
+        }
+    }
+
+    private static final class LatencyHistogram {
+        final long[] bucketCounts = new long[LATENCY_BUCKETS_MS.length + 1];
+        long count;
+        long sumMillis;
+        long maxMillis;
+
+        void record(final long latencyMillis) {
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS_MS.length && latencyMillis > LATENCY_BUCKETS_MS[bucket]) {
+                bucket++;
+            }
+            bucketCounts[bucket]++;
+            count++;
+            sumMillis += latencyMillis;
+            maxMillis = Math.max(maxMillis, latencyMillis);
+        }
+
+        Map<String, Object> toMap() {
+            // buckets are keyed by their upper bound, in increasing order
+            final Map<String, Object> buckets = new LinkedHashMap<>();
+            for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+                buckets.put(String.valueOf(LATENCY_BUCKETS_MS[i]), bucketCounts[i]);
+            }
+            buckets.put(BUCKET_OVERFLOW, bucketCounts[LATENCY_BUCKETS_MS.length]);
+
+            final Map<String, Object> histogram = new HashMap<>();
+            histogram.put(COUNT, count);
+            histogram.put(SUM_MS, sumMillis);
+            histogram.put(MAX_MS, maxMillis);
+            histogram.put(BUCKETS, buckets);
+            return histogram;
+        }
+    }
+}
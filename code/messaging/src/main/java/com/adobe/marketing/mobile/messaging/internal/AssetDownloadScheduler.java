@@ -0,0 +1,244 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import com.adobe.marketing.mobile.services.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of asset downloads running at the same time.
+ * <p>
+ * Queued downloads are started in priority order: assets of the most recently triggered in-app messages first,
+ * then assets which are not cached yet before revalidations of stale cached assets, then the assets with the smallest
+ * known size, then in the order they were scheduled.
+ */
+class AssetDownloadScheduler {
+    private final static String SELF_TAG = "AssetDownloadScheduler";
+    static final long UNKNOWN_SIZE = Long.MAX_VALUE;
+
+    private final PriorityQueue<QueuedDownload> queuedDownloads = new PriorityQueue<>(11, (first, second) -> {
+        if (first.triggeredSequence != second.triggeredSequence) {
+            return first.triggeredSequence > second.triggeredSequence ? -1 : 1;
+        }
+        if (first.revalidation != second.revalidation) {
+            return second.revalidation ? -1 : 1;
+        }
+        if (first.sizeHint != second.sizeHint) {
+            return first.sizeHint < second.sizeHint ? -1 : 1;
+        }
+        return first.sequence < second.sequence ? -1 : 1;
+    });
+    // assets of triggered in-app messages and the order in which they were triggered
+    private final Map<String, Long> triggeredAssets = new HashMap<>();
+    private int maxConcurrentDownloads;
+    private int activeDownloads;
+    private long sequence;
+    private long triggeredSequence;
+
+    /**
+     * A download which notifies the {@link AssetDownloadScheduler} once it has finished.
+     */
+    interface AssetDownload {
+        /**
+         * Starts the download.
+         *
+         * @param onFinished {@link Runnable} to call once the download has finished, whether it succeeded or not
+         */
+        void start(final Runnable onFinished);
+
+        /**
+         * Called instead of {@link #start(Runnable)} when the queued download is cancelled.
+         */
+        void cancel();
+    }
+
+    AssetDownloadScheduler() {
+        this(MessagingConstants.DEFAULT_MAX_CONCURRENT_ASSET_DOWNLOADS);
+    }
+
+    AssetDownloadScheduler(final int maxConcurrentDownloads) {
+        this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+    }
+
+    /**
+     * Sets the maximum number of downloads running at the same time. Values lower than 1 are treated as 1.
+     *
+     * @param maxConcurrentDownloads {@code int} containing the maximum number of concurrent downloads
+     */
+    void setMaxConcurrentDownloads(final int maxConcurrentDownloads) {
+        synchronized (queuedDownloads) {
+            this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+        }
+        startQueuedDownloads();
+    }
+
+    /**
+     * Queues the download of an asset, the download is started as soon as the concurrency limit allows it.
+     *
+     * @param url      {@code String} containing the asset url
+     * @param sizeHint {@code long} containing the expected size of the asset in bytes, or {@link #UNKNOWN_SIZE}
+     * @param download the {@link AssetDownload} to start
+     */
+    void schedule(final String url, final long sizeHint, final AssetDownload download) {
+        schedule(url, sizeHint, false, download);
+    }
+
+    /**
+     * Queues the download of an asset, the download is started as soon as the concurrency limit allows it.
+     * <p>
+     * Revalidations of stale cached assets run after the downloads of assets which are not cached yet, the stale assets
+     * remain usable until they are revalidated.
+     *
+     * @param url          {@code String} containing the asset url
+     * @param sizeHint     {@code long} containing the expected size of the asset in bytes, or {@link #UNKNOWN_SIZE}
+     * @param revalidation {@code boolean} indicating whether the download revalidates a cached asset
+     * @param download     the {@link AssetDownload} to start
+     */
+    void schedule(final String url, final long sizeHint, final boolean revalidation, final AssetDownload download) {
+        synchronized (queuedDownloads) {
+            final Long assetTriggeredSequence = triggeredAssets.get(url);
+            queuedDownloads.add(new QueuedDownload(url, sizeHint, revalidation, sequence++, assetTriggeredSequence != null ? assetTriggeredSequence : 0, download));
+        }
+        startQueuedDownloads();
+    }
+
+    /**
+     * Moves the downloads of the provided assets ahead of the other queued downloads, called when an in-app message is triggered.
+     *
+     * @param urls {@code Collection<String>} containing the asset urls of the triggered in-app message
+     */
+    void prioritize(final Collection<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            return;
+        }
+
+        synchronized (queuedDownloads) {
+            triggeredSequence++;
+            final List<QueuedDownload> reprioritizedDownloads = new ArrayList<>();
+            for (final String url : urls) {
+                triggeredAssets.put(url, triggeredSequence);
+            }
+            final Iterator<QueuedDownload> iterator = queuedDownloads.iterator();
+            while (iterator.hasNext()) {
+                final QueuedDownload queuedDownload = iterator.next();
+                if (urls.contains(queuedDownload.url)) {
+                    iterator.remove();
+                    reprioritizedDownloads.add(new QueuedDownload(queuedDownload.url, queuedDownload.sizeHint, queuedDownload.revalidation, queuedDownload.sequence, triggeredSequence, queuedDownload.download));
+                }
+            }
+            queuedDownloads.addAll(reprioritizedDownloads);
+        }
+    }
+
+    /**
+     * Cancels the queued downloads of assets which are not in the provided collection. Downloads which already started are not affected.
+     *
+     * @param urls {@code Collection<String>} containing the asset urls which are still referenced by the loaded in-app messages
+     */
+    void retainOnly(final Collection<String> urls) {
+        final List<QueuedDownload> cancelledDownloads = new ArrayList<>();
+        synchronized (queuedDownloads) {
+            final Iterator<QueuedDownload> iterator = queuedDownloads.iterator();
+            while (iterator.hasNext()) {
+                final QueuedDownload queuedDownload = iterator.next();
+                if (!urls.contains(queuedDownload.url)) {
+                    iterator.remove();
+                    cancelledDownloads.add(queuedDownload);
+                }
+            }
+            triggeredAssets.keySet().retainAll(urls);
+        }
+
+        for (final QueuedDownload cancelledDownload : cancelledDownloads) {
+            Log.trace(LOG_TAG, SELF_TAG, "Cancelling the queued download of %s, the asset is no longer used.", cancelledDownload.url);
+            cancelledDownload.download.cancel();
+        }
+    }
+
+    /**
+     * Returns the number of queued downloads which were not started yet.
+     *
+     * @return {@code int} containing the number of queued downloads
+     */
+    int getQueuedDownloadCount() {
+        synchronized (queuedDownloads) {
+            return queuedDownloads.size();
+        }
+    }
+
+    /**
+     * Starts queued downloads until the concurrency limit is reached. The downloads are started outside the lock
+     * as they may finish on the calling thread.
+     */
+    private void startQueuedDownloads() {
+        while (true) {
+            final QueuedDownload nextDownload;
+            synchronized (queuedDownloads) {
+                if (activeDownloads >= maxConcurrentDownloads || queuedDownloads.isEmpty()) {
+                    return;
+                }
+                nextDownload = queuedDownloads.poll();
+                activeDownloads++;
+            }
+
+            // a download only releases its slot once, even if it reports being finished more than once
+            final AtomicBoolean finished = new AtomicBoolean();
+            final Runnable onFinished = () -> {
+                if (finished.compareAndSet(false, true)) {
+                    onDownloadFinished();
+                }
+            };
+            try {
+                nextDownload.download.start(onFinished);
+            } catch (final Exception exception) {
+                Log.warning(LOG_TAG, SELF_TAG, "Unable to start the download of %s: %s", nextDownload.url, exception.getLocalizedMessage());
+                onFinished.run();
+            }
+        }
+    }
+
+    private void onDownloadFinished() {
+        synchronized (queuedDownloads) {
+            activeDownloads--;
+        }
+        startQueuedDownloads();
+    }
+
+    private static final class QueuedDownload {
+        final String url;
+        final long sizeHint;
+        final boolean revalidation;
+        final long sequence;
+        final long triggeredSequence;
+        final AssetDownload download;
+
+        QueuedDownload(final String url, final long sizeHint, final boolean revalidation, final long sequence, final long triggeredSequence, final AssetDownload download) {
+            this.url = url;
+            this.sizeHint = sizeHint;
+            this.revalidation = revalidation;
+            this.sequence = sequence;
+            this.triggeredSequence = triggeredSequence;
+            this.download = download;
+        }
+    }
+}
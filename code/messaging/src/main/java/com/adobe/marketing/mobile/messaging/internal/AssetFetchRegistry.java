@@ -0,0 +1,177 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import com.adobe.marketing.mobile.services.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the asset downloads in flight so an asset requested again while it is being downloaded
+ * is not downloaded a second time.
+ * <p>
+ * Each in-flight download is represented by one {@link AssetFetch} shared by every requester of the asset.
+ */
+class AssetFetchRegistry {
+    private final static String SELF_TAG = "AssetFetchRegistry";
+    private final Map<String, AssetFetch> inFlightFetches = new HashMap<>();
+
+    /**
+     * Starts an {@link AssetFetch} for a new download.
+     */
+    interface FetchStarter {
+        /**
+         * Starts the download of the asset, {@link AssetFetch#complete(boolean)} must be called once the download has finished.
+         *
+         * @param fetch the {@link AssetFetch} representing the download
+         */
+        void start(final AssetFetch fetch);
+    }
+
+    /**
+     * Returns the in-flight {@link AssetFetch} for the provided asset, or starts a new one with the provided {@link FetchStarter}.
+     *
+     * @param url     {@code String} containing the asset url
+     * @param starter the {@code FetchStarter} used if the asset is not being downloaded
+     * @return the {@code AssetFetch} of the asset download
+     */
+    AssetFetch fetch(final String url, final FetchStarter starter) {
+        final AssetFetch fetch;
+        synchronized (inFlightFetches) {
+            final AssetFetch inFlightFetch = inFlightFetches.get(url);
+            if (inFlightFetch != null) {
+                Log.trace(LOG_TAG, SELF_TAG, "Asset %s is already being downloaded, waiting for the in-flight download.", url);
+                return inFlightFetch;
+            }
+
+            fetch = new AssetFetch(this, url);
+            inFlightFetches.put(url, fetch);
+        }
+
+        try {
+            starter.start(fetch);
+        } catch (final Exception exception) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to start the download of %s: %s", url, exception.getLocalizedMessage());
+            fetch.complete(false);
+        }
+        return fetch;
+    }
+
+    /**
+     * Returns the number of asset downloads in flight.
+     *
+     * @return {@code int} containing the number of in-flight downloads
+     */
+    int getInFlightCount() {
+        synchronized (inFlightFetches) {
+            return inFlightFetches.size();
+        }
+    }
+
+    private void remove(final AssetFetch fetch) {
+        synchronized (inFlightFetches) {
+            if (inFlightFetches.get(fetch.url) == fetch) {
+                inFlightFetches.remove(fetch.url);
+            }
+        }
+    }
+
+    /**
+     * The result of an asset download, shared by every requester of the asset.
+     */
+    static final class AssetFetch {
+        final String url;
+        private final AssetFetchRegistry registry;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final List<Runnable> completionCallbacks = new ArrayList<>();
+        private boolean done;
+        private boolean downloaded;
+
+        private AssetFetch(final AssetFetchRegistry registry, final String url) {
+            this.registry = registry;
+            this.url = url;
+        }
+
+        /**
+         * Completes the download and notifies the requesters. Only the first call has an effect.
+         *
+         * @param downloaded {@code boolean} indicating whether the asset was downloaded or was already up to date in the cache
+         */
+        void complete(final boolean downloaded) {
+            final List<Runnable> callbacks;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                this.done = true;
+                this.downloaded = downloaded;
+                callbacks = new ArrayList<>(completionCallbacks);
+                completionCallbacks.clear();
+            }
+
+            // a later request for the asset starts a new download
+            registry.remove(this);
+            latch.countDown();
+            for (final Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+
+        /**
+         * Runs the provided callback once the download has finished, or immediately if it has already finished.
+         *
+         * @param callback {@link Runnable} to run
+         */
+        void whenDone(final Runnable callback) {
+            synchronized (this) {
+                if (!done) {
+                    completionCallbacks.add(callback);
+                    return;
+                }
+            }
+            callback.run();
+        }
+
+        /**
+         * Waits for the download to finish.
+         *
+         * @param timeout {@code long} containing the maximum time to wait
+         * @param unit    the {@link TimeUnit} of the timeout
+         * @return {@code boolean} true if the download has finished
+         * @throws InterruptedException if the current thread is interrupted while waiting
+         */
+        boolean await(final long timeout, final TimeUnit unit) throws InterruptedException {
+            return latch.await(timeout, unit);
+        }
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Returns whether the asset is available in the cache after the download.
+         *
+         * @return {@code boolean} true if the download finished and the asset was downloaded or was already up to date in the cache
+         */
+        synchronized boolean isDownloaded() {
+            return downloaded;
+        }
+    }
+}
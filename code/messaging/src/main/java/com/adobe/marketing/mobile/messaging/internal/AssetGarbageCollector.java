@@ -0,0 +1,162 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.util.StringUtils;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mark and sweep garbage collector for the cached in-app message assets.
+ * <p>
+ * Each loaded in-app message registers the hashes of the assets it uses under its content key. A sweep deletes the
+ * cached asset files which are not referenced by any loaded in-app message, so assets shared with or belonging to other
+ * messages are never removed. Cached asset files are named after the SHA-256 hash of their url, the referenced hashes
+ * are kept in a set so a sweep is linear in the number of cached files.
+ */
+final class AssetGarbageCollector {
+    private final static String SELF_TAG = "AssetGarbageCollector";
+    // length of a hex encoded SHA-256 hash
+    private final static int ASSET_HASH_LENGTH = 64;
+
+    private final String assetCacheLocation;
+    // asset hashes referenced by each loaded in-app message, keyed by the content key of the message
+    private final Map<String, Set<String>> references = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param assetCacheLocation {@code String} containing the asset cache location
+     */
+    AssetGarbageCollector(final String assetCacheLocation) {
+        this.assetCacheLocation = assetCacheLocation;
+    }
+
+    /**
+     * Registers the assets used by a loaded in-app message, replacing any assets previously registered for it.
+     *
+     * @param owner     {@code String} containing the content key of the in-app message
+     * @param assetUrls {@code Collection<String>} containing the urls of the assets used by the in-app message
+     */
+    synchronized void addReferences(final String owner, final Collection<String> assetUrls) {
+        if (owner == null) {
+            return;
+        }
+
+        if (assetUrls == null || assetUrls.isEmpty()) {
+            references.remove(owner);
+            return;
+        }
+
+        final Set<String> assetHashes = new HashSet<>();
+        for (final String assetUrl : assetUrls) {
+            if (!StringUtils.isNullOrEmpty(assetUrl)) {
+                assetHashes.add(StringEncoder.sha2hash(assetUrl));
+            }
+        }
+        references.put(owner, assetHashes);
+    }
+
+    /**
+     * Releases the assets used by an in-app message which is no longer loaded.
+     *
+     * @param owner {@code String} containing the content key of the in-app message
+     */
+    synchronized void removeReferences(final String owner) {
+        if (owner != null) {
+            references.remove(owner);
+        }
+    }
+
+    /**
+     * Releases the assets of every in-app message.
+     */
+    synchronized void clearReferences() {
+        references.clear();
+    }
+
+    /**
+     * Returns the hashes of the assets referenced by at least one loaded in-app message.
+     *
+     * @return {@code Set<String>} containing the referenced asset hashes
+     */
+    synchronized Set<String> getReferencedHashes() {
+        final Set<String> referencedHashes = new HashSet<>();
+        for (final Set<String> assetHashes : references.values()) {
+            referencedHashes.addAll(assetHashes);
+        }
+        return referencedHashes;
+    }
+
+    /**
+     * Deletes the cached asset files which are not referenced by any loaded in-app message.
+     *
+     * @param referencedHashes {@code Set<String>} containing the hashes of the referenced assets, see {@link #getReferencedHashes()}
+     */
+    void sweep(final Set<String> referencedHashes) {
+        if (StringUtils.isNullOrEmpty(assetCacheLocation)) {
+            return;
+        }
+
+        final File assetDirectory = new File(assetCacheLocation);
+        if (!assetDirectory.isDirectory()) {
+            return;
+        }
+
+        final int deletedFiles = sweep(assetDirectory, referencedHashes);
+        if (deletedFiles > 0) {
+            Log.trace(LOG_TAG, SELF_TAG, "sweep - Deleted %d cached asset file(s) not referenced by any loaded in-app message.", deletedFiles);
+        }
+    }
+
+    private int sweep(final File directory, final Set<String> referencedHashes) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        int deletedFiles = 0;
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                deletedFiles += sweep(file, referencedHashes);
+            } else if (!referencedHashes.contains(getAssetHash(file.getName()))) {
+                if (file.delete()) {
+                    deletedFiles++;
+                } else {
+                    Log.debug(LOG_TAG, SELF_TAG, "sweep - Unable to delete the cached asset file %s.", file.getName());
+                }
+            }
+        }
+        return deletedFiles;
+    }
+
+    /**
+     * Returns the asset hash a cached file belongs to. Files derived from a cached asset, like its metadata, are named
+     * after the asset hash followed by a suffix.
+     *
+     * @param fileName {@code String} containing the name of the cached file
+     * @return {@code String} containing the asset hash of the file
+     */
+    private static String getAssetHash(final String fileName) {
+        return fileName.length() > ASSET_HASH_LENGTH ? fileName.substring(0, ASSET_HASH_LENGTH) : fileName;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import android.util.Base64;
+
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.caching.CacheResult;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+import com.adobe.marketing.mobile.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inlines the small cached assets of an in-app message in its html as base64 {@code data:} urls, so the in-app message
+ * WebView does not have to load them from the asset cache when the message is displayed.
+ * <p>
+ * Only images whose type is recognized from their content are inlined, the type declared by the asset url is ignored
+ * as the cached copy may have been transcoded to another format.
+ */
+final class AssetInliner {
+    private final static String SELF_TAG = "AssetInliner";
+    private final static String DATA_URI_FORMAT = "data:%s;base64,%s";
+
+    private final CacheService cacheService;
+    private final String assetCacheLocation;
+    private final AssetCacheIndex assetCacheIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheService       the {@link CacheService} containing the cached assets
+     * @param assetCacheLocation {@code String} containing the asset cache location
+     * @param assetCacheIndex    the {@link AssetCacheIndex} used to find the cached copy of an asset
+     */
+    AssetInliner(final CacheService cacheService, final String assetCacheLocation, final AssetCacheIndex assetCacheIndex) {
+        this.cacheService = cacheService;
+        this.assetCacheLocation = assetCacheLocation;
+        this.assetCacheIndex = assetCacheIndex;
+    }
+
+    /**
+     * Replaces the urls of the provided assets in the in-app message html by {@code data:} urls containing their cached content.
+     *
+     * @param html       {@code String} containing the in-app message html
+     * @param assetsUrls {@code List<String>} containing the urls of the assets used by the in-app message
+     * @param maxBytes   {@code long} containing the maximum size of an inlined asset
+     * @return {@code String} containing the html with the small assets inlined, or the provided html if no asset was inlined
+     */
+    String inline(final String html, final List<String> assetsUrls, final long maxBytes) {
+        if (StringUtils.isNullOrEmpty(html) || assetsUrls == null || assetsUrls.isEmpty() || maxBytes <= 0) {
+            return html;
+        }
+
+        final Map<String, String> dataUris = new HashMap<>();
+        for (final String assetUrl : assetsUrls) {
+            if (StringUtils.isNullOrEmpty(assetUrl) || dataUris.containsKey(assetUrl) || !html.contains(assetUrl)) {
+                continue;
+            }
+
+            final String dataUri = getDataUri(assetUrl, maxBytes);
+            if (dataUri != null) {
+                dataUris.put(assetUrl, dataUri);
+            }
+        }
+
+        if (dataUris.isEmpty()) {
+            return html;
+        }
+
+        Log.trace(LOG_TAG, SELF_TAG, "Inlining %d of %d asset(s) in the in-app message html.", dataUris.size(), assetsUrls.size());
+        return MessagingCacheUtilities.replaceAssetUrls(html, dataUris);
+    }
+
+    private String getDataUri(final String assetUrl, final long maxBytes) {
+        final CacheResult cachedAsset = cacheService.get(assetCacheLocation, assetCacheIndex.resolve(assetUrl));
+        if (cachedAsset == null || cachedAsset.getData() == null) {
+            return null;
+        }
+
+        final InputStream assetData = cachedAsset.getData();
+        try {
+            final byte[] content = readAtMost(assetData, maxBytes);
+            return content == null ? null : toDataUri(content);
+        } catch (final IOException exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to read the cached asset %s, it will not be inlined: %s", assetUrl, exception.getMessage());
+            return null;
+        } finally {
+            try {
+                assetData.close();
+            } catch (final IOException ignored) {
+                // nothing to do, the cached asset has been read
+            }
+        }
+    }
+
+    /**
+     * Returns a {@code data:} url containing the provided image.
+     *
+     * @param content {@code byte[]} containing the image
+     * @return {@code String} containing the {@code data:} url, or null if the image type is not recognized
+     */
+    static String toDataUri(final byte[] content) {
+        final String mimeType = getImageMimeType(content);
+        if (mimeType == null) {
+            return null;
+        }
+
+        final String encodedContent = Base64.encodeToString(content, Base64.NO_WRAP);
+        return StringUtils.isNullOrEmpty(encodedContent) ? null : String.format(DATA_URI_FORMAT, mimeType, encodedContent);
+    }
+
+    /**
+     * Determines the type of an image from its first bytes.
+     *
+     * @param content {@code byte[]} containing the image
+     * @return {@code String} containing the image mime type, or null if the image type is not recognized
+     */
+    static String getImageMimeType(final byte[] content) {
+        if (content == null || content.length < 4) {
+            return null;
+        }
+
+        if (startsWith(content, 0, 0x89, 'P', 'N', 'G')) {
+            return "image/png";
+        }
+        if (startsWith(content, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(content, 0, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (content.length >= 12 && startsWith(content, 0, 'R', 'I', 'F', 'F') && startsWith(content, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        }
+
+        final String text = new String(content, 0, Math.min(content.length, 256), StandardCharsets.UTF_8).trim();
+        if (text.startsWith("<svg") || (text.startsWith("<?xml") && text.contains("<svg"))) {
+            return "image/svg+xml";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(final byte[] content, final int offset, final int... signature) {
+        if (content.length < offset + signature.length) {
+            return false;
+        }
+
+        for (int i = 0; i < signature.length; i++) {
+            if ((content[offset + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the provided stream if it does not exceed the provided size.
+     *
+     * @param inputStream {@link InputStream} to read
+     * @param maxBytes    {@code long} containing the maximum number of bytes to read
+     * @return {@code byte[]} containing the stream content, or null if the stream is larger than {@code maxBytes}
+     * @throws IOException if the stream cannot be read
+     */
+    private static byte[] readAtMost(final InputStream inputStream, final long maxBytes) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        long totalBytes = 0;
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            totalBytes += bytesRead;
+            if (totalBytes > maxBytes) {
+                return null;
+            }
+            outputStream.write(buffer, 0, bytesRead);
+        }
+        return outputStream.toByteArray();
+    }
+}
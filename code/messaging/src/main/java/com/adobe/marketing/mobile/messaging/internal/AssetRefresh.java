@@ -0,0 +1,120 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the asset downloads started while a set of in-app message propositions is processed, so the work which depends
+ * on every asset of a refresh runs once per refresh instead of once per in-app message.
+ * <p>
+ * The refresh stays open until {@link #finish()} is called, so it does not complete while downloads are still being added.
+ * The completion listener is called on the thread completing the last download, or on the thread calling {@code finish()}
+ * if every download has already completed.
+ */
+final class AssetRefresh {
+    /**
+     * Notified once every download of a finished {@link AssetRefresh} has completed.
+     */
+    interface Listener {
+        void onAssetsDownloaded(final AssetRefresh refresh);
+    }
+
+    final long startTime;
+    private final Listener listener;
+    // the open refresh counts as one pending download until it is finished
+    private int pendingCount = 1;
+    private int fetchCount;
+    // System.nanoTime() of the first successfully downloaded asset, 0 until an asset is downloaded
+    private long firstAssetReadyTime;
+
+    /**
+     * Constructor.
+     *
+     * @param startTime {@code long} containing the {@link System#nanoTime()} the refresh is timed from
+     * @param listener  the {@link Listener} notified once every download has completed
+     */
+    AssetRefresh(final long startTime, final Listener listener) {
+        this.startTime = startTime;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds the downloads of the assets of an in-app message to the refresh.
+     *
+     * @param fetches {@code List<AssetFetchRegistry.AssetFetch>} containing the downloads of the assets
+     */
+    void add(final List<AssetFetchRegistry.AssetFetch> fetches) {
+        if (fetches == null || fetches.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            pendingCount += fetches.size();
+            fetchCount += fetches.size();
+        }
+        for (final AssetFetchRegistry.AssetFetch fetch : fetches) {
+            fetch.whenDone(() -> {
+                if (fetch.isDownloaded()) {
+                    onAssetReady();
+                }
+                onFetchDone();
+            });
+        }
+    }
+
+    /**
+     * Closes the refresh, called once every download of the refresh has been added.
+     */
+    void finish() {
+        onFetchDone();
+    }
+
+    /**
+     * Returns the number of downloads added to the refresh.
+     *
+     * @return {@code int} containing the number of downloads of the refresh
+     */
+    synchronized int getFetchCount() {
+        return fetchCount;
+    }
+
+    /**
+     * Returns the time between the start of the refresh and its first successfully downloaded asset.
+     *
+     * @return {@code long} containing the time to the first available asset in milliseconds, or -1 if no asset was downloaded
+     */
+    synchronized long getFirstAssetReadyMillis() {
+        if (firstAssetReadyTime == 0) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(firstAssetReadyTime - startTime);
+    }
+
+    private synchronized void onAssetReady() {
+        if (firstAssetReadyTime == 0) {
+            firstAssetReadyTime = System.nanoTime();
+        }
+    }
+
+    private void onFetchDone() {
+        synchronized (this) {
+            if (pendingCount == 0 || --pendingCount > 0) {
+                return;
+            }
+        }
+
+        listener.onAssetsDownloaded(this);
+    }
+}
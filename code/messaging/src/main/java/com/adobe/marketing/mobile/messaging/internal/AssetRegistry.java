@@ -0,0 +1,262 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks whether the assets of the loaded in-app messages are available in the asset cache.
+ * <p>
+ * Each registered asset has an {@link AssetEntry} which completes once the asset is cached, or once its download failed.
+ * Assets which already have a cached copy are ready as soon as they are registered, even while they are revalidated.
+ * Only ready assets are mapped to the asset cache, so the in-app message WebView never looks up an asset which is not on disk yet.
+ * Assets are forgotten once they are evicted or deleted from the asset cache, or no longer used by the loaded in-app messages.
+ */
+final class AssetRegistry {
+    private final String assetCacheLocation;
+    private final Map<String, AssetEntry> entries = new HashMap<>();
+
+    /**
+     * The path taken to display the assets of an in-app message.
+     */
+    enum Readiness {
+        // every asset was cached when the message was triggered
+        CACHED,
+        // the message waited for assets which were still being downloaded
+        LOADED_AFTER_WAIT,
+        // some assets were not cached in time, the message loads them from the network
+        NETWORK_FALLBACK
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param assetCacheLocation {@code String} containing the asset cache location
+     */
+    AssetRegistry(final String assetCacheLocation) {
+        this.assetCacheLocation = assetCacheLocation;
+    }
+
+    /**
+     * Registers an asset which is about to be downloaded.
+     *
+     * @param url    {@code String} containing the asset url
+     * @param cached {@code boolean} indicating whether a copy of the asset is already cached
+     * @return the {@link AssetEntry} of the asset, to be completed once the download has finished
+     */
+    AssetEntry register(final String url, final boolean cached) {
+        synchronized (entries) {
+            final AssetEntry existingEntry = entries.get(url);
+            // an asset being downloaded keeps its pending entry so every waiter is notified by the same download
+            if (existingEntry != null && (!existingEntry.isDone() || (cached && existingEntry.isReady()))) {
+                return existingEntry;
+            }
+
+            final AssetEntry entry = new AssetEntry();
+            if (cached) {
+                entry.complete(true);
+            }
+            entries.put(url, entry);
+            return entry;
+        }
+    }
+
+    /**
+     * Marks an asset as cached, e.g. the cached copy other assets with the same content resolve to.
+     *
+     * @param url {@code String} containing the asset url
+     */
+    void markCached(final String url) {
+        register(url, true).complete(true);
+    }
+
+    /**
+     * Forgets an asset which is no longer cached, e.g. once it was evicted from the asset cache.
+     *
+     * @param url {@code String} containing the asset url
+     */
+    void remove(final String url) {
+        synchronized (entries) {
+            entries.remove(url);
+        }
+    }
+
+    /**
+     * Forgets the assets which are not used by the loaded in-app messages.
+     *
+     * @param urls {@code Collection<String>} containing the urls of the assets to keep
+     */
+    void retainOnly(final Collection<String> urls) {
+        synchronized (entries) {
+            entries.keySet().retainAll(urls != null ? new HashSet<>(urls) : Collections.emptySet());
+        }
+    }
+
+    /**
+     * Forgets the assets whose url hash is not referenced, called once the unreferenced assets were deleted from the asset cache.
+     *
+     * @param referencedHashes {@code Set<String>} containing the hashes of the referenced asset urls
+     */
+    void retainReferenced(final Set<String> referencedHashes) {
+        synchronized (entries) {
+            final Iterator<String> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (!referencedHashes.contains(StringEncoder.sha2hash(iterator.next()))) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets every asset, called when the asset cache is cleared.
+     */
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the ready assets mapped to the asset cache location.
+     *
+     * @return {@code Map<String, String>} containing the urls of the cached assets mapped to the asset cache location
+     */
+    Map<String, String> getReadyAssets() {
+        final Map<String, String> readyAssets = new HashMap<>();
+        synchronized (entries) {
+            for (final Map.Entry<String, AssetEntry> entry : entries.entrySet()) {
+                if (entry.getValue().isReady()) {
+                    readyAssets.put(entry.getKey(), assetCacheLocation);
+                }
+            }
+        }
+        return readyAssets;
+    }
+
+    /**
+     * Determines whether any of the provided assets is still being downloaded.
+     *
+     * @param urls {@code List<String>} containing the urls of the assets of an in-app message
+     * @return {@code boolean} indicating whether waiting for the assets may block
+     */
+    boolean hasPending(final List<String> urls) {
+        if (urls == null) {
+            return false;
+        }
+
+        synchronized (entries) {
+            for (final String url : urls) {
+                final AssetEntry entry = entries.get(url);
+                if (entry != null && !entry.isDone()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for the pending downloads of the provided assets.
+     *
+     * @param urls          {@code List<String>} containing the urls of the assets of an in-app message
+     * @param timeoutMillis {@code long} containing the maximum time to wait for all the assets
+     * @return the {@link Readiness} of the assets
+     */
+    Readiness await(final List<String> urls, final long timeoutMillis) {
+        final List<AssetEntry> pendingEntries = new ArrayList<>();
+        boolean missingAssets = false;
+        synchronized (entries) {
+            if (urls != null) {
+                for (final String url : urls) {
+                    final AssetEntry entry = entries.get(url);
+                    if (entry == null) {
+                        continue;
+                    }
+                    if (!entry.isDone()) {
+                        pendingEntries.add(entry);
+                    } else if (!entry.isReady()) {
+                        missingAssets = true;
+                    }
+                }
+            }
+        }
+
+        if (pendingEntries.isEmpty()) {
+            return missingAssets ? Readiness.NETWORK_FALLBACK : Readiness.CACHED;
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            for (final AssetEntry entry : pendingEntries) {
+                final long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0 || !entry.await(remainingNanos, TimeUnit.NANOSECONDS) || !entry.isReady()) {
+                    return Readiness.NETWORK_FALLBACK;
+                }
+            }
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return Readiness.NETWORK_FALLBACK;
+        }
+        return missingAssets ? Readiness.NETWORK_FALLBACK : Readiness.LOADED_AFTER_WAIT;
+    }
+
+    /**
+     * Completion future of an asset download.
+     */
+    static final class AssetEntry {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private boolean done;
+        private boolean ready;
+
+        /**
+         * Completes the entry. Only the first call has an effect.
+         *
+         * @param cached {@code boolean} indicating whether the asset is available in the asset cache
+         */
+        void complete(final boolean cached) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                ready = cached;
+            }
+            latch.countDown();
+        }
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        synchronized boolean isReady() {
+            return ready;
+        }
+
+        boolean await(final long timeout, final TimeUnit unit) throws InterruptedException {
+            return latch.await(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import com.adobe.marketing.mobile.services.DeviceInforming;
+import com.adobe.marketing.mobile.services.Log;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Downscales downloaded images to the display size and re-encodes them before they are cached.
+ * <p>
+ * In-app messages are displayed full screen at most, so images larger than the display are scaled down to fit in a square
+ * whose side is the largest display dimension, which keeps them sharp in both orientations. Opaque images are encoded as
+ * WebP and images with transparency as PNG. The transcoded image is only used when it is smaller than the downloaded one.
+ * Animated GIFs and content which cannot be decoded as a bitmap (like SVG) are left untouched.
+ */
+final class AssetTranscoder {
+    private final static String SELF_TAG = "AssetTranscoder";
+    private final static String MIME_TYPE_GIF = "image/gif";
+
+    private final int maxDimension;
+
+    /**
+     * Constructor.
+     *
+     * @param maxDimension {@code int} containing the maximum width and height of the transcoded images in pixels
+     */
+    AssetTranscoder(final int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    /**
+     * Creates an {@code AssetTranscoder} for the display of the device.
+     *
+     * @param deviceInfoService the {@link DeviceInforming} service providing the display information
+     * @return an {@link AssetTranscoder}, or null if the display size is not available
+     */
+    static AssetTranscoder create(final DeviceInforming deviceInfoService) {
+        final DeviceInforming.DisplayInformation displayInformation = deviceInfoService == null ? null : deviceInfoService.getDisplayInformation();
+        if (displayInformation == null) {
+            return null;
+        }
+
+        final int maxDimension = Math.max(displayInformation.getWidthPixels(), displayInformation.getHeightPixels());
+        return maxDimension > 0 ? new AssetTranscoder(maxDimension) : null;
+    }
+
+    /**
+     * Transcodes a downloaded image.
+     *
+     * @param imageData {@code byte[]} containing the downloaded image
+     * @return {@code byte[]} containing the transcoded image, or null if the downloaded image should be cached as is
+     */
+    byte[] transcode(final byte[] imageData) {
+        if (imageData == null || imageData.length == 0) {
+            return null;
+        }
+
+        final BitmapFactory.Options boundsOptions = new BitmapFactory.Options();
+        boundsOptions.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(imageData, 0, imageData.length, boundsOptions);
+        if (boundsOptions.outWidth <= 0 || boundsOptions.outHeight <= 0 || MIME_TYPE_GIF.equals(boundsOptions.outMimeType)) {
+            return null;
+        }
+
+        // decode at the smallest power of two subsample which is still at least as large as the target size
+        final BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+        decodeOptions.inSampleSize = getSampleSize(boundsOptions.outWidth, boundsOptions.outHeight);
+        final Bitmap decodedBitmap;
+        try {
+            decodedBitmap = BitmapFactory.decodeByteArray(imageData, 0, imageData.length, decodeOptions);
+        } catch (final OutOfMemoryError error) {
+            Log.debug(LOG_TAG, SELF_TAG, "transcode - Not enough memory to decode a %dx%d image.", boundsOptions.outWidth, boundsOptions.outHeight);
+            return null;
+        }
+        if (decodedBitmap == null) {
+            return null;
+        }
+
+        final Bitmap scaledBitmap = scale(decodedBitmap);
+        try {
+            final ByteArrayOutputStream transcodedData = new ByteArrayOutputStream();
+            final boolean encoded = scaledBitmap.hasAlpha()
+                    ? scaledBitmap.compress(Bitmap.CompressFormat.PNG, 100, transcodedData)
+                    : scaledBitmap.compress(getLossyWebpFormat(), MessagingConstants.TRANSCODED_IMAGE_QUALITY, transcodedData);
+            if (!encoded || transcodedData.size() == 0 || transcodedData.size() >= imageData.length) {
+                return null;
+            }
+
+            Log.trace(LOG_TAG, SELF_TAG, "transcode - Transcoded a %dx%d image (%d bytes) to %dx%d (%d bytes).", boundsOptions.outWidth, boundsOptions.outHeight,
+                    imageData.length, scaledBitmap.getWidth(), scaledBitmap.getHeight(), transcodedData.size());
+            return transcodedData.toByteArray();
+        } finally {
+            if (scaledBitmap != decodedBitmap) {
+                scaledBitmap.recycle();
+            }
+            decodedBitmap.recycle();
+        }
+    }
+
+    private static Bitmap.CompressFormat getLossyWebpFormat() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        return getLegacyWebpFormat();
+    }
+
+    // WEBP is deprecated in favor of WEBP_LOSSY, which is only available from API 30
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat getLegacyWebpFormat() {
+        return Bitmap.CompressFormat.WEBP;
+    }
+
+    private int getSampleSize(final int width, final int height) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= maxDimension && height / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private Bitmap scale(final Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        if (width <= maxDimension && height <= maxDimension) {
+            return bitmap;
+        }
+
+        final float scale = Math.min((float) maxDimension / width, (float) maxDimension / height);
+        final Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)), true);
+        return scaledBitmap != null ? scaledBitmap : bitmap;
+    }
+}
@@ -0,0 +1,375 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_CONDITION_DEFINITION;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_CONDITION_KEY;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_CONDITION_TYPE;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_CONDITION_TYPE_GROUP;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_CONDITION_TYPE_MATCHER;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_CONSEQUENCES_KEY;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_DEFINITION_CONDITIONS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_DEFINITION_KEY;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_DEFINITION_LOGIC;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_DEFINITION_MATCHER;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_DEFINITION_VALUES;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_KEY;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_ID;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_TYPE;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
+import com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence;
+import com.adobe.marketing.mobile.rulesengine.ComparisonExpression;
+import com.adobe.marketing.mobile.rulesengine.Evaluable;
+import com.adobe.marketing.mobile.rulesengine.LogicalExpression;
+import com.adobe.marketing.mobile.rulesengine.OperandLiteral;
+import com.adobe.marketing.mobile.rulesengine.OperandMustacheToken;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.util.JSONUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact form of an in-app message {@link LaunchRule} which is stored in the {@link RuleSnapshot} and turned back into
+ * a {@code LaunchRule} without parsing the rule json.
+ * <p>
+ * Only conditions made of "and" / "or" groups and of matchers comparing a key with string, integer, double or boolean
+ * values can be compiled. {@link #compile(JSONObject)} returns null for any other rule, such rules are parsed by the
+ * rules parser each time they are loaded.
+ * <p>
+ * Conditions are rebuilt as the expressions the rules parser creates for the same json: a group becomes a
+ * {@link LogicalExpression} and a matcher becomes a {@link ComparisonExpression} between the key, transformed to the
+ * type of the value, and the value. The comparisons of a matcher with more than one value are combined with "or".
+ */
+final class CompiledRule {
+    private final static String SELF_TAG = "CompiledRule";
+    private final static byte NODE_GROUP = 1;
+    private final static byte NODE_MATCHER = 2;
+    private final static String LOGIC_AND = "and";
+    private final static String LOGIC_OR = "or";
+    private final static String TRANSFORM_TO_STRING = "string";
+    private final static String TRANSFORM_TO_INT = "int";
+    private final static String TRANSFORM_TO_DOUBLE = "double";
+    private final static String TRANSFORM_TO_BOOL = "bool";
+    private final static Map<String, String> MATCHER_OPERATIONS = new HashMap<>();
+
+    static {
+        MATCHER_OPERATIONS.put("eq", "equals");
+        MATCHER_OPERATIONS.put("ne", "notEquals");
+        MATCHER_OPERATIONS.put("gt", "greaterThan");
+        MATCHER_OPERATIONS.put("ge", "greaterEqual");
+        MATCHER_OPERATIONS.put("lt", "lessThan");
+        MATCHER_OPERATIONS.put("le", "lessEqual");
+        MATCHER_OPERATIONS.put("co", "contains");
+        MATCHER_OPERATIONS.put("nc", "notContains");
+        MATCHER_OPERATIONS.put("sw", "startsWith");
+        MATCHER_OPERATIONS.put("ew", "endsWith");
+    }
+
+    private final Condition condition;
+    private final List<RuleConsequence> consequences;
+
+    private CompiledRule(final Condition condition, final List<RuleConsequence> consequences) {
+        this.condition = condition;
+        this.consequences = consequences;
+    }
+
+    /**
+     * Compiles the first rule of the provided in-app message rule json.
+     *
+     * @param ruleJson {@link JSONObject} containing the in-app message rule
+     * @return the {@code CompiledRule}, or null if the rule uses conditions or consequences which cannot be compiled
+     */
+    static CompiledRule compile(final JSONObject ruleJson) {
+        if (ruleJson == null) {
+            return null;
+        }
+
+        final JSONArray rules = ruleJson.optJSONArray(JSON_KEY);
+        final JSONObject rule = rules == null ? null : rules.optJSONObject(0);
+        if (rule == null) {
+            return null;
+        }
+
+        final Condition condition = compileCondition(rule.optJSONObject(JSON_CONDITION_KEY));
+        final JSONArray consequencesArray = rule.optJSONArray(JSON_CONSEQUENCES_KEY);
+        if (condition == null || consequencesArray == null) {
+            return null;
+        }
+
+        final List<RuleConsequence> consequences = new ArrayList<>();
+        try {
+            for (int index = 0; index < consequencesArray.length(); index++) {
+                final JSONObject consequence = consequencesArray.optJSONObject(index);
+                final Object id = consequence == null ? null : consequence.opt(MESSAGE_CONSEQUENCE_ID);
+                final Object type = consequence == null ? null : consequence.opt(MESSAGE_CONSEQUENCE_TYPE);
+                final JSONObject detail = consequence == null ? null : consequence.optJSONObject(MESSAGE_CONSEQUENCE_DETAIL);
+                if (!(id instanceof String) || !(type instanceof String) || detail == null) {
+                    return null;
+                }
+                consequences.add(new RuleConsequence((String) id, (String) type, JSONUtils.toMap(detail)));
+            }
+        } catch (final JSONException jsonException) {
+            Log.debug(LOG_TAG, SELF_TAG, "compile - Unable to read the rule consequences: %s", jsonException.getLocalizedMessage());
+            return null;
+        }
+
+        return consequences.isEmpty() ? null : new CompiledRule(condition, consequences);
+    }
+
+    /**
+     * Creates the {@link LaunchRule} described by this {@code CompiledRule}.
+     *
+     * @return a new {@code LaunchRule}
+     */
+    LaunchRule toLaunchRule() {
+        return new LaunchRule(toEvaluable(condition), consequences);
+    }
+
+    /**
+     * Writes this {@code CompiledRule}: the condition tree followed by an {@code int} consequence count and the
+     * id, type and typed detail map of each consequence.
+     *
+     * @param output the {@link DataOutputStream} to write to
+     * @throws IOException if the rule cannot be written
+     */
+    void write(final DataOutputStream output) throws IOException {
+        writeCondition(output, condition);
+        output.writeInt(consequences.size());
+        for (final RuleConsequence consequence : consequences) {
+            PropositionCacheCodec.writeString(output, consequence.getId());
+            PropositionCacheCodec.writeString(output, consequence.getType());
+            PropositionCacheCodec.writeValue(output, consequence.getDetail());
+        }
+    }
+
+    /**
+     * Reads a {@code CompiledRule} previously written with {@link #write(DataOutputStream)}.
+     *
+     * @param buffer the {@link ByteBuffer} positioned at the start of the rule
+     * @return the {@code CompiledRule}
+     * @throws IllegalArgumentException if the buffer does not contain a valid rule
+     */
+    static CompiledRule read(final ByteBuffer buffer) {
+        final Condition condition = readCondition(buffer);
+        final int consequenceCount = buffer.getInt();
+        if (consequenceCount <= 0) {
+            throw new IllegalArgumentException("Invalid consequence count: " + consequenceCount);
+        }
+
+        final List<RuleConsequence> consequences = new ArrayList<>();
+        for (int index = 0; index < consequenceCount; index++) {
+            final String id = PropositionCacheCodec.readString(buffer);
+            final String type = PropositionCacheCodec.readString(buffer);
+            final Object detail = PropositionCacheCodec.readValue(buffer);
+            if (id == null || type == null || !(detail instanceof Map)) {
+                throw new IllegalArgumentException("Invalid rule consequence.");
+            }
+            consequences.add(new RuleConsequence(id, type, (Map<String, Object>) detail));
+        }
+        return new CompiledRule(condition, consequences);
+    }
+
+    // ========================================================================================================
+    // Conditions
+    // ========================================================================================================
+
+    private static Condition compileCondition(final JSONObject conditionJson) {
+        final JSONObject definition = conditionJson == null ? null : conditionJson.optJSONObject(JSON_CONDITION_DEFINITION);
+        if (definition == null) {
+            return null;
+        }
+
+        final String type = conditionJson.optString(JSON_CONDITION_TYPE);
+        if (JSON_CONDITION_TYPE_GROUP.equals(type)) {
+            final String logic = definition.optString(JSON_DEFINITION_LOGIC);
+            final JSONArray conditionsArray = definition.optJSONArray(JSON_DEFINITION_CONDITIONS);
+            if (!isSupportedLogic(logic) || conditionsArray == null || conditionsArray.length() == 0) {
+                return null;
+            }
+
+            final List<Condition> children = new ArrayList<>();
+            for (int index = 0; index < conditionsArray.length(); index++) {
+                final Condition child = compileCondition(conditionsArray.optJSONObject(index));
+                if (child == null) {
+                    return null;
+                }
+                children.add(child);
+            }
+            return Condition.group(logic, children);
+        }
+
+        if (JSON_CONDITION_TYPE_MATCHER.equals(type)) {
+            final Object key = definition.opt(JSON_DEFINITION_KEY);
+            final Object matcher = definition.opt(JSON_DEFINITION_MATCHER);
+            if (!(key instanceof String) || !MATCHER_OPERATIONS.containsKey(matcher)) {
+                return null;
+            }
+
+            final List<Object> values = new ArrayList<>();
+            final JSONArray valuesArray = definition.optJSONArray(JSON_DEFINITION_VALUES);
+            if (valuesArray != null) {
+                for (int index = 0; index < valuesArray.length(); index++) {
+                    final Object value = valuesArray.opt(index);
+                    if (!isSupportedValue(value)) {
+                        return null;
+                    }
+                    values.add(value);
+                }
+            }
+            return Condition.matcher((String) key, (String) matcher, values);
+        }
+
+        // historical and other condition types are left to the rules parser
+        return null;
+    }
+
+    private static Evaluable toEvaluable(final Condition condition) {
+        if (condition.type == NODE_GROUP) {
+            final List<Evaluable> operands = new ArrayList<>();
+            for (final Condition child : condition.children) {
+                operands.add(toEvaluable(child));
+            }
+            return new LogicalExpression(operands, condition.logic);
+        }
+
+        final String operation = MATCHER_OPERATIONS.get(condition.matcher);
+        if (condition.values.isEmpty()) {
+            return toComparison(condition.key, operation, "");
+        }
+        if (condition.values.size() == 1) {
+            return toComparison(condition.key, operation, condition.values.get(0));
+        }
+
+        final List<Evaluable> operands = new ArrayList<>();
+        for (final Object value : condition.values) {
+            operands.add(toComparison(condition.key, operation, value));
+        }
+        return new LogicalExpression(operands, LOGIC_OR);
+    }
+
+    private static Evaluable toComparison(final String key, final String operation, final Object value) {
+        if (value instanceof Integer) {
+            return new ComparisonExpression<>(new OperandMustacheToken<>(getToken(TRANSFORM_TO_INT, key), Number.class), operation, new OperandLiteral<>((Integer) value));
+        } else if (value instanceof Double) {
+            return new ComparisonExpression<>(new OperandMustacheToken<>(getToken(TRANSFORM_TO_DOUBLE, key), Number.class), operation, new OperandLiteral<>((Double) value));
+        } else if (value instanceof Boolean) {
+            return new ComparisonExpression<>(new OperandMustacheToken<>(getToken(TRANSFORM_TO_BOOL, key), Boolean.class), operation, new OperandLiteral<>((Boolean) value));
+        }
+        return new ComparisonExpression<>(new OperandMustacheToken<>(getToken(TRANSFORM_TO_STRING, key), String.class), operation, new OperandLiteral<>((String) value));
+    }
+
+    private static String getToken(final String transform, final String key) {
+        return "{{" + transform + "(" + key + ")}}";
+    }
+
+    private static boolean isSupportedLogic(final String logic) {
+        return LOGIC_AND.equals(logic) || LOGIC_OR.equals(logic);
+    }
+
+    private static boolean isSupportedValue(final Object value) {
+        return value instanceof String || value instanceof Integer || value instanceof Double || value instanceof Boolean;
+    }
+
+    private static void writeCondition(final DataOutputStream output, final Condition condition) throws IOException {
+        output.writeByte(condition.type);
+        if (condition.type == NODE_GROUP) {
+            PropositionCacheCodec.writeString(output, condition.logic);
+            output.writeInt(condition.children.size());
+            for (final Condition child : condition.children) {
+                writeCondition(output, child);
+            }
+            return;
+        }
+
+        PropositionCacheCodec.writeString(output, condition.key);
+        PropositionCacheCodec.writeString(output, condition.matcher);
+        PropositionCacheCodec.writeValue(output, condition.values);
+    }
+
+    private static Condition readCondition(final ByteBuffer buffer) {
+        final byte type = buffer.get();
+        if (type == NODE_GROUP) {
+            final String logic = PropositionCacheCodec.readString(buffer);
+            final int childCount = buffer.getInt();
+            if (!isSupportedLogic(logic) || childCount <= 0) {
+                throw new IllegalArgumentException("Invalid group condition.");
+            }
+
+            final List<Condition> children = new ArrayList<>();
+            for (int index = 0; index < childCount; index++) {
+                children.add(readCondition(buffer));
+            }
+            return Condition.group(logic, children);
+        }
+
+        if (type == NODE_MATCHER) {
+            final String key = PropositionCacheCodec.readString(buffer);
+            final String matcher = PropositionCacheCodec.readString(buffer);
+            final Object values = PropositionCacheCodec.readValue(buffer);
+            if (key == null || !MATCHER_OPERATIONS.containsKey(matcher) || !(values instanceof List)) {
+                throw new IllegalArgumentException("Invalid matcher condition.");
+            }
+            for (final Object value : (List<?>) values) {
+                if (!isSupportedValue(value)) {
+                    throw new IllegalArgumentException("Invalid matcher value.");
+                }
+            }
+            return Condition.matcher(key, matcher, (List<Object>) values);
+        }
+
+        throw new IllegalArgumentException("Unknown condition type: " + type);
+    }
+
+    /**
+     * A node of the compiled condition tree, either a group of conditions or a matcher.
+     */
+    private static final class Condition {
+        final byte type;
+        final String logic;
+        final List<Condition> children;
+        final String key;
+        final String matcher;
+        final List<Object> values;
+
+        private Condition(final byte type, final String logic, final List<Condition> children, final String key, final String matcher, final List<Object> values) {
+            this.type = type;
+            this.logic = logic;
+            this.children = children;
+            this.key = key;
+            this.matcher = matcher;
+            this.values = values;
+        }
+
+        static Condition group(final String logic, final List<Condition> children) {
+            return new Condition(NODE_GROUP, logic, children, null, null, Collections.emptyList());
+        }
+
+        static Condition matcher(final String key, final String matcher, final List<Object> values) {
+            return new Condition(NODE_MATCHER, null, Collections.<Condition>emptyList(), key, matcher, values);
+        }
+    }
+}
@@ -19,54 +19,82 @@ import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.E
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.IAMDetailsDataKeys.Key.SURFACES;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.IAMDetailsDataKeys.SURFACE_BASE;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.XDMDataKeys.EVENT_TYPE;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.RulesDeltaDataKeys.ADDED_MESSAGE_IDS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.RulesDeltaDataKeys.REMOVED_MESSAGE_IDS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.RulesDeltaDataKeys.RETAINED_COUNT;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.WarmLoadDataKeys.DURATION_MS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.WarmLoadDataKeys.PROPOSITION_COUNT;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.XDMDataKeys.XDM;
-import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_CONSEQUENCES_KEY;
-import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_KEY;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_CJM_VALUE;
-import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_MOBILE_PARAMETERS;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS;
-import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_ID;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
 
 import androidx.annotation.VisibleForTesting;
 
 import com.adobe.marketing.mobile.Event;
 import com.adobe.marketing.mobile.ExtensionApi;
-import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
+import com.adobe.marketing.mobile.SharedStateResolution;
+import com.adobe.marketing.mobile.SharedStateResult;
 import com.adobe.marketing.mobile.launch.rulesengine.LaunchRulesEngine;
 import com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence;
-import com.adobe.marketing.mobile.launch.rulesengine.json.JSONRulesParser;
+import com.adobe.marketing.mobile.messaging.MessagingTimingStage;
 import com.adobe.marketing.mobile.services.Log;
 import com.adobe.marketing.mobile.services.ServiceProvider;
 import com.adobe.marketing.mobile.util.DataReader;
 import com.adobe.marketing.mobile.util.MapUtils;
 import com.adobe.marketing.mobile.util.StringUtils;
-import com.adobe.marketing.mobile.util.UrlUtils;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class is used to handle the retrieval, processing, and display of AJO in-app messages.
  */
 class InAppNotificationHandler {
     private final static String SELF_TAG = "InAppNotificationHandler";
+    private final static String WARM_LOAD_THREAD_NAME = "AEPMessagingWarmLoad";
+    private final static String ASSET_WAIT_THREAD_NAME = "AEPMessagingAssetWait";
+    private final static long ASSET_WAIT_THREAD_KEEP_ALIVE_SECONDS = 30;
     final MessagingExtension parent;
     private final MessagingCacheUtilities messagingCacheUtilities;
     private final ExtensionApi extensionApi;
-    private final LaunchRulesEngine launchRulesEngine;
+    private final ParsedRuleCache parsedRuleCache;
+    private final PropositionCacheWriter propositionCacheWriter;
+    private final InAppRuleSet inAppRuleSet;
     private Map<String, PropositionInfo> propositionInfo = new HashMap<>();
     private List<PropositionPayload> inMemoryPropositions = new ArrayList<>();
     private String messagesRequestEventId;
     private String lastProcessedRequestEventId;
-    private InternalMessage message;
+    private int parallelParsingThreshold = MessagingConstants.DEFAULT_PARALLEL_PARSING_THRESHOLD;
+    // set on the event hub thread, or on an asset wait thread if the message waited for its assets
+    private volatile InternalMessage message;
+    // waits for the pending assets of triggered in-app messages off the event hub thread, in the order they were triggered
+    private Executor assetWaitExecutor;
+    // created once the WebView pool is enabled by the configuration
+    private volatile WebViewPool webViewPool;
+    // null unless in-app messages are rendered off-screen before they are shown
+    private volatile MessagePrerenderer messagePrerenderer;
+    // cached propositions loaded in the background, applied to the rules engine on the event hub thread
+    private FutureTask<List<PropositionPayload>> warmLoadTask;
+    private final String warmLoadScope;
+    // events received before the warm-load finished, guarded by itself
+    private final List<Event> deferredRulesEvents = new ArrayList<>();
+    private boolean warmLoadFinished;
 
     /**
      * Constructor
@@ -76,34 +104,174 @@ class InAppNotificationHandler {
      * @param rulesEngine  {@link LaunchRulesEngine} instance to use for loading in-app message rule payloads
      */
     InAppNotificationHandler(final MessagingExtension parent, final ExtensionApi extensionApi, final LaunchRulesEngine rulesEngine) {
-        this(parent, extensionApi, rulesEngine, null, null);
+        this(parent, extensionApi, rulesEngine, null, null, null);
     }
 
+    // cached propositions are loaded synchronously when using this constructor
     @VisibleForTesting
     InAppNotificationHandler(final MessagingExtension parent, final ExtensionApi extensionApi, final LaunchRulesEngine rulesEngine, final MessagingCacheUtilities messagingCacheUtilities, final String messagesRequestEventId) {
+        this(parent, extensionApi, rulesEngine, messagingCacheUtilities, messagesRequestEventId, Runnable::run);
+    }
+
+    @VisibleForTesting
+    InAppNotificationHandler(final MessagingExtension parent, final ExtensionApi extensionApi, final LaunchRulesEngine rulesEngine, final MessagingCacheUtilities messagingCacheUtilities, final String messagesRequestEventId, final Executor warmLoadExecutor) {
         this.parent = parent;
         this.extensionApi = extensionApi;
-        this.launchRulesEngine = rulesEngine;
+        this.inAppRuleSet = new InAppRuleSet(rulesEngine);
         this.messagesRequestEventId = messagesRequestEventId;
-
-        // load cached propositions (if any) when InAppNotificationHandler is instantiated
         this.messagingCacheUtilities = messagingCacheUtilities != null ? messagingCacheUtilities : new MessagingCacheUtilities();
-        if (this.messagingCacheUtilities.arePropositionsCached()) {
-            List<PropositionPayload> cachedMessages = this.messagingCacheUtilities.getCachedPropositions();
-            if (cachedMessages != null && !cachedMessages.isEmpty()) {
-                Log.trace(LOG_TAG, SELF_TAG, "Retrieved cached propositions, attempting to load in-app messages into the rules engine.");
-                inMemoryPropositions = cachedMessages;
-                processPropositions(cachedMessages, false, false, getAppSurface());
+        this.parsedRuleCache = new ParsedRuleCache(this.messagingCacheUtilities);
+        this.propositionCacheWriter = new PropositionCacheWriter(this.messagingCacheUtilities);
+
+        // load cached propositions (if any) in the background when InAppNotificationHandler is instantiated
+        this.warmLoadScope = getAppSurface();
+        this.warmLoadTask = new FutureTask<>(this::warmLoad);
+        try {
+            (warmLoadExecutor != null ? warmLoadExecutor : createDaemonExecutor(WARM_LOAD_THREAD_NAME)).execute(warmLoadTask);
+        } catch (final Exception exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to start the warm-load in the background, loading cached propositions now: %s", exception.getLocalizedMessage());
+            warmLoadTask.run();
+        }
+
+        if (warmLoadTask.isDone()) {
+            applyWarmLoad();
+        }
+    }
+
+    /**
+     * Loads the cached propositions and parses their rules, called on the warm-load thread.
+     * <p>
+     * The parsed rules are kept in the {@link ParsedRuleCache} so they are not parsed again when the propositions
+     * are applied to the rules engine in {@link #applyWarmLoad()}.
+     *
+     * @return {@code List<PropositionPayload>} containing the cached propositions
+     */
+    private List<PropositionPayload> warmLoad() {
+        final long startTime = System.nanoTime();
+        List<PropositionPayload> cachedPropositions = null;
+        try {
+            cachedPropositions = messagingCacheUtilities.getCachedPropositions();
+            MessagingTimings.stageCompleted(MessagingTimingStage.CACHE_LOADED, startTime);
+            if (cachedPropositions != null && !cachedPropositions.isEmpty()) {
+                final List<PropositionPayload> matchingPropositions = new ArrayList<>();
+                for (final PropositionPayload proposition : cachedPropositions) {
+                    if (isScopeMatching(proposition, warmLoadScope)) {
+                        matchingPropositions.add(proposition);
+                    }
+                }
+                parsedRuleCache.getOrParseAll(matchingPropositions, extensionApi, parallelParsingThreshold);
+            }
+        } finally {
+            onWarmLoadFinished(cachedPropositions == null ? 0 : cachedPropositions.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+        return cachedPropositions;
+    }
+
+    private void onWarmLoadFinished(final int propositionCount, final long durationMillis) {
+        final boolean hasDeferredEvents;
+        synchronized (deferredRulesEvents) {
+            warmLoadFinished = true;
+            hasDeferredEvents = !deferredRulesEvents.isEmpty();
+        }
+
+        Log.debug(LOG_TAG, SELF_TAG, "Warm-load of %d cached proposition(s) finished in %d ms.", propositionCount, durationMillis);
+
+        // dispatch an event so the deferred events are evaluated without waiting for the next event
+        if (hasDeferredEvents) {
+            final Map<String, Object> eventData = new HashMap<>();
+            eventData.put(DURATION_MS, durationMillis);
+            eventData.put(PROPOSITION_COUNT, propositionCount);
+            final Event event = new Event.Builder(MessagingConstants.EventName.WARM_LOAD_COMPLETE_EVENT,
+                    MessagingConstants.EventType.MESSAGING,
+                    MessagingConstants.EventSource.DEBUG)
+                    .setEventData(eventData)
+                    .build();
+            extensionApi.dispatch(event);
+        }
+    }
+
+    /**
+     * Loads the propositions retrieved by the warm-load into the rules engine, waiting for the warm-load to finish if needed.
+     * Does nothing once the warm-load has been applied.
+     */
+    private void applyWarmLoad() {
+        if (warmLoadTask == null) {
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+        List<PropositionPayload> cachedPropositions = null;
+        try {
+            cachedPropositions = warmLoadTask.get();
+        } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException executionException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to load cached propositions: %s", executionException.getLocalizedMessage());
+        }
+        warmLoadTask = null;
+
+        if (cachedPropositions != null && !cachedPropositions.isEmpty()) {
+            Log.trace(LOG_TAG, SELF_TAG, "Retrieved cached propositions, attempting to load in-app messages into the rules engine.");
+            processPropositions(cachedPropositions, false, false, warmLoadScope, startTime);
+        }
+        MessagingTimings.stageCompleted(MessagingTimingStage.RULES_LOADED, startTime);
+    }
+
+    /**
+     * Holds an event to be evaluated by the rules engine once the warm-load has finished.
+     *
+     * @param event {@link Event} to be evaluated
+     * @return {@code boolean} true if the event was deferred, false if it can be evaluated now
+     */
+    boolean deferUntilWarmLoaded(final Event event) {
+        synchronized (deferredRulesEvents) {
+            if (warmLoadFinished) {
+                return false;
+            }
+
+            if (deferredRulesEvents.size() >= MessagingConstants.MAX_DEFERRED_RULES_EVENTS) {
+                Log.debug(LOG_TAG, SELF_TAG, "Too many events received before the cached in-app messages were loaded, dropping the oldest event.");
+                deferredRulesEvents.remove(0);
+            }
+            deferredRulesEvents.add(event);
+            return true;
+        }
+    }
+
+    /**
+     * Loads the warm-loaded propositions into the rules engine and returns the events deferred while they were being loaded.
+     *
+     * @return {@code List<Event>} containing the deferred events in the order they were received
+     */
+    List<Event> takeDeferredRulesEvents() {
+        applyWarmLoad();
+
+        synchronized (deferredRulesEvents) {
+            if (deferredRulesEvents.isEmpty()) {
+                return new ArrayList<>();
             }
+
+            final List<Event> events = new ArrayList<>(deferredRulesEvents);
+            deferredRulesEvents.clear();
+            return events;
         }
     }
 
+    private static Executor createDaemonExecutor(final String threadName) {
+        return runnable -> {
+            final Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
+
     /**
      * Generates and dispatches an event prompting the Edge extension to fetch in-app messages.
      * The app surface used in the request is generated using the application id of the app.
      * If the application id is unavailable, calling this method will do nothing.
      */
     void fetchMessages() {
+        final long startTime = System.nanoTime();
         final String appSurface = getAppSurface();
         if ("unknown".equals(appSurface)) {
             Log.warning(LOG_TAG, SELF_TAG, "Unable to retrieve in-app messages - unable to retrieve the application id.");
@@ -141,23 +309,32 @@ class InAppNotificationHandler {
         // send event
         Log.debug(LOG_TAG, SELF_TAG, "Dispatching edge event to fetch in-app messages.");
         extensionApi.dispatch(event);
+        MessagingTimings.stageCompleted(MessagingTimingStage.FETCH_MESSAGES_DISPATCHED, startTime);
     }
 
     /**
      * Validates that the edge response event is a response that we are waiting for. If the returned payload is empty then the Messaging cache
      * and any loaded rules in the Messaging extension's {@link LaunchRulesEngine} are cleared.
-     * Non-empty payloads are converted into rules within {@link #processPropositions(List, boolean, boolean, String)} )}.
+     * Non-empty payloads are converted into rules within {@link #processPropositions(List, boolean, boolean, String, long)} )}.
      *
      * @param edgeResponseEvent A {@link Event} containing the in-app message definitions retrieved via the Edge extension.
      */
     void handleEdgePersonalizationNotification(final Event edgeResponseEvent) {
         final String requestEventId = MessagingUtils.getRequestEventId(edgeResponseEvent);
 
+        // cached propositions must be loaded before applying the response
+        applyWarmLoad();
+
         // "TESTING_ID" used in unit and functional testing
         if (!messagesRequestEventId.equals(requestEventId) && !"TESTING_ID".equals(requestEventId)) {
             return;
         }
 
+        // the decisions are timed from the dispatch of the request
+        final long receivedTime = System.nanoTime();
+        final long fetchDispatchedTime = MessagingTimings.getCompletionTime(MessagingTimingStage.FETCH_MESSAGES_DISPATCHED);
+        MessagingTimings.stageCompleted(MessagingTimingStage.DECISIONS_RECEIVED, fetchDispatchedTime != -1 ? fetchDispatchedTime : receivedTime);
+
         // if this is an event for a new request, purge cache and update lastProcessedRequestEventId
         boolean clearExistingRules = false;
         if (lastProcessedRequestEventId != requestEventId) {
@@ -175,9 +352,21 @@ class InAppNotificationHandler {
             Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "Unable to create PropositionPayload(s), an exception occurred: %s.", exception.getLocalizedMessage());
         }
 
+        final Map<String, Object> configSharedState = getConfigurationSharedState(edgeResponseEvent);
+        parallelParsingThreshold = DataReader.optInt(configSharedState, MessagingConstants.SharedState.Configuration.PARALLEL_PARSING_THRESHOLD, MessagingConstants.DEFAULT_PARALLEL_PARSING_THRESHOLD);
+        messagingCacheUtilities.setAssetCacheMaxBytes(DataReader.optLong(configSharedState, MessagingConstants.SharedState.Configuration.ASSET_CACHE_MAX_BYTES, MessagingConstants.DEFAULT_ASSET_CACHE_MAX_BYTES));
+        messagingCacheUtilities.setMaxConcurrentAssetDownloads(DataReader.optInt(configSharedState, MessagingConstants.SharedState.Configuration.MAX_CONCURRENT_ASSET_DOWNLOADS, MessagingConstants.DEFAULT_MAX_CONCURRENT_ASSET_DOWNLOADS));
+        messagingCacheUtilities.setImageTranscodingEnabled(DataReader.optBoolean(configSharedState, MessagingConstants.SharedState.Configuration.TRANSCODE_IMAGES, false));
+        messagingCacheUtilities.setInlineAssetMaxBytes(DataReader.optLong(configSharedState, MessagingConstants.SharedState.Configuration.INLINE_ASSET_MAX_BYTES, MessagingConstants.DEFAULT_INLINE_ASSET_MAX_BYTES));
+        setWebViewPoolSize(DataReader.optInt(configSharedState, MessagingConstants.SharedState.Configuration.WEBVIEW_POOL_SIZE, 0));
+        setPrerenderEnabled(DataReader.optBoolean(configSharedState, MessagingConstants.SharedState.Configuration.PRERENDER_MESSAGES, false));
+
         final String appSurface = getAppSurface();
         Log.trace(LOG_TAG, SELF_TAG, "Loading in-app message definitions from personalization:decisions network response.");
-        processPropositions(propositions, clearExistingRules, true, appSurface);
+        // the assets of the received propositions are timed from the reception of the decisions
+        processPropositions(propositions, clearExistingRules, true, appSurface, MessagingTimings.getCompletionTime(MessagingTimingStage.DECISIONS_RECEIVED));
+        MessagingTimings.stageCompleted(MessagingTimingStage.PROPOSITIONS_PROCESSED, receivedTime);
+        parent.dispatchTimingsEvent();
     }
 
     /**
@@ -188,81 +377,198 @@ class InAppNotificationHandler {
      * @param clearExistingRules {@code boolean} if true the existing cached propositions are cleared and new message rules are replaced in the {@code LaunchRulesEngine}
      * @param persistChanges     {@code boolean} if true the passed in {@code List<PropositionPayload>} are added to the cache
      * @param expectedScope      {@code String} containing the app surface present in the {@code List<PropositionPayload>}
+     * @param refreshStartTime   {@code long} containing the {@link System#nanoTime()} the asset downloads of the propositions are timed from
      */
-    private void processPropositions(final List<PropositionPayload> propositions, final boolean clearExistingRules, final boolean persistChanges, final String expectedScope) {
-        final List<LaunchRule> parsedRules = new ArrayList<>();
-        final Map<String, PropositionInfo> tempPropositionInfo = new HashMap<>();
+    private void processPropositions(final List<PropositionPayload> propositions, final boolean clearExistingRules, final boolean persistChanges, final String expectedScope, final long refreshStartTime) {
+        final List<ParsedPropositionItem> parsedItems = new ArrayList<>();
+        final List<PropositionPayload> loadedPropositions = new ArrayList<>();
+
+        // rules parsed for the previous request are only reused if their content is unchanged
+        if (clearExistingRules) {
+            parsedRuleCache.startNewGeneration();
+        }
 
         if (propositions != null && !propositions.isEmpty()) {
+            // the assets of every processed in-app message are tracked as one refresh
+            messagingCacheUtilities.startAssetRefresh(refreshStartTime);
+            final List<PropositionPayload> matchingPropositions = new ArrayList<>();
             for (final PropositionPayload proposition : propositions) {
-                if (proposition.propositionInfo != null && !expectedScope.equals(proposition.propositionInfo.scope)) {
+                if (isScopeMatching(proposition, expectedScope)) {
+                    matchingPropositions.add(proposition);
+                } else {
                     Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "processPropositions - Ignoring proposition where scope (%s) does not match expected scope (%s).", proposition.propositionInfo.scope, expectedScope);
+                }
+            }
+
+            // parsed items are returned in payload order, one entry per item
+            final List<ParsedPropositionItem> parsedResults = parsedRuleCache.getOrParseAll(matchingPropositions, extensionApi, parallelParsingThreshold);
+            int resultIndex = 0;
+            for (final PropositionPayload proposition : propositions) {
+                if (!isScopeMatching(proposition, expectedScope)) {
+                    loadedPropositions.add(proposition);
                     continue;
                 }
 
+                // items whose html was moved to disk replace the original items in the loaded propositions
+                final List<PayloadItem> loadedItems = new ArrayList<>();
+                boolean itemsExternalized = false;
                 for (final PayloadItem payloadItem : proposition.items) {
-                    final JSONObject ruleJson = payloadItem.data.getRuleJsonObject();
-                    if (ruleJson == null) {
-                        Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "processPropositions - Skipping proposition with no in-app message content.");
+                    final ParsedPropositionItem parsedItem = parsedResults.get(resultIndex++);
+                    if (parsedItem == null) {
+                        loadedItems.add(payloadItem);
                         continue;
                     }
 
-                    final List<LaunchRule> parsedRule = JSONRulesParser.parse(ruleJson.toString(), extensionApi);
-                    if (parsedRule == null) {
-                        Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "Skipping proposition with malformed in-app message content.");
-                        continue;
-                    }
+                    loadedItems.add(parsedItem.payloadItem);
+                    itemsExternalized |= parsedItem.payloadItem != payloadItem;
 
-                    // cache any image assets present in the current rule json's image assets array
-                    cacheImageAssetsFromPayload(ruleJson);
-
-                    // store reporting data for this payload for later use
-                    tempPropositionInfo.put(getMessageId(ruleJson), proposition.propositionInfo);
+                    // cache any image assets present in the current rule's consequence, small assets are inlined in the stored html
+                    if (parsedItem.remoteAssets != null) {
+                        messagingCacheUtilities.cacheImageAssets(parsedItem.remoteAssets, parsedItem.getHtmlHandle());
+                    }
 
-                    parsedRules.add(parsedRule.get(0));
+                    parsedItems.add(parsedItem);
                 }
+
+                loadedPropositions.add(itemsExternalized ? createLoadedProposition(proposition, loadedItems) : proposition);
             }
+            messagingCacheUtilities.finishAssetRefresh();
         }
 
+        // only the rules which changed since the last request are applied to the rules engine
+        final InAppRuleSet.Delta delta = inAppRuleSet.apply(parsedItems, clearExistingRules);
+        updatePropositionInfo(delta, parsedItems);
+
         if (clearExistingRules) {
             inMemoryPropositions.clear();
-            messagingCacheUtilities.cachePropositions(null);
-            propositionInfo = tempPropositionInfo;
-            launchRulesEngine.replaceRules(parsedRules);
-            Log.debug(LOG_TAG, SELF_TAG, "processPropositions - Successfully loaded %d message(s) into the rules engine for scope %s.", parsedRules.size(), expectedScope);
-        } else if (!parsedRules.isEmpty()) {
-            propositionInfo.putAll(tempPropositionInfo);
-            launchRulesEngine.addRules(parsedRules);
-            Log.debug(LOG_TAG, SELF_TAG, "processPropositions - Successfully added %d message(s) into the rules engine for scope %s.", parsedRules.size(), expectedScope);
+            Log.debug(LOG_TAG, SELF_TAG, "processPropositions - Successfully loaded %d message(s) into the rules engine for scope %s (%d added, %d removed).", inAppRuleSet.size(), expectedScope, delta.added.size(), delta.removed.size());
+        } else if (!parsedItems.isEmpty()) {
+            Log.debug(LOG_TAG, SELF_TAG, "processPropositions - Successfully added %d message(s) into the rules engine for scope %s.", delta.added.size(), expectedScope);
         } else {
             Log.trace(MessagingConstants.LOG_TAG, SELF_TAG, "processPropositions - Ignoring request to load in-app messages for scope %s. The propositions parameter provided was empty.", expectedScope);
         }
 
-        if (persistChanges) {
-            // save the proposition payload to the messaging cache
-            if (!parsedRules.isEmpty()) {
-                inMemoryPropositions.addAll(propositions);
-                messagingCacheUtilities.cachePropositions(inMemoryPropositions);
+        if (!delta.isEmpty()) {
+            dispatchRulesDeltaEvent(delta);
+        }
+
+        // the WebViews used to display the loaded in-app messages are initialized once the main thread is idle
+        if (webViewPool != null && inAppRuleSet.size() > 0) {
+            webViewPool.prewarm();
+        }
+
+        // loaded in-app messages reference the assets and html they use, those of removed messages are released.
+        // added messages are registered first so html shared with a removed message is not deleted.
+        for (final ParsedPropositionItem addedItem : delta.added) {
+            messagingCacheUtilities.addAssetReferences(addedItem.contentKey, addedItem.remoteAssets);
+            messagingCacheUtilities.addHtmlReference(addedItem.contentKey, addedItem.getHtmlHandle());
+        }
+        for (final ParsedPropositionItem removedItem : delta.removed) {
+            messagingCacheUtilities.removeAssetReferences(removedItem.contentKey);
+            messagingCacheUtilities.removeHtmlReference(removedItem.contentKey);
+        }
+
+        // once the rules are updated, queued downloads and cached files of assets no longer used by any loaded in-app message are removed
+        if (clearExistingRules) {
+            final Set<String> loadedAssets = new HashSet<>();
+            for (final ParsedPropositionItem loadedItem : inAppRuleSet.getLoadedItems()) {
+                if (loadedItem.remoteAssets != null) {
+                    loadedAssets.addAll(loadedItem.remoteAssets);
+                }
             }
-        } else {
-            inMemoryPropositions.addAll(propositions);
+            messagingCacheUtilities.retainAssetDownloads(loadedAssets);
+            messagingCacheUtilities.collectUnusedAssets();
+        }
+
+        // only the propositions received with this request are added to the messaging cache, the write happens in the background
+        final boolean persistPropositions = persistChanges && !parsedItems.isEmpty();
+        if (persistPropositions || !persistChanges) {
+            inMemoryPropositions.addAll(loadedPropositions);
+        }
+        if (clearExistingRules || persistPropositions) {
+            propositionCacheWriter.schedule(clearExistingRules, persistPropositions ? loadedPropositions : null);
+            // the rule snapshot lets the cached rules be loaded without parsing them on the next launch
+            propositionCacheWriter.scheduleRuleSnapshot(inAppRuleSet.getLoadedItems());
         }
     }
 
+    private boolean isScopeMatching(final PropositionPayload proposition, final String expectedScope) {
+        return proposition.propositionInfo == null || expectedScope.equals(proposition.propositionInfo.scope);
+    }
+
+    private Map<String, Object> getConfigurationSharedState(final Event event) {
+        final SharedStateResult result = extensionApi.getSharedState(MessagingConstants.SharedState.Configuration.EXTENSION_NAME, event, false, SharedStateResolution.LAST_SET);
+        return result == null ? null : result.getValue();
+    }
+
     /**
-     * Extracts the message id from the provided rule payload's consequence.
+     * Creates a copy of the provided {@link PropositionPayload} containing the provided {@code List<PayloadItem>}.
      *
-     * @return a {@code String> containing the consequence id
+     * @param proposition the original {@code PropositionPayload}
+     * @param items       {@code List<PayloadItem>} containing the items of the copy
+     * @return the {@code PropositionPayload} copy, or the original {@code PropositionPayload} if the copy could not be created
      */
-    private String getMessageId(final JSONObject rulePayload) {
-        final JSONObject consequences;
-        try {
-            consequences = rulePayload.getJSONArray(JSON_KEY).getJSONObject(0).getJSONArray(JSON_CONSEQUENCES_KEY).getJSONObject(0);
-            return consequences.getString(MESSAGE_CONSEQUENCE_ID);
-        } catch (final JSONException exception) {
-            Log.warning(LOG_TAG, SELF_TAG, "Exception occurred when retrieving MessageId from the rule consequence: %s.", exception.getLocalizedMessage());
-            return null;
+    private PropositionPayload createLoadedProposition(final PropositionPayload proposition, final List<PayloadItem> items) {
+        final List<Map<String, Object>> itemMaps = new ArrayList<>();
+        for (final PayloadItem item : items) {
+            final Map<String, Object> data = new HashMap<>();
+            data.put(MessagingConstants.PayloadKeys.ID, item.data.id);
+            data.put(MessagingConstants.PayloadKeys.CONTENT, item.data.content);
+            final Map<String, Object> itemMap = new HashMap<>();
+            itemMap.put(MessagingConstants.PayloadKeys.ID, item.id);
+            itemMap.put(MessagingConstants.PayloadKeys.SCHEMA, item.schema);
+            itemMap.put(MessagingConstants.PayloadKeys.DATA, data);
+            itemMaps.add(itemMap);
         }
+
+        final PropositionPayload loadedProposition = PropositionPayload.create(proposition.propositionInfo, itemMaps);
+        return loadedProposition != null ? loadedProposition : proposition;
+    }
+
+    /**
+     * Updates the reporting data for the loaded in-app messages after a {@link InAppRuleSet.Delta} was applied.
+     * Reporting data of removed messages is dropped and the reporting data of every incoming message is (re)bound.
+     *
+     * @param delta         the {@code InAppRuleSet.Delta} applied to the rules engine
+     * @param incomingItems {@code List<ParsedPropositionItem>} containing the items of the processed propositions
+     */
+    private void updatePropositionInfo(final InAppRuleSet.Delta delta, final List<ParsedPropositionItem> incomingItems) {
+        for (final ParsedPropositionItem removedItem : delta.removed) {
+            propositionInfo.remove(removedItem.messageId);
+        }
+
+        for (final ParsedPropositionItem item : incomingItems) {
+            propositionInfo.put(item.messageId, item.propositionInfo);
+        }
+    }
+
+    /**
+     * Dispatches a debug event describing the in-app message rules added to and removed from the rules engine.
+     *
+     * @param delta the {@link InAppRuleSet.Delta} applied to the rules engine
+     */
+    private void dispatchRulesDeltaEvent(final InAppRuleSet.Delta delta) {
+        final Map<String, Object> eventData = new HashMap<>();
+        eventData.put(ADDED_MESSAGE_IDS, getMessageIds(delta.added));
+        eventData.put(REMOVED_MESSAGE_IDS, getMessageIds(delta.removed));
+        eventData.put(RETAINED_COUNT, delta.retained);
+
+        final Event event = new Event.Builder(MessagingConstants.EventName.RULES_DELTA_EVENT,
+                MessagingConstants.EventType.MESSAGING,
+                MessagingConstants.EventSource.DEBUG)
+                .setEventData(eventData)
+                .build();
+        extensionApi.dispatch(event);
+    }
+
+    private List<String> getMessageIds(final List<ParsedPropositionItem> items) {
+        final List<String> messageIds = new ArrayList<>();
+        for (final ParsedPropositionItem item : items) {
+            if (item.messageId != null) {
+                messageIds.add(item.messageId);
+            }
+        }
+        return messageIds;
     }
 
     private String getAppSurface() {
@@ -294,49 +600,209 @@ class InAppNotificationHandler {
             return;
         }
 
-        try {
-            final Map<String, Object> details = triggeredConsequence.getDetail();
-            if (MapUtils.isNullOrEmpty(details)) {
-                Log.warning(LOG_TAG, SELF_TAG, "Unable to create an in-app message, the consequence details are null or empty");
-                return;
-            }
+        final Map<String, Object> details = triggeredConsequence.getDetail();
+        if (MapUtils.isNullOrEmpty(details)) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to create an in-app message, the consequence details are null or empty");
+            return;
+        }
+
+        // assets of the triggered message are downloaded ahead of the other queued assets and are the last to be evicted
+        final List<String> remoteAssets = DataReader.optTypedList(String.class, details, MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS, null);
+        messagingCacheUtilities.prioritizeAssets(remoteAssets);
+        messagingCacheUtilities.recordAssetsDisplayed(remoteAssets);
+
+        final Map<String, Object> mobileParameters = (Map<String, Object>) details.get(MESSAGE_CONSEQUENCE_DETAIL_KEY_MOBILE_PARAMETERS);
+        final RuleConsequence consequenceWithHtml = loadCachedHtml(triggeredConsequence);
+        if (consequenceWithHtml == null) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to create an in-app message, the html for message (%s) is no longer cached.", triggeredConsequence.getId());
+            return;
+        }
 
-            final Map<String, Object> mobileParameters = (Map<String, Object>) details.get(MESSAGE_CONSEQUENCE_DETAIL_KEY_MOBILE_PARAMETERS);
-            message = new InternalMessage(parent, triggeredConsequence, mobileParameters, messagingCacheUtilities.getAssetsMap());
-            message.propositionInfo = propositionInfo.get(message.getId());
-            message.trigger();
-            message.show(true);
+        final PropositionInfo messagePropositionInfo = propositionInfo.get(triggeredConsequence.getId());
+        if (!messagingCacheUtilities.hasPendingAssets(remoteAssets)) {
+            awaitAssets(remoteAssets);
+            displayMessage(consequenceWithHtml, mobileParameters, remoteAssets, messagePropositionInfo);
+            return;
+        }
+
+        // the event hub thread is not blocked while the assets still being downloaded are awaited
+        getAssetWaitExecutor().execute(() -> {
+            awaitAssets(remoteAssets);
+            displayMessage(consequenceWithHtml, mobileParameters, remoteAssets, messagePropositionInfo);
+        });
+    }
+
+    private synchronized Executor getAssetWaitExecutor() {
+        if (assetWaitExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, ASSET_WAIT_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        final Thread thread = new Thread(runnable, ASSET_WAIT_THREAD_NAME);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // the thread is not kept alive once no triggered message is waiting for its assets
+            executor.allowCoreThreadTimeOut(true);
+            assetWaitExecutor = executor;
+        }
+        return assetWaitExecutor;
+    }
+
+    /**
+     * Creates the in-app message of a triggered consequence and shows it, called once its assets are cached or no longer awaited.
+     *
+     * @param consequence            the {@link RuleConsequence} containing the in-app message html
+     * @param mobileParameters       {@code Map<String, Object>} containing the in-app message mobile parameters
+     * @param remoteAssets           {@code List<String>} containing the urls of the in-app message assets
+     * @param messagePropositionInfo the {@link PropositionInfo} of the in-app message
+     */
+    private void displayMessage(final RuleConsequence consequence, final Map<String, Object> mobileParameters, final List<String> remoteAssets, final PropositionInfo messagePropositionInfo) {
+        try {
+            final RuleConsequence messageConsequence = resolveCachedAssets(consequence, remoteAssets);
+            final Map<String, String> assetsMap = messagingCacheUtilities.getAssetsMap();
+            final InternalMessage internalMessage = new InternalMessage(parent, messageConsequence, mobileParameters, assetsMap);
+            internalMessage.setWebViewPool(webViewPool);
+            internalMessage.propositionInfo = messagePropositionInfo;
+            message = internalMessage;
+            showMessage(internalMessage, messageConsequence, assetsMap);
         } catch (final MessageRequiredFieldMissingException exception) {
             Log.warning(LOG_TAG, SELF_TAG, "Unable to create an in-app message, an exception occurred during creation: %s", exception.getLocalizedMessage());
         }
     }
 
     /**
-     * Cache any asset URL's present in the {@link com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence} detail {@link JSONObject}.
+     * Triggers and shows the provided in-app message, once its html has been rendered off-screen if prerendering is enabled.
      *
-     * @param ruleJsonObject A {@link JSONObject} containing an in-app message definition.
+     * @param messageToShow the {@link InternalMessage} to show
+     * @param consequence   the {@link RuleConsequence} containing the in-app message html
+     * @param assetsMap     {@code Map<String, String>} containing the cached assets of the in-app message
      */
-    private void cacheImageAssetsFromPayload(final JSONObject ruleJsonObject) {
-        List<String> remoteAssetsList = new ArrayList<>();
-        try {
-            final JSONArray rulesArray = ruleJsonObject.getJSONArray(JSON_KEY);
-            final JSONArray consequence = rulesArray.getJSONObject(0).getJSONArray(JSON_CONSEQUENCES_KEY);
-            final JSONObject details = consequence.getJSONObject(0).getJSONObject(MESSAGE_CONSEQUENCE_DETAIL);
-            final JSONArray remoteAssets = details.getJSONArray(MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS);
-            if (remoteAssets.length() != 0) {
-                for (int index = 0; index < remoteAssets.length(); index++) {
-                    final String imageAssetUrl = (String) remoteAssets.get(index);
-                    if (UrlUtils.isValidUrl(imageAssetUrl)) {
-                        Log.debug(LOG_TAG, SELF_TAG, "Image asset to be cached (%s) ", imageAssetUrl);
-                        remoteAssetsList.add(imageAssetUrl);
-                    }
-                }
+    private void showMessage(final InternalMessage messageToShow, final RuleConsequence consequence, final Map<String, String> assetsMap) {
+        final MessagePrerenderer prerenderer = messagePrerenderer;
+        final String html = DataReader.optString(consequence.getDetail(), MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML, null);
+        if (prerenderer == null || StringUtils.isNullOrEmpty(html)) {
+            messageToShow.trigger();
+            messageToShow.show(true);
+            return;
+        }
+
+        prerenderer.prerender(html, assetsMap, MessagingConstants.PRERENDER_DEADLINE_MS, () -> {
+            messageToShow.trigger();
+            messageToShow.show(true);
+        });
+    }
+
+    /**
+     * Enables or disables rendering the in-app messages off-screen before they are shown.
+     *
+     * @param enabled {@code boolean} indicating whether the in-app messages are rendered before they are shown
+     */
+    private void setPrerenderEnabled(final boolean enabled) {
+        if (!enabled) {
+            messagePrerenderer = null;
+        } else if (messagePrerenderer == null) {
+            messagePrerenderer = MessagePrerenderer.create();
+            if (messagePrerenderer != null) {
+                messagePrerenderer.setWebViewPool(webViewPool);
             }
-        } catch (final JSONException jsonException) {
-            Log.warning(LOG_TAG, SELF_TAG, "An exception occurred retrieving the remoteAssets array from the rule json payload: %s", jsonException.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Sets the number of WebViews kept warm to display in-app messages, the WebView pool is created on first use.
+     *
+     * @param size {@code int} containing the number of warm WebViews, zero disables the WebView pool
+     */
+    private void setWebViewPoolSize(final int size) {
+        if (size > 0 && webViewPool == null) {
+            webViewPool = WebViewPool.create();
+            final MessagePrerenderer prerenderer = messagePrerenderer;
+            if (prerenderer != null) {
+                prerenderer.setWebViewPool(webViewPool);
+            }
+        }
+        if (webViewPool != null) {
+            webViewPool.setSize(size);
+        }
+    }
+
+    /**
+     * Waits a bounded time for the assets of a triggered in-app message which are still being downloaded.
+     * Assets which are not cached in time are loaded from the network by the in-app message. The event hub thread only
+     * calls this method when no asset is pending, so it never waits.
+     *
+     * @param remoteAssets {@code List<String>} containing the urls of the in-app message assets
+     */
+    private void awaitAssets(final List<String> remoteAssets) {
+        if (remoteAssets == null || remoteAssets.isEmpty()) {
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+        final AssetRegistry.Readiness readiness = messagingCacheUtilities.awaitAssets(remoteAssets, MessagingConstants.ASSET_READY_TIMEOUT_MS);
+        if (readiness == null) {
             return;
         }
-        messagingCacheUtilities.cacheImageAssets(remoteAssetsList);
+
+        AssetDownloadMetrics.messageAssetsResolved(readiness);
+        Log.debug(LOG_TAG, SELF_TAG, "Assets of the triggered in-app message resolved as %s after %d ms.", readiness.name(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Returns a {@link RuleConsequence} containing the in-app message html.
+     * <p>
+     * The html of loaded in-app messages is stored on disk and referenced by a handle in the consequence detail,
+     * it is only read when the rule containing the in-app message is triggered.
+     *
+     * @param consequence the triggered {@code RuleConsequence}
+     * @return a {@code RuleConsequence} containing the html, the provided {@code RuleConsequence} if it already contains the html, or null if the html could not be loaded
+     */
+    private RuleConsequence loadCachedHtml(final RuleConsequence consequence) {
+        final Map<String, Object> details = consequence.getDetail();
+        final String htmlHandle = DataReader.optString(details, MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE, null);
+        if (StringUtils.isNullOrEmpty(htmlHandle) || details.containsKey(MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML)) {
+            return consequence;
+        }
+
+        final String html = messagingCacheUtilities.getCachedHtml(htmlHandle);
+        if (html == null) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to load the html for in-app message (%s) from the cache.", consequence.getId());
+            return null;
+        }
+
+        final Map<String, Object> detailsWithHtml = new HashMap<>(details);
+        detailsWithHtml.remove(MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE);
+        detailsWithHtml.put(MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML, html);
+        return new RuleConsequence(consequence.getId(), consequence.getType(), detailsWithHtml);
+    }
+
+    /**
+     * Returns a {@link RuleConsequence} whose html references the cached copies of the in-app message assets.
+     * <p>
+     * Assets whose content is cached under another url are loaded from that url, see {@link MessagingCacheUtilities#resolveCachedAssets(String, List)}.
+     *
+     * @param consequence  the {@code RuleConsequence} containing the in-app message html
+     * @param remoteAssets {@code List<String>} containing the urls of the in-app message assets
+     * @return a {@code RuleConsequence} containing the resolved html, or the provided {@code RuleConsequence} if the html is unchanged
+     */
+    private RuleConsequence resolveCachedAssets(final RuleConsequence consequence, final List<String> remoteAssets) {
+        final Map<String, Object> details = consequence.getDetail();
+        final String html = DataReader.optString(details, MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML, null);
+        final String resolvedHtml = messagingCacheUtilities.resolveCachedAssets(html, remoteAssets);
+        if (resolvedHtml == null || resolvedHtml.equals(html)) {
+            return consequence;
+        }
+
+        final Map<String, Object> resolvedDetails = new HashMap<>(details);
+        resolvedDetails.put(MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML, resolvedHtml);
+        return new RuleConsequence(consequence.getId(), consequence.getType(), resolvedDetails);
+    }
+
+    /**
+     * Writes any pending update of the cached propositions immediately.
+     */
+    void flushPropositionCache() {
+        propositionCacheWriter.flush();
     }
 
     // for testing, the size of the proposition info map should always mirror the number of rules currently loaded
@@ -0,0 +1,141 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRulesEngine;
+import com.adobe.marketing.mobile.services.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the in-app message rules loaded in the Messaging {@link LaunchRulesEngine} and applies incoming rule sets as a delta.
+ * <p>
+ * Incoming items are compared with the loaded items by their content key (payload item id plus content hash). Unchanged items
+ * are left untouched, new items are added to the rules engine and items no longer present are removed. As the
+ * {@code LaunchRulesEngine} cannot remove individual rules, the rule set is replaced only when at least one item must be removed.
+ */
+class InAppRuleSet {
+    private final static String SELF_TAG = "InAppRuleSet";
+    private final LaunchRulesEngine launchRulesEngine;
+    private final Map<String, ParsedPropositionItem> loadedItems = new LinkedHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param launchRulesEngine {@link LaunchRulesEngine} instance owning the in-app message rules
+     */
+    InAppRuleSet(final LaunchRulesEngine launchRulesEngine) {
+        this.launchRulesEngine = launchRulesEngine;
+    }
+
+    /**
+     * Applies the provided items to the rules engine.
+     *
+     * @param incomingItems   {@code List<ParsedPropositionItem>} containing the items to be loaded
+     * @param replaceExisting {@code boolean} if true, the incoming items replace the loaded items, otherwise they are added to them
+     * @return {@link Delta} describing the changes made to the loaded rules
+     */
+    Delta apply(final List<ParsedPropositionItem> incomingItems, final boolean replaceExisting) {
+        final Map<String, ParsedPropositionItem> targetItems = new LinkedHashMap<>();
+        if (!replaceExisting) {
+            targetItems.putAll(loadedItems);
+        }
+
+        final List<ParsedPropositionItem> addedItems = new ArrayList<>();
+        for (final ParsedPropositionItem item : incomingItems) {
+            if (!targetItems.containsKey(item.contentKey) && !loadedItems.containsKey(item.contentKey)) {
+                addedItems.add(item);
+            }
+            // retained items are re-bound to the proposition info of the incoming item
+            targetItems.put(item.contentKey, item);
+        }
+
+        final List<ParsedPropositionItem> removedItems = new ArrayList<>();
+        if (replaceExisting) {
+            for (final Map.Entry<String, ParsedPropositionItem> entry : loadedItems.entrySet()) {
+                if (!targetItems.containsKey(entry.getKey())) {
+                    removedItems.add(entry.getValue());
+                }
+            }
+        }
+
+        if (!removedItems.isEmpty()) {
+            Log.trace(LOG_TAG, SELF_TAG, "apply - Replacing loaded rules, %d rule(s) removed and %d rule(s) added.", removedItems.size(), addedItems.size());
+            launchRulesEngine.replaceRules(getRules(targetItems.values()));
+        } else if (!addedItems.isEmpty()) {
+            Log.trace(LOG_TAG, SELF_TAG, "apply - Adding %d rule(s) to the loaded rules.", addedItems.size());
+            launchRulesEngine.addRules(getRules(addedItems));
+        } else {
+            Log.trace(LOG_TAG, SELF_TAG, "apply - Loaded rules are unchanged.");
+        }
+
+        loadedItems.clear();
+        loadedItems.putAll(targetItems);
+        return new Delta(addedItems, removedItems, targetItems.size() - addedItems.size());
+    }
+
+    /**
+     * Returns the number of rules currently loaded in the rules engine.
+     *
+     * @return {@code int} containing the number of loaded rules
+     */
+    int size() {
+        return loadedItems.size();
+    }
+
+    /**
+     * Returns the items whose rules are currently loaded in the rules engine.
+     *
+     * @return {@code List<ParsedPropositionItem>} containing the loaded items in the order they were loaded
+     */
+    List<ParsedPropositionItem> getLoadedItems() {
+        return new ArrayList<>(loadedItems.values());
+    }
+
+    private static List<LaunchRule> getRules(final Collection<ParsedPropositionItem> items) {
+        final List<LaunchRule> rules = new ArrayList<>(items.size());
+        for (final ParsedPropositionItem item : items) {
+            rules.add(item.rule);
+        }
+        return rules;
+    }
+
+    /**
+     * Describes the changes applied to the loaded rules by a call to {@link #apply(List, boolean)}.
+     */
+    static final class Delta {
+        final List<ParsedPropositionItem> added;
+        final List<ParsedPropositionItem> removed;
+        final int retained;
+
+        private Delta(final List<ParsedPropositionItem> added, final List<ParsedPropositionItem> removed, final int retained) {
+            this.added = added;
+            this.removed = removed;
+            this.retained = retained;
+        }
+
+        /**
+         * @return {@code boolean} indicating whether the loaded rules were left unchanged
+         */
+        boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty();
+        }
+    }
+}
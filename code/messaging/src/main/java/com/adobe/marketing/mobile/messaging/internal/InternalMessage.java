@@ -56,6 +56,8 @@ class InternalMessage extends MessagingFullscreenMessageDelegate implements Mess
     private FullscreenMessage aepMessage;
     private WebView webView;
     private boolean autoTrack = true;
+    private WebViewPool webViewPool;
+    private boolean webViewLeased;
     // package private
     PropositionInfo propositionInfo; // contains XDM data necessary for tracking in-app interactions with Adobe Journey Optimizer
     Map<String, Object> details;
@@ -255,6 +257,39 @@ class InternalMessage extends MessagingFullscreenMessageDelegate implements Mess
         }
     }
 
+    /**
+     * Sets the {@link WebViewPool} whose slot is leased while the in-app message is displayed.
+     *
+     * @param webViewPool the {@code WebViewPool}, or null if the WebView pool is disabled
+     */
+    void setWebViewPool(final WebViewPool webViewPool) {
+        this.webViewPool = webViewPool;
+    }
+
+    @Override
+    public void onShow(final FullscreenMessage fullscreenMessage) {
+        super.onShow(fullscreenMessage);
+        synchronized (this) {
+            if (webViewPool == null || webViewLeased) {
+                return;
+            }
+            webViewLeased = true;
+        }
+        webViewPool.lease();
+    }
+
+    @Override
+    public void onDismiss(final FullscreenMessage fullscreenMessage) {
+        super.onDismiss(fullscreenMessage);
+        synchronized (this) {
+            if (!webViewLeased) {
+                return;
+            }
+            webViewLeased = false;
+        }
+        webViewPool.release();
+    }
+
     void trigger() {
         if (aepMessage != null) {
             if (autoTrack) {
@@ -14,7 +14,6 @@ package com.adobe.marketing.mobile.messaging.internal;
 
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
 
-import com.adobe.marketing.mobile.internal.util.StringEncoder;
 import com.adobe.marketing.mobile.services.HttpConnecting;
 import com.adobe.marketing.mobile.services.HttpMethod;
 import com.adobe.marketing.mobile.services.Log;
@@ -27,23 +26,40 @@ import com.adobe.marketing.mobile.services.caching.CacheService;
 import com.adobe.marketing.mobile.util.StringUtils;
 import com.adobe.marketing.mobile.util.TimeUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Assists in downloading and caching assets for {@code Message}s.
  */
 class MessageAssetDownloader {
     private static final String SELF_TAG = "MessageAssetDownloader";
+    private static final String CONTENT_DIGEST_ALGORITHM = "SHA-256";
     private final List<String> assetsCollection;
     private final CacheService cacheService;
     private final String assetCacheLocation;
+    private final AssetDownloadScheduler assetDownloadScheduler;
+    private final AssetFetchRegistry assetFetchRegistry;
+    private final AssetCacheIndex assetCacheIndex;
+    private final AssetDownloadBackoff assetDownloadBackoff;
+    private final AssetTranscoder assetTranscoder;
+    private final PartialAssetStore partialAssetStore;
     private File assetDir;
 
     /**
@@ -52,77 +68,348 @@ class MessageAssetDownloader {
      * @param assets {@code ArrayList<String>} of assets to download and cache
      */
     MessageAssetDownloader(final List<String> assets) {
+        this(assets, new AssetDownloadScheduler(), new AssetFetchRegistry(), null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param assets                 {@code ArrayList<String>} of assets to download and cache
+     * @param assetDownloadScheduler {@link AssetDownloadScheduler} limiting the number of concurrent downloads
+     * @param assetFetchRegistry     {@link AssetFetchRegistry} containing the asset downloads in flight
+     * @param assetCacheIndex        {@link AssetCacheIndex} keeping the cached assets within the asset cache budget, persisted by the caller, an index kept in memory is used if null
+     */
+    MessageAssetDownloader(final List<String> assets, final AssetDownloadScheduler assetDownloadScheduler, final AssetFetchRegistry assetFetchRegistry, final AssetCacheIndex assetCacheIndex) {
+        this(assets, assetDownloadScheduler, assetFetchRegistry, assetCacheIndex, null, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param assets                 {@code ArrayList<String>} of assets to download and cache
+     * @param assetDownloadScheduler {@link AssetDownloadScheduler} limiting the number of concurrent downloads
+     * @param assetFetchRegistry     {@link AssetFetchRegistry} containing the asset downloads in flight
+     * @param assetCacheIndex        {@link AssetCacheIndex} keeping the cached assets within the asset cache budget, persisted by the caller, an index kept in memory is used if null
+     * @param assetDownloadBackoff   {@link AssetDownloadBackoff} containing the failed asset downloads, failures are only tracked by this downloader if null
+     * @param assetTranscoder        {@link AssetTranscoder} downscaling the downloaded images before they are cached, images are cached as downloaded if null
+     */
+    MessageAssetDownloader(final List<String> assets, final AssetDownloadScheduler assetDownloadScheduler, final AssetFetchRegistry assetFetchRegistry, final AssetCacheIndex assetCacheIndex,
+                           final AssetDownloadBackoff assetDownloadBackoff, final AssetTranscoder assetTranscoder) {
         this.assetsCollection = assets;
+        this.assetDownloadScheduler = assetDownloadScheduler;
+        this.assetFetchRegistry = assetFetchRegistry;
         this.cacheService = ServiceProvider.getInstance().getCacheService();
         this.assetCacheLocation = MessagingUtils.getAssetCacheLocation();
+        this.assetCacheIndex = assetCacheIndex != null ? assetCacheIndex : new AssetCacheIndex(null, cacheService, assetCacheLocation);
+        this.assetDownloadBackoff = assetDownloadBackoff != null ? assetDownloadBackoff
+                : new AssetDownloadBackoff(MessagingConstants.ASSET_DOWNLOAD_BACKOFF_BASE_MS, MessagingConstants.ASSET_DOWNLOAD_BACKOFF_MAX_MS);
+        this.assetTranscoder = assetTranscoder;
+        this.partialAssetStore = new PartialAssetStore(assetCacheLocation);
         createAssetCacheDirectory();
     }
 
     /**
      * Downloads and caches all assets present in the {@link MessageAssetDownloader#assetsCollection} list.
      * <p>
-     * Attempts to purge assets that have previously been cached but are for messages that are no longer active.
+     * Assets of messages which are no longer active are purged by the {@link AssetGarbageCollector} once the rules are updated.
+     *
+     * @return {@code List<AssetFetchRegistry.AssetFetch>} containing the downloads of the assets, empty if the assets cannot be downloaded
      */
-    void downloadAssetCollection() {
+    List<AssetFetchRegistry.AssetFetch> downloadAssetCollection() {
+        final List<AssetFetchRegistry.AssetFetch> fetches = new ArrayList<>();
         if (StringUtils.isNullOrEmpty(assetCacheLocation)) {
             Log.debug(LOG_TAG, SELF_TAG, "downloadAssetCollection - Failed to download assets, the asset cache location is not available.");
-            return;
+            return fetches;
         }
 
         if (assetsCollection == null || assetsCollection.isEmpty()) {
             Log.warning(MessagingConstants.LOG_TAG, SELF_TAG, "downloadAssetCollection - Empty list of assets provided, will not download any assets.");
+            return fetches;
+        }
+
+        // queue the downloads of the assets within the assets collection list
+        for (final String url : assetsCollection) {
+            // assets which are already being downloaded wait for the in-flight download instead of being requested again
+            fetches.add(assetFetchRegistry.fetch(url, this::scheduleDownload));
+        }
+        return fetches;
+    }
+
+    /**
+     * Queues the download of an asset in the {@link AssetDownloadScheduler}, completing the provided {@link AssetFetchRegistry.AssetFetch}
+     * once the download has finished or has been cancelled.
+     *
+     * @param fetch the {@code AssetFetch} of the asset to download
+     */
+    private void scheduleDownload(final AssetFetchRegistry.AssetFetch fetch) {
+        final String url = fetch.url;
+        // assets sharing their content with another asset are cached under the url of the other asset
+        final String cachedUrl = assetCacheIndex.resolve(url);
+        final CacheResult cachedAsset = cacheService.get(assetCacheLocation, cachedUrl);
+        final long cachedAssetSize = getCachedAssetSize(cachedAsset);
+
+        // assets within the freshness lifetime given by their Cache-Control or Expires headers are not requested again
+        if (cachedAsset != null && AssetCachePolicy.isFresh(cachedAsset.getMetadata(), System.currentTimeMillis())) {
+            Log.trace(LOG_TAG, SELF_TAG, "scheduleDownload - Cached asset is fresh, skipping its revalidation: %s", url);
+            recordServedFromCache(cachedAssetSize);
+            AssetDownloadMetrics.downloadSkipped(true);
+            fetch.complete(true);
             return;
         }
 
-        // clear old assets
-        if (assetDir != null) {
-            clearCachedAssetsNotInList(assetDir, assetsCollection);
+        // assets whose download failed recently are not requested again until their backoff delay has elapsed
+        if (assetDownloadBackoff.isBackingOff(url, System.currentTimeMillis())) {
+            Log.trace(LOG_TAG, SELF_TAG, "scheduleDownload - Download of %s failed recently, it will be retried later.", url);
+            recordServedFromCache(cachedAssetSize);
+            AssetDownloadMetrics.downloadSkipped(false);
+            fetch.complete(cachedAsset != null);
+            return;
         }
 
-        // download assets within the assets collection list
-        for (final String url : assetsCollection) {
-            // 304 - Not Modified support
-            final CacheResult cachedAsset = cacheService.get(assetCacheLocation, url);
-            final Map<String, String> requestProperties = extractHeadersFromCache(cachedAsset);
-            final NetworkRequest networkRequest = new NetworkRequest(url, HttpMethod.GET, null, requestProperties, MessagingConstants.DEFAULT_TIMEOUT, MessagingConstants.DEFAULT_TIMEOUT);
-            ServiceProvider.getInstance().getNetworkService().connectAsync(networkRequest, connection -> {
-                if (connection == null) {
-                    Log.warning(MessagingConstants.LOG_TAG, SELF_TAG, "downloadAssetCollection - connection returned from NetworkService was null. Aborting asset download for: %s", url);
-                    return;
+        final Map<String, String> requestProperties;
+        final String partialValidator = partialAssetStore.getValidator(url);
+        if (partialValidator != null) {
+            // resume an interrupted download, the server sends the whole asset instead if it changed since
+            requestProperties = new HashMap<>();
+            requestProperties.put(MessagingConstants.HTTP_HEADER_RANGE, "bytes=" + partialAssetStore.getLength(url) + "-");
+            requestProperties.put(MessagingConstants.HTTP_HEADER_IF_RANGE, partialValidator);
+        } else {
+            // 304 - Not Modified support, stale cached assets remain usable while they are revalidated
+            requestProperties = extractHeadersFromCache(cachedAsset);
+        }
+        final NetworkRequest networkRequest = new NetworkRequest(url, HttpMethod.GET, null, requestProperties, MessagingConstants.DEFAULT_TIMEOUT, MessagingConstants.ASSET_DOWNLOAD_READ_TIMEOUT);
+        assetDownloadScheduler.schedule(url, cachedAssetSize, cachedAsset != null, new AssetDownloadScheduler.AssetDownload() {
+            @Override
+            public void start(final Runnable onFinished) {
+                AssetDownloadMetrics.queueDepthChanged(assetDownloadScheduler.getQueuedDownloadCount());
+                AssetDownloadMetrics.requestIssued();
+                final long requestTime = System.nanoTime();
+                ServiceProvider.getInstance().getNetworkService().connectAsync(networkRequest, connection -> {
+                    final int responseCode = connection != null ? connection.getResponseCode() : -1;
+                    boolean downloaded = false;
+                    try {
+                        downloaded = handleDownloadResponse(connection, url, cachedUrl);
+                    } finally {
+                        AssetDownloadMetrics.responseReceived(responseCode, downloaded, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestTime));
+                        if (downloaded && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                            recordServedFromCache(cachedAssetSize);
+                        }
+                        recordDownloadResult(url, downloaded);
+                        onFinished.run();
+                        fetch.complete(downloaded);
+                    }
+                });
+            }
+
+            @Override
+            public void cancel() {
+                fetch.complete(false);
+            }
+        });
+        AssetDownloadMetrics.queueDepthChanged(assetDownloadScheduler.getQueuedDownloadCount());
+    }
+
+    private static void recordServedFromCache(final long cachedAssetSize) {
+        if (cachedAssetSize != AssetDownloadScheduler.UNKNOWN_SIZE) {
+            AssetDownloadMetrics.bytesServedFromCache(cachedAssetSize);
+        }
+    }
+
+    /**
+     * Wraps the body of a response to count the downloaded bytes in the {@link AssetDownloadMetrics}.
+     *
+     * @param responseBody {@link InputStream} containing the response body
+     * @return {@link InputStream} counting the bytes read, or null if the response has no body
+     */
+    private static InputStream countDownloadedBytes(final InputStream responseBody) {
+        if (responseBody == null) {
+            return null;
+        }
+
+        return new FilterInputStream(responseBody) {
+            @Override
+            public int read() throws IOException {
+                final int value = super.read();
+                if (value != -1) {
+                    AssetDownloadMetrics.bytesDownloaded(1);
                 }
-                if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
-                    Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "downloadAssetCollection - Asset was cached previously: %s", url);
-                    connection.close();
-                    return;
-                } else if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-                    Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "downloadAssetCollection - Failed to download asset from URL: %s", url);
-                    connection.close();
-                    return;
+                return value;
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                final int bytesRead = super.read(buffer, offset, length);
+                if (bytesRead > 0) {
+                    AssetDownloadMetrics.bytesDownloaded(bytesRead);
                 }
-                cacheAssetData(connection, url);
-                connection.close();
-            });
+                return bytesRead;
+            }
+        };
+    }
+
+    /**
+     * Returns the size of a cached asset.
+     *
+     * @param cachedAsset the {@link CacheResult} of the asset
+     * @return {@code long} containing the size of the cached asset in bytes, or {@link AssetDownloadScheduler#UNKNOWN_SIZE} if it is not known
+     */
+    private long getCachedAssetSize(final CacheResult cachedAsset) {
+        final InputStream cachedData = cachedAsset == null ? null : cachedAsset.getData();
+        if (cachedData == null) {
+            return AssetDownloadScheduler.UNKNOWN_SIZE;
+        }
+
+        try {
+            return cachedData.available();
+        } catch (final IOException exception) {
+            return AssetDownloadScheduler.UNKNOWN_SIZE;
+        } finally {
+            try {
+                cachedData.close();
+            } catch (final IOException ignored) {
+                // nothing to do, the size has been read
+            }
         }
     }
 
     /**
-     * Recursively checks and deletes files within the cached assets directory which aren't within the {@code assetsToRetain} list.
+     * Caches the asset downloaded from the given asset URL if it was modified since it was cached.
      *
-     * @param cacheAsset     {@link File} containing the cached assets directory
-     * @param assetsToRetain {@code List<String>} containing assets which should be retained
+     * @param connection {@link HttpConnecting} containing the response of the asset download request
+     * @param url        {@code String} The asset download URL.
+     * @param cachedUrl  {@code String} containing the url the cached copy of the asset is stored under
+     * @return {@code boolean} true if the asset was cached or the cached asset is up to date
      */
-    private void clearCachedAssetsNotInList(final File cacheAsset, final List<String> assetsToRetain) {
-        if (cacheAsset.isDirectory()) {
-            for (final File child : cacheAsset.listFiles()) {
-                clearCachedAssetsNotInList(child, assetsToRetain);
+    private boolean handleDownloadResponse(final HttpConnecting connection, final String url, final String cachedUrl) {
+        if (connection == null) {
+            Log.warning(MessagingConstants.LOG_TAG, SELF_TAG, "downloadAssetCollection - connection returned from NetworkService was null. Aborting asset download for: %s", url);
+            return false;
+        }
+        final int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "downloadAssetCollection - Asset was cached previously: %s", url);
+            // an asset sharing its content with another asset keeps resolving to the copy cached for the other asset
+            refreshCachedAssetFreshness(connection, cachedUrl);
+            connection.close();
+            recordCachedAsset(cachedUrl, null);
+            return true;
+        } else if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
+            final boolean cached = resumeDownload(connection, url);
+            connection.close();
+            return cached;
+        } else if (responseCode != HttpURLConnection.HTTP_OK) {
+            Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "downloadAssetCollection - Failed to download asset from URL: %s", url);
+            if (responseCode == MessagingConstants.HTTP_RANGE_NOT_SATISFIABLE) {
+                partialAssetStore.discard(url);
             }
+            connection.close();
+            return false;
+        }
+
+        // large assets are written to a partial file first, so an interrupted download can be resumed
+        final String resumeValidator = getResumeValidator(connection);
+        final boolean cached;
+        if (resumeValidator != null) {
+            cached = partialAssetStore.write(url, resumeValidator, countDownloadedBytes(connection.getInputStream()), false) && cachePartialAsset(connection, url);
         } else {
-            for (final String asset : assetsToRetain) {
-                if (!cacheAsset.getName().equals(StringEncoder.sha2hash(asset)) && cacheAsset.exists()) {
-                    cacheAsset.delete();
-                }
+            partialAssetStore.discard(url);
+            cached = cacheAssetData(connection, url, countDownloadedBytes(connection.getInputStream()));
+        }
+        connection.close();
+        return cached;
+    }
+
+    /**
+     * Appends a {@code 206 Partial Content} response to the stored bytes of an interrupted download and caches the asset once complete.
+     *
+     * @param connection {@link HttpConnecting} containing the partial response
+     * @param url        {@code String} containing the asset url
+     * @return {@code boolean} true if the asset was cached
+     */
+    private boolean resumeDownload(final HttpConnecting connection, final String url) {
+        if (!partialAssetStore.continuesFrom(url, connection.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_CONTENT_RANGE))) {
+            Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "resumeDownload - Partial response for %s does not continue the interrupted download, restarting it.", url);
+            partialAssetStore.discard(url);
+            return false;
+        }
+
+        Log.trace(MessagingConstants.LOG_TAG, SELF_TAG, "resumeDownload - Resuming the download of %s from byte %d.", url, partialAssetStore.getLength(url));
+        return partialAssetStore.write(url, null, countDownloadedBytes(connection.getInputStream()), true) && cachePartialAsset(connection, url);
+    }
+
+    /**
+     * Caches the completely downloaded bytes stored for an asset and discards them.
+     *
+     * @param connection {@link HttpConnecting} containing the response of the asset download request
+     * @param url        {@code String} containing the asset url
+     * @return {@code boolean} true if the asset was cached
+     */
+    private boolean cachePartialAsset(final HttpConnecting connection, final String url) {
+        final InputStream assetData = partialAssetStore.open(url);
+        if (assetData == null) {
+            partialAssetStore.discard(url);
+            return false;
+        }
+
+        try {
+            return cacheAssetData(connection, url, assetData);
+        } finally {
+            try {
+                assetData.close();
+            } catch (final IOException ignored) {
+                // nothing to do, the asset has been cached
             }
+            partialAssetStore.discard(url);
+        }
+    }
+
+    /**
+     * Returns the validator used to resume the download of a large asset with an {@code If-Range} request.
+     * Downloads are only resumable if the server supports range requests and the response has a strong validator.
+     *
+     * @param connection {@link HttpConnecting} containing the response of the asset download request
+     * @return {@code String} containing the {@code ETag} or {@code Last-Modified} header of the response, or null if the download is not resumable
+     */
+    private String getResumeValidator(final HttpConnecting connection) {
+        final String acceptRanges = connection.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_ACCEPT_RANGES);
+        if (acceptRanges == null || !acceptRanges.toLowerCase(Locale.US).contains(MessagingConstants.RANGE_UNIT_BYTES)) {
+            return null;
+        }
+
+        long contentLength;
+        try {
+            final String contentLengthProp = connection.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_CONTENT_LENGTH);
+            contentLength = contentLengthProp != null ? Long.parseLong(contentLengthProp.trim()) : 0;
+        } catch (final NumberFormatException exception) {
+            contentLength = 0;
+        }
+        if (contentLength < MessagingConstants.RESUMABLE_ASSET_MIN_BYTES) {
+            return null;
+        }
+
+        // weak entity tags cannot be used with If-Range
+        final String eTag = connection.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_ETAG);
+        if (!StringUtils.isNullOrEmpty(eTag) && !eTag.startsWith("W/")) {
+            return eTag;
+        }
+        final String lastModified = connection.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_LAST_MODIFIED);
+        return StringUtils.isNullOrEmpty(lastModified) ? null : lastModified;
+    }
+
+    /**
+     * Records the result of an asset download, failed assets are not requested again until their backoff delay has elapsed.
+     *
+     * @param url        {@code String} containing the asset url
+     * @param downloaded {@code boolean} indicating whether the asset was cached or the cached asset is up to date
+     */
+    private void recordDownloadResult(final String url, final boolean downloaded) {
+        if (downloaded) {
+            assetDownloadBackoff.recordSuccess(url);
+            return;
         }
+
+        final long retryTime = assetDownloadBackoff.recordFailure(url, System.currentTimeMillis());
+        Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "recordDownloadResult - Download of %s failed, it will not be retried for %d ms.", url, retryTime - System.currentTimeMillis());
     }
 
     /**
@@ -146,9 +433,74 @@ class MessageAssetDownloader {
         final String eTagProp = response.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_ETAG);
         metadata.put(MessagingConstants.HTTP_HEADER_ETAG, eTagProp == null ? "" : eTagProp);
 
+        final long freshUntil = getFreshUntil(response);
+        if (freshUntil != AssetCachePolicy.NO_FRESHNESS) {
+            metadata.put(MessagingConstants.METADATA_FRESH_UNTIL, String.valueOf(freshUntil));
+        }
+
         return metadata;
     }
 
+    private long getFreshUntil(final HttpConnecting response) {
+        return AssetCachePolicy.getFreshUntil(response.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_CACHE_CONTROL),
+                response.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_EXPIRES),
+                response.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_AGE),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Stores the freshness lifetime of a revalidated asset in its cache entry metadata.
+     * <p>
+     * The metadata of a cache entry can only be replaced along with its data, so the cached asset is read back and cached
+     * again with the updated metadata. Nothing is rewritten if the response contains no freshness information.
+     *
+     * @param connection {@link HttpConnecting} containing the {@code 304 Not Modified} response
+     * @param url        {@code String} containing the asset url
+     */
+    private void refreshCachedAssetFreshness(final HttpConnecting connection, final String url) {
+        final long freshUntil = getFreshUntil(connection);
+        if (freshUntil == AssetCachePolicy.NO_FRESHNESS) {
+            return;
+        }
+
+        final CacheResult cachedAsset = cacheService.get(assetCacheLocation, url);
+        final byte[] cachedData = cachedAsset == null ? null : readAssetData(cachedAsset.getData());
+        if (cachedData == null) {
+            return;
+        }
+
+        final Map<String, String> metadata = cachedAsset.getMetadata() != null ? new HashMap<>(cachedAsset.getMetadata()) : new HashMap<>();
+        metadata.put(MessagingConstants.METADATA_FRESH_UNTIL, String.valueOf(freshUntil));
+        if (!cacheService.set(assetCacheLocation, url, new CacheEntry(new ByteArrayInputStream(cachedData), CacheExpiry.never(), metadata))) {
+            Log.debug(LOG_TAG, SELF_TAG, "refreshCachedAssetFreshness - Unable to update the freshness of the cached asset %s.", url);
+        }
+    }
+
+    private byte[] readAssetData(final InputStream assetData) {
+        if (assetData == null) {
+            return null;
+        }
+
+        try {
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = assetData.read(buffer)) != -1) {
+                data.write(buffer, 0, bytesRead);
+            }
+            return data.toByteArray();
+        } catch (final IOException exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "readAssetData - Unable to read the asset: %s", exception.getMessage());
+            return null;
+        } finally {
+            try {
+                assetData.close();
+            } catch (final IOException ignored) {
+                // nothing to do, the data has been read
+            }
+        }
+    }
+
     /**
      * Creates http headers for conditional fetching, based on the metadata of the
      * {@code CacheResult} provided.
@@ -183,27 +535,82 @@ class MessageAssetDownloader {
     }
 
     /**
-     * Caches the provided {@code InputStream} contained in the {@code HttpConnecting} from the given asset URL.
+     * Caches the downloaded data of the given asset URL.
      *
-     * @param connection {@link HttpConnecting} containing the downloaded remote asset data.
+     * @param connection {@link HttpConnecting} containing the response the asset metadata is extracted from.
      * @param key        {@code String} The asset download URL.
+     * @param assetData  {@link InputStream} containing the downloaded remote asset data.
+     * @return {@code boolean} true if the asset was cached
      */
-    private void cacheAssetData(final HttpConnecting connection, final String key) {
+    private boolean cacheAssetData(final HttpConnecting connection, final String key, final InputStream assetData) {
         if (StringUtils.isNullOrEmpty(assetCacheLocation)) {
             Log.debug(LOG_TAG, SELF_TAG, "cacheAssetData - Failed to cache asset from %s, the asset cache location is not available.", key);
-            return;
+            return false;
         }
 
         // create message asset cache directory if needed
         if (!createAssetCacheDirectory()) {
             Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "cacheAssetData - Cannot cache asset, failed to create image cache directory.");
-            return;
+            return false;
         }
 
         Log.debug(MessagingConstants.LOG_TAG, SELF_TAG, "cacheAssetData - Caching asset %s.", key);
         final Map<String, String> metadata = extractMetadataFromResponse(connection);
-        final CacheEntry cacheEntry = new CacheEntry(connection.getInputStream(), CacheExpiry.never(), metadata);
-        cacheService.set(assetCacheLocation, key, cacheEntry);
+        // the content digest is computed while the asset is written to the cache
+        final MessageDigest messageDigest = getContentDigest();
+        InputStream cachedData = messageDigest != null && assetData != null ? new DigestInputStream(assetData, messageDigest) : assetData;
+        if (assetTranscoder != null && cachedData != null) {
+            // the digest covers the downloaded bytes so identical downloads are still deduplicated
+            final byte[] downloadedData = readAssetData(cachedData);
+            if (downloadedData == null) {
+                return false;
+            }
+            final byte[] transcodedData = assetTranscoder.transcode(downloadedData);
+            cachedData = new ByteArrayInputStream(transcodedData != null ? transcodedData : downloadedData);
+        }
+        final CacheEntry cacheEntry = new CacheEntry(cachedData, CacheExpiry.never(), metadata);
+        if (!cacheService.set(assetCacheLocation, key, cacheEntry)) {
+            return false;
+        }
+
+        recordCachedAsset(key, messageDigest != null ? toHex(messageDigest.digest()) : null);
+        return true;
+    }
+
+    /**
+     * Records a cached asset in the {@link AssetCacheIndex}. When the content of the asset is already cached under another url,
+     * the copy cached for this url is removed and the asset resolves to the other url.
+     *
+     * @param url           {@code String} containing the asset url
+     * @param contentDigest {@code String} containing the digest of the downloaded content, or null if the cached content is unchanged
+     */
+    private void recordCachedAsset(final String url, final String contentDigest) {
+        final long cachedSize = getCachedAssetSize(cacheService.get(assetCacheLocation, url));
+        final long size = cachedSize != AssetDownloadScheduler.UNKNOWN_SIZE ? cachedSize : 0;
+        // the cached asset is the most recently used one, older assets are evicted if the budget is exceeded
+        // the digest of an empty or unreadable cached asset does not identify its content
+        final String cachedUrl = assetCacheIndex.recordCached(url, size, size > 0 ? contentDigest : null);
+        if (!url.equals(cachedUrl)) {
+            Log.trace(LOG_TAG, SELF_TAG, "recordCachedAsset - Asset %s has the same content as the cached asset %s, removing the duplicate copy.", url, cachedUrl);
+            cacheService.remove(assetCacheLocation, url);
+        }
+    }
+
+    private static MessageDigest getContentDigest() {
+        try {
+            return MessageDigest.getInstance(CONTENT_DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "getContentDigest - Unable to compute asset content digests: %s", exception.getMessage());
+            return null;
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (final byte value : bytes) {
+            hex.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+        return hex.toString();
     }
 
     /**
@@ -0,0 +1,207 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import android.app.Application;
+import android.os.Handler;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.adobe.marketing.mobile.services.AppContextService;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.ServiceProvider;
+import com.adobe.marketing.mobile.services.caching.CacheResult;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+import com.adobe.marketing.mobile.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the html of a triggered in-app message in an off-screen {@link WebView} before the message is shown.
+ * <p>
+ * The html is loaded with the cached assets of the message, in a warm WebView of the {@link WebViewPool} when one is
+ * available, and the message is shown once the page has finished loading, or once the deadline has passed. The remote
+ * resources loaded by the page, such as fonts, are then available in the shared WebView HTTP cache when the
+ * {@code FullscreenMessage} loads the message in its own WebView.
+ */
+final class MessagePrerenderer {
+    private final static String SELF_TAG = "MessagePrerenderer";
+    private final static String HTML_MIME_TYPE = "text/html";
+    private final static String HTML_ENCODING = "UTF-8";
+    // enough to recognize any supported image type, see AssetInliner#getImageMimeType
+    private final static int MIME_TYPE_SNIFF_BYTES = 256;
+
+    private final Handler mainHandler;
+    private final WebViewPool.WebViewFactory webViewFactory;
+    private final CacheService cacheService;
+    private volatile WebViewPool webViewPool;
+
+    @VisibleForTesting
+    MessagePrerenderer(final Handler mainHandler, final WebViewPool.WebViewFactory webViewFactory, final CacheService cacheService) {
+        this.mainHandler = mainHandler;
+        this.webViewFactory = webViewFactory;
+        this.cacheService = cacheService;
+    }
+
+    /**
+     * Creates a {@code MessagePrerenderer} rendering the in-app messages on the main thread.
+     *
+     * @return a {@link MessagePrerenderer}, or null if the application is not available
+     */
+    static MessagePrerenderer create() {
+        final AppContextService appContextService = ServiceProvider.getInstance().getAppContextService();
+        final Application application = appContextService != null ? appContextService.getApplication() : null;
+        if (application == null) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to create the message prerenderer, the application is not available.");
+            return null;
+        }
+
+        return new MessagePrerenderer(new Handler(application.getMainLooper()), () -> new WebView(application), ServiceProvider.getInstance().getCacheService());
+    }
+
+    /**
+     * Sets the {@link WebViewPool} the off-screen WebViews are taken from, a new WebView is created when the pool has no warm WebView.
+     *
+     * @param webViewPool the {@code WebViewPool} providing warm WebViews, or null to always create a new WebView
+     */
+    void setWebViewPool(final WebViewPool webViewPool) {
+        this.webViewPool = webViewPool;
+    }
+
+    /**
+     * Loads the provided in-app message html off-screen and runs the provided callback once it has been rendered.
+     *
+     * @param html       {@code String} containing the in-app message html
+     * @param assetMap   {@code Map<String, String>} containing the cached assets mapped to their cache location
+     * @param deadlineMs {@code long} containing the maximum time to wait for the html to be rendered
+     * @param onRendered {@link Runnable} run once, when the html has been rendered or when the deadline has passed
+     */
+    void prerender(final String html, final Map<String, String> assetMap, final long deadlineMs, final Runnable onRendered) {
+        final Render render = new Render(assetMap, onRendered);
+        mainHandler.post(() -> render.start(html));
+        mainHandler.postDelayed(() -> render.finish(false), deadlineMs);
+    }
+
+    /**
+     * The off-screen rendering of one in-app message, only accessed on the main thread.
+     */
+    @VisibleForTesting
+    final class Render extends WebViewClient {
+        private final Map<String, String> assetMap;
+        private final Runnable onRendered;
+        private final long startTime = System.nanoTime();
+        private WebView webView;
+        private boolean finished;
+
+        private Render(final Map<String, String> assetMap, final Runnable onRendered) {
+            this.assetMap = assetMap;
+            this.onRendered = onRendered;
+        }
+
+        private void start(final String html) {
+            if (finished) {
+                return;
+            }
+
+            try {
+                final WebViewPool pool = webViewPool;
+                final WebView warmWebView = pool != null ? pool.acquire() : null;
+                webView = warmWebView != null ? warmWebView : webViewFactory.create();
+                webView.getSettings().setJavaScriptEnabled(true);
+                webView.getSettings().setDomStorageEnabled(true);
+                webView.setWebViewClient(this);
+                webView.loadDataWithBaseURL(null, html, HTML_MIME_TYPE, HTML_ENCODING, null);
+            } catch (final Exception exception) {
+                Log.debug(LOG_TAG, SELF_TAG, "Unable to render the in-app message off-screen, it will be shown now: %s", exception.getLocalizedMessage());
+                finish(false);
+            }
+        }
+
+        @Override
+        public void onPageFinished(final WebView view, final String url) {
+            finish(true);
+        }
+
+        @Override
+        public WebResourceResponse shouldInterceptRequest(final WebView view, final WebResourceRequest request) {
+            final String url = request != null && request.getUrl() != null ? request.getUrl().toString() : null;
+            final InputStream cachedAsset = getCachedAsset(url);
+            if (cachedAsset == null) {
+                return null;
+            }
+
+            final BufferedInputStream bufferedAsset = new BufferedInputStream(cachedAsset);
+            return new WebResourceResponse(getMimeType(bufferedAsset), null, bufferedAsset);
+        }
+
+        @VisibleForTesting
+        void finish(final boolean rendered) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+
+            Log.debug(LOG_TAG, SELF_TAG, rendered ? "In-app message rendered off-screen in %d ms." : "In-app message not rendered off-screen after %d ms, showing it now.",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            try {
+                onRendered.run();
+            } finally {
+                // the WebView is not destroyed from its own callback
+                final WebView renderedWebView = webView;
+                webView = null;
+                if (renderedWebView != null) {
+                    mainHandler.post(renderedWebView::destroy);
+                }
+            }
+        }
+
+        private InputStream getCachedAsset(final String url) {
+            final String cacheLocation = StringUtils.isNullOrEmpty(url) || assetMap == null ? null : assetMap.get(url);
+            if (cacheService == null || StringUtils.isNullOrEmpty(cacheLocation)) {
+                return null;
+            }
+
+            final CacheResult cacheResult = cacheService.get(cacheLocation, url);
+            return cacheResult != null ? cacheResult.getData() : null;
+        }
+    }
+
+    private static String getMimeType(final BufferedInputStream bufferedAsset) {
+        try {
+            bufferedAsset.mark(MIME_TYPE_SNIFF_BYTES);
+            final byte[] header = new byte[MIME_TYPE_SNIFF_BYTES];
+            int length = 0;
+            int bytesRead;
+            while (length < header.length && (bytesRead = bufferedAsset.read(header, length, header.length - length)) != -1) {
+                length += bytesRead;
+            }
+            bufferedAsset.reset();
+
+            final byte[] content = new byte[length];
+            System.arraycopy(header, 0, content, 0, length);
+            return AssetInliner.getImageMimeType(content);
+        } catch (final IOException exception) {
+            return null;
+        }
+    }
+}
@@ -12,12 +12,16 @@
 
 package com.adobe.marketing.mobile.messaging.internal;
 
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.HTML_CACHE_SUBDIRECTORY;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.IMAGES_CACHE_SUBDIRECTORY;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PROPOSITIONS_CACHE_SUBDIRECTORY;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.adobe.marketing.mobile.MobileCore;
+import com.adobe.marketing.mobile.messaging.MessagingTimingStage;
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
 import com.adobe.marketing.mobile.services.Log;
 import com.adobe.marketing.mobile.services.ServiceProvider;
 import com.adobe.marketing.mobile.services.caching.CacheEntry;
@@ -29,14 +33,30 @@ import com.adobe.marketing.mobile.util.UrlUtils;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This class contains functionality to cache the json message payload and any image asset URL's present in an
@@ -44,14 +64,68 @@ import java.util.Map;
  */
 final class MessagingCacheUtilities {
     private final static String SELF_TAG = "MessagingCacheUtilities";
+    private final static String ASSET_TASK_THREAD_NAME = "AEPMessagingAssetTasks";
+    private final static long ASSET_TASK_THREAD_KEEP_ALIVE_SECONDS = 30;
     private final CacheService cacheService;
     private final String assetCacheLocation;
     private final String METADATA_KEY_PATH_TO_FILE = "pathToFile";
-    private final Map<String, String> assetMap = new HashMap<>();
+    private final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    // an asset url in the html ends with a quote, a closing parenthesis or whitespace
+    private final static String ASSET_URL_END_PATTERN = "(?=[\"')\\s]|$)";
+    private final String HTML_CACHE_NAME = MessagingConstants.CACHE_BASE_DIR + File.separator + HTML_CACHE_SUBDIRECTORY;
+    private final String INLINED_HTML_SUFFIX = ".inlined";
+    private final AssetRegistry assetRegistry;
+    private final PropositionJournal propositionJournal;
+    private final RuleSnapshot ruleSnapshot;
+    private final AssetDownloadScheduler assetDownloadScheduler = new AssetDownloadScheduler();
+    // shared by every asset download so concurrent requests for the same asset share one transfer
+    private final AssetFetchRegistry assetFetchRegistry = new AssetFetchRegistry();
+    // shared by every asset download so a failing asset is not requested again on each refresh
+    private final AssetDownloadBackoff assetDownloadBackoff = new AssetDownloadBackoff(MessagingConstants.ASSET_DOWNLOAD_BACKOFF_BASE_MS, MessagingConstants.ASSET_DOWNLOAD_BACKOFF_MAX_MS);
+    private final AssetCacheIndex assetCacheIndex;
+    private final AssetGarbageCollector assetGarbageCollector;
+    private final AssetInliner assetInliner;
+    private volatile AssetTranscoder assetTranscoder;
+    private volatile long inlineAssetMaxBytes = MessagingConstants.DEFAULT_INLINE_ASSET_MAX_BYTES;
+    // content keys of the loaded in-app messages using each cached html, keyed by html handle
+    private final Map<String, Set<String>> htmlOwners = new HashMap<>();
+    // html handle used by each loaded in-app message, keyed by content key
+    private final Map<String, String> ownedHtmlHandles = new HashMap<>();
+    // handles of the html removed from the cache since the extension was registered
+    private final Set<String> removedHtmlHandles = new HashSet<>();
+    // signature of the assets inlined in each cached html, keyed by html handle, guarded by itself
+    private final Map<String, String> inlinedHtmlSignatures = new HashMap<>();
+    // downloads started while the propositions are processed, only accessed on the event hub thread
+    private AssetRefresh assetRefresh;
+    // runs the asset cache work which must not block the event hub thread, one task at a time
+    private Executor assetTaskExecutor;
+    private final AtomicBoolean assetCacheIndexPersistScheduled = new AtomicBoolean(false);
 
     public MessagingCacheUtilities() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param assetTaskExecutor the {@link Executor} running the asset cache work off the calling thread, a background thread is used if null
+     */
+    @VisibleForTesting
+    MessagingCacheUtilities(final Executor assetTaskExecutor) {
+        this.assetTaskExecutor = assetTaskExecutor;
         this.cacheService = ServiceProvider.getInstance().getCacheService();
         this.assetCacheLocation = MessagingUtils.getAssetCacheLocation();
+        final String propositionJournalLocation = MessagingUtils.getPropositionJournalLocation();
+        this.propositionJournal = propositionJournalLocation != null ? new PropositionJournal(new File(propositionJournalLocation)) : null;
+        final String ruleSnapshotLocation = MessagingUtils.getRuleSnapshotLocation();
+        this.ruleSnapshot = ruleSnapshotLocation != null ? new RuleSnapshot(new File(ruleSnapshotLocation), MobileCore.extensionVersion()) : null;
+        final String assetCacheIndexLocation = MessagingUtils.getAssetCacheIndexLocation();
+        this.assetCacheIndex = new AssetCacheIndex(assetCacheIndexLocation != null ? new File(assetCacheIndexLocation) : null, cacheService, assetCacheLocation);
+        this.assetGarbageCollector = new AssetGarbageCollector(assetCacheLocation);
+        this.assetRegistry = new AssetRegistry(assetCacheLocation);
+        // evicted assets are no longer mapped to the asset cache
+        this.assetCacheIndex.setEvictionListener(assetRegistry::remove);
+        this.assetInliner = new AssetInliner(cacheService, assetCacheLocation, assetCacheIndex);
     }
     // ========================================================================================================
     // Message payload caching
@@ -63,6 +137,9 @@ final class MessagingCacheUtilities {
      * @return {@code boolean} containing true if cached propositions are found, false otherwise.
      */
     boolean arePropositionsCached() {
+        if (propositionJournal != null && propositionJournal.exists()) {
+            return true;
+        }
         return cacheService.get(MessagingConstants.CACHE_BASE_DIR, PROPOSITIONS_CACHE_SUBDIRECTORY) != null;
     }
 
@@ -73,15 +150,43 @@ final class MessagingCacheUtilities {
     void clearCachedData() {
         cacheService.remove(MessagingConstants.CACHE_BASE_DIR, PROPOSITIONS_CACHE_SUBDIRECTORY);
         cacheService.remove(MessagingConstants.CACHE_BASE_DIR, IMAGES_CACHE_SUBDIRECTORY);
-        Log.trace(LOG_TAG, SELF_TAG, "In-app messaging %s and %s caches have been deleted.", PROPOSITIONS_CACHE_SUBDIRECTORY, IMAGES_CACHE_SUBDIRECTORY);
+        cacheService.remove(MessagingConstants.CACHE_BASE_DIR, HTML_CACHE_SUBDIRECTORY);
+        if (propositionJournal != null) {
+            propositionJournal.delete();
+        }
+        if (ruleSnapshot != null) {
+            ruleSnapshot.delete();
+        }
+        assetCacheIndex.delete();
+        assetGarbageCollector.clearReferences();
+        assetRegistry.clear();
+        synchronized (this) {
+            htmlOwners.clear();
+            ownedHtmlHandles.clear();
+        }
+        synchronized (inlinedHtmlSignatures) {
+            inlinedHtmlSignatures.clear();
+        }
+        Log.trace(LOG_TAG, SELF_TAG, "In-app messaging %s, %s and %s caches have been deleted.", PROPOSITIONS_CACHE_SUBDIRECTORY, IMAGES_CACHE_SUBDIRECTORY, HTML_CACHE_SUBDIRECTORY);
     }
 
     /**
      * Retrieves cached {@code String} proposition payloads and returns them in a {@link List<PropositionPayload>}.
+     * <p>
+     * The propositions are replayed from the proposition journal when it exists. Propositions cached by previous versions
+     * are moved to the journal (or migrated to the current cache format when the journal is unavailable) once read.
      *
      * @return a {@code List<PropositionPayload>} containing the cached proposition payloads.
      */
     List<PropositionPayload> getCachedPropositions() {
+        if (propositionJournal != null && propositionJournal.exists()) {
+            final List<PropositionPayload> journalPropositions = propositionJournal.replay();
+            if (journalPropositions != null) {
+                Log.trace(LOG_TAG, SELF_TAG, "Loaded %d cached proposition(s) from the proposition journal.", journalPropositions.size());
+                return journalPropositions;
+            }
+        }
+
         final CacheResult cacheResult = cacheService.get(MessagingConstants.CACHE_BASE_DIR, PROPOSITIONS_CACHE_SUBDIRECTORY);
         if (cacheResult == null) {
             Log.trace(LOG_TAG, SELF_TAG, "Unable to find a cached proposition.");
@@ -92,30 +197,40 @@ final class MessagingCacheUtilities {
         if (fileMetadata != null && !fileMetadata.isEmpty()) {
             Log.trace(LOG_TAG, SELF_TAG, "Loading cached proposition from (%s)", fileMetadata.get(METADATA_KEY_PATH_TO_FILE));
         }
-        ObjectInputStream objectInputStream = null;
-        List<PropositionPayload> cachedPropositions;
-        try {
-            objectInputStream = new ObjectInputStream(cacheResult.getData());
-            cachedPropositions = (List<PropositionPayload>) objectInputStream.readObject();
-        } catch (final NullPointerException nullPointerException) {
-            Log.warning(LOG_TAG, SELF_TAG, "Exception occurred when retrieving the cached proposition file: %s", nullPointerException.getMessage());
+
+        final String cacheFilePath = fileMetadata != null ? fileMetadata.get(METADATA_KEY_PATH_TO_FILE) : null;
+        final InputStream inputStream = cacheResult.getData();
+        if (inputStream == null) {
+            Log.warning(LOG_TAG, SELF_TAG, "Exception occurred when retrieving the cached proposition file: no data found.");
             return null;
+        }
+
+        final byte[] cachedBytes;
+        try {
+            cachedBytes = readBytes(inputStream);
         } catch (final IOException ioException) {
             Log.warning(LOG_TAG, SELF_TAG, "Exception occurred when reading from the cached file: %s", ioException.getMessage());
             return null;
-        } catch (final ClassNotFoundException classNotFoundException) {
-            Log.warning(LOG_TAG, SELF_TAG, "Class not found: %s", classNotFoundException.getMessage());
-            return null;
         } finally {
-            try {
-                if (objectInputStream != null) {
-                    objectInputStream.close();
-                }
-            } catch (final IOException ioException) {
-                Log.warning(LOG_TAG, SELF_TAG, "Exception occurred when closing the FileInputStream: %s", ioException.getMessage());
+            closeStream(inputStream);
+        }
+
+        final boolean isEncoded = PropositionCacheCodec.isEncoded(cachedBytes);
+        final List<PropositionPayload> propositions = isEncoded ? PropositionCacheCodec.decode(ByteBuffer.wrap(cachedBytes)) : readLegacyPropositions(cachedBytes);
+        if (propositions == null || propositions.isEmpty()) {
+            return propositions;
+        }
+
+        if (propositionJournal != null) {
+            Log.debug(LOG_TAG, SELF_TAG, "Moving cached propositions to the proposition journal.");
+            if (propositionJournal.rewrite(propositions)) {
+                cacheService.remove(MessagingConstants.CACHE_BASE_DIR, PROPOSITIONS_CACHE_SUBDIRECTORY);
             }
+        } else if (!isEncoded) {
+            Log.debug(LOG_TAG, SELF_TAG, "Migrating cached propositions to the current cache format.");
+            writePropositions(propositions, cacheFilePath);
         }
-        return cachedPropositions;
+        return propositions;
     }
 
     /**
@@ -124,6 +239,16 @@ final class MessagingCacheUtilities {
      * @param propositionPayload the {@link List<PropositionPayload>} containing the message payload to be cached.
      */
     void cachePropositions(final List<PropositionPayload> propositionPayload) {
+        if (propositionJournal != null) {
+            if (propositionPayload == null || propositionPayload.isEmpty()) {
+                propositionJournal.delete();
+                Log.trace(MessagingConstants.LOG_TAG, SELF_TAG, "In-app messaging proposition journal has been deleted.");
+            } else {
+                propositionJournal.rewrite(propositionPayload);
+            }
+            return;
+        }
+
         // clean any existing cached propositions first if propositionPayload is null or empty
         if (propositionPayload == null || propositionPayload.isEmpty()) {
             cacheService.remove(MessagingConstants.CACHE_BASE_DIR, PROPOSITIONS_CACHE_SUBDIRECTORY);
@@ -131,36 +256,434 @@ final class MessagingCacheUtilities {
             return;
         }
 
+        final CacheResult cacheResult = cacheService.get(MessagingConstants.CACHE_BASE_DIR, PROPOSITIONS_CACHE_SUBDIRECTORY);
+        String cacheFilePath = null;
+        if (cacheResult != null) {
+            closeStream(cacheResult.getData());
+            final Map<String, String> fileMetadata = cacheResult.getMetadata();
+            cacheFilePath = fileMetadata != null ? fileMetadata.get(METADATA_KEY_PATH_TO_FILE) : null;
+        }
+        writePropositions(propositionPayload, cacheFilePath);
+    }
+
+    /**
+     * Records changes to the cached propositions.
+     * <p>
+     * When the proposition journal is available, a clear record and an add record containing only {@code addedPropositions}
+     * are appended to it and the journal is compacted once it grows too large. Otherwise all cached propositions are rewritten.
+     *
+     * @param clearExisting {@code boolean} indicating whether the previously cached propositions should be discarded
+     * @param addedPropositions {@code List<PropositionPayload>} containing the propositions to be added to the cache
+     */
+    void updateCachedPropositions(final boolean clearExisting, final List<PropositionPayload> addedPropositions) {
+        final boolean hasAddedPropositions = addedPropositions != null && !addedPropositions.isEmpty();
+        if (propositionJournal == null) {
+            final List<PropositionPayload> propositions = new ArrayList<>();
+            if (!clearExisting) {
+                final List<PropositionPayload> cachedPropositions = getCachedPropositions();
+                if (cachedPropositions != null) {
+                    propositions.addAll(cachedPropositions);
+                }
+            }
+            if (hasAddedPropositions) {
+                propositions.addAll(addedPropositions);
+            }
+            cachePropositions(propositions);
+            return;
+        }
+
+        boolean journaled = !clearExisting || propositionJournal.appendClear();
+        if (journaled && hasAddedPropositions) {
+            journaled = propositionJournal.appendPropositions(addedPropositions);
+        }
+
+        if (!journaled) {
+            // the journal no longer reflects the propositions, they will be cached again with the next response
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to update the proposition journal, the cached propositions have been discarded.");
+            propositionJournal.delete();
+            return;
+        }
+
+        if (propositionJournal.needsCompaction()) {
+            propositionJournal.compact();
+        }
+    }
+
+    /**
+     * Encodes and caches the {@code List<PropositionPayload>} payload.
+     *
+     * @param propositionPayload the {@link List<PropositionPayload>} containing the message payload to be cached
+     * @param cacheFilePath {@code String} containing the path of the existing cache file, if known
+     */
+    private void writePropositions(final List<PropositionPayload> propositionPayload, final String cacheFilePath) {
         Log.debug(LOG_TAG, SELF_TAG, "Creating new cached propositions");
-        ByteArrayOutputStream byteArrayOutputStream = null;
-        ObjectOutputStream objectOutputStream = null;
-        InputStream inputStream = null;
+        final byte[] encodedPropositions = PropositionCacheCodec.encode(propositionPayload);
+        if (encodedPropositions == null) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to cache the propositions, encoding failed.");
+            return;
+        }
 
+        if (!StringUtils.isNullOrEmpty(cacheFilePath) && replaceFile(cacheFilePath, encodedPropositions)) {
+            return;
+        }
+
+        final InputStream inputStream = new ByteArrayInputStream(encodedPropositions);
         try {
-            byteArrayOutputStream = new ByteArrayOutputStream();
-            objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-            objectOutputStream.writeObject(propositionPayload);
-            objectOutputStream.flush();
-            inputStream = new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
             final CacheEntry cacheEntry = new CacheEntry(inputStream, CacheExpiry.never(), null);
             cacheService.set(MessagingConstants.CACHE_BASE_DIR, PROPOSITIONS_CACHE_SUBDIRECTORY, cacheEntry);
-        } catch (final IOException e) {
-            Log.warning(LOG_TAG, SELF_TAG, "IOException while attempting to write remote file (%s)", e);
+        } finally {
+            closeStream(inputStream);
+        }
+    }
+
+    /**
+     * Atomically replaces an existing file by writing a temporary file and renaming it over the existing file.
+     *
+     * @param path {@code String} containing the path of the file to be replaced
+     * @param data {@code byte[]} containing the new file content
+     * @return {@code boolean} indicating whether the file was replaced, false if the file does not exist or the write failed
+     */
+    private boolean replaceFile(final String path, final byte[] data) {
+        final File cacheFile = new File(path);
+        if (!cacheFile.isFile()) {
+            return false;
+        }
+
+        final File temporaryFile = new File(path + TEMPORARY_FILE_SUFFIX);
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(temporaryFile);
+            fileOutputStream.write(data);
+            fileOutputStream.flush();
+            fileOutputStream.getFD().sync();
+        } catch (final IOException ioException) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to write the temporary file for (%s): %s", path, ioException.getMessage());
+            closeStream(fileOutputStream);
+            temporaryFile.delete();
+            return false;
+        }
+        closeStream(fileOutputStream);
+
+        if (!temporaryFile.renameTo(cacheFile)) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to replace the file (%s).", path);
+            temporaryFile.delete();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads propositions cached by previous versions of the extension using Java serialization.
+     *
+     * @param cachedBytes {@code byte[]} containing the Java serialized {@code List<PropositionPayload>}
+     * @return a {@code List<PropositionPayload>} containing the cached proposition payloads, or null if they could not be read
+     */
+    private List<PropositionPayload> readLegacyPropositions(final byte[] cachedBytes) {
+        ObjectInputStream objectInputStream = null;
+        try {
+            objectInputStream = new ObjectInputStream(new ByteArrayInputStream(cachedBytes));
+            return (List<PropositionPayload>) objectInputStream.readObject();
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Exception occurred when reading from the cached file: %s", ioException.getMessage());
+            return null;
+        } catch (final ClassNotFoundException | ClassCastException exception) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to read the cached propositions: %s", exception.getMessage());
+            return null;
         } finally {
             try {
-                if (objectOutputStream != null) {
-                    objectOutputStream.close();
-                }
-                if (byteArrayOutputStream != null) {
-                    byteArrayOutputStream.close();
-                }
-                if (inputStream != null) {
-                    inputStream.close();
+                if (objectInputStream != null) {
+                    objectInputStream.close();
                 }
-            } catch (final IOException e) {
-                Log.warning(LOG_TAG, SELF_TAG, "Unable to close the ObjectOutputStream (%s) ", e);
+            } catch (final IOException ioException) {
+                Log.warning(LOG_TAG, SELF_TAG, "Exception occurred when closing the ObjectInputStream: %s", ioException.getMessage());
+            }
+        }
+    }
+
+    // ========================================================================================================
+    // Rule snapshot
+    // ========================================================================================================
+
+    /**
+     * Returns the {@link RuleSnapshot} used to restore the rules of the cached propositions without parsing them.
+     *
+     * @return the {@code RuleSnapshot}, or null if the application cache directory is not available
+     */
+    RuleSnapshot getRuleSnapshot() {
+        return ruleSnapshot;
+    }
+
+    /**
+     * Replaces the rule snapshot with the compiled rules of the provided loaded items.
+     *
+     * @param loadedItems {@code List<ParsedPropositionItem>} containing the items loaded in the rules engine
+     */
+    void cacheRuleSnapshot(final List<ParsedPropositionItem> loadedItems) {
+        if (ruleSnapshot == null) {
+            return;
+        }
+
+        if (!ruleSnapshot.write(loadedItems)) {
+            // stale entries are harmless as items are looked up by content, but the snapshot is no longer useful
+            ruleSnapshot.delete();
+        }
+    }
+
+    // ========================================================================================================
+    // In-app message html caching
+    // ========================================================================================================
+
+    /**
+     * Stores the provided in-app message html on disk.
+     * <p>
+     * The html is stored once per distinct content, the returned handle is derived from a hash of the html.
+     * This method can be called from the rule parser worker threads.
+     *
+     * @param html {@code String} containing the in-app message html
+     * @return {@code String} containing the handle to be used to retrieve the html, or null if the html could not be stored
+     */
+    synchronized String cacheHtml(final String html) {
+        if (cacheService == null || StringUtils.isNullOrEmpty(html)) {
+            return null;
+        }
+
+        final String htmlHandle = StringEncoder.sha2hash(html);
+        if (StringUtils.isNullOrEmpty(htmlHandle)) {
+            return null;
+        }
+
+        final CacheResult cachedHtml = cacheService.get(HTML_CACHE_NAME, htmlHandle);
+        if (cachedHtml != null) {
+            closeStream(cachedHtml.getData());
+            return htmlHandle;
+        }
+
+        final CacheEntry cacheEntry = new CacheEntry(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), CacheExpiry.never(), null);
+        if (!cacheService.set(HTML_CACHE_NAME, htmlHandle, cacheEntry)) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to cache in-app message html, it will be kept in memory.");
+            return null;
+        }
+
+        removedHtmlHandles.remove(htmlHandle);
+        return htmlHandle;
+    }
+
+    /**
+     * Registers the html used by a loaded in-app message, replacing any html previously registered for it.
+     *
+     * @param owner      {@code String} containing the content key of the in-app message
+     * @param htmlHandle {@code String} containing the handle of the in-app message html, or null if the html is not cached
+     */
+    synchronized void addHtmlReference(final String owner, final String htmlHandle) {
+        if (owner == null) {
+            return;
+        }
+
+        final String previousHandle = ownedHtmlHandles.get(owner);
+        if (previousHandle != null && previousHandle.equals(htmlHandle)) {
+            return;
+        }
+
+        removeHtmlReference(owner);
+        if (StringUtils.isNullOrEmpty(htmlHandle)) {
+            return;
+        }
+
+        ownedHtmlHandles.put(owner, htmlHandle);
+        Set<String> owners = htmlOwners.get(htmlHandle);
+        if (owners == null) {
+            owners = new HashSet<>();
+            htmlOwners.put(htmlHandle, owners);
+        }
+        owners.add(owner);
+    }
+
+    /**
+     * Releases the html used by an in-app message which is no longer loaded. The html, and its variant with the assets
+     * inlined, are removed from the cache once no loaded in-app message uses them.
+     *
+     * @param owner {@code String} containing the content key of the in-app message
+     */
+    synchronized void removeHtmlReference(final String owner) {
+        final String htmlHandle = owner != null ? ownedHtmlHandles.remove(owner) : null;
+        if (htmlHandle == null) {
+            return;
+        }
+
+        final Set<String> owners = htmlOwners.get(htmlHandle);
+        if (owners != null) {
+            owners.remove(owner);
+            if (!owners.isEmpty()) {
+                return;
+            }
+        }
+
+        htmlOwners.remove(htmlHandle);
+        removedHtmlHandles.add(htmlHandle);
+        forgetInlinedHtml(htmlHandle);
+        if (cacheService != null) {
+            cacheService.remove(HTML_CACHE_NAME, htmlHandle);
+            cacheService.remove(HTML_CACHE_NAME, htmlHandle + INLINED_HTML_SUFFIX);
+        }
+        Log.trace(LOG_TAG, SELF_TAG, "Removed the cached html for handle (%s), it is no longer used by a loaded in-app message.", htmlHandle);
+    }
+
+    /**
+     * Determines whether the html referenced by the provided handle was removed from the cache. Parsed rules referencing
+     * a removed html cannot be reused.
+     *
+     * @param htmlHandle {@code String} containing the handle of the in-app message html
+     * @return {@code boolean} true if the html was removed and has not been cached again since
+     */
+    synchronized boolean isHtmlRemoved(final String htmlHandle) {
+        return htmlHandle != null && removedHtmlHandles.contains(htmlHandle);
+    }
+
+    /**
+     * Retrieves the in-app message html previously stored with {@link #cacheHtml(String)}.
+     * <p>
+     * The html with the small assets of the in-app message inlined is returned once it has been stored.
+     *
+     * @param htmlHandle {@code String} containing the handle returned when the html was cached
+     * @return {@code String} containing the in-app message html, or null if it is not found in the cache
+     */
+    String getCachedHtml(final String htmlHandle) {
+        if (cacheService == null || StringUtils.isNullOrEmpty(htmlHandle)) {
+            return null;
+        }
+
+        final String inlinedHtml = readHtml(htmlHandle + INLINED_HTML_SUFFIX);
+        return inlinedHtml != null ? inlinedHtml : readHtml(htmlHandle);
+    }
+
+    /**
+     * Stores the html of an in-app message with its small cached assets inlined, once the downloads of the assets have finished.
+     * <p>
+     * The inlined html is stored next to the html referenced by the rule and is rebuilt on the asset task thread each time
+     * the in-app message is loaded, unless the html and the cached content of its assets are unchanged since it was last built.
+     *
+     * @param htmlHandle {@code String} containing the handle of the in-app message html
+     * @param assetsUrls {@code List<String>} containing the urls of the assets used by the in-app message
+     * @param fetches    {@code List<AssetFetchRegistry.AssetFetch>} containing the downloads of the assets
+     */
+    private void inlineAssetsWhenDownloaded(final String htmlHandle, final List<String> assetsUrls, final List<AssetFetchRegistry.AssetFetch> fetches) {
+        final long maxBytes = inlineAssetMaxBytes;
+        // the html is inlined once the last download has finished
+        final AtomicInteger pendingFetches = new AtomicInteger(fetches.size() + 1);
+        final Runnable inlineAssets = () -> {
+            if (pendingFetches.decrementAndGet() == 0) {
+                runAssetTask(() -> cacheInlinedHtml(htmlHandle, assetsUrls, maxBytes));
+            }
+        };
+        for (final AssetFetchRegistry.AssetFetch fetch : fetches) {
+            fetch.whenDone(inlineAssets);
+        }
+        inlineAssets.run();
+    }
+
+    private void cacheInlinedHtml(final String htmlHandle, final List<String> assetsUrls, final long maxBytes) {
+        final String inlinedHtmlKey = htmlHandle + INLINED_HTML_SUFFIX;
+        if (maxBytes <= 0) {
+            forgetInlinedHtml(htmlHandle);
+            cacheService.remove(HTML_CACHE_NAME, inlinedHtmlKey);
+            return;
+        }
+
+        // the html handle is derived from the html content, so the inlined html only changes with the cached assets
+        final String signature = getInlineSignature(assetsUrls, maxBytes);
+        synchronized (inlinedHtmlSignatures) {
+            if (signature.equals(inlinedHtmlSignatures.get(htmlHandle))) {
+                Log.trace(LOG_TAG, SELF_TAG, "The inlined html for handle (%s) is up to date.", htmlHandle);
+                return;
             }
         }
+
+        final String html = readHtml(htmlHandle);
+        if (html == null) {
+            return;
+        }
+
+        final String inlinedHtml = assetInliner.inline(html, assetsUrls, maxBytes);
+        if (inlinedHtml.equals(html)) {
+            cacheService.remove(HTML_CACHE_NAME, inlinedHtmlKey);
+            rememberInlinedHtml(htmlHandle, signature);
+            return;
+        }
+
+        final CacheEntry cacheEntry = new CacheEntry(new ByteArrayInputStream(inlinedHtml.getBytes(StandardCharsets.UTF_8)), CacheExpiry.never(), null);
+        if (!cacheService.set(HTML_CACHE_NAME, inlinedHtmlKey, cacheEntry)) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to cache the inlined html for handle (%s), the assets will be loaded from the asset cache.", htmlHandle);
+            forgetInlinedHtml(htmlHandle);
+            cacheService.remove(HTML_CACHE_NAME, inlinedHtmlKey);
+            return;
+        }
+        rememberInlinedHtml(htmlHandle, signature);
+    }
+
+    /**
+     * Returns a signature of the inputs of the inlined html besides the html itself: the inlining threshold and, for each
+     * asset, the url its content is cached under and the digest of the cached content.
+     */
+    private String getInlineSignature(final List<String> assetsUrls, final long maxBytes) {
+        final StringBuilder signature = new StringBuilder().append(maxBytes);
+        for (final String assetUrl : assetsUrls) {
+            final String contentDigest = assetCacheIndex.getContentDigest(assetUrl);
+            signature.append('|').append(assetUrl)
+                    .append('|').append(assetCacheIndex.resolve(assetUrl))
+                    .append('|').append(contentDigest != null ? contentDigest : "");
+        }
+        return StringEncoder.sha2hash(signature.toString());
+    }
+
+    private void rememberInlinedHtml(final String htmlHandle, final String signature) {
+        synchronized (inlinedHtmlSignatures) {
+            inlinedHtmlSignatures.put(htmlHandle, signature);
+        }
+    }
+
+    private void forgetInlinedHtml(final String htmlHandle) {
+        synchronized (inlinedHtmlSignatures) {
+            inlinedHtmlSignatures.remove(htmlHandle);
+        }
+    }
+
+    private String readHtml(final String htmlKey) {
+        final CacheResult cacheResult = cacheService.get(HTML_CACHE_NAME, htmlKey);
+        if (cacheResult == null || cacheResult.getData() == null) {
+            Log.trace(LOG_TAG, SELF_TAG, "Unable to find cached html for handle (%s).", htmlKey);
+            return null;
+        }
+
+        final InputStream inputStream = cacheResult.getData();
+        try {
+            return new String(readBytes(inputStream), StandardCharsets.UTF_8);
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Exception occurred when reading cached html: %s", ioException.getMessage());
+            return null;
+        } finally {
+            closeStream(inputStream);
+        }
+    }
+
+    private static byte[] readBytes(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, bytesRead);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void closeStream(final Closeable stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to close the stream (%s) ", ioException);
+        }
     }
 
     // ========================================================================================================
@@ -173,6 +696,16 @@ final class MessagingCacheUtilities {
      * @param assetsUrls a {@link List<String>} containing asset URL's to be cached.
      */
     void cacheImageAssets(final List<String> assetsUrls) {
+        cacheImageAssets(assetsUrls, null);
+    }
+
+    /**
+     * Caches the assets provided in the {@link java.util.List} and inlines the small ones in the in-app message html once they are cached.
+     *
+     * @param assetsUrls a {@link List<String>} containing asset URL's to be cached.
+     * @param htmlHandle {@code String} containing the handle of the in-app message html using the assets, or null if the html is not cached
+     */
+    void cacheImageAssets(final List<String> assetsUrls, final String htmlHandle) {
         if (StringUtils.isNullOrEmpty(assetCacheLocation)) {
             Log.debug(LOG_TAG, SELF_TAG, "Failed to cache asset, the asset cache location is not available.");
             return;
@@ -184,21 +717,310 @@ final class MessagingCacheUtilities {
         }
 
         final List<String> assetsToRetain = new ArrayList<>();
+        final Map<String, AssetRegistry.AssetEntry> assetEntries = new HashMap<>();
 
         // validate asset URLs and remove duplicates
         if (assetsUrls != null && !assetsUrls.isEmpty()) {
             for (final String imageAssetUrl : assetsUrls) {
                 if (assetIsDownloadable(imageAssetUrl) && !assetsToRetain.contains(imageAssetUrl)) {
                     assetsToRetain.add(imageAssetUrl);
-                    // update the asset to cached location map
-                    assetMap.put(imageAssetUrl, assetCacheLocation);
+                    // the asset is mapped to the asset cache once it is cached
+                    assetEntries.put(imageAssetUrl, assetRegistry.register(imageAssetUrl, hasCachedCopy(imageAssetUrl)));
                 }
             }
         }
 
         // download the assets
-        MessageAssetDownloader messageAssetDownloader = new MessageAssetDownloader(assetsToRetain);
-        messageAssetDownloader.downloadAssetCollection();
+        MessageAssetDownloader messageAssetDownloader = new MessageAssetDownloader(assetsToRetain, assetDownloadScheduler, assetFetchRegistry, assetCacheIndex, assetDownloadBackoff, assetTranscoder);
+        final List<AssetFetchRegistry.AssetFetch> fetches = messageAssetDownloader.downloadAssetCollection();
+        if (assetRefresh != null) {
+            assetRefresh.add(fetches);
+        } else {
+            // assets cached outside of a refresh are tracked on their own
+            final AssetRefresh singleRefresh = new AssetRefresh(System.nanoTime(), this::onAssetRefreshDownloaded);
+            singleRefresh.add(fetches);
+            singleRefresh.finish();
+        }
+        for (final AssetFetchRegistry.AssetFetch fetch : fetches) {
+            final AssetRegistry.AssetEntry assetEntry = assetEntries.remove(fetch.url);
+            if (assetEntry != null) {
+                fetch.whenDone(() -> assetEntry.complete(fetch.isDownloaded()));
+            }
+        }
+
+        // assets which could not be downloaded are only available if they were cached before
+        for (final AssetRegistry.AssetEntry assetEntry : assetEntries.values()) {
+            assetEntry.complete(false);
+        }
+
+        if (!StringUtils.isNullOrEmpty(htmlHandle) && !assetsToRetain.isEmpty()) {
+            inlineAssetsWhenDownloaded(htmlHandle, assetsToRetain, fetches);
+        }
+    }
+
+    /**
+     * Starts tracking the asset downloads of a refresh, the downloads started by {@link #cacheImageAssets(List, String)}
+     * until {@link #finishAssetRefresh()} is called are part of the refresh.
+     *
+     * @param startTime {@code long} containing the {@link System#nanoTime()} the asset downloads of the refresh are timed from
+     */
+    void startAssetRefresh(final long startTime) {
+        finishAssetRefresh();
+        assetRefresh = new AssetRefresh(startTime, this::onAssetRefreshDownloaded);
+    }
+
+    /**
+     * Stops adding downloads to the current refresh, which completes once its downloads have finished.
+     */
+    void finishAssetRefresh() {
+        final AssetRefresh finishedRefresh = assetRefresh;
+        assetRefresh = null;
+        if (finishedRefresh != null) {
+            finishedRefresh.finish();
+        }
+    }
+
+    private void onAssetRefreshDownloaded(final AssetRefresh refresh) {
+        if (refresh.getFetchCount() == 0) {
+            return;
+        }
+
+        MessagingTimings.stageCompleted(MessagingTimingStage.ASSETS_DOWNLOADED, refresh.startTime);
+        final long firstAssetReadyMillis = refresh.getFirstAssetReadyMillis();
+        if (firstAssetReadyMillis >= 0) {
+            AssetDownloadMetrics.firstAssetReady(firstAssetReadyMillis);
+        }
+        AssetDownloadMetrics.report();
+        // the assets cached or evicted by the downloads of the refresh are persisted once
+        persistAssetCacheIndex();
+    }
+
+    /**
+     * Persists the asset cache index on the asset task thread. A persist requested while another one is queued is
+     * covered by the queued one, which writes the latest state of the index.
+     */
+    private void persistAssetCacheIndex() {
+        if (!assetCacheIndexPersistScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        runAssetTask(() -> {
+            assetCacheIndexPersistScheduled.set(false);
+            assetCacheIndex.persist();
+        });
+    }
+
+    /**
+     * Runs the provided task on the asset task thread, or on the calling thread if the task cannot be queued.
+     *
+     * @param task {@link Runnable} to run
+     */
+    private void runAssetTask(final Runnable task) {
+        try {
+            getAssetTaskExecutor().execute(task);
+        } catch (final Exception exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to run the asset cache task in the background, running it now: %s", exception.getLocalizedMessage());
+            task.run();
+        }
+    }
+
+    private synchronized Executor getAssetTaskExecutor() {
+        if (assetTaskExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, ASSET_TASK_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        final Thread thread = new Thread(runnable, ASSET_TASK_THREAD_NAME);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // the thread is not kept alive once the asset cache work is done
+            executor.allowCoreThreadTimeOut(true);
+            assetTaskExecutor = executor;
+        }
+        return assetTaskExecutor;
+    }
+
+    /**
+     * Determines whether a copy of an asset is available in the asset cache.
+     *
+     * @param url {@code String} containing the asset url
+     * @return {@code boolean} indicating whether the asset, or the asset it shares its content with, is cached
+     */
+    private boolean hasCachedCopy(final String url) {
+        final CacheResult cachedAsset = cacheService.get(assetCacheLocation, assetCacheIndex.resolve(url));
+        if (cachedAsset == null) {
+            return false;
+        }
+
+        closeStream(cachedAsset.getData());
+        return true;
+    }
+
+    /**
+     * Determines whether any asset of an in-app message is still being downloaded.
+     *
+     * @param assetsUrls {@code List<String>} containing the urls of the assets used by the in-app message
+     * @return {@code boolean} indicating whether {@link #awaitAssets(List, long)} may block
+     */
+    boolean hasPendingAssets(final List<String> assetsUrls) {
+        return assetRegistry.hasPending(assetsUrls);
+    }
+
+    /**
+     * Waits for the pending downloads of the assets of an in-app message, so the message is displayed with its assets cached.
+     *
+     * @param assetsUrls    {@code List<String>} containing the urls of the assets used by the in-app message
+     * @param timeoutMillis {@code long} containing the maximum time to wait for the assets
+     * @return the {@link AssetRegistry.Readiness} of the assets
+     */
+    AssetRegistry.Readiness awaitAssets(final List<String> assetsUrls, final long timeoutMillis) {
+        return assetRegistry.await(assetsUrls, timeoutMillis);
+    }
+
+    /**
+     * Sets the maximum number of assets downloaded at the same time.
+     *
+     * @param maxConcurrentDownloads {@code int} containing the maximum number of concurrent asset downloads
+     */
+    void setMaxConcurrentAssetDownloads(final int maxConcurrentDownloads) {
+        assetDownloadScheduler.setMaxConcurrentDownloads(maxConcurrentDownloads);
+    }
+
+    /**
+     * Sets the maximum number of bytes used by the cached assets, the least recently used assets are evicted when it is exceeded.
+     *
+     * @param maxBytes {@code long} containing the byte budget of the asset cache
+     */
+    void setAssetCacheMaxBytes(final long maxBytes) {
+        assetCacheIndex.setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Enables or disables downscaling the downloaded images to the display size before they are cached.
+     *
+     * @param enabled {@code boolean} indicating whether the downloaded images are transcoded
+     */
+    void setImageTranscodingEnabled(final boolean enabled) {
+        if (!enabled) {
+            assetTranscoder = null;
+        } else if (assetTranscoder == null) {
+            assetTranscoder = AssetTranscoder.create(ServiceProvider.getInstance().getDeviceInfoService());
+        }
+    }
+
+    /**
+     * Sets the maximum size of the assets inlined in the in-app message html, a size of zero disables inlining.
+     *
+     * @param maxBytes {@code long} containing the maximum size of an inlined asset
+     */
+    void setInlineAssetMaxBytes(final long maxBytes) {
+        inlineAssetMaxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Marks the provided assets as recently used so they are the last to be evicted from the asset cache.
+     *
+     * @param assetsUrls a {@link List<String>} containing the asset URL's of a displayed in-app message
+     */
+    void recordAssetsDisplayed(final List<String> assetsUrls) {
+        assetCacheIndex.recordUsed(assetsUrls);
+        persistAssetCacheIndex();
+    }
+
+    /**
+     * Moves the queued downloads of the provided assets ahead of the other queued asset downloads.
+     *
+     * @param assetsUrls a {@link List<String>} containing the asset URL's of a triggered in-app message
+     */
+    void prioritizeAssets(final List<String> assetsUrls) {
+        assetDownloadScheduler.prioritize(assetsUrls);
+    }
+
+    /**
+     * Cancels the queued downloads of assets which are not in the provided {@link Collection} and forgets their readiness.
+     *
+     * @param assetsUrls a {@link Collection<String>} containing the asset URL's still used by the loaded in-app messages
+     */
+    void retainAssetDownloads(final Collection<String> assetsUrls) {
+        assetDownloadScheduler.retainOnly(assetsUrls);
+        assetRegistry.retainOnly(assetsUrls);
+    }
+
+    /**
+     * Registers the assets used by a loaded in-app message so they are kept by {@link #collectUnusedAssets()}.
+     *
+     * @param owner      {@code String} containing the content key of the in-app message
+     * @param assetsUrls {@code Collection<String>} containing the urls of the assets used by the in-app message
+     */
+    void addAssetReferences(final String owner, final Collection<String> assetsUrls) {
+        assetGarbageCollector.addReferences(owner, assetsUrls);
+    }
+
+    /**
+     * Releases the assets used by an in-app message which is no longer loaded.
+     *
+     * @param owner {@code String} containing the content key of the in-app message
+     */
+    void removeAssetReferences(final String owner) {
+        assetGarbageCollector.removeReferences(owner);
+    }
+
+    /**
+     * Deletes the cached assets which are not used by any loaded in-app message and drops them from the asset cache index.
+     */
+    void collectUnusedAssets() {
+        // assets whose content is cached under another url keep that copy referenced
+        final Set<String> referencedHashes = assetCacheIndex.resolveHashes(assetGarbageCollector.getReferencedHashes());
+        assetGarbageCollector.sweep(referencedHashes);
+        assetCacheIndex.retainReferenced(referencedHashes);
+        assetRegistry.retainReferenced(referencedHashes);
+        persistAssetCacheIndex();
+    }
+
+    /**
+     * Replaces the urls of the provided assets in the in-app message html by the url their content is cached under, so
+     * assets sharing their content with another cached asset are loaded from the single cached copy.
+     *
+     * @param html       {@code String} containing the in-app message html
+     * @param assetsUrls {@code List<String>} containing the urls of the assets used by the in-app message
+     * @return {@code String} containing the html referencing the cached copies of the assets
+     */
+    String resolveCachedAssets(final String html, final List<String> assetsUrls) {
+        if (StringUtils.isNullOrEmpty(html) || assetsUrls == null || assetsUrls.isEmpty()) {
+            return html;
+        }
+
+        final Map<String, String> cachedUrls = new HashMap<>();
+        for (final String assetUrl : assetsUrls) {
+            final String cachedUrl = StringUtils.isNullOrEmpty(assetUrl) ? assetUrl : assetCacheIndex.resolve(assetUrl);
+            if (cachedUrl != null && !cachedUrl.equals(assetUrl) && !cachedUrls.containsKey(assetUrl)) {
+                cachedUrls.put(assetUrl, cachedUrl);
+                assetRegistry.markCached(cachedUrl);
+            }
+        }
+        if (cachedUrls.isEmpty()) {
+            return html;
+        }
+
+        return replaceAssetUrls(html, cachedUrls);
+    }
+
+    /**
+     * Replaces asset urls in the in-app message html.
+     *
+     * @param html         {@code String} containing the in-app message html
+     * @param replacements {@code Map<String, String>} containing the asset urls mapped to their replacement
+     * @return {@code String} containing the html with the asset urls replaced
+     */
+    static String replaceAssetUrls(final String html, final Map<String, String> replacements) {
+        // longer urls are replaced first so a url which prefixes another url does not rewrite part of it
+        final List<String> assetUrls = new ArrayList<>(replacements.keySet());
+        Collections.sort(assetUrls, (first, second) -> second.length() - first.length());
+        String replacedHtml = html;
+        for (final String assetUrl : assetUrls) {
+            replacedHtml = Pattern.compile(Pattern.quote(assetUrl) + ASSET_URL_END_PATTERN).matcher(replacedHtml)
+                    .replaceAll(Matcher.quoteReplacement(replacements.get(assetUrl)));
+        }
+        return replacedHtml;
     }
 
     /**
@@ -214,11 +1036,12 @@ final class MessagingCacheUtilities {
     }
 
     /**
-     * Returns a {@link Map<String, String>} containing the remote asset mapped to it's cached location.
+     * Returns a {@link Map<String, String>} containing the cached remote assets mapped to their cached location.
+     * Assets which are still being downloaded or could not be downloaded are not included.
      *
      * @return {@code Map<String, String} containing a mapping of a remote image asset URL and it's cached location
      */
     Map<String, String> getAssetsMap() {
-        return assetMap;
+        return assetRegistry.getReadyAssets();
     }
 }
\ No newline at end of file
@@ -22,12 +22,43 @@ public final class MessagingConstants {
     static final String CACHE_BASE_DIR = "messaging";
     static final String PROPOSITIONS_CACHE_SUBDIRECTORY = "propositions";
     static final String IMAGES_CACHE_SUBDIRECTORY = "images";
+    static final String HTML_CACHE_SUBDIRECTORY = "html";
+    static final String PROPOSITIONS_JOURNAL_FILE = "propositions.journal";
+    static final String RULE_SNAPSHOT_FILE = "rules.snapshot";
+    static final String ASSET_CACHE_INDEX_FILE = "images.index";
     static final String HTTP_HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
     static final String HTTP_HEADER_LAST_MODIFIED = "Last-Modified";
     static final String HTTP_HEADER_IF_NONE_MATCH = "If-None-Match";
     static final String HTTP_HEADER_ETAG = "Etag";
+    static final String HTTP_HEADER_CACHE_CONTROL = "Cache-Control";
+    static final String HTTP_HEADER_EXPIRES = "Expires";
+    static final String HTTP_HEADER_AGE = "Age";
+    static final String HTTP_HEADER_RANGE = "Range";
+    static final String HTTP_HEADER_IF_RANGE = "If-Range";
+    static final String HTTP_HEADER_CONTENT_RANGE = "Content-Range";
+    static final String HTTP_HEADER_ACCEPT_RANGES = "Accept-Ranges";
+    static final String HTTP_HEADER_CONTENT_LENGTH = "Content-Length";
+    static final String RANGE_UNIT_BYTES = "bytes";
+    static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    static final String METADATA_FRESH_UNTIL = "freshUntil";
     static final String METADATA_PATH = "pathToFile";
     static final int DEFAULT_TIMEOUT = 5;
+    static final int ASSET_DOWNLOAD_READ_TIMEOUT = 15;
+    static final long ASSET_READY_TIMEOUT_MS = 500;
+    static final long RESUMABLE_ASSET_MIN_BYTES = 256 * 1024;
+    static final long ASSET_DOWNLOAD_BACKOFF_BASE_MS = 60 * 1000;
+    static final long ASSET_DOWNLOAD_BACKOFF_MAX_MS = 6 * 60 * 60 * 1000;
+    static final int DEFAULT_PARALLEL_PARSING_THRESHOLD = 50;
+    static final long PROPOSITION_CACHE_WRITE_DELAY_MS = 500;
+    static final long PROPOSITION_JOURNAL_COMPACTION_MIN_BYTES = 64 * 1024;
+    static final int PROPOSITION_JOURNAL_COMPACTION_RATIO = 2;
+    static final int MAX_DEFERRED_RULES_EVENTS = 100;
+    static final int DEFAULT_MAX_CONCURRENT_ASSET_DOWNLOADS = 4;
+    static final long DEFAULT_ASSET_CACHE_MAX_BYTES = 50L * 1024 * 1024;
+    static final int TRANSCODED_IMAGE_QUALITY = 90;
+    static final long DEFAULT_INLINE_ASSET_MAX_BYTES = 4 * 1024;
+    static final int MAX_WEBVIEW_POOL_SIZE = 2;
+    static final long PRERENDER_DEADLINE_MS = 1500;
 
     private MessagingConstants() {
     }
@@ -119,6 +150,58 @@ public final class MessagingConstants {
             private Messaging() {
             }
 
+            final class RulesDeltaDataKeys {
+                static final String ADDED_MESSAGE_IDS = "addedMessageIds";
+                static final String REMOVED_MESSAGE_IDS = "removedMessageIds";
+                static final String RETAINED_COUNT = "retainedCount";
+
+                private RulesDeltaDataKeys() {
+                }
+            }
+
+            final class TimingsDataKeys {
+                static final String TIMINGS = "timings";
+                static final String ELAPSED_MS = "elapsedMs";
+                static final String DURATION_MS = "durationMs";
+
+                private TimingsDataKeys() {
+                }
+            }
+
+            final class WarmLoadDataKeys {
+                static final String DURATION_MS = "durationMs";
+                static final String PROPOSITION_COUNT = "propositionCount";
+
+                private WarmLoadDataKeys() {
+                }
+            }
+
+            final class AssetMetricsDataKeys {
+                static final String REQUESTS_ISSUED = "requestsIssued";
+                static final String DOWNLOADED = "downloaded";
+                static final String NOT_MODIFIED = "notModified";
+                static final String FAILED = "failed";
+                static final String SKIPPED_FRESH = "skippedFresh";
+                static final String SKIPPED_BACKOFF = "skippedBackoff";
+                static final String BYTES_DOWNLOADED = "bytesDownloaded";
+                static final String BYTES_SERVED_FROM_CACHE = "bytesServedFromCache";
+                static final String QUEUE_DEPTH = "queueDepth";
+                static final String MAX_QUEUE_DEPTH = "maxQueueDepth";
+                static final String DISPLAYED_CACHED = "displayedCached";
+                static final String DISPLAYED_AFTER_WAIT = "displayedAfterWait";
+                static final String DISPLAYED_NETWORK_FALLBACK = "displayedNetworkFallback";
+                static final String DOWNLOAD_LATENCY_MS = "downloadLatencyMs";
+                static final String FIRST_ASSET_READY_MS = "firstAssetReadyMs";
+                static final String COUNT = "count";
+                static final String SUM_MS = "sumMs";
+                static final String MAX_MS = "maxMs";
+                static final String BUCKETS = "buckets";
+                static final String BUCKET_OVERFLOW = "inf";
+
+                private AssetMetricsDataKeys() {
+                }
+            }
+
             final class XDMDataKeys {
                 static final String XDM = "xdm";
                 static final String ACTION_ID = "actionID";
@@ -197,11 +280,23 @@ public final class MessagingConstants {
         final class RulesEngine {
             static final String JSON_KEY = "rules";
             static final String JSON_CONSEQUENCES_KEY = "consequences";
+            static final String JSON_SOURCE_CONTENT_KEY = "sourceContentKey";
+            static final String JSON_CONDITION_KEY = "condition";
+            static final String JSON_CONDITION_TYPE = "type";
+            static final String JSON_CONDITION_TYPE_GROUP = "group";
+            static final String JSON_CONDITION_TYPE_MATCHER = "matcher";
+            static final String JSON_CONDITION_DEFINITION = "definition";
+            static final String JSON_DEFINITION_LOGIC = "logic";
+            static final String JSON_DEFINITION_CONDITIONS = "conditions";
+            static final String JSON_DEFINITION_KEY = "key";
+            static final String JSON_DEFINITION_MATCHER = "matcher";
+            static final String JSON_DEFINITION_VALUES = "values";
             static final String MESSAGE_CONSEQUENCE_ID = "id";
             static final String MESSAGE_CONSEQUENCE_TYPE = "type";
             static final String MESSAGE_CONSEQUENCE_CJM_VALUE = "cjmiam";
             static final String MESSAGE_CONSEQUENCE_DETAIL = "detail";
             static final String MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML = "html";
+            static final String MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE = "htmlHandle";
             static final String MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS = "remoteAssets";
             static final String MESSAGE_CONSEQUENCE_DETAIL_KEY_MOBILE_PARAMETERS = "mobileParameters";
             static final String CONSEQUENCE_TRIGGERED = "triggeredconsequence";
@@ -244,6 +339,10 @@ public final class MessagingConstants {
         static final String PUSH_TRACKING_STATUS_EVENT = "Push tracking status event";
         static final String PUSH_PROFILE_EDGE_EVENT = "Push notification profile edge event";
         static final String REFRESH_MESSAGES_EVENT = "Retrieve message definitions";
+        static final String RULES_DELTA_EVENT = "In-app message rules delta";
+        static final String WARM_LOAD_COMPLETE_EVENT = "In-app message warm-load complete";
+        static final String ASSET_METRICS_EVENT = "In-app message asset download metrics";
+        static final String TIMINGS_EVENT = "Messaging extension timings";
 
         static final String ASSURANCE_SPOOFED_IAM_EVENT_NAME = "Rule Consequence Event (Spoof)";
 
@@ -254,6 +353,7 @@ public final class MessagingConstants {
     final class EventSource {
         static final String PERSONALIZATION_DECISIONS = "personalization:decisions";
         static final String REQUEST_CONTENT = "com.adobe.eventSource.requestContent";
+        static final String DEBUG = "com.adobe.eventSource.debug";
 
         private EventSource() {
         }
@@ -289,6 +389,13 @@ public final class MessagingConstants {
 
             // Messaging
             static final String EXPERIENCE_EVENT_DATASET_ID = "messaging.eventDataset";
+            static final String PARALLEL_PARSING_THRESHOLD = "messaging.parallelParsingThreshold";
+            static final String MAX_CONCURRENT_ASSET_DOWNLOADS = "messaging.maxConcurrentAssetDownloads";
+            static final String ASSET_CACHE_MAX_BYTES = "messaging.assetCacheMaxBytes";
+            static final String TRANSCODE_IMAGES = "messaging.transcodeImages";
+            static final String INLINE_ASSET_MAX_BYTES = "messaging.inlineAssetMaxBytes";
+            static final String WEBVIEW_POOL_SIZE = "messaging.webViewPoolSize";
+            static final String PRERENDER_MESSAGES = "messaging.prerenderMessages";
 
             private Configuration() {
             }
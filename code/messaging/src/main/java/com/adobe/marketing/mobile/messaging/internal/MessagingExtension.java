@@ -58,11 +58,14 @@ import com.adobe.marketing.mobile.EventType;
 import com.adobe.marketing.mobile.Extension;
 import com.adobe.marketing.mobile.ExtensionApi;
 import com.adobe.marketing.mobile.ExtensionEventListener;
+import com.adobe.marketing.mobile.LoggingMode;
 import com.adobe.marketing.mobile.MessagingEdgeEventType;
 import com.adobe.marketing.mobile.SharedStateResolution;
 import com.adobe.marketing.mobile.SharedStateResult;
 import com.adobe.marketing.mobile.launch.rulesengine.LaunchRulesEngine;
 import com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence;
+import com.adobe.marketing.mobile.messaging.MessagingTimingListener;
+import com.adobe.marketing.mobile.messaging.MessagingTimingStage;
 import com.adobe.marketing.mobile.messaging.PushTrackingStatus;
 import com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.XDMDataKeys;
 import com.adobe.marketing.mobile.services.Log;
@@ -86,6 +89,7 @@ public final class MessagingExtension extends Extension {
     final InAppNotificationHandler inAppNotificationHandler;
     private boolean initialMessageFetchComplete = false;
     final LaunchRulesEngine messagingRulesEngine;
+    private final long creationStartTime;
 
     /**
      * Constructor.
@@ -113,8 +117,11 @@ public final class MessagingExtension extends Extension {
     @VisibleForTesting
     MessagingExtension(final ExtensionApi extensionApi, final LaunchRulesEngine messagingRulesEngine, final InAppNotificationHandler inAppNotificationHandler) {
         super(extensionApi);
+        this.creationStartTime = System.nanoTime();
+        MessagingTimings.start(creationStartTime);
         this.messagingRulesEngine = messagingRulesEngine != null ? messagingRulesEngine : new LaunchRulesEngine(MessagingConstants.RULES_ENGINE_NAME, extensionApi);
         this.inAppNotificationHandler = inAppNotificationHandler != null ? inAppNotificationHandler : new InAppNotificationHandler(this, extensionApi, this.messagingRulesEngine);
+        MessagingTimings.stageCompleted(MessagingTimingStage.EXTENSION_CREATED, creationStartTime);
     }
 
     //region Extension interface methods
@@ -160,10 +167,14 @@ public final class MessagingExtension extends Extension {
         getApi().registerEventListener(EventType.EDGE, MessagingConstants.EventSource.PERSONALIZATION_DECISIONS, this::processEvent);
         getApi().registerEventListener(EventType.WILDCARD, EventSource.WILDCARD, this::handleWildcardEvents);
         getApi().registerEventListener(EventType.RULES_ENGINE, EventSource.RESPONSE_CONTENT, this::handleRuleEngineResponseEvents);
+        AssetDownloadMetrics.setReporter(this::dispatchAssetMetricsEvent);
     }
 
     @Override
     protected void onUnregistered() {
+        // persist any pending proposition cache update before the extension goes away
+        inAppNotificationHandler.flushPropositionCache();
+        AssetDownloadMetrics.setReporter(null);
     }
 
     @Override
@@ -180,6 +191,7 @@ public final class MessagingExtension extends Extension {
 
         // fetch in-app messages on initial launch once we have configuration and identity state set
         if (!initialMessageFetchComplete) {
+            MessagingTimings.stageCompleted(MessagingTimingStage.READY_FOR_EVENTS, creationStartTime);
             inAppNotificationHandler.fetchMessages();
             initialMessageFetchComplete = true;
         }
@@ -193,10 +205,18 @@ public final class MessagingExtension extends Extension {
 
     /**
      * Processes all events dispatched to the {@code EventHub} to determine if any rules are matched.
+     * Events received while the cached in-app messages are still being loaded are evaluated once they are loaded.
      *
      * @param event incoming {@link Event} object to be processed
      */
     void handleWildcardEvents(final Event event) {
+        if (inAppNotificationHandler.deferUntilWarmLoaded(event)) {
+            return;
+        }
+
+        for (final Event deferredEvent : inAppNotificationHandler.takeDeferredRulesEvents()) {
+            messagingRulesEngine.processEvent(deferredEvent);
+        }
         messagingRulesEngine.processEvent(event);
     }
 
@@ -423,6 +443,48 @@ public final class MessagingExtension extends Extension {
                 mask,
                 getApi());
     }
+
+    /**
+     * Dispatches a debug event containing the recorded {@link MessagingTimingStage} timings, called on the event hub thread
+     * once the in-app messages received from the Edge network have been processed.
+     * The event is only dispatched when the log level is {@link LoggingMode#DEBUG} or {@link LoggingMode#VERBOSE}.
+     */
+    void dispatchTimingsEvent() {
+        if (!isDebugLogLevel()) {
+            return;
+        }
+
+        final Map<String, Object> eventData = new HashMap<>();
+        eventData.put(MessagingConstants.EventDataKeys.Messaging.TimingsDataKeys.TIMINGS, MessagingTimings.getTimings());
+        final Event event = new Event.Builder(MessagingConstants.EventName.TIMINGS_EVENT,
+                MessagingConstants.EventType.MESSAGING,
+                MessagingConstants.EventSource.DEBUG)
+                .setEventData(eventData)
+                .build();
+        getApi().dispatch(event);
+    }
+    //endregion
+
+    //region public static methods
+
+    /**
+     * Sets the {@link MessagingTimingListener} notified when a {@link MessagingTimingStage} is completed.
+     * The listener is immediately notified of the stages completed before it was set.
+     *
+     * @param listener the {@code MessagingTimingListener} to notify, or null to remove the current listener
+     */
+    public static void setTimingListener(final MessagingTimingListener listener) {
+        MessagingTimings.setListener(listener);
+    }
+
+    /**
+     * Returns a snapshot of the in-app message asset download metrics, cumulative for the lifetime of the application process.
+     *
+     * @return {@code Map<String, Object>} containing the download counters, the queue depth and the latency histograms
+     */
+    public static Map<String, Object> getAssetDownloadMetrics() {
+        return AssetDownloadMetrics.getMetrics();
+    }
     //endregion
 
     //region private methods
@@ -563,6 +625,30 @@ public final class MessagingExtension extends Extension {
         }
     }
 
+    /**
+     * Dispatches a debug event containing the {@link AssetDownloadMetrics}, sent once the asset downloads of a refresh have completed.
+     * The event is only dispatched when the log level is {@link LoggingMode#DEBUG} or {@link LoggingMode#VERBOSE}.
+     *
+     * @param metrics {@code Map<String, Object>} containing the asset download metrics
+     */
+    private void dispatchAssetMetricsEvent(final Map<String, Object> metrics) {
+        if (!isDebugLogLevel()) {
+            return;
+        }
+
+        final Event event = new Event.Builder(MessagingConstants.EventName.ASSET_METRICS_EVENT,
+                MessagingConstants.EventType.MESSAGING,
+                MessagingConstants.EventSource.DEBUG)
+                .setEventData(metrics)
+                .build();
+        getApi().dispatch(event);
+    }
+
+    private boolean isDebugLogLevel() {
+        final LoggingMode logLevel = Log.getLogLevel();
+        return logLevel == LoggingMode.DEBUG || logLevel == LoggingMode.VERBOSE;
+    }
+
     private String getPushTrackingDatasetId(final Event event) {
         final Map<String, Object> configSharedState = getSharedState(MessagingConstants.SharedState.Configuration.EXTENSION_NAME, event);
         return DataReader.optString(configSharedState, MessagingConstants.SharedState.Configuration.EXPERIENCE_EVENT_DATASET_ID, "");
@@ -0,0 +1,161 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.adobe.marketing.mobile.messaging.MessagingTimingListener;
+import com.adobe.marketing.mobile.messaging.MessagingTimingStage;
+import com.adobe.marketing.mobile.services.Log;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the completion times of the {@link MessagingTimingStage}s of the Messaging extension lifecycle.
+ * <p>
+ * Times are measured from the creation of the Messaging extension. Stages which can be completed more than once
+ * (e.g. when in-app messages are refreshed) keep the timing of their latest completion.
+ */
+final class MessagingTimings {
+    private final static String SELF_TAG = "MessagingTimings";
+    private static final Object mutex = new Object();
+    private static final Map<MessagingTimingStage, StageTiming> completedStages = new EnumMap<>(MessagingTimingStage.class);
+    private static long extensionCreatedTime = System.nanoTime();
+    private static MessagingTimingListener listener;
+
+    private MessagingTimings() {
+    }
+
+    /**
+     * Sets the {@link MessagingTimingListener} notified when a stage is completed.
+     * The listener is immediately notified of the stages completed before it was set.
+     *
+     * @param timingListener the {@code MessagingTimingListener} to notify, or null to stop notifying the current listener
+     */
+    static void setListener(final MessagingTimingListener timingListener) {
+        final Map<MessagingTimingStage, StageTiming> stages;
+        synchronized (mutex) {
+            listener = timingListener;
+            stages = new EnumMap<>(completedStages);
+        }
+
+        if (timingListener != null) {
+            for (final Map.Entry<MessagingTimingStage, StageTiming> stage : stages.entrySet()) {
+                notifyListener(timingListener, stage.getKey(), stage.getValue());
+            }
+        }
+    }
+
+    /**
+     * Clears the recorded stages and starts measuring from the provided time, called when the Messaging extension is created.
+     *
+     * @param startTime {@code long} containing the {@link System#nanoTime()} at which the Messaging extension creation started
+     */
+    static void start(final long startTime) {
+        synchronized (mutex) {
+            completedStages.clear();
+            extensionCreatedTime = startTime;
+        }
+    }
+
+    /**
+     * Records the completion of a stage.
+     *
+     * @param stage          the completed {@link MessagingTimingStage}
+     * @param stageStartTime {@code long} containing the {@link System#nanoTime()} at which the stage started
+     */
+    static void stageCompleted(final MessagingTimingStage stage, final long stageStartTime) {
+        final long completionTime = System.nanoTime();
+        final StageTiming stageTiming;
+        final MessagingTimingListener currentListener;
+        synchronized (mutex) {
+            stageTiming = new StageTiming(completionTime,
+                    TimeUnit.NANOSECONDS.toMillis(completionTime - extensionCreatedTime),
+                    TimeUnit.NANOSECONDS.toMillis(completionTime - stageStartTime));
+            completedStages.put(stage, stageTiming);
+            currentListener = listener;
+        }
+
+        Log.trace(LOG_TAG, SELF_TAG, "Stage %s completed %d ms after the extension was created, took %d ms.", stage.getName(), stageTiming.elapsedMillis, stageTiming.durationMillis);
+        notifyListener(currentListener, stage, stageTiming);
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the provided stage was last completed.
+     *
+     * @param stage the {@link MessagingTimingStage} to look up
+     * @return {@code long} containing the completion time, or -1 if the stage was not completed
+     */
+    static long getCompletionTime(final MessagingTimingStage stage) {
+        synchronized (mutex) {
+            final StageTiming stageTiming = completedStages.get(stage);
+            return stageTiming == null ? -1 : stageTiming.completionTime;
+        }
+    }
+
+    /**
+     * Returns the recorded stages in the format used by the Messaging timings debug event.
+     *
+     * @return {@code Map<String, Object>} containing the elapsed time and duration of each completed stage keyed by the stage name
+     */
+    static Map<String, Object> getTimings() {
+        final Map<String, Object> timings = new HashMap<>();
+        synchronized (mutex) {
+            for (final Map.Entry<MessagingTimingStage, StageTiming> stage : completedStages.entrySet()) {
+                final Map<String, Object> stageTiming = new HashMap<>();
+                stageTiming.put(MessagingConstants.EventDataKeys.Messaging.TimingsDataKeys.ELAPSED_MS, stage.getValue().elapsedMillis);
+                stageTiming.put(MessagingConstants.EventDataKeys.Messaging.TimingsDataKeys.DURATION_MS, stage.getValue().durationMillis);
+                timings.put(stage.getKey().getName(), stageTiming);
+            }
+        }
+        return timings;
+    }
+
+    @VisibleForTesting
+    static void reset() {
+        synchronized (mutex) {
+            completedStages.clear();
+            extensionCreatedTime = System.nanoTime();
+            listener = null;
+        }
+    }
+
+    private static void notifyListener(final MessagingTimingListener timingListener, final MessagingTimingStage stage, final StageTiming stageTiming) {
+        if (timingListener == null) {
+            return;
+        }
+
+        try {
+            timingListener.onStageCompleted(stage, stageTiming.elapsedMillis, stageTiming.durationMillis);
+        } catch (final Exception exception) {
+            Log.warning(LOG_TAG, SELF_TAG, "The timing listener failed to handle stage %s: %s", stage.getName(), exception.getLocalizedMessage());
+        }
+    }
+
+    private static final class StageTiming {
+        final long completionTime;
+        final long elapsedMillis;
+        final long durationMillis;
+
+        StageTiming(final long completionTime, final long elapsedMillis, final long durationMillis) {
+            this.completionTime = completionTime;
+            this.elapsedMillis = elapsedMillis;
+            this.durationMillis = durationMillis;
+        }
+    }
+}
@@ -12,10 +12,13 @@
 
 package com.adobe.marketing.mobile.messaging.internal;
 
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.ASSET_CACHE_INDEX_FILE;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.CACHE_BASE_DIR;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.Messaging.IAMDetailsDataKeys.Key.ITEMS;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.REQUEST_EVENT_ID;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.IMAGES_CACHE_SUBDIRECTORY;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PROPOSITIONS_JOURNAL_FILE;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.RULE_SNAPSHOT_FILE;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.SharedState.EdgeIdentity.ECID;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.SharedState.EdgeIdentity.ID;
 import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.SharedState.EdgeIdentity.IDENTITY_MAP;
@@ -65,6 +68,42 @@ class MessagingUtils {
         return assetCacheLocation;
     }
 
+    static String getPropositionJournalLocation() {
+        final DeviceInforming deviceInfoService = ServiceProvider.getInstance().getDeviceInfoService();
+        String propositionJournalLocation = null;
+        if (deviceInfoService != null) {
+            final File applicationCacheDir = deviceInfoService.getApplicationCacheDir();
+            if (applicationCacheDir != null) {
+                propositionJournalLocation = applicationCacheDir + File.separator + CACHE_BASE_DIR + File.separator + PROPOSITIONS_JOURNAL_FILE;
+            }
+        }
+        return propositionJournalLocation;
+    }
+
+    static String getRuleSnapshotLocation() {
+        final DeviceInforming deviceInfoService = ServiceProvider.getInstance().getDeviceInfoService();
+        String ruleSnapshotLocation = null;
+        if (deviceInfoService != null) {
+            final File applicationCacheDir = deviceInfoService.getApplicationCacheDir();
+            if (applicationCacheDir != null) {
+                ruleSnapshotLocation = applicationCacheDir + File.separator + CACHE_BASE_DIR + File.separator + RULE_SNAPSHOT_FILE;
+            }
+        }
+        return ruleSnapshotLocation;
+    }
+
+    static String getAssetCacheIndexLocation() {
+        final DeviceInforming deviceInfoService = ServiceProvider.getInstance().getDeviceInfoService();
+        String assetCacheIndexLocation = null;
+        if (deviceInfoService != null) {
+            final File applicationCacheDir = deviceInfoService.getApplicationCacheDir();
+            if (applicationCacheDir != null) {
+                assetCacheIndexLocation = applicationCacheDir + File.separator + CACHE_BASE_DIR + File.separator + ASSET_CACHE_INDEX_FILE;
+            }
+        }
+        return assetCacheIndexLocation;
+    }
+
     // ========================================================================================
     // Event Validation
     // ========================================================================================
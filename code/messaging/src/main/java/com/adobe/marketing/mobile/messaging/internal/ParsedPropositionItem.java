@@ -0,0 +1,298 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_CONSEQUENCES_KEY;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_KEY;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.JSON_SOURCE_CONTENT_KEY;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_ID;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.CONTENT;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.DATA;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.ID;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.SCHEMA;
+
+import com.adobe.marketing.mobile.ExtensionApi;
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
+import com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence;
+import com.adobe.marketing.mobile.launch.rulesengine.json.JSONRulesParser;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.util.DataReader;
+import com.adobe.marketing.mobile.util.StringUtils;
+import com.adobe.marketing.mobile.util.UrlUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds everything the in-app message pipeline needs from a single {@link PayloadItem}: the parsed {@link LaunchRule},
+ * the consequence (message) id, the remote assets referenced by the consequence and the {@link PropositionInfo} used for tracking.
+ * Items are identified by a content key built from the payload item id and a hash of the item content.
+ * <p>
+ * The message id, the remote assets and the html are read from a single json tree built from the item content.
+ * {@link JSONRulesParser} only accepts a json string, so it tokenizes the original item content a second time,
+ * but the json tree is never re-serialized for it.
+ * <p>
+ * When a {@link MessagingCacheUtilities} is provided, the in-app message html is moved to disk and replaced in the
+ * consequence detail by a handle, so neither the parsed rule nor the loaded {@link PayloadItem} hold the html in memory.
+ * The externalized content keeps the content key of the original content so that unchanged items are still recognized
+ * after they are reloaded from the proposition cache.
+ */
+class ParsedPropositionItem {
+    private final static String SELF_TAG = "ParsedPropositionItem";
+
+    final String contentKey;
+    final PayloadItem payloadItem;
+    final LaunchRule rule;
+    final String messageId;
+    final List<String> remoteAssets;
+    final PropositionInfo propositionInfo;
+    // null if the rule cannot be stored in the rule snapshot
+    final CompiledRule compiledRule;
+
+    private ParsedPropositionItem(final String contentKey, final PayloadItem payloadItem, final LaunchRule rule, final String messageId, final List<String> remoteAssets, final PropositionInfo propositionInfo, final CompiledRule compiledRule) {
+        this.contentKey = contentKey;
+        this.payloadItem = payloadItem;
+        this.rule = rule;
+        this.messageId = messageId;
+        this.remoteAssets = remoteAssets;
+        this.propositionInfo = propositionInfo;
+        this.compiledRule = compiledRule;
+    }
+
+    /**
+     * Returns a {@code ParsedPropositionItem} sharing this item's parsed rule but bound to the provided {@link PropositionInfo}.
+     *
+     * @param newPropositionInfo the {@code PropositionInfo} to bind
+     * @return this instance if it is already bound to {@code newPropositionInfo}, otherwise a new {@code ParsedPropositionItem}
+     */
+    ParsedPropositionItem withPropositionInfo(final PropositionInfo newPropositionInfo) {
+        if (propositionInfo == newPropositionInfo) {
+            return this;
+        }
+        return new ParsedPropositionItem(contentKey, payloadItem, rule, messageId, remoteAssets, newPropositionInfo, compiledRule);
+    }
+
+    /**
+     * Returns the handle of the in-app message html when the html was moved to disk.
+     *
+     * @return {@code String} containing the html handle, or null if the html is held in the consequence detail
+     */
+    String getHtmlHandle() {
+        final List<RuleConsequence> consequences = rule != null ? rule.getConsequenceList() : null;
+        if (consequences == null || consequences.isEmpty() || consequences.get(0) == null) {
+            return null;
+        }
+
+        return DataReader.optString(consequences.get(0).getDetail(), MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE, null);
+    }
+
+    /**
+     * Creates a {@code ParsedPropositionItem} from a rule restored from the {@link RuleSnapshot}, without parsing the item content.
+     *
+     * @param contentKey      {@code String} containing the content key of the original item content
+     * @param payloadItem     the {@link PayloadItem} containing the in-app message rule
+     * @param compiledRule    the {@link CompiledRule} of the item
+     * @param messageId       {@code String} containing the consequence (message) id
+     * @param remoteAssets    {@code List<String>} containing the remote assets of the consequence
+     * @param propositionInfo the {@link PropositionInfo} of the proposition containing the {@code payloadItem}
+     * @return a {@code ParsedPropositionItem} bound to {@code propositionInfo}
+     */
+    static ParsedPropositionItem restore(final String contentKey, final PayloadItem payloadItem, final CompiledRule compiledRule, final String messageId, final List<String> remoteAssets, final PropositionInfo propositionInfo) {
+        return new ParsedPropositionItem(contentKey, payloadItem, compiledRule.toLaunchRule(), messageId, remoteAssets, propositionInfo, compiledRule);
+    }
+
+    /**
+     * Parses the rule contained in the provided {@link PayloadItem} and extracts the message id and remote assets from its consequence.
+     *
+     * @param propositionInfo the {@link PropositionInfo} of the proposition containing the {@code payloadItem}
+     * @param payloadItem     the {@link PayloadItem} containing an in-app message rule
+     * @param extensionApi    the {@link ExtensionApi} used when parsing the rule
+     * @return a {@code ParsedPropositionItem}, or null if the item does not contain a valid in-app message rule
+     */
+    static ParsedPropositionItem create(final PropositionInfo propositionInfo, final PayloadItem payloadItem, final ExtensionApi extensionApi) {
+        if (payloadItem == null || payloadItem.data == null) {
+            return null;
+        }
+
+        return create(propositionInfo, payloadItem, getContentKey(payloadItem), null, extensionApi);
+    }
+
+    /**
+     * Parses the rule contained in the provided {@link PayloadItem} using a previously computed content key.
+     *
+     * @param propositionInfo         the {@link PropositionInfo} of the proposition containing the {@code payloadItem}
+     * @param payloadItem             the {@link PayloadItem} containing an in-app message rule
+     * @param contentKey              {@code String} containing the content key returned by {@link #getContentKey(PayloadItem)}
+     * @param messagingCacheUtilities {@link MessagingCacheUtilities} used to move the message html to disk, the html is kept in memory if null
+     * @param extensionApi            the {@link ExtensionApi} used when parsing the rule
+     * @return a {@code ParsedPropositionItem}, or null if the item does not contain a valid in-app message rule
+     */
+    static ParsedPropositionItem create(final PropositionInfo propositionInfo, final PayloadItem payloadItem, final String contentKey, final MessagingCacheUtilities messagingCacheUtilities, final ExtensionApi extensionApi) {
+        if (payloadItem == null || payloadItem.data == null) {
+            return null;
+        }
+
+        final JSONObject ruleJson = payloadItem.data.getRuleJsonObject();
+        if (ruleJson == null) {
+            Log.debug(LOG_TAG, SELF_TAG, "create - Skipping proposition with no in-app message content.");
+            return null;
+        }
+
+        final JSONObject consequence = getFirstConsequence(ruleJson);
+        final JSONObject detail = consequence == null ? null : consequence.optJSONObject(MESSAGE_CONSEQUENCE_DETAIL);
+
+        String itemContentKey = contentKey;
+        PayloadItem loadedItem = payloadItem;
+        final String sourceContentKey = ruleJson.optString(JSON_SOURCE_CONTENT_KEY, null);
+        if (!StringUtils.isNullOrEmpty(sourceContentKey)) {
+            // the html was moved to disk when this item was first loaded
+            itemContentKey = sourceContentKey;
+        } else if (messagingCacheUtilities != null && detail != null) {
+            final PayloadItem externalizedItem = externalizeHtml(payloadItem, ruleJson, detail, contentKey, messagingCacheUtilities);
+            if (externalizedItem != null) {
+                loadedItem = externalizedItem;
+            }
+        }
+
+        // the rules parser only accepts a json string, pass the item content to avoid re-serializing the json tree
+        final List<LaunchRule> parsedRules = JSONRulesParser.parse(loadedItem.data.content, extensionApi);
+        if (parsedRules == null || parsedRules.isEmpty()) {
+            Log.debug(LOG_TAG, SELF_TAG, "create - Skipping proposition with malformed in-app message content.");
+            return null;
+        }
+
+        String messageId = null;
+        List<String> remoteAssets = null;
+        if (consequence != null) {
+            messageId = consequence.optString(MESSAGE_CONSEQUENCE_ID, null);
+            if (detail != null) {
+                remoteAssets = getRemoteAssets(detail.optJSONArray(MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS));
+            }
+        }
+
+        if (messageId == null) {
+            Log.warning(LOG_TAG, SELF_TAG, "create - Unable to retrieve the message id from the rule consequence.");
+        }
+
+        // the json tree is already available, keep a compact form of the rule for the rule snapshot
+        final CompiledRule compiledRule = CompiledRule.compile(ruleJson);
+        return new ParsedPropositionItem(itemContentKey, loadedItem, parsedRules.get(0), messageId, remoteAssets, propositionInfo, compiledRule);
+    }
+
+    /**
+     * Moves the html found in the consequence detail to disk and returns a copy of the {@link PayloadItem} referencing the html by its handle.
+     *
+     * @param payloadItem             the original {@code PayloadItem}
+     * @param ruleJson                {@code JSONObject} containing the parsed item content, updated in place
+     * @param detail                  {@code JSONObject} containing the consequence detail of {@code ruleJson}
+     * @param contentKey              {@code String} containing the content key of the original item content
+     * @param messagingCacheUtilities {@link MessagingCacheUtilities} used to store the html
+     * @return the externalized {@code PayloadItem}, or null if the html was not moved to disk
+     */
+    private static PayloadItem externalizeHtml(final PayloadItem payloadItem, final JSONObject ruleJson, final JSONObject detail, final String contentKey, final MessagingCacheUtilities messagingCacheUtilities) {
+        final String html = detail.optString(MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML, null);
+        if (StringUtils.isNullOrEmpty(html)) {
+            return null;
+        }
+
+        final String htmlHandle = messagingCacheUtilities.cacheHtml(html);
+        if (htmlHandle == null) {
+            return null;
+        }
+
+        try {
+            detail.remove(MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML);
+            detail.put(MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE, htmlHandle);
+            ruleJson.put(JSON_SOURCE_CONTENT_KEY, contentKey);
+
+            final Map<String, Object> data = new HashMap<>();
+            data.put(ID, payloadItem.data.id);
+            data.put(CONTENT, ruleJson.toString());
+            final Map<String, Object> item = new HashMap<>();
+            item.put(ID, payloadItem.id);
+            item.put(SCHEMA, payloadItem.schema);
+            item.put(DATA, data);
+            return new PayloadItem(item);
+        } catch (final JSONException jsonException) {
+            Log.debug(LOG_TAG, SELF_TAG, "externalizeHtml - Unable to reference the cached html, it will be kept in memory: %s", jsonException.getLocalizedMessage());
+            return null;
+        } catch (final Exception exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "externalizeHtml - Unable to create the externalized PayloadItem: %s", exception.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the content key identifying the provided {@link PayloadItem}.
+     * Two items share a content key only if they have the same id and byte-identical content.
+     *
+     * @param payloadItem a non-null {@link PayloadItem} containing an in-app message rule
+     * @return {@code String} containing the item id and a hash of the item content
+     */
+    static String getContentKey(final PayloadItem payloadItem) {
+        return payloadItem.id + ":" + StringEncoder.sha2hash(payloadItem.data.content);
+    }
+
+    /**
+     * Returns the first consequence of the first rule present in the provided rule {@link JSONObject}.
+     *
+     * @param ruleJson {@code JSONObject} containing an in-app message rule
+     * @return the consequence {@code JSONObject} or null if it is not present
+     */
+    private static JSONObject getFirstConsequence(final JSONObject ruleJson) {
+        final JSONArray rules = ruleJson.optJSONArray(JSON_KEY);
+        if (rules == null) {
+            return null;
+        }
+        final JSONObject rule = rules.optJSONObject(0);
+        if (rule == null) {
+            return null;
+        }
+        final JSONArray consequences = rule.optJSONArray(JSON_CONSEQUENCES_KEY);
+        return consequences == null ? null : consequences.optJSONObject(0);
+    }
+
+    /**
+     * Converts the remote assets {@link JSONArray} into a {@code List} containing only valid asset URLs.
+     *
+     * @param remoteAssetsArray {@code JSONArray} containing the remote assets of a consequence
+     * @return {@code List<String>} of valid asset URLs, or null if the consequence has no remote assets array
+     */
+    private static List<String> getRemoteAssets(final JSONArray remoteAssetsArray) {
+        if (remoteAssetsArray == null) {
+            return null;
+        }
+
+        final List<String> remoteAssets = new ArrayList<>();
+        for (int index = 0; index < remoteAssetsArray.length(); index++) {
+            final String imageAssetUrl = remoteAssetsArray.optString(index, null);
+            if (UrlUtils.isValidUrl(imageAssetUrl)) {
+                Log.debug(LOG_TAG, SELF_TAG, "Image asset to be cached (%s) ", imageAssetUrl);
+                remoteAssets.add(imageAssetUrl);
+            }
+        }
+        return remoteAssets;
+    }
+}
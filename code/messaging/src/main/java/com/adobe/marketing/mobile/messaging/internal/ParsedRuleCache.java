@@ -0,0 +1,288 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.adobe.marketing.mobile.ExtensionApi;
+import com.adobe.marketing.mobile.services.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memoizes {@link ParsedPropositionItem}s keyed by the {@link PayloadItem} id and a hash of the item content, so that
+ * in-app message rules which did not change between two personalization requests are not parsed again.
+ * Items which are not memoized are restored from the {@link RuleSnapshot} when possible before being parsed.
+ * <p>
+ * Entries are kept for two generations. A new generation is started for each new personalization request; entries which
+ * are not referenced by the current generation are evicted when the following generation starts. This allows every chunk
+ * of a multi-chunk response to reuse rules parsed for the previous request.
+ * <p>
+ * Large payloads are parsed on a bounded worker pool. Workers only read the cache, the parsed items are merged back in
+ * payload order and stored in the cache on the calling thread.
+ */
+class ParsedRuleCache {
+    private final static String SELF_TAG = "ParsedRuleCache";
+    private final static String PARSER_THREAD_NAME = "AEPMessagingRuleParser";
+    private final static int MAX_PARSER_THREADS = 4;
+    private final static long PARSER_THREAD_KEEP_ALIVE_SECONDS = 30;
+    private final MessagingCacheUtilities messagingCacheUtilities;
+    private ExecutorService parserExecutor;
+    private Map<String, ParsedPropositionItem> currentEntries = new HashMap<>();
+    private Map<String, ParsedPropositionItem> previousEntries = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param messagingCacheUtilities {@link MessagingCacheUtilities} used to move the in-app message html of parsed items to disk
+     */
+    ParsedRuleCache(final MessagingCacheUtilities messagingCacheUtilities) {
+        this(messagingCacheUtilities, null);
+    }
+
+    @VisibleForTesting
+    ParsedRuleCache(final MessagingCacheUtilities messagingCacheUtilities, final ExecutorService parserExecutor) {
+        this.messagingCacheUtilities = messagingCacheUtilities;
+        this.parserExecutor = parserExecutor;
+    }
+
+    /**
+     * Starts a new cache generation. Entries which were not referenced since the last call to this method are evicted.
+     */
+    void startNewGeneration() {
+        previousEntries = currentEntries;
+        currentEntries = new HashMap<>();
+    }
+
+    /**
+     * Returns the {@link ParsedPropositionItem} for the provided {@link PayloadItem}, parsing the item content only if
+     * byte-identical content was not parsed previously.
+     *
+     * @param propositionInfo the {@link PropositionInfo} of the proposition containing the {@code payloadItem}
+     * @param payloadItem     the {@code PayloadItem} containing an in-app message rule
+     * @param extensionApi    the {@link ExtensionApi} used when parsing the rule
+     * @return a {@code ParsedPropositionItem} bound to {@code propositionInfo}, or null if the item does not contain a valid rule
+     */
+    ParsedPropositionItem getOrParse(final PropositionInfo propositionInfo, final PayloadItem payloadItem, final ExtensionApi extensionApi) {
+        final String lookupKey = getLookupKey(payloadItem);
+        final ParsedPropositionItem parsedItem = lookupOrParse(propositionInfo, payloadItem, lookupKey, extensionApi);
+        if (parsedItem == null) {
+            return null;
+        }
+
+        store(lookupKey, parsedItem);
+        return parsedItem;
+    }
+
+    /**
+     * Returns the {@link ParsedPropositionItem}s for all items of the provided {@code List<PropositionPayload>}.
+     * <p>
+     * If the number of items reaches {@code parallelThreshold}, the items are parsed on a bounded worker pool.
+     * The returned list always follows the order of the items in the propositions, so rule priority is not affected.
+     *
+     * @param propositions      {@code List<PropositionPayload>} containing the items to be parsed
+     * @param extensionApi      the {@link ExtensionApi} used when parsing the rules
+     * @param parallelThreshold {@code int} containing the minimum number of items to be parsed in parallel, values lower than 1 disable parallel parsing
+     * @return {@code List<ParsedPropositionItem>} with one entry per item, entries are null for items which do not contain a valid rule
+     */
+    List<ParsedPropositionItem> getOrParseAll(final List<PropositionPayload> propositions, final ExtensionApi extensionApi, final int parallelThreshold) {
+        final List<PropositionInfo> propositionInfos = new ArrayList<>();
+        final List<PayloadItem> payloadItems = new ArrayList<>();
+        final List<String> lookupKeys = new ArrayList<>();
+        for (final PropositionPayload proposition : propositions) {
+            for (final PayloadItem payloadItem : proposition.items) {
+                propositionInfos.add(proposition.propositionInfo);
+                payloadItems.add(payloadItem);
+                lookupKeys.add(getLookupKey(payloadItem));
+            }
+        }
+
+        final ParsedPropositionItem[] parsedItems = new ParsedPropositionItem[payloadItems.size()];
+        final boolean[] processed = new boolean[payloadItems.size()];
+        if (parallelThreshold > 0 && payloadItems.size() >= parallelThreshold) {
+            parseInParallel(propositionInfos, payloadItems, lookupKeys, extensionApi, parsedItems, processed);
+        }
+
+        // parse serially any items not handled by the worker pool
+        for (int index = 0; index < payloadItems.size(); index++) {
+            if (!processed[index]) {
+                parsedItems[index] = lookupOrParse(propositionInfos.get(index), payloadItems.get(index), lookupKeys.get(index), extensionApi);
+            }
+        }
+
+        for (int index = 0; index < parsedItems.length; index++) {
+            if (parsedItems[index] != null) {
+                store(lookupKeys.get(index), parsedItems[index]);
+            }
+        }
+
+        return Arrays.asList(parsedItems);
+    }
+
+    /**
+     * Splits the provided items into contiguous ranges and parses each range on the worker pool.
+     * Results are written to the slot matching the item index, {@code processed} is set for every completed slot.
+     */
+    private void parseInParallel(final List<PropositionInfo> propositionInfos, final List<PayloadItem> payloadItems, final List<String> lookupKeys,
+                                 final ExtensionApi extensionApi, final ParsedPropositionItem[] parsedItems, final boolean[] processed) {
+        final int itemCount = payloadItems.size();
+        final int rangeCount = Math.min(getParserThreadCount(), itemCount);
+        final int rangeSize = (itemCount + rangeCount - 1) / rangeCount;
+        Log.trace(LOG_TAG, SELF_TAG, "getOrParseAll - Parsing %d items on %d worker(s).", itemCount, rangeCount);
+
+        final List<Future<?>> futures = new ArrayList<>();
+        final List<Integer> rangeStarts = new ArrayList<>();
+        try {
+            final ExecutorService executor = getParserExecutor();
+            for (int start = 0; start < itemCount; start += rangeSize) {
+                final int rangeStart = start;
+                final int rangeEnd = Math.min(start + rangeSize, itemCount);
+                futures.add(executor.submit(() -> {
+                    for (int index = rangeStart; index < rangeEnd; index++) {
+                        parsedItems[index] = lookupOrParse(propositionInfos.get(index), payloadItems.get(index), lookupKeys.get(index), extensionApi);
+                    }
+                }));
+                rangeStarts.add(rangeStart);
+            }
+        } catch (final Exception exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "getOrParseAll - Unable to schedule parallel parsing, remaining items will be parsed serially: %s", exception.getLocalizedMessage());
+        }
+
+        for (int rangeIndex = 0; rangeIndex < futures.size(); rangeIndex++) {
+            try {
+                futures.get(rangeIndex).get();
+                final int rangeStart = rangeStarts.get(rangeIndex);
+                Arrays.fill(processed, rangeStart, Math.min(rangeStart + rangeSize, itemCount), true);
+            } catch (final InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                Log.debug(LOG_TAG, SELF_TAG, "getOrParseAll - Interrupted while waiting for parsed items, remaining items will be parsed serially.");
+                for (int remainingIndex = rangeIndex; remainingIndex < futures.size(); remainingIndex++) {
+                    futures.get(remainingIndex).cancel(true);
+                }
+                return;
+            } catch (final Exception exception) {
+                Log.debug(LOG_TAG, SELF_TAG, "getOrParseAll - Parallel parsing failed, remaining items will be parsed serially: %s", exception.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the cached {@link ParsedPropositionItem} for the provided {@link PayloadItem} or parses it.
+     * This method only reads the cache and can be called from the parser worker threads.
+     */
+    private ParsedPropositionItem lookupOrParse(final PropositionInfo propositionInfo, final PayloadItem payloadItem, final String key, final ExtensionApi extensionApi) {
+        if (key == null) {
+            return null;
+        }
+
+        ParsedPropositionItem parsedItem = currentEntries.get(key);
+        if (parsedItem == null) {
+            parsedItem = previousEntries.get(key);
+        }
+
+        if (parsedItem != null && !isHtmlRemoved(parsedItem)) {
+            Log.trace(LOG_TAG, SELF_TAG, "getOrParse - Reusing previously parsed rule for item (%s).", payloadItem.id);
+            return parsedItem.withPropositionInfo(propositionInfo);
+        }
+
+        final RuleSnapshot ruleSnapshot = messagingCacheUtilities == null ? null : messagingCacheUtilities.getRuleSnapshot();
+        if (ruleSnapshot != null) {
+            final ParsedPropositionItem restoredItem = ruleSnapshot.restore(propositionInfo, payloadItem, key);
+            if (restoredItem != null && !isHtmlRemoved(restoredItem)) {
+                Log.trace(LOG_TAG, SELF_TAG, "getOrParse - Restored rule for item (%s) from the rule snapshot.", payloadItem.id);
+                return restoredItem;
+            }
+        }
+
+        return ParsedPropositionItem.create(propositionInfo, payloadItem, key, messagingCacheUtilities, extensionApi);
+    }
+
+    /**
+     * Returns the key the provided {@link PayloadItem} is looked up with, the content key of the item as received.
+     *
+     * @param payloadItem the {@code PayloadItem} containing an in-app message rule
+     * @return {@code String} containing the lookup key, or null if the item has no content
+     */
+    private static String getLookupKey(final PayloadItem payloadItem) {
+        return payloadItem == null || payloadItem.data == null ? null : ParsedPropositionItem.getContentKey(payloadItem);
+    }
+
+    /**
+     * Stores a parsed item under the content key of its original content, and under the key it was looked up with.
+     * Items whose html was moved to disk are cached with the externalized content, so the rules parsed by the warm-load
+     * from the cached items are found again when the cached items are loaded into the rules engine.
+     */
+    private void store(final String lookupKey, final ParsedPropositionItem parsedItem) {
+        currentEntries.put(parsedItem.contentKey, parsedItem);
+        if (lookupKey != null && !lookupKey.equals(parsedItem.contentKey)) {
+            currentEntries.put(lookupKey, parsedItem);
+        }
+    }
+
+    /**
+     * Determines whether the html of a parsed rule was removed from the cache, in which case the rule is parsed again
+     * so its html is stored again.
+     */
+    private boolean isHtmlRemoved(final ParsedPropositionItem parsedItem) {
+        return messagingCacheUtilities != null && messagingCacheUtilities.isHtmlRemoved(parsedItem.getHtmlHandle());
+    }
+
+    private ExecutorService getParserExecutor() {
+        if (parserExecutor == null) {
+            final int threadCount = getParserThreadCount();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, PARSER_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        final Thread thread = new Thread(runnable, PARSER_THREAD_NAME);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // no parser threads are kept alive between personalization responses
+            executor.allowCoreThreadTimeOut(true);
+            parserExecutor = executor;
+        }
+        return parserExecutor;
+    }
+
+    private static int getParserThreadCount() {
+        return Math.max(1, Math.min(MAX_PARSER_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Returns the number of parsed rules currently held by this cache.
+     *
+     * @return {@code int} containing the number of distinct cached rules across both generations
+     */
+    int size() {
+        final Set<String> contentKeys = new HashSet<>();
+        for (final ParsedPropositionItem parsedItem : currentEntries.values()) {
+            contentKeys.add(parsedItem.contentKey);
+        }
+        for (final ParsedPropositionItem parsedItem : previousEntries.values()) {
+            contentKeys.add(parsedItem.contentKey);
+        }
+        return contentKeys.size();
+    }
+}
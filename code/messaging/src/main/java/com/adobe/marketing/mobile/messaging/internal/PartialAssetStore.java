@@ -0,0 +1,208 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.util.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Persists the bytes received for large asset downloads so an interrupted download is resumed with an HTTP range request
+ * instead of being restarted.
+ * <p>
+ * The received bytes of an asset are stored in a {@code .partial} file next to the cached assets, along with the validator
+ * ({@code ETag} or {@code Last-Modified}) of the response they belong to. A download is only resumed with an {@code If-Range}
+ * request for that validator, so bytes of different versions of an asset are never combined. The files are named after the
+ * hash of the asset url, so the {@link AssetGarbageCollector} removes them once the asset is no longer used.
+ */
+final class PartialAssetStore {
+    private final static String SELF_TAG = "PartialAssetStore";
+    private final static String PARTIAL_FILE_SUFFIX = ".partial";
+    private final static String VALIDATOR_FILE_SUFFIX = ".partial.validator";
+    private final static String CONTENT_RANGE_UNIT = "bytes ";
+
+    private final String assetCacheLocation;
+
+    /**
+     * Constructor.
+     *
+     * @param assetCacheLocation {@code String} containing the asset cache location
+     */
+    PartialAssetStore(final String assetCacheLocation) {
+        this.assetCacheLocation = assetCacheLocation;
+    }
+
+    /**
+     * Returns the validator of the response the stored bytes of an asset belong to.
+     *
+     * @param url {@code String} containing the asset url
+     * @return {@code String} containing the validator, or null if no bytes are stored for the asset
+     */
+    String getValidator(final String url) {
+        final File validatorFile = getFile(url, VALIDATOR_FILE_SUFFIX);
+        final File partialFile = getFile(url, PARTIAL_FILE_SUFFIX);
+        if (validatorFile == null || !validatorFile.isFile() || !partialFile.isFile() || partialFile.length() == 0) {
+            return null;
+        }
+
+        try (final InputStream validatorStream = new FileInputStream(validatorFile)) {
+            final byte[] validator = new byte[(int) validatorFile.length()];
+            int offset = 0;
+            int bytesRead;
+            while (offset < validator.length && (bytesRead = validatorStream.read(validator, offset, validator.length - offset)) != -1) {
+                offset += bytesRead;
+            }
+            final String value = new String(validator, 0, offset, StandardCharsets.UTF_8);
+            return StringUtils.isNullOrEmpty(value) ? null : value;
+        } catch (final IOException exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "getValidator - Unable to read the validator of the partial asset %s: %s", url, exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of bytes stored for an asset, which is the offset the download is resumed from.
+     *
+     * @param url {@code String} containing the asset url
+     * @return {@code long} containing the number of stored bytes
+     */
+    long getLength(final String url) {
+        final File partialFile = getFile(url, PARTIAL_FILE_SUFFIX);
+        return partialFile != null && partialFile.isFile() ? partialFile.length() : 0;
+    }
+
+    /**
+     * Determines whether a {@code Content-Range} response header continues the bytes stored for an asset.
+     *
+     * @param url          {@code String} containing the asset url
+     * @param contentRange {@code String} containing the {@code Content-Range} header of a partial response
+     * @return {@code boolean} indicating whether the partial response starts where the stored bytes end
+     */
+    boolean continuesFrom(final String url, final String contentRange) {
+        if (StringUtils.isNullOrEmpty(contentRange) || !contentRange.startsWith(CONTENT_RANGE_UNIT)) {
+            return false;
+        }
+
+        final int separatorIndex = contentRange.indexOf('-');
+        if (separatorIndex <= CONTENT_RANGE_UNIT.length()) {
+            return false;
+        }
+
+        try {
+            final long start = Long.parseLong(contentRange.substring(CONTENT_RANGE_UNIT.length(), separatorIndex).trim());
+            return start == getLength(url);
+        } catch (final NumberFormatException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores the bytes received for an asset. The bytes read before a failure are kept so the download can be resumed.
+     *
+     * @param url       {@code String} containing the asset url
+     * @param validator {@code String} containing the validator of the response
+     * @param data      {@link InputStream} containing the response body
+     * @param append    {@code boolean} indicating whether the response continues the stored bytes
+     * @return {@code boolean} indicating whether the whole response body was stored
+     */
+    boolean write(final String url, final String validator, final InputStream data, final boolean append) {
+        final File partialFile = getFile(url, PARTIAL_FILE_SUFFIX);
+        if (partialFile == null || data == null) {
+            return false;
+        }
+
+        if (!append && !writeValidator(url, validator)) {
+            return false;
+        }
+
+        try (final OutputStream partialStream = new FileOutputStream(partialFile, append)) {
+            final byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = data.read(buffer)) != -1) {
+                partialStream.write(buffer, 0, bytesRead);
+            }
+            return true;
+        } catch (final IOException exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "write - Download of %s interrupted after %d bytes, it will be resumed: %s", url, partialFile.length(), exception.getMessage());
+            return false;
+        } finally {
+            try {
+                data.close();
+            } catch (final IOException ignored) {
+                // nothing to do, the received bytes have been stored
+            }
+        }
+    }
+
+    /**
+     * Opens the bytes stored for an asset.
+     *
+     * @param url {@code String} containing the asset url
+     * @return {@link InputStream} of the stored bytes, or null if they cannot be read
+     */
+    InputStream open(final String url) {
+        final File partialFile = getFile(url, PARTIAL_FILE_SUFFIX);
+        if (partialFile == null) {
+            return null;
+        }
+
+        try {
+            return new FileInputStream(partialFile);
+        } catch (final IOException exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "open - Unable to read the partial asset %s: %s", url, exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the bytes stored for an asset.
+     *
+     * @param url {@code String} containing the asset url
+     */
+    void discard(final String url) {
+        final File partialFile = getFile(url, PARTIAL_FILE_SUFFIX);
+        if (partialFile == null) {
+            return;
+        }
+
+        partialFile.delete();
+        getFile(url, VALIDATOR_FILE_SUFFIX).delete();
+    }
+
+    private boolean writeValidator(final String url, final String validator) {
+        try (final OutputStream validatorStream = new FileOutputStream(getFile(url, VALIDATOR_FILE_SUFFIX))) {
+            validatorStream.write(validator.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (final IOException exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "writeValidator - Unable to store the validator of the partial asset %s: %s", url, exception.getMessage());
+            return false;
+        }
+    }
+
+    private File getFile(final String url, final String suffix) {
+        if (StringUtils.isNullOrEmpty(assetCacheLocation) || StringUtils.isNullOrEmpty(url)) {
+            return null;
+        }
+        return new File(assetCacheLocation, StringEncoder.sha2hash(url) + suffix);
+    }
+}
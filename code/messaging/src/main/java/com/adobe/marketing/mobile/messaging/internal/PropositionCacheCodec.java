@@ -0,0 +1,365 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.CONTENT;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.DATA;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.ID;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.SCHEMA;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.SCOPE;
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.PayloadKeys.SCOPE_DETAILS;
+
+import com.adobe.marketing.mobile.services.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes and decodes the cached {@link PropositionPayload}s using a compact binary format.
+ * <p>
+ * Format (big-endian):
+ * <ul>
+ *     <li>header: {@code int} magic, {@code byte} format version, {@code int} payload length, {@code int} CRC32 of the payload</li>
+ *     <li>payload: {@code int} proposition count followed by each proposition</li>
+ *     <li>proposition: {@code byte} presence flag, id, scope, typed scopeDetails map, {@code int} item count and each item</li>
+ *     <li>item: id, schema, data id and data content</li>
+ * </ul>
+ * Strings are written as an {@code int} byte length ({@code -1} for null) followed by the UTF-8 bytes.
+ * Values of the scopeDetails map are prefixed by a {@code byte} type tag, values of an unsupported type are written as strings.
+ */
+final class PropositionCacheCodec {
+    private final static String SELF_TAG = "PropositionCacheCodec";
+    // "AEPM"
+    private final static int MAGIC = 0x4145504D;
+    private final static byte FORMAT_VERSION = 1;
+    static final int HEADER_LENGTH = 13;
+
+    private final static byte TAG_NULL = 0;
+    private final static byte TAG_STRING = 1;
+    private final static byte TAG_BOOLEAN = 2;
+    private final static byte TAG_INTEGER = 3;
+    private final static byte TAG_LONG = 4;
+    private final static byte TAG_FLOAT = 5;
+    private final static byte TAG_DOUBLE = 6;
+    private final static byte TAG_MAP = 7;
+    private final static byte TAG_LIST = 8;
+
+    private PropositionCacheCodec() {
+    }
+
+    /**
+     * Determines whether the provided bytes start with the header of this format.
+     *
+     * @param data {@code byte[]} containing the cached data
+     * @return {@code boolean} indicating whether {@code data} was written by {@link #encode(List)}
+     */
+    static boolean isEncoded(final byte[] data) {
+        return data != null && data.length >= HEADER_LENGTH && ByteBuffer.wrap(data).getInt() == MAGIC;
+    }
+
+    /**
+     * Encodes the provided {@code List<PropositionPayload>}.
+     *
+     * @param propositions {@code List<PropositionPayload>} to be encoded
+     * @return {@code byte[]} containing the encoded propositions, or null if an error occurred
+     */
+    static byte[] encode(final List<PropositionPayload> propositions) {
+        try {
+            final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            final DataOutputStream payload = new DataOutputStream(payloadBytes);
+            payload.writeInt(propositions.size());
+            for (final PropositionPayload proposition : propositions) {
+                writeProposition(payload, proposition);
+            }
+            payload.flush();
+
+            final byte[] payloadArray = payloadBytes.toByteArray();
+            final CRC32 crc = new CRC32();
+            crc.update(payloadArray, 0, payloadArray.length);
+
+            final ByteArrayOutputStream encodedBytes = new ByteArrayOutputStream(HEADER_LENGTH + payloadArray.length);
+            final DataOutputStream encoded = new DataOutputStream(encodedBytes);
+            encoded.writeInt(MAGIC);
+            encoded.writeByte(FORMAT_VERSION);
+            encoded.writeInt(payloadArray.length);
+            encoded.writeInt((int) crc.getValue());
+            encoded.write(payloadArray);
+            encoded.flush();
+            return encodedBytes.toByteArray();
+        } catch (final IOException | IllegalArgumentException exception) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to encode the propositions: %s", exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decodes propositions previously encoded with {@link #encode(List)}.
+     *
+     * @param buffer {@link ByteBuffer} positioned at the start of the encoded data, the buffer is not consumed
+     * @return {@code List<PropositionPayload>} containing the decoded propositions, or null if the data is invalid or corrupted
+     */
+    static List<PropositionPayload> decode(final ByteBuffer buffer) {
+        try {
+            final ByteBuffer header = buffer.duplicate();
+            if (header.getInt() != MAGIC) {
+                Log.debug(LOG_TAG, SELF_TAG, "Unable to decode the cached propositions, unknown format.");
+                return null;
+            }
+
+            final byte version = header.get();
+            if (version != FORMAT_VERSION) {
+                Log.debug(LOG_TAG, SELF_TAG, "Unable to decode the cached propositions, unsupported format version (%d).", version);
+                return null;
+            }
+
+            final int payloadLength = header.getInt();
+            final int expectedCrc = header.getInt();
+            if (payloadLength < 4 || payloadLength > header.remaining()) {
+                Log.debug(LOG_TAG, SELF_TAG, "Unable to decode the cached propositions, the data is truncated.");
+                return null;
+            }
+
+            final ByteBuffer payload = header.slice();
+            payload.limit(payloadLength);
+            if (getCrc(payload) != expectedCrc) {
+                Log.debug(LOG_TAG, SELF_TAG, "Unable to decode the cached propositions, checksum mismatch.");
+                return null;
+            }
+
+            final int propositionCount = payload.getInt();
+            if (propositionCount < 0) {
+                Log.debug(LOG_TAG, SELF_TAG, "Unable to decode the cached propositions, invalid proposition count (%d).", propositionCount);
+                return null;
+            }
+
+            final List<PropositionPayload> propositions = new ArrayList<>(Math.min(propositionCount, payload.remaining()));
+            for (int index = 0; index < propositionCount; index++) {
+                final PropositionPayload proposition = readProposition(payload);
+                if (proposition != null) {
+                    propositions.add(proposition);
+                }
+            }
+            return propositions;
+        } catch (final BufferUnderflowException | IllegalArgumentException | ClassCastException exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to decode the cached propositions, the data is malformed: %s", exception.getMessage());
+            return null;
+        }
+    }
+
+    // ========================================================================================================
+    // Encoding
+    // ========================================================================================================
+
+    private static void writeProposition(final DataOutputStream output, final PropositionPayload proposition) throws IOException {
+        final PropositionInfo propositionInfo = proposition == null ? null : proposition.propositionInfo;
+        if (propositionInfo == null) {
+            output.writeByte(0);
+            return;
+        }
+
+        output.writeByte(1);
+        writeString(output, propositionInfo.id);
+        writeString(output, propositionInfo.scope);
+        writeValue(output, propositionInfo.scopeDetails);
+
+        final List<PayloadItem> items = proposition.items;
+        final int itemCount = items == null ? 0 : items.size();
+        output.writeInt(itemCount);
+        for (int index = 0; index < itemCount; index++) {
+            final PayloadItem item = items.get(index);
+            writeString(output, item.id);
+            writeString(output, item.schema);
+            writeString(output, item.data == null ? null : item.data.id);
+            writeString(output, item.data == null ? null : item.data.content);
+        }
+    }
+
+    static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static void writeValue(final DataOutputStream output, final Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            output.writeByte(TAG_STRING);
+            writeString(output, (String) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TAG_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TAG_INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TAG_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            output.writeByte(TAG_FLOAT);
+            output.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            output.writeByte(TAG_DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            output.writeByte(TAG_MAP);
+            output.writeInt(map.size());
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(output, String.valueOf(entry.getKey()));
+                writeValue(output, entry.getValue());
+            }
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            output.writeByte(TAG_LIST);
+            output.writeInt(list.size());
+            for (final Object element : list) {
+                writeValue(output, element);
+            }
+        } else if (value instanceof Object[]) {
+            writeValue(output, Arrays.asList((Object[]) value));
+        } else {
+            // an unsupported value does not prevent the propositions from being cached, its string form is kept instead
+            Log.debug(LOG_TAG, SELF_TAG, "Caching a value of unsupported type (%s) as a string.", value.getClass().getName());
+            output.writeByte(TAG_STRING);
+            writeString(output, String.valueOf(value));
+        }
+    }
+
+    // ========================================================================================================
+    // Decoding
+    // ========================================================================================================
+
+    private static PropositionPayload readProposition(final ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+
+        final Map<String, Object> propositionInfoMap = new HashMap<>();
+        propositionInfoMap.put(ID, readString(buffer));
+        propositionInfoMap.put(SCOPE, readString(buffer));
+        propositionInfoMap.put(SCOPE_DETAILS, readValue(buffer));
+
+        final int itemCount = buffer.getInt();
+        final List<Map<String, Object>> items = new ArrayList<>(Math.max(0, itemCount));
+        for (int index = 0; index < itemCount; index++) {
+            final Map<String, Object> item = new HashMap<>();
+            item.put(ID, readString(buffer));
+            item.put(SCHEMA, readString(buffer));
+            final Map<String, Object> data = new HashMap<>();
+            data.put(ID, readString(buffer));
+            data.put(CONTENT, readString(buffer));
+            item.put(DATA, data);
+            items.add(item);
+        }
+
+        try {
+            return PropositionPayload.create(PropositionInfo.create(propositionInfoMap), items);
+        } catch (final Exception exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "Skipping cached proposition, unable to create PropositionInfo: %s", exception.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        final String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    static Object readValue(final ByteBuffer buffer) {
+        final byte tag = buffer.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(buffer);
+            case TAG_BOOLEAN:
+                return buffer.get() != 0;
+            case TAG_INTEGER:
+                return buffer.getInt();
+            case TAG_LONG:
+                return buffer.getLong();
+            case TAG_FLOAT:
+                return buffer.getFloat();
+            case TAG_DOUBLE:
+                return buffer.getDouble();
+            case TAG_MAP: {
+                final int size = buffer.getInt();
+                final Map<String, Object> map = new HashMap<>();
+                for (int index = 0; index < size; index++) {
+                    final String key = readString(buffer);
+                    map.put(key, readValue(buffer));
+                }
+                return map;
+            }
+            case TAG_LIST: {
+                final int size = buffer.getInt();
+                final List<Object> list = new ArrayList<>(Math.max(0, Math.min(size, buffer.remaining())));
+                for (int index = 0; index < size; index++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown value type tag: " + tag);
+        }
+    }
+
+    static int getCrc(final ByteBuffer payload) {
+        final CRC32 crc = new CRC32();
+        if (payload.hasArray()) {
+            crc.update(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        } else {
+            final ByteBuffer duplicate = payload.duplicate();
+            final byte[] chunk = new byte[8192];
+            while (duplicate.hasRemaining()) {
+                final int length = Math.min(chunk.length, duplicate.remaining());
+                duplicate.get(chunk, 0, length);
+                crc.update(chunk, 0, length);
+            }
+        }
+        return (int) crc.getValue();
+    }
+}
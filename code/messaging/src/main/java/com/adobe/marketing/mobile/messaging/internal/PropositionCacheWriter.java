@@ -0,0 +1,171 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.adobe.marketing.mobile.services.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists changes to the in-memory propositions, and the matching rule snapshot, in the background.
+ * <p>
+ * Updates requested within the write delay are coalesced into a single cache update, written on a single background thread.
+ * {@link #flush()} writes any pending update immediately on the calling thread.
+ */
+final class PropositionCacheWriter {
+    private final static String SELF_TAG = "PropositionCacheWriter";
+    private final static String THREAD_NAME = "AEPMessagingCacheWriter";
+    private final static long THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private final MessagingCacheUtilities messagingCacheUtilities;
+    private final long writeDelayMillis;
+    // serializes the cache writes, the pending state below is guarded by this
+    private final Object writeMutex = new Object();
+    private ScheduledExecutorService executorService;
+    private ScheduledFuture<?> scheduledWrite;
+    private List<PropositionPayload> pendingPropositions = new ArrayList<>();
+    private List<ParsedPropositionItem> pendingRuleSnapshot;
+    private boolean pendingClear;
+    private boolean hasPendingWrite;
+
+    PropositionCacheWriter(final MessagingCacheUtilities messagingCacheUtilities) {
+        this(messagingCacheUtilities, null, MessagingConstants.PROPOSITION_CACHE_WRITE_DELAY_MS);
+    }
+
+    @VisibleForTesting
+    PropositionCacheWriter(final MessagingCacheUtilities messagingCacheUtilities, final ScheduledExecutorService executorService, final long writeDelayMillis) {
+        this.messagingCacheUtilities = messagingCacheUtilities;
+        this.executorService = executorService;
+        this.writeDelayMillis = writeDelayMillis;
+    }
+
+    /**
+     * Schedules a cache update.
+     * <p>
+     * The propositions are copied so the caller can keep modifying the provided list. Clearing the cached propositions
+     * also discards the pending propositions which have not been written yet.
+     *
+     * @param clearExisting {@code boolean} indicating whether the cached propositions should be discarded
+     * @param addedPropositions {@code List<PropositionPayload>} containing the propositions to be added to the cache
+     */
+    void schedule(final boolean clearExisting, final List<PropositionPayload> addedPropositions) {
+        synchronized (this) {
+            if (clearExisting) {
+                pendingClear = true;
+                pendingPropositions.clear();
+            }
+            if (addedPropositions != null) {
+                pendingPropositions.addAll(addedPropositions);
+            }
+            hasPendingWrite = true;
+        }
+
+        scheduleWrite();
+    }
+
+    /**
+     * Schedules a rule snapshot update, written after the pending cache update. Only the latest loaded items are written.
+     *
+     * @param loadedItems {@code List<ParsedPropositionItem>} containing the items loaded in the rules engine
+     */
+    void scheduleRuleSnapshot(final List<ParsedPropositionItem> loadedItems) {
+        synchronized (this) {
+            pendingRuleSnapshot = new ArrayList<>(loadedItems);
+        }
+
+        scheduleWrite();
+    }
+
+    /**
+     * Writes any pending propositions and rule snapshot to the cache on the calling thread.
+     */
+    void flush() {
+        writePendingChanges();
+    }
+
+    private void scheduleWrite() {
+        synchronized (this) {
+            if (scheduledWrite != null) {
+                // the scheduled write will pick up the latest changes
+                return;
+            }
+
+            try {
+                scheduledWrite = getExecutorService().schedule(this::writePendingChanges, writeDelayMillis, TimeUnit.MILLISECONDS);
+                return;
+            } catch (final Exception exception) {
+                Log.debug(LOG_TAG, SELF_TAG, "Unable to schedule the proposition cache write, writing immediately: %s", exception.getLocalizedMessage());
+            }
+        }
+
+        writePendingChanges();
+    }
+
+    private void writePendingChanges() {
+        synchronized (writeMutex) {
+            final boolean writePropositions;
+            final boolean clearExisting;
+            final List<PropositionPayload> propositions;
+            final List<ParsedPropositionItem> ruleSnapshotItems;
+            synchronized (this) {
+                if (!hasPendingWrite && pendingRuleSnapshot == null) {
+                    return;
+                }
+
+                writePropositions = hasPendingWrite;
+                clearExisting = pendingClear;
+                propositions = pendingPropositions;
+                ruleSnapshotItems = pendingRuleSnapshot;
+                pendingClear = false;
+                pendingPropositions = new ArrayList<>();
+                pendingRuleSnapshot = null;
+                hasPendingWrite = false;
+                if (scheduledWrite != null) {
+                    scheduledWrite.cancel(false);
+                    scheduledWrite = null;
+                }
+            }
+
+            if (writePropositions) {
+                Log.trace(LOG_TAG, SELF_TAG, "Updating the proposition cache (clear existing: %b, added: %d).", clearExisting, propositions.size());
+                messagingCacheUtilities.updateCachedPropositions(clearExisting, propositions);
+            }
+            if (ruleSnapshotItems != null) {
+                messagingCacheUtilities.cacheRuleSnapshot(ruleSnapshotItems);
+            }
+        }
+    }
+
+    private ScheduledExecutorService getExecutorService() {
+        if (executorService == null) {
+            final ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduledThreadPoolExecutor.setKeepAliveTime(THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            scheduledThreadPoolExecutor.allowCoreThreadTimeOut(true);
+            executorService = scheduledThreadPoolExecutor;
+        }
+        return executorService;
+    }
+}
@@ -0,0 +1,359 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.adobe.marketing.mobile.services.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of the cached propositions.
+ * <p>
+ * Each update is appended as a record instead of rewriting all cached propositions, an add record contains
+ * the propositions received in a single response (encoded with {@link PropositionCacheCodec}) and a clear record
+ * discards all propositions recorded before it. {@link #replay()} rebuilds the current propositions from the records.
+ * <p>
+ * Format (big-endian): {@code int} magic and {@code byte} version header followed by the records, each record is a
+ * {@code byte} record type and an {@code int} body length followed by the body. A partially written record at the end
+ * of the journal is discarded when the journal is replayed.
+ * <p>
+ * Once the journal grows larger than {@link MessagingConstants#PROPOSITION_JOURNAL_COMPACTION_RATIO} times the size
+ * of the records still in use, {@link #needsCompaction()} returns true and {@link #compact()} rewrites the journal
+ * with a single add record.
+ */
+final class PropositionJournal {
+    private final static String SELF_TAG = "PropositionJournal";
+    // "AEPJ"
+    private final static int MAGIC = 0x4145504A;
+    private final static byte FORMAT_VERSION = 1;
+    private final static int HEADER_LENGTH = 5;
+    private final static int RECORD_HEADER_LENGTH = 5;
+    private final static byte RECORD_TYPE_ADD = 1;
+    private final static byte RECORD_TYPE_CLEAR = 2;
+    private final static String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final File journalFile;
+    private final long compactionThresholdBytes;
+    // size of the journal file and of the add records following the last clear record, -1 until the journal is read
+    private long journalLength = -1;
+    private long liveRecordsLength = -1;
+
+    PropositionJournal(final File journalFile) {
+        this(journalFile, MessagingConstants.PROPOSITION_JOURNAL_COMPACTION_MIN_BYTES);
+    }
+
+    @VisibleForTesting
+    PropositionJournal(final File journalFile, final long compactionThresholdBytes) {
+        this.journalFile = journalFile;
+        this.compactionThresholdBytes = compactionThresholdBytes;
+    }
+
+    /**
+     * @return {@code boolean} indicating whether the journal file exists
+     */
+    synchronized boolean exists() {
+        return journalFile.isFile();
+    }
+
+    /**
+     * Appends an add record containing the provided propositions.
+     *
+     * @param propositions {@code List<PropositionPayload>} to be added
+     * @return {@code boolean} indicating whether the record was written
+     */
+    synchronized boolean appendPropositions(final List<PropositionPayload> propositions) {
+        final byte[] encodedPropositions = PropositionCacheCodec.encode(propositions);
+        if (encodedPropositions == null) {
+            return false;
+        }
+        return append(RECORD_TYPE_ADD, encodedPropositions);
+    }
+
+    /**
+     * Appends a clear record discarding all previously added propositions.
+     *
+     * @return {@code boolean} indicating whether the record was written
+     */
+    synchronized boolean appendClear() {
+        return append(RECORD_TYPE_CLEAR, new byte[0]);
+    }
+
+    /**
+     * Rebuilds the propositions by replaying the journal records.
+     *
+     * @return {@code List<PropositionPayload>} containing the current propositions, or null if the journal does not exist or cannot be read
+     */
+    synchronized List<PropositionPayload> replay() {
+        if (!journalFile.isFile()) {
+            journalLength = 0;
+            liveRecordsLength = 0;
+            return null;
+        }
+
+        final ByteBuffer journal = map();
+        if (journal == null) {
+            return null;
+        }
+
+        if (journal.remaining() < HEADER_LENGTH || journal.getInt() != MAGIC || journal.get() != FORMAT_VERSION) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to replay the proposition journal, unknown format. Discarding the journal.");
+            delete();
+            return null;
+        }
+
+        final List<PropositionPayload> propositions = new ArrayList<>();
+        long liveLength = 0;
+        while (journal.remaining() >= RECORD_HEADER_LENGTH) {
+            final int recordStart = journal.position();
+            final byte recordType = journal.get();
+            final int bodyLength = journal.getInt();
+            if (bodyLength < 0 || bodyLength > journal.remaining()) {
+                journal.position(recordStart);
+                break;
+            }
+
+            final ByteBuffer body = journal.slice();
+            body.limit(bodyLength);
+            if (recordType == RECORD_TYPE_CLEAR) {
+                propositions.clear();
+                liveLength = 0;
+            } else if (recordType == RECORD_TYPE_ADD) {
+                final List<PropositionPayload> addedPropositions = PropositionCacheCodec.decode(body);
+                if (addedPropositions == null) {
+                    journal.position(recordStart);
+                    break;
+                }
+                propositions.addAll(addedPropositions);
+                liveLength += RECORD_HEADER_LENGTH + bodyLength;
+            } else {
+                journal.position(recordStart);
+                break;
+            }
+            journal.position(recordStart + RECORD_HEADER_LENGTH + bodyLength);
+        }
+
+        if (journal.hasRemaining()) {
+            Log.debug(LOG_TAG, SELF_TAG, "Discarding %d byte(s) of incomplete records at the end of the proposition journal.", journal.remaining());
+            truncate(journal.position());
+        }
+
+        journalLength = journal.position();
+        liveRecordsLength = liveLength;
+        return propositions;
+    }
+
+    /**
+     * @return {@code boolean} indicating whether the journal is large enough compared to the records in use to be compacted
+     */
+    synchronized boolean needsCompaction() {
+        if (journalLength < 0) {
+            replay();
+        }
+        return journalLength > compactionThresholdBytes
+                && journalLength > (HEADER_LENGTH + liveRecordsLength) * MessagingConstants.PROPOSITION_JOURNAL_COMPACTION_RATIO;
+    }
+
+    /**
+     * Rewrites the journal with a single add record containing the current propositions.
+     *
+     * @return {@code boolean} indicating whether the journal was compacted
+     */
+    synchronized boolean compact() {
+        final List<PropositionPayload> propositions = replay();
+        if (propositions == null) {
+            return false;
+        }
+        final long previousLength = journalLength;
+        final boolean compacted = rewrite(propositions);
+        if (compacted) {
+            Log.debug(LOG_TAG, SELF_TAG, "Compacted the proposition journal from %d to %d byte(s).", previousLength, journalLength);
+        }
+        return compacted;
+    }
+
+    /**
+     * Atomically replaces the journal with a single add record containing the provided propositions.
+     *
+     * @param propositions {@code List<PropositionPayload>} to be written
+     * @return {@code boolean} indicating whether the journal was written
+     */
+    synchronized boolean rewrite(final List<PropositionPayload> propositions) {
+        final ByteArrayOutputStream journalBytes = new ByteArrayOutputStream();
+        try {
+            final DataOutputStream journal = new DataOutputStream(journalBytes);
+            writeHeader(journal);
+            if (propositions != null && !propositions.isEmpty()) {
+                final byte[] encodedPropositions = PropositionCacheCodec.encode(propositions);
+                if (encodedPropositions == null) {
+                    return false;
+                }
+                writeRecord(journal, RECORD_TYPE_ADD, encodedPropositions);
+            }
+            journal.flush();
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to encode the proposition journal: %s", ioException.getMessage());
+            return false;
+        }
+
+        final File parentDirectory = journalFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists() && !parentDirectory.mkdirs()) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to create the proposition journal directory.");
+            return false;
+        }
+
+        final byte[] data = journalBytes.toByteArray();
+        final File temporaryFile = new File(journalFile.getPath() + TEMPORARY_FILE_SUFFIX);
+        if (!write(temporaryFile, data, false) || !temporaryFile.renameTo(journalFile)) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to rewrite the proposition journal.");
+            temporaryFile.delete();
+            return false;
+        }
+
+        journalLength = data.length;
+        liveRecordsLength = data.length - HEADER_LENGTH;
+        return true;
+    }
+
+    /**
+     * Deletes the journal.
+     */
+    synchronized void delete() {
+        if (journalFile.exists() && !journalFile.delete()) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to delete the proposition journal.");
+        }
+        journalLength = 0;
+        liveRecordsLength = 0;
+    }
+
+    private boolean append(final byte recordType, final byte[] body) {
+        if (journalLength < 0) {
+            // read the journal once so the record sizes are known and a partially written record is discarded
+            replay();
+        }
+
+        final boolean createJournal = !journalFile.isFile();
+        final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(HEADER_LENGTH + RECORD_HEADER_LENGTH + body.length);
+        try {
+            final DataOutputStream record = new DataOutputStream(recordBytes);
+            if (createJournal) {
+                writeHeader(record);
+            }
+            writeRecord(record, recordType, body);
+            record.flush();
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to encode the proposition journal record: %s", ioException.getMessage());
+            return false;
+        }
+
+        final File parentDirectory = journalFile.getParentFile();
+        if (createJournal && parentDirectory != null && !parentDirectory.exists() && !parentDirectory.mkdirs()) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to create the proposition journal directory.");
+            return false;
+        }
+
+        if (!write(journalFile, recordBytes.toByteArray(), !createJournal)) {
+            return false;
+        }
+
+        journalLength = (createJournal ? 0 : journalLength) + recordBytes.size();
+        if (recordType == RECORD_TYPE_CLEAR) {
+            liveRecordsLength = 0;
+        } else {
+            liveRecordsLength = (createJournal ? 0 : liveRecordsLength) + RECORD_HEADER_LENGTH + body.length;
+        }
+        return true;
+    }
+
+    private static void writeHeader(final DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(FORMAT_VERSION);
+    }
+
+    private static void writeRecord(final DataOutputStream output, final byte recordType, final byte[] body) throws IOException {
+        output.writeByte(recordType);
+        output.writeInt(body.length);
+        output.write(body);
+    }
+
+    private boolean write(final File file, final byte[] data, final boolean append) {
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(file, append);
+            fileOutputStream.write(data);
+            fileOutputStream.flush();
+            fileOutputStream.getFD().sync();
+            return true;
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to write to the proposition journal (%s): %s", file.getName(), ioException.getMessage());
+            return false;
+        } finally {
+            if (fileOutputStream != null) {
+                try {
+                    fileOutputStream.close();
+                } catch (final IOException ioException) {
+                    Log.warning(LOG_TAG, SELF_TAG, "Unable to close the FileOutputStream (%s) ", ioException);
+                }
+            }
+        }
+    }
+
+    private ByteBuffer map() {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(journalFile, "r");
+            final FileChannel fileChannel = randomAccessFile.getChannel();
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to read the proposition journal: %s", ioException.getMessage());
+            return null;
+        } finally {
+            closeFile(randomAccessFile);
+        }
+    }
+
+    private void truncate(final long length) {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(journalFile, "rw");
+            randomAccessFile.setLength(length);
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to truncate the proposition journal: %s", ioException.getMessage());
+        } finally {
+            closeFile(randomAccessFile);
+        }
+    }
+
+    private void closeFile(final RandomAccessFile randomAccessFile) {
+        if (randomAccessFile == null) {
+            return;
+        }
+        try {
+            randomAccessFile.close();
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to close the RandomAccessFile (%s) ", ioException);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import com.adobe.marketing.mobile.services.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the compiled in-app message rules, stored next to the cached propositions.
+ * <p>
+ * When cached propositions are loaded on startup, the rule of each item found in the snapshot is rebuilt from its
+ * {@link CompiledRule} instead of being parsed from the item json. Items are looked up by the content key of the cached
+ * {@link PayloadItem} and must still belong to the proposition they were loaded with. Items missing from the snapshot,
+ * and all items if the snapshot was written with a different format version or by a different version of the Mobile Core
+ * (whose rules parser the compiled rules mirror), are parsed from their json.
+ * <p>
+ * Format (big-endian): {@code int} magic, {@code byte} format version, Mobile Core version string, {@code int} payload
+ * length and {@code int} CRC32 of the payload, followed by the payload: an {@code int} entry count and, for each entry,
+ * the lookup key, content key, proposition id, message id, typed remote assets list and the {@link CompiledRule}.
+ */
+final class RuleSnapshot {
+    private final static String SELF_TAG = "RuleSnapshot";
+    // "AEPR"
+    private final static int MAGIC = 0x41455052;
+    private final static byte FORMAT_VERSION = 1;
+    // header length without the Mobile Core version
+    private final static int HEADER_LENGTH = 17;
+    private final static String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final File snapshotFile;
+    private final String coreVersion;
+    // null until the snapshot is read
+    private Map<String, Entry> entries;
+
+    /**
+     * Constructor.
+     *
+     * @param snapshotFile {@link File} containing the snapshot
+     * @param coreVersion  {@code String} containing the version of the Mobile Core the rules are compiled for
+     */
+    RuleSnapshot(final File snapshotFile, final String coreVersion) {
+        this.snapshotFile = snapshotFile;
+        this.coreVersion = coreVersion != null ? coreVersion : "";
+    }
+
+    /**
+     * Rebuilds the {@link ParsedPropositionItem} for the provided {@link PayloadItem} from the snapshot.
+     *
+     * @param propositionInfo the {@link PropositionInfo} of the proposition containing the {@code payloadItem}
+     * @param payloadItem     the cached {@code PayloadItem}
+     * @param key             {@code String} containing the content key of {@code payloadItem}
+     * @return the restored {@code ParsedPropositionItem}, or null if the item must be parsed
+     */
+    synchronized ParsedPropositionItem restore(final PropositionInfo propositionInfo, final PayloadItem payloadItem, final String key) {
+        if (entries == null) {
+            entries = read();
+        }
+
+        final Entry entry = entries.get(key);
+        if (entry == null || propositionInfo == null || !entry.propositionId.equals(propositionInfo.id)) {
+            return null;
+        }
+
+        return ParsedPropositionItem.restore(entry.contentKey, payloadItem, entry.compiledRule, entry.messageId, entry.remoteAssets, propositionInfo);
+    }
+
+    /**
+     * Replaces the snapshot with the compiled rules of the provided items. Items without a compiled rule are not stored.
+     *
+     * @param items {@code List<ParsedPropositionItem>} containing the loaded items
+     * @return {@code boolean} indicating whether the snapshot was written
+     */
+    synchronized boolean write(final List<ParsedPropositionItem> items) {
+        final Map<String, Entry> newEntries = new HashMap<>();
+        int entryCount = 0;
+        final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        final DataOutputStream records = new DataOutputStream(recordBytes);
+        try {
+            for (final ParsedPropositionItem item : items) {
+                if (item.compiledRule == null || item.propositionInfo == null || item.propositionInfo.id == null) {
+                    continue;
+                }
+
+                final Entry entry = new Entry(ParsedPropositionItem.getContentKey(item.payloadItem), item.contentKey, item.propositionInfo.id,
+                        item.messageId, item.remoteAssets, item.compiledRule);
+                final byte[] entryBytes = encodeEntry(entry);
+                if (entryBytes != null) {
+                    records.write(entryBytes);
+                    newEntries.put(entry.lookupKey, entry);
+                    entryCount++;
+                }
+            }
+            records.flush();
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to encode the rule snapshot: %s", ioException.getMessage());
+            return false;
+        }
+
+        if (newEntries.isEmpty()) {
+            delete();
+            return true;
+        }
+
+        final byte[] data;
+        try {
+            final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(4 + recordBytes.size());
+            final DataOutputStream payload = new DataOutputStream(payloadBytes);
+            payload.writeInt(entryCount);
+            recordBytes.writeTo(payload);
+            payload.flush();
+
+            final byte[] payloadArray = payloadBytes.toByteArray();
+            final ByteArrayOutputStream snapshotBytes = new ByteArrayOutputStream(HEADER_LENGTH + coreVersion.length() + payloadArray.length);
+            final DataOutputStream snapshot = new DataOutputStream(snapshotBytes);
+            snapshot.writeInt(MAGIC);
+            snapshot.writeByte(FORMAT_VERSION);
+            PropositionCacheCodec.writeString(snapshot, coreVersion);
+            snapshot.writeInt(payloadArray.length);
+            snapshot.writeInt(PropositionCacheCodec.getCrc(ByteBuffer.wrap(payloadArray)));
+            snapshot.write(payloadArray);
+            snapshot.flush();
+            data = snapshotBytes.toByteArray();
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to encode the rule snapshot: %s", ioException.getMessage());
+            return false;
+        }
+
+        final File parentDirectory = snapshotFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists() && !parentDirectory.mkdirs()) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to create the rule snapshot directory.");
+            return false;
+        }
+
+        final File temporaryFile = new File(snapshotFile.getPath() + TEMPORARY_FILE_SUFFIX);
+        if (!writeFile(temporaryFile, data) || !temporaryFile.renameTo(snapshotFile)) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to write the rule snapshot.");
+            temporaryFile.delete();
+            return false;
+        }
+
+        entries = newEntries;
+        Log.trace(LOG_TAG, SELF_TAG, "Wrote %d compiled rule(s) to the rule snapshot.", newEntries.size());
+        return true;
+    }
+
+    /**
+     * Deletes the snapshot.
+     */
+    synchronized void delete() {
+        deleteFile();
+        entries = new HashMap<>();
+    }
+
+    private Map<String, Entry> read() {
+        final Map<String, Entry> snapshotEntries = new HashMap<>();
+        if (!snapshotFile.isFile()) {
+            return snapshotEntries;
+        }
+
+        final ByteBuffer buffer = readFile();
+        if (buffer == null) {
+            return snapshotEntries;
+        }
+
+        try {
+            if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Unknown rule snapshot format.");
+            }
+
+            final byte version = buffer.get();
+            if (version != FORMAT_VERSION) {
+                Log.debug(LOG_TAG, SELF_TAG, "Discarding the rule snapshot written with format version %d, the cached rules will be parsed.", version);
+                deleteFile();
+                return snapshotEntries;
+            }
+
+            // the compiled rules are rebuilt as the expressions created by the rules parser of the Mobile Core which wrote them
+            final String snapshotCoreVersion = PropositionCacheCodec.readString(buffer);
+            if (!coreVersion.equals(snapshotCoreVersion)) {
+                Log.debug(LOG_TAG, SELF_TAG, "Discarding the rule snapshot written with Mobile Core %s, the cached rules will be parsed.", snapshotCoreVersion);
+                deleteFile();
+                return snapshotEntries;
+            }
+
+            final int payloadLength = buffer.getInt();
+            final int crc = buffer.getInt();
+            if (payloadLength != buffer.remaining() || crc != PropositionCacheCodec.getCrc(buffer)) {
+                throw new IllegalArgumentException("Corrupted rule snapshot.");
+            }
+
+            final int entryCount = buffer.getInt();
+            for (int index = 0; index < entryCount; index++) {
+                final Entry entry = decodeEntry(buffer);
+                snapshotEntries.put(entry.lookupKey, entry);
+            }
+            Log.trace(LOG_TAG, SELF_TAG, "Read %d compiled rule(s) from the rule snapshot.", snapshotEntries.size());
+            return snapshotEntries;
+        } catch (final IllegalArgumentException | BufferUnderflowException exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "Discarding the rule snapshot, the cached rules will be parsed: %s", exception.getMessage());
+            deleteFile();
+            return new HashMap<>();
+        }
+    }
+
+    private static byte[] encodeEntry(final Entry entry) throws IOException {
+        final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(entryBytes);
+        try {
+            PropositionCacheCodec.writeString(output, entry.lookupKey);
+            PropositionCacheCodec.writeString(output, entry.contentKey);
+            PropositionCacheCodec.writeString(output, entry.propositionId);
+            PropositionCacheCodec.writeString(output, entry.messageId);
+            PropositionCacheCodec.writeValue(output, entry.remoteAssets);
+            entry.compiledRule.write(output);
+            output.flush();
+        } catch (final IllegalArgumentException illegalArgumentException) {
+            // the rule is parsed from its json when it is loaded
+            Log.trace(LOG_TAG, SELF_TAG, "Skipping rule with unsupported consequence detail: %s", illegalArgumentException.getMessage());
+            return null;
+        }
+        return entryBytes.toByteArray();
+    }
+
+    private static Entry decodeEntry(final ByteBuffer buffer) {
+        final String lookupKey = PropositionCacheCodec.readString(buffer);
+        final String contentKey = PropositionCacheCodec.readString(buffer);
+        final String propositionId = PropositionCacheCodec.readString(buffer);
+        final String messageId = PropositionCacheCodec.readString(buffer);
+        final Object remoteAssets = PropositionCacheCodec.readValue(buffer);
+        final CompiledRule compiledRule = CompiledRule.read(buffer);
+        if (lookupKey == null || contentKey == null || propositionId == null || (remoteAssets != null && !(remoteAssets instanceof List))) {
+            throw new IllegalArgumentException("Invalid rule snapshot entry.");
+        }
+        return new Entry(lookupKey, contentKey, propositionId, messageId, (List<String>) remoteAssets, compiledRule);
+    }
+
+    private ByteBuffer readFile() {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(snapshotFile, "r");
+            final byte[] data = new byte[(int) randomAccessFile.length()];
+            randomAccessFile.readFully(data);
+            return ByteBuffer.wrap(data);
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to read the rule snapshot: %s", ioException.getMessage());
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (final IOException ioException) {
+                    Log.warning(LOG_TAG, SELF_TAG, "Unable to close the RandomAccessFile (%s) ", ioException);
+                }
+            }
+        }
+    }
+
+    private boolean writeFile(final File file, final byte[] data) {
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(file);
+            fileOutputStream.write(data);
+            fileOutputStream.flush();
+            fileOutputStream.getFD().sync();
+            return true;
+        } catch (final IOException ioException) {
+            Log.warning(LOG_TAG, SELF_TAG, "Unable to write the rule snapshot (%s): %s", file.getName(), ioException.getMessage());
+            return false;
+        } finally {
+            if (fileOutputStream != null) {
+                try {
+                    fileOutputStream.close();
+                } catch (final IOException ioException) {
+                    Log.warning(LOG_TAG, SELF_TAG, "Unable to close the FileOutputStream (%s) ", ioException);
+                }
+            }
+        }
+    }
+
+    private void deleteFile() {
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to delete the rule snapshot.");
+        }
+    }
+
+    private static final class Entry {
+        final String lookupKey;
+        final String contentKey;
+        final String propositionId;
+        final String messageId;
+        final List<String> remoteAssets;
+        final CompiledRule compiledRule;
+
+        Entry(final String lookupKey, final String contentKey, final String propositionId, final String messageId, final List<String> remoteAssets, final CompiledRule compiledRule) {
+            this.lookupKey = lookupKey;
+            this.contentKey = contentKey;
+            this.propositionId = propositionId;
+            this.messageId = messageId;
+            this.remoteAssets = remoteAssets;
+            this.compiledRule = compiledRule;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static com.adobe.marketing.mobile.messaging.internal.MessagingConstants.LOG_TAG;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.webkit.WebView;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.adobe.marketing.mobile.services.AppContextService;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.ServiceProvider;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps warm {@link WebView} instances so the first in-app message of a session does not pay for the WebView initialization.
+ * <p>
+ * The WebViews are created on the main thread while it is idle, one per idle pass. The {@code FullscreenMessage} displaying
+ * an in-app message creates its own WebView, so a displayed message leases a slot of the pool: a warm WebView is released
+ * as the displayed message keeps the WebView implementation loaded, and the slot is refilled once the message is dismissed.
+ * The {@link MessagePrerenderer} takes a warm WebView to render a message off-screen, its slot is refilled on the next idle pass.
+ * The warm WebViews are destroyed when the system reports memory pressure.
+ */
+final class WebViewPool implements ComponentCallbacks2 {
+    private final static String SELF_TAG = "WebViewPool";
+
+    /**
+     * Creates the pooled {@link WebView}s, called on the main thread.
+     */
+    interface WebViewFactory {
+        WebView create();
+    }
+
+    private final Handler mainHandler;
+    private final WebViewFactory webViewFactory;
+    private final MessageQueue.IdleHandler idleFill = this::fillOnIdle;
+    // only accessed on the main thread
+    private final Deque<WebView> warmWebViews = new ArrayDeque<>();
+    private int leasedCount;
+    private MessageQueue idleFillQueue;
+    private volatile int size;
+
+    @VisibleForTesting
+    WebViewPool(final Handler mainHandler, final WebViewFactory webViewFactory) {
+        this.mainHandler = mainHandler;
+        this.webViewFactory = webViewFactory;
+    }
+
+    /**
+     * Creates a {@code WebViewPool} notified of memory pressure by the application.
+     *
+     * @return a {@link WebViewPool}, or null if the application is not available
+     */
+    static WebViewPool create() {
+        final AppContextService appContextService = ServiceProvider.getInstance().getAppContextService();
+        final Application application = appContextService != null ? appContextService.getApplication() : null;
+        if (application == null) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to create the WebView pool, the application is not available.");
+            return null;
+        }
+
+        final WebViewPool webViewPool = new WebViewPool(new Handler(application.getMainLooper()), () -> new WebView(application));
+        application.registerComponentCallbacks(webViewPool);
+        return webViewPool;
+    }
+
+    /**
+     * Sets the number of WebViews kept warm, a size of zero destroys the warm WebViews.
+     *
+     * @param size {@code int} containing the number of WebViews kept warm
+     */
+    void setSize(final int size) {
+        this.size = Math.max(0, Math.min(size, MessagingConstants.MAX_WEBVIEW_POOL_SIZE));
+        if (this.size == 0) {
+            mainHandler.post(this::drain);
+        }
+    }
+
+    /**
+     * Creates the missing warm WebViews once the main thread is idle.
+     */
+    void prewarm() {
+        if (size > 0) {
+            mainHandler.post(this::scheduleIdleFill);
+        }
+    }
+
+    /**
+     * Takes a warm WebView out of the pool, called on the main thread. The caller owns and destroys the returned WebView.
+     *
+     * @return a warm {@link WebView}, or null if no warm WebView is available
+     */
+    WebView acquire() {
+        final WebView webView = warmWebViews.poll();
+        if (webView != null) {
+            scheduleIdleFill();
+        }
+        return webView;
+    }
+
+    /**
+     * Leases a slot of the pool for a displayed in-app message.
+     */
+    void lease() {
+        mainHandler.post(() -> {
+            leasedCount++;
+            final WebView webView = warmWebViews.poll();
+            if (webView != null) {
+                webView.destroy();
+            }
+        });
+    }
+
+    /**
+     * Returns the slot leased by a dismissed in-app message, the slot is refilled once the main thread is idle.
+     */
+    void release() {
+        mainHandler.post(() -> {
+            leasedCount = Math.max(0, leasedCount - 1);
+            scheduleIdleFill();
+        });
+    }
+
+    @Override
+    public void onTrimMemory(final int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            Log.debug(LOG_TAG, SELF_TAG, "Destroying %d warm WebView(s), the system is running low on memory (level %d).", warmWebViews.size(), level);
+            drain();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        drain();
+    }
+
+    @Override
+    public void onConfigurationChanged(final Configuration newConfig) {
+        // nothing to do, the pooled WebViews are not attached to a window
+    }
+
+    @VisibleForTesting
+    int getWarmCount() {
+        return warmWebViews.size();
+    }
+
+    /**
+     * Creates one WebView while the main thread is idle.
+     *
+     * @return {@code boolean} indicating whether more WebViews are needed, in which case the next idle pass creates the next one
+     */
+    @VisibleForTesting
+    boolean fillOnIdle() {
+        if (!needsWebView()) {
+            idleFillQueue = null;
+            return false;
+        }
+
+        try {
+            warmWebViews.push(webViewFactory.create());
+            Log.trace(LOG_TAG, SELF_TAG, "Warm WebView created (%d of %d).", warmWebViews.size(), size);
+        } catch (final Exception exception) {
+            Log.debug(LOG_TAG, SELF_TAG, "Unable to create a warm WebView: %s", exception.getLocalizedMessage());
+            idleFillQueue = null;
+            return false;
+        }
+
+        if (!needsWebView()) {
+            idleFillQueue = null;
+            return false;
+        }
+        return true;
+    }
+
+    private void scheduleIdleFill() {
+        if (idleFillQueue != null || !needsWebView()) {
+            return;
+        }
+
+        idleFillQueue = Looper.myQueue();
+        idleFillQueue.addIdleHandler(idleFill);
+    }
+
+    private boolean needsWebView() {
+        return warmWebViews.size() + leasedCount < size;
+    }
+
+    private void drain() {
+        if (idleFillQueue != null) {
+            idleFillQueue.removeIdleHandler(idleFill);
+            idleFillQueue = null;
+        }
+
+        while (!warmWebViews.isEmpty()) {
+            warmWebViews.poll().destroy();
+        }
+    }
+}
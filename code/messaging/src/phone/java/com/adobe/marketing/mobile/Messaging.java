@@ -17,6 +17,7 @@ import android.content.Intent;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.adobe.marketing.mobile.messaging.MessagingTimingListener;
 import com.adobe.marketing.mobile.messaging.PushTrackingStatus;
 import com.adobe.marketing.mobile.messaging.internal.MessagingExtension;
 import com.adobe.marketing.mobile.services.Log;
@@ -221,6 +222,35 @@ public final class Messaging {
 
         MobileCore.dispatchEvent(refreshMessageEvent);
     }
+
+    /**
+     * Sets a listener notified when a stage of the Messaging extension lifecycle is completed, e.g. when the cached
+     * in-app messages are loaded or when the in-app messages are received from the Edge network.
+     * <p>
+     * The listener is immediately notified of the stages completed before it was set.
+     * The completed stages are also dispatched in a debug event once the in-app messages received from the Edge network
+     * are processed, when the log level is {@code DEBUG} or {@code VERBOSE}.
+     *
+     * @param listener the {@link MessagingTimingListener} to notify, or null to remove the current listener
+     */
+    public static void setTimingListener(@Nullable final MessagingTimingListener listener) {
+        MessagingExtension.setTimingListener(listener);
+    }
+
+    /**
+     * Returns a snapshot of the in-app message asset download metrics, e.g. the number of download requests issued,
+     * the bytes downloaded or served from the cache, and the download latency histograms.
+     * <p>
+     * The metrics are cumulative for the lifetime of the application process. They are also dispatched in a debug event
+     * once the asset downloads of an in-app message refresh have completed, when the log level is {@code DEBUG} or {@code VERBOSE}.
+     *
+     * @return {@code Map<String, Object>} containing the asset download metrics
+     */
+    @NonNull
+    public static Map<String, Object> getAssetDownloadMetrics() {
+        return MessagingExtension.getAssetDownloadMetrics();
+    }
+
     private static void callTrackingCallback(final PushTrackingStatus trackingStatus, final AdobeCallback<PushTrackingStatus> callback) {
         if (callback != null) {
             callback.call(trackingStatus);
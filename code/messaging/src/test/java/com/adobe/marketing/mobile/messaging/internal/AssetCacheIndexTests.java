@@ -0,0 +1,328 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetCacheIndexTests {
+    private static final String ASSET_CACHE_LOCATION = "testCache/messaging/images";
+
+    @Mock
+    CacheService mockCacheService;
+
+    private File indexFile;
+
+    @Before
+    public void setup() throws IOException {
+        indexFile = File.createTempFile("images", ".index");
+        indexFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        indexFile.delete();
+    }
+
+    private AssetCacheIndex createIndex(final long maxBytes) {
+        final AssetCacheIndex assetCacheIndex = new AssetCacheIndex(indexFile, mockCacheService, ASSET_CACHE_LOCATION);
+        assetCacheIndex.setMaxBytes(maxBytes);
+        return assetCacheIndex;
+    }
+
+    @Test
+    public void testRecordCached_BudgetExceeded_LeastRecentlyUsedAssetEvicted() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(250);
+        assetCacheIndex.recordCached("https://asset0", 100, null);
+        assetCacheIndex.recordCached("https://asset1", 100, null);
+
+        // test
+        assetCacheIndex.recordCached("https://asset2", 100, null);
+
+        // verify
+        verify(mockCacheService, times(1)).remove(eq(ASSET_CACHE_LOCATION), eq("https://asset0"));
+        verify(mockCacheService, never()).remove(eq(ASSET_CACHE_LOCATION), eq("https://asset1"));
+        assertEquals(Arrays.asList("https://asset1", "https://asset2"), assetCacheIndex.getAssets());
+        assertEquals(200, assetCacheIndex.getTotalBytes());
+    }
+
+    @Test
+    public void testRecordCached_BudgetExceeded_EvictedAssetAndAliasesNotified() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(250);
+        final List<String> evictedUrls = new ArrayList<>();
+        assetCacheIndex.setEvictionListener(evictedUrls::add);
+        assetCacheIndex.recordCached("https://asset0", 100, "digest0");
+        assetCacheIndex.recordCached("https://alias0", 100, "digest0");
+        assetCacheIndex.recordCached("https://asset1", 100, "digest1");
+
+        // test
+        assetCacheIndex.recordCached("https://asset2", 100, "digest2");
+
+        // verify
+        assertEquals(Arrays.asList("https://asset0", "https://alias0"), evictedUrls);
+        assertEquals("https://alias0", assetCacheIndex.resolve("https://alias0"));
+    }
+
+    @Test
+    public void testRecordUsed_DisplayedAssetNotEvicted() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(250);
+        assetCacheIndex.recordCached("https://asset0", 100, null);
+        assetCacheIndex.recordCached("https://asset1", 100, null);
+        assetCacheIndex.recordUsed(Collections.singletonList("https://asset0"));
+
+        // test
+        assetCacheIndex.recordCached("https://asset2", 100, null);
+
+        // verify
+        verify(mockCacheService, times(1)).remove(eq(ASSET_CACHE_LOCATION), eq("https://asset1"));
+        assertEquals(Arrays.asList("https://asset0", "https://asset2"), assetCacheIndex.getAssets());
+    }
+
+    @Test
+    public void testRecordCached_RecachedAsset_SizeReplaced() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://asset0", 100, null);
+
+        // test
+        assetCacheIndex.recordCached("https://asset0", 300, null);
+
+        // verify
+        assertEquals(300, assetCacheIndex.getTotalBytes());
+        assertEquals(Collections.singletonList("https://asset0"), assetCacheIndex.getAssets());
+    }
+
+    @Test
+    public void testRecordCached_AssetLargerThanBudget_RecordedAssetKept() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(100);
+        assetCacheIndex.recordCached("https://asset0", 50, null);
+
+        // test
+        assetCacheIndex.recordCached("https://large", 500, null);
+
+        // verify
+        verify(mockCacheService, times(1)).remove(eq(ASSET_CACHE_LOCATION), eq("https://asset0"));
+        verify(mockCacheService, never()).remove(eq(ASSET_CACHE_LOCATION), eq("https://large"));
+        assertEquals(Collections.singletonList("https://large"), assetCacheIndex.getAssets());
+    }
+
+    @Test
+    public void testSetMaxBytes_LowerBudget_AssetsEvicted() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://asset0", 100, null);
+        assetCacheIndex.recordCached("https://asset1", 100, null);
+        assetCacheIndex.recordCached("https://asset2", 100, null);
+
+        // test
+        assetCacheIndex.setMaxBytes(150);
+
+        // verify
+        verify(mockCacheService, times(2)).remove(eq(ASSET_CACHE_LOCATION), anyString());
+        assertEquals(Collections.singletonList("https://asset2"), assetCacheIndex.getAssets());
+    }
+
+    @Test
+    public void testPersist_IndexRestoredInUseOrder() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://asset0", 100, null);
+        assetCacheIndex.recordCached("https://asset1", 200, null);
+        assetCacheIndex.recordUsed(Collections.singletonList("https://asset0"));
+
+        // test
+        assertTrue(assetCacheIndex.persist());
+
+        // verify
+        final AssetCacheIndex restoredIndex = createIndex(1000);
+        assertEquals(300, restoredIndex.getTotalBytes());
+        assertEquals(Arrays.asList("https://asset1", "https://asset0"), restoredIndex.getAssets());
+    }
+
+    @Test
+    public void testRead_CorruptedIndex_IndexDiscarded() throws IOException {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://asset0", 100, null);
+        assertTrue(assetCacheIndex.persist());
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(indexFile, "rw");
+        randomAccessFile.seek(randomAccessFile.length() - 1);
+        final byte lastByte = randomAccessFile.readByte();
+        randomAccessFile.seek(randomAccessFile.length() - 1);
+        randomAccessFile.writeByte(lastByte ^ 0xFF);
+        randomAccessFile.close();
+
+        // test
+        final AssetCacheIndex restoredIndex = createIndex(1000);
+
+        // verify
+        assertEquals(0, restoredIndex.getTotalBytes());
+        assertFalse(indexFile.exists());
+    }
+
+    @Test
+    public void testDelete_IndexCleared() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://asset0", 100, null);
+        assertTrue(assetCacheIndex.persist());
+
+        // test
+        assetCacheIndex.delete();
+
+        // verify
+        assertFalse(indexFile.exists());
+        assertEquals(0, assetCacheIndex.getTotalBytes());
+    }
+
+    @Test
+    public void testRetainReferenced_UnreferencedAssetsDropped() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://asset0", 100, null);
+        assetCacheIndex.recordCached("https://asset1", 100, null);
+
+        // test
+        assetCacheIndex.retainReferenced(Collections.singleton(StringEncoder.sha2hash("https://asset1")));
+
+        // verify
+        assertEquals(Collections.singletonList("https://asset1"), assetCacheIndex.getAssets());
+        assertEquals(100, assetCacheIndex.getTotalBytes());
+        verify(mockCacheService, never()).remove(anyString(), anyString());
+    }
+
+    @Test
+    public void testRecordCached_SameContentAsCachedAsset_RecordedAsAlias() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://cdn1/asset.png", 100, "digest");
+
+        // test
+        final String cachedUrl = assetCacheIndex.recordCached("https://cdn2/asset.png?v=2", 100, "digest");
+
+        // verify
+        assertEquals("https://cdn1/asset.png", cachedUrl);
+        assertEquals("https://cdn1/asset.png", assetCacheIndex.resolve("https://cdn2/asset.png?v=2"));
+        assertEquals(Collections.singletonList("https://cdn1/asset.png"), assetCacheIndex.getAssets());
+        assertEquals(100, assetCacheIndex.getTotalBytes());
+    }
+
+    @Test
+    public void testRecordCached_ContentChanged_AliasesDropped() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://cdn1/asset.png", 100, "digest");
+        assetCacheIndex.recordCached("https://cdn2/asset.png", 100, "digest");
+
+        // test
+        assetCacheIndex.recordCached("https://cdn1/asset.png", 120, "otherDigest");
+
+        // verify
+        assertEquals("https://cdn2/asset.png", assetCacheIndex.resolve("https://cdn2/asset.png"));
+    }
+
+    @Test
+    public void testRecordCached_CachedAssetEvicted_AliasesDropped() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(150);
+        assetCacheIndex.recordCached("https://cdn1/asset.png", 100, "digest");
+        assetCacheIndex.recordCached("https://cdn2/asset.png", 100, "digest");
+
+        // test
+        assetCacheIndex.recordCached("https://cdn1/other.png", 100, "otherDigest");
+
+        // verify
+        verify(mockCacheService, times(1)).remove(eq(ASSET_CACHE_LOCATION), eq("https://cdn1/asset.png"));
+        assertEquals("https://cdn2/asset.png", assetCacheIndex.resolve("https://cdn2/asset.png"));
+    }
+
+    @Test
+    public void testRecordUsed_Alias_CachedAssetMarkedAsUsed() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://cdn1/asset.png", 100, "digest");
+        assetCacheIndex.recordCached("https://cdn1/other.png", 100, "otherDigest");
+        assetCacheIndex.recordCached("https://cdn2/asset.png", 100, "digest");
+        assetCacheIndex.recordCached("https://cdn1/other.png", 100, null);
+
+        // test
+        assetCacheIndex.recordUsed(Collections.singletonList("https://cdn2/asset.png"));
+
+        // verify
+        assertEquals(Arrays.asList("https://cdn1/other.png", "https://cdn1/asset.png"), assetCacheIndex.getAssets());
+    }
+
+    @Test
+    public void testResolveHashes_ReferencedAlias_CachedAssetReferenced() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://cdn1/asset.png", 100, "digest");
+        assetCacheIndex.recordCached("https://cdn2/asset.png", 100, "digest");
+        final Set<String> referencedHashes = Collections.singleton(StringEncoder.sha2hash("https://cdn2/asset.png"));
+
+        // test
+        final Set<String> resolvedHashes = assetCacheIndex.resolveHashes(referencedHashes);
+        assetCacheIndex.retainReferenced(resolvedHashes);
+
+        // verify
+        assertEquals(new HashSet<>(Arrays.asList(StringEncoder.sha2hash("https://cdn1/asset.png"), StringEncoder.sha2hash("https://cdn2/asset.png"))), resolvedHashes);
+        assertEquals(Collections.singletonList("https://cdn1/asset.png"), assetCacheIndex.getAssets());
+        assertEquals("https://cdn1/asset.png", assetCacheIndex.resolve("https://cdn2/asset.png"));
+    }
+
+    @Test
+    public void testPersist_AliasesRestored() {
+        // setup
+        final AssetCacheIndex assetCacheIndex = createIndex(1000);
+        assetCacheIndex.recordCached("https://cdn1/asset.png", 100, "digest");
+        assetCacheIndex.recordCached("https://cdn2/asset.png", 100, "digest");
+
+        // test
+        assertTrue(assetCacheIndex.persist());
+
+        // verify
+        final AssetCacheIndex restoredIndex = createIndex(1000);
+        assertEquals("https://cdn1/asset.png", restoredIndex.resolve("https://cdn2/asset.png"));
+        assertEquals(100, restoredIndex.getTotalBytes());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetCachePolicyTests {
+    private static final long RESPONSE_TIME = 1_000_000L;
+
+    @Test
+    public void testGetFreshUntil_MaxAge() {
+        // test
+        final long freshUntil = AssetCachePolicy.getFreshUntil("public, max-age=600", null, null, RESPONSE_TIME);
+
+        // verify
+        assertEquals(RESPONSE_TIME + 600_000L, freshUntil);
+    }
+
+    @Test
+    public void testGetFreshUntil_MaxAgeWithAge_AgeSubtracted() {
+        // test
+        final long freshUntil = AssetCachePolicy.getFreshUntil("max-age=600", null, "100", RESPONSE_TIME);
+
+        // verify
+        assertEquals(RESPONSE_TIME + 500_000L, freshUntil);
+    }
+
+    @Test
+    public void testGetFreshUntil_MaxAgePrecedesExpires() {
+        // test
+        final long freshUntil = AssetCachePolicy.getFreshUntil("max-age=60", "Thu, 01 Jan 1970 00:00:00 GMT", null, RESPONSE_TIME);
+
+        // verify
+        assertEquals(RESPONSE_TIME + 60_000L, freshUntil);
+    }
+
+    @Test
+    public void testGetFreshUntil_Immutable_FreshForever() {
+        // test
+        final long freshUntil = AssetCachePolicy.getFreshUntil("max-age=31536000, immutable", null, null, RESPONSE_TIME);
+
+        // verify
+        assertEquals(AssetCachePolicy.FRESH_FOREVER, freshUntil);
+    }
+
+    @Test
+    public void testGetFreshUntil_NoCache_AlwaysRevalidated() {
+        // test
+        final long freshUntil = AssetCachePolicy.getFreshUntil("no-cache, max-age=600", null, null, RESPONSE_TIME);
+
+        // verify
+        assertEquals(RESPONSE_TIME, freshUntil);
+    }
+
+    @Test
+    public void testGetFreshUntil_Expires() {
+        // test
+        final long freshUntil = AssetCachePolicy.getFreshUntil(null, "Fri, 02 Jan 1970 00:00:00 GMT", null, RESPONSE_TIME);
+
+        // verify
+        assertEquals(86_400_000L, freshUntil);
+    }
+
+    @Test
+    public void testGetFreshUntil_InvalidExpires_Expired() {
+        // test
+        final long freshUntil = AssetCachePolicy.getFreshUntil(null, "0", null, RESPONSE_TIME);
+
+        // verify
+        assertEquals(RESPONSE_TIME, freshUntil);
+    }
+
+    @Test
+    public void testGetFreshUntil_NoFreshnessHeaders() {
+        // test
+        final long freshUntil = AssetCachePolicy.getFreshUntil("public", null, null, RESPONSE_TIME);
+
+        // verify
+        assertEquals(AssetCachePolicy.NO_FRESHNESS, freshUntil);
+    }
+
+    @Test
+    public void testIsFresh() {
+        // setup
+        final Map<String, String> metadata = new HashMap<>();
+        metadata.put(MessagingConstants.METADATA_FRESH_UNTIL, String.valueOf(RESPONSE_TIME));
+
+        // verify
+        assertTrue(AssetCachePolicy.isFresh(metadata, RESPONSE_TIME - 1));
+        assertFalse(AssetCachePolicy.isFresh(metadata, RESPONSE_TIME));
+        assertFalse(AssetCachePolicy.isFresh(new HashMap<>(), RESPONSE_TIME));
+        assertFalse(AssetCachePolicy.isFresh(null, RESPONSE_TIME));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetDownloadBackoffTests {
+    private static final String ASSET_URL = "https://www.adobe.com/logo.png";
+    private static final long BASE_DELAY = 1000;
+    private static final long MAX_DELAY = 5000;
+
+    private AssetDownloadBackoff assetDownloadBackoff;
+
+    @Before
+    public void setup() {
+        assetDownloadBackoff = new AssetDownloadBackoff(BASE_DELAY, MAX_DELAY);
+    }
+
+    @Test
+    public void testIsBackingOff_NoFailures() {
+        // verify
+        assertFalse(assetDownloadBackoff.isBackingOff(ASSET_URL, 0));
+    }
+
+    @Test
+    public void testIsBackingOff_AfterFailure() {
+        // test
+        final long retryTime = assetDownloadBackoff.recordFailure(ASSET_URL, 100);
+
+        // verify
+        assertEquals(100 + BASE_DELAY, retryTime);
+        assertTrue(assetDownloadBackoff.isBackingOff(ASSET_URL, retryTime - 1));
+        assertFalse(assetDownloadBackoff.isBackingOff(ASSET_URL, retryTime));
+        assertFalse(assetDownloadBackoff.isBackingOff("https://www.adobe.com/other.png", 100));
+    }
+
+    @Test
+    public void testRecordFailure_ConsecutiveFailures_DelayDoublesUpToMax() {
+        // test
+        final long firstRetryTime = assetDownloadBackoff.recordFailure(ASSET_URL, 0);
+        final long secondRetryTime = assetDownloadBackoff.recordFailure(ASSET_URL, 0);
+        final long thirdRetryTime = assetDownloadBackoff.recordFailure(ASSET_URL, 0);
+        final long fourthRetryTime = assetDownloadBackoff.recordFailure(ASSET_URL, 0);
+
+        // verify
+        assertEquals(1000, firstRetryTime);
+        assertEquals(2000, secondRetryTime);
+        assertEquals(4000, thirdRetryTime);
+        assertEquals(MAX_DELAY, fourthRetryTime);
+    }
+
+    @Test
+    public void testRecordSuccess_FailuresCleared() {
+        // setup
+        assetDownloadBackoff.recordFailure(ASSET_URL, 0);
+        assetDownloadBackoff.recordFailure(ASSET_URL, 0);
+
+        // test
+        assetDownloadBackoff.recordSuccess(ASSET_URL);
+
+        // verify the next failure starts from the base delay again
+        assertFalse(assetDownloadBackoff.isBackingOff(ASSET_URL, 0));
+        assertEquals(BASE_DELAY, assetDownloadBackoff.recordFailure(ASSET_URL, 0));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.net.HttpURLConnection;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetDownloadMetricsTests {
+    @Mock
+    AssetDownloadMetrics.Reporter mockReporter;
+
+    @Before
+    public void setup() {
+        AssetDownloadMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        AssetDownloadMetrics.reset();
+    }
+
+    @Test
+    public void testGetMetrics_ResponsesCounted() {
+        // setup
+        AssetDownloadMetrics.requestIssued();
+        AssetDownloadMetrics.requestIssued();
+        AssetDownloadMetrics.requestIssued();
+        AssetDownloadMetrics.responseReceived(HttpURLConnection.HTTP_OK, true, 10);
+        AssetDownloadMetrics.responseReceived(HttpURLConnection.HTTP_NOT_MODIFIED, true, 10);
+        AssetDownloadMetrics.responseReceived(HttpURLConnection.HTTP_NOT_FOUND, false, 10);
+        AssetDownloadMetrics.downloadSkipped(true);
+        AssetDownloadMetrics.downloadSkipped(false);
+        AssetDownloadMetrics.bytesDownloaded(100);
+        AssetDownloadMetrics.bytesDownloaded(50);
+        AssetDownloadMetrics.bytesServedFromCache(200);
+
+        // test
+        final Map<String, Object> metrics = AssetDownloadMetrics.getMetrics();
+
+        // verify
+        assertEquals(3L, metrics.get("requestsIssued"));
+        assertEquals(1L, metrics.get("downloaded"));
+        assertEquals(1L, metrics.get("notModified"));
+        assertEquals(1L, metrics.get("failed"));
+        assertEquals(1L, metrics.get("skippedFresh"));
+        assertEquals(1L, metrics.get("skippedBackoff"));
+        assertEquals(150L, metrics.get("bytesDownloaded"));
+        assertEquals(200L, metrics.get("bytesServedFromCache"));
+    }
+
+    @Test
+    public void testGetMetrics_LatenciesBucketed() {
+        // setup
+        AssetDownloadMetrics.responseReceived(HttpURLConnection.HTTP_OK, true, 50);
+        AssetDownloadMetrics.responseReceived(HttpURLConnection.HTTP_OK, true, 51);
+        AssetDownloadMetrics.responseReceived(HttpURLConnection.HTTP_OK, true, 20000);
+
+        // test
+        final Map<String, Object> latency = (Map<String, Object>) AssetDownloadMetrics.getMetrics().get("downloadLatencyMs");
+
+        // verify
+        assertEquals(3L, latency.get("count"));
+        assertEquals(20101L, latency.get("sumMs"));
+        assertEquals(20000L, latency.get("maxMs"));
+        final Map<String, Object> buckets = (Map<String, Object>) latency.get("buckets");
+        assertEquals(1L, buckets.get("50"));
+        assertEquals(1L, buckets.get("100"));
+        assertEquals(0L, buckets.get("10000"));
+        assertEquals(1L, buckets.get("inf"));
+    }
+
+    @Test
+    public void testGetMetrics_QueueDepth() {
+        // setup
+        AssetDownloadMetrics.queueDepthChanged(3);
+        AssetDownloadMetrics.queueDepthChanged(1);
+
+        // test
+        final Map<String, Object> metrics = AssetDownloadMetrics.getMetrics();
+
+        // verify
+        assertEquals(1, metrics.get("queueDepth"));
+        assertEquals(3, metrics.get("maxQueueDepth"));
+    }
+
+    @Test
+    public void testGetMetrics_MessageAssetsResolved() {
+        // setup
+        AssetDownloadMetrics.messageAssetsResolved(AssetRegistry.Readiness.CACHED);
+        AssetDownloadMetrics.messageAssetsResolved(AssetRegistry.Readiness.CACHED);
+        AssetDownloadMetrics.messageAssetsResolved(AssetRegistry.Readiness.LOADED_AFTER_WAIT);
+        AssetDownloadMetrics.messageAssetsResolved(AssetRegistry.Readiness.NETWORK_FALLBACK);
+
+        // test
+        final Map<String, Object> metrics = AssetDownloadMetrics.getMetrics();
+
+        // verify
+        assertEquals(2L, metrics.get("displayedCached"));
+        assertEquals(1L, metrics.get("displayedAfterWait"));
+        assertEquals(1L, metrics.get("displayedNetworkFallback"));
+    }
+
+    @Test
+    public void testReport_ReporterNotified() {
+        // setup
+        AssetDownloadMetrics.firstAssetReady(120);
+        AssetDownloadMetrics.setReporter(mockReporter);
+        final ArgumentCaptor<Map<String, Object>> metricsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        // test
+        AssetDownloadMetrics.report();
+
+        // verify
+        verify(mockReporter, times(1)).onMetricsUpdated(metricsCaptor.capture());
+        final Map<String, Object> firstAssetReady = (Map<String, Object>) metricsCaptor.getValue().get("firstAssetReadyMs");
+        assertEquals(1L, firstAssetReady.get("count"));
+        assertEquals(120L, firstAssetReady.get("maxMs"));
+    }
+
+    @Test
+    public void testReport_ReporterRemoved_NotNotified() {
+        // setup
+        AssetDownloadMetrics.setReporter(mockReporter);
+        AssetDownloadMetrics.setReporter(null);
+
+        // test
+        AssetDownloadMetrics.report();
+
+        // verify
+        verify(mockReporter, never()).onMetricsUpdated(anyMap());
+    }
+
+    @Test
+    public void testReport_ReporterThrows_MetricsKept() {
+        // setup
+        doThrow(new IllegalStateException("reporter failure")).when(mockReporter).onMetricsUpdated(anyMap());
+        AssetDownloadMetrics.setReporter(mockReporter);
+        AssetDownloadMetrics.requestIssued();
+
+        // test
+        AssetDownloadMetrics.report();
+
+        // verify
+        assertEquals(1L, AssetDownloadMetrics.getMetrics().get("requestsIssued"));
+    }
+}
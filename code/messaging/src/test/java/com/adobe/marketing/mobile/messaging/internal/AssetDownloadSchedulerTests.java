@@ -0,0 +1,207 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetDownloadSchedulerTests {
+    private final List<String> startedDownloads = new ArrayList<>();
+    private final List<String> cancelledDownloads = new ArrayList<>();
+    private final Map<String, Runnable> runningDownloads = new HashMap<>();
+
+    @Before
+    public void setup() {
+        startedDownloads.clear();
+        cancelledDownloads.clear();
+        runningDownloads.clear();
+    }
+
+    private AssetDownloadScheduler.AssetDownload createDownload(final String url) {
+        return new AssetDownloadScheduler.AssetDownload() {
+            @Override
+            public void start(final Runnable onFinished) {
+                startedDownloads.add(url);
+                runningDownloads.put(url, onFinished);
+            }
+
+            @Override
+            public void cancel() {
+                cancelledDownloads.add(url);
+            }
+        };
+    }
+
+    private void finishDownload(final String url) {
+        runningDownloads.remove(url).run();
+    }
+
+    @Test
+    public void testSchedule_ConcurrentDownloadsLimited() {
+        // setup
+        final AssetDownloadScheduler scheduler = new AssetDownloadScheduler(2);
+
+        // test
+        for (int i = 0; i < 5; i++) {
+            scheduler.schedule("https://asset" + i, AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://asset" + i));
+        }
+
+        // verify
+        assertEquals(Arrays.asList("https://asset0", "https://asset1"), startedDownloads);
+        assertEquals(3, scheduler.getQueuedDownloadCount());
+    }
+
+    @Test
+    public void testSchedule_FinishedDownload_NextDownloadStarted() {
+        // setup
+        final AssetDownloadScheduler scheduler = new AssetDownloadScheduler(1);
+        scheduler.schedule("https://asset0", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://asset0"));
+        scheduler.schedule("https://asset1", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://asset1"));
+
+        // test
+        final Runnable onFinished = runningDownloads.get("https://asset0");
+        finishDownload("https://asset0");
+        // a download reporting more than once only releases its slot once
+        onFinished.run();
+
+        // verify
+        assertEquals(Arrays.asList("https://asset0", "https://asset1"), startedDownloads);
+        assertEquals(0, scheduler.getQueuedDownloadCount());
+    }
+
+    @Test
+    public void testSchedule_SmallestAssetsFirst() {
+        // setup
+        final AssetDownloadScheduler scheduler = new AssetDownloadScheduler(1);
+        scheduler.schedule("https://running", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://running"));
+
+        // test
+        scheduler.schedule("https://unknown", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://unknown"));
+        scheduler.schedule("https://large", 50000, createDownload("https://large"));
+        scheduler.schedule("https://small", 100, createDownload("https://small"));
+        finishDownload("https://running");
+        finishDownload("https://small");
+        finishDownload("https://large");
+
+        // verify
+        assertEquals(Arrays.asList("https://running", "https://small", "https://large", "https://unknown"), startedDownloads);
+    }
+
+    @Test
+    public void testPrioritize_TriggeredAssetsFirst() {
+        // setup
+        final AssetDownloadScheduler scheduler = new AssetDownloadScheduler(1);
+        scheduler.schedule("https://running", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://running"));
+        scheduler.schedule("https://small", 100, createDownload("https://small"));
+        scheduler.schedule("https://triggered", 50000, createDownload("https://triggered"));
+
+        // test
+        scheduler.prioritize(Collections.singletonList("https://triggered"));
+        finishDownload("https://running");
+
+        // verify
+        assertEquals(Arrays.asList("https://running", "https://triggered"), startedDownloads);
+    }
+
+    @Test
+    public void testPrioritize_AssetScheduledAfterTrigger_DownloadedFirst() {
+        // setup
+        final AssetDownloadScheduler scheduler = new AssetDownloadScheduler(1);
+        scheduler.schedule("https://running", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://running"));
+        scheduler.schedule("https://small", 100, createDownload("https://small"));
+        scheduler.prioritize(Collections.singletonList("https://triggered"));
+
+        // test
+        scheduler.schedule("https://triggered", 50000, createDownload("https://triggered"));
+        finishDownload("https://running");
+
+        // verify
+        assertEquals(Arrays.asList("https://running", "https://triggered"), startedDownloads);
+    }
+
+    @Test
+    public void testRetainOnly_UnreferencedQueuedDownloadsCancelled() {
+        // setup
+        final AssetDownloadScheduler scheduler = new AssetDownloadScheduler(1);
+        scheduler.schedule("https://running", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://running"));
+        scheduler.schedule("https://removed", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://removed"));
+        scheduler.schedule("https://retained", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://retained"));
+
+        // test
+        scheduler.retainOnly(Collections.singletonList("https://retained"));
+        finishDownload("https://running");
+
+        // verify
+        assertEquals(Collections.singletonList("https://removed"), cancelledDownloads);
+        assertEquals(Arrays.asList("https://running", "https://retained"), startedDownloads);
+        assertTrue(runningDownloads.containsKey("https://retained"));
+    }
+
+    @Test
+    public void testSetMaxConcurrentDownloads_Increased_QueuedDownloadsStarted() {
+        // setup
+        final AssetDownloadScheduler scheduler = new AssetDownloadScheduler(1);
+        for (int i = 0; i < 3; i++) {
+            scheduler.schedule("https://asset" + i, AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://asset" + i));
+        }
+
+        // test
+        scheduler.setMaxConcurrentDownloads(3);
+
+        // verify
+        assertEquals(3, startedDownloads.size());
+        assertEquals(0, scheduler.getQueuedDownloadCount());
+    }
+
+    @Test
+    public void testSetMaxConcurrentDownloads_InvalidValue_OneDownloadAtATime() {
+        // setup
+        final AssetDownloadScheduler scheduler = new AssetDownloadScheduler(2);
+        scheduler.setMaxConcurrentDownloads(0);
+
+        // test
+        scheduler.schedule("https://asset0", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://asset0"));
+        scheduler.schedule("https://asset1", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://asset1"));
+
+        // verify
+        assertEquals(Collections.singletonList("https://asset0"), startedDownloads);
+    }
+
+    @Test
+    public void testSchedule_StaleAssetRevalidations_StartedAfterMissingAssets() {
+        // setup
+        final AssetDownloadScheduler scheduler = new AssetDownloadScheduler(1);
+        scheduler.schedule("https://running", AssetDownloadScheduler.UNKNOWN_SIZE, createDownload("https://running"));
+        scheduler.schedule("https://stale", 10, true, createDownload("https://stale"));
+        scheduler.schedule("https://missing", AssetDownloadScheduler.UNKNOWN_SIZE, false, createDownload("https://missing"));
+
+        // test
+        finishDownload("https://running");
+        finishDownload("https://missing");
+
+        // verify
+        assertEquals(Arrays.asList("https://running", "https://missing", "https://stale"), startedDownloads);
+    }
+}
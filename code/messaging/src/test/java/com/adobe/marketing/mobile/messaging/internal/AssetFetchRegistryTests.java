@@ -0,0 +1,151 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetFetchRegistryTests {
+    private static final String ASSET_URL = "https://www.adobe.com/logo.png";
+
+    @Test
+    public void testFetch_InFlightDownload_SameFetchReturned() {
+        // setup
+        final AssetFetchRegistry registry = new AssetFetchRegistry();
+        final List<AssetFetchRegistry.AssetFetch> startedFetches = new ArrayList<>();
+        final AssetFetchRegistry.AssetFetch firstFetch = registry.fetch(ASSET_URL, startedFetches::add);
+
+        // test
+        final AssetFetchRegistry.AssetFetch secondFetch = registry.fetch(ASSET_URL, startedFetches::add);
+
+        // verify
+        assertSame(firstFetch, secondFetch);
+        assertEquals(1, startedFetches.size());
+        assertEquals(1, registry.getInFlightCount());
+    }
+
+    @Test
+    public void testComplete_AllRequestersNotified() {
+        // setup
+        final AssetFetchRegistry registry = new AssetFetchRegistry();
+        final AtomicInteger notifiedRequesters = new AtomicInteger();
+        final AssetFetchRegistry.AssetFetch fetch = registry.fetch(ASSET_URL, startedFetch -> { });
+        fetch.whenDone(notifiedRequesters::incrementAndGet);
+        registry.fetch(ASSET_URL, startedFetch -> { }).whenDone(notifiedRequesters::incrementAndGet);
+
+        // test
+        fetch.complete(true);
+        fetch.complete(false);
+
+        // verify
+        assertEquals(2, notifiedRequesters.get());
+        assertTrue(fetch.isDone());
+        assertTrue(fetch.isDownloaded());
+        assertEquals(0, registry.getInFlightCount());
+    }
+
+    @Test
+    public void testFetch_CompletedDownload_NewFetchStarted() {
+        // setup
+        final AssetFetchRegistry registry = new AssetFetchRegistry();
+        final AssetFetchRegistry.AssetFetch firstFetch = registry.fetch(ASSET_URL, startedFetch -> startedFetch.complete(false));
+
+        // test
+        final AssetFetchRegistry.AssetFetch secondFetch = registry.fetch(ASSET_URL, startedFetch -> { });
+
+        // verify
+        assertNotSame(firstFetch, secondFetch);
+        assertFalse(firstFetch.isDownloaded());
+        assertFalse(secondFetch.isDone());
+    }
+
+    @Test
+    public void testWhenDone_CompletedFetch_CallbackRunImmediately() {
+        // setup
+        final AssetFetchRegistry registry = new AssetFetchRegistry();
+        final AssetFetchRegistry.AssetFetch fetch = registry.fetch(ASSET_URL, startedFetch -> startedFetch.complete(true));
+        final AtomicInteger notifiedRequesters = new AtomicInteger();
+
+        // test
+        fetch.whenDone(notifiedRequesters::incrementAndGet);
+
+        // verify
+        assertEquals(1, notifiedRequesters.get());
+    }
+
+    @Test
+    public void testFetch_StarterThrows_FetchCompleted() {
+        // setup
+        final AssetFetchRegistry registry = new AssetFetchRegistry();
+
+        // test
+        final AssetFetchRegistry.AssetFetch fetch = registry.fetch(ASSET_URL, startedFetch -> {
+            throw new IllegalStateException("start failure");
+        });
+
+        // verify
+        assertTrue(fetch.isDone());
+        assertFalse(fetch.isDownloaded());
+        assertEquals(0, registry.getInFlightCount());
+    }
+
+    @Test
+    public void testFetch_ConcurrentRequesters_OneDownloadStarted() throws InterruptedException {
+        // setup
+        final AssetFetchRegistry registry = new AssetFetchRegistry();
+        final AtomicInteger startedDownloads = new AtomicInteger();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        final List<AssetFetchRegistry.AssetFetch> fetches = new ArrayList<>();
+
+        // test
+        for (int i = 0; i < 8; i++) {
+            executorService.execute(() -> {
+                try {
+                    startLatch.await();
+                } catch (final InterruptedException ignored) {
+                    return;
+                }
+                final AssetFetchRegistry.AssetFetch fetch = registry.fetch(ASSET_URL, startedFetch -> startedDownloads.incrementAndGet());
+                synchronized (fetches) {
+                    fetches.add(fetch);
+                }
+            });
+        }
+        startLatch.countDown();
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+
+        // verify
+        assertEquals(1, startedDownloads.get());
+        fetches.get(0).complete(true);
+        for (final AssetFetchRegistry.AssetFetch fetch : fetches) {
+            assertTrue(fetch.await(1, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetGarbageCollectorTests {
+    private static final String ASSET_URL_1 = "https://www.adobe.com/adobe.png";
+    private static final String ASSET_URL_2 = "https://www.adobe.com/logo.png";
+    private static final String ASSET_URL_3 = "https://www.adobe.com/banner.png";
+
+    private File assetDirectory;
+    private AssetGarbageCollector assetGarbageCollector;
+
+    @Before
+    public void setup() throws IOException {
+        assetDirectory = File.createTempFile("images", "");
+        assetDirectory.delete();
+        assetDirectory.mkdirs();
+        assetGarbageCollector = new AssetGarbageCollector(assetDirectory.getPath());
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(assetDirectory);
+    }
+
+    private void deleteRecursively(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private File createCachedFile(final String name) throws IOException {
+        final File cachedFile = new File(assetDirectory, name);
+        cachedFile.getParentFile().mkdirs();
+        cachedFile.createNewFile();
+        return cachedFile;
+    }
+
+    @Test
+    public void testSweep_AssetsOfOtherMessages_Retained() throws IOException {
+        // setup
+        final File cachedAsset1 = createCachedFile(StringEncoder.sha2hash(ASSET_URL_1));
+        final File cachedAsset2 = createCachedFile(StringEncoder.sha2hash(ASSET_URL_2));
+        assetGarbageCollector.addReferences("message1", Collections.singletonList(ASSET_URL_1));
+        assetGarbageCollector.addReferences("message2", Collections.singletonList(ASSET_URL_2));
+
+        // test
+        assetGarbageCollector.sweep(assetGarbageCollector.getReferencedHashes());
+
+        // verify
+        assertTrue(cachedAsset1.exists());
+        assertTrue(cachedAsset2.exists());
+    }
+
+    @Test
+    public void testSweep_UnreferencedAssets_Deleted() throws IOException {
+        // setup
+        final File cachedAsset1 = createCachedFile(StringEncoder.sha2hash(ASSET_URL_1));
+        final File cachedAsset2 = createCachedFile("d38a46f6-4f43-435a-a862-4038c27b90a1/" + StringEncoder.sha2hash(ASSET_URL_2));
+        final File cachedAsset3 = createCachedFile(StringEncoder.sha2hash(ASSET_URL_3) + ".12345");
+        assetGarbageCollector.addReferences("message1", Collections.singletonList(ASSET_URL_1));
+
+        // test
+        assetGarbageCollector.sweep(assetGarbageCollector.getReferencedHashes());
+
+        // verify
+        assertTrue(cachedAsset1.exists());
+        assertFalse(cachedAsset2.exists());
+        assertFalse(cachedAsset3.exists());
+    }
+
+    @Test
+    public void testSweep_FilesDerivedFromReferencedAsset_Retained() throws IOException {
+        // setup
+        final File cachedAsset = createCachedFile(StringEncoder.sha2hash(ASSET_URL_1));
+        final File cachedAssetMetadata = createCachedFile(StringEncoder.sha2hash(ASSET_URL_1) + "_metadata.txt");
+        assetGarbageCollector.addReferences("message1", Collections.singletonList(ASSET_URL_1));
+
+        // test
+        assetGarbageCollector.sweep(assetGarbageCollector.getReferencedHashes());
+
+        // verify
+        assertTrue(cachedAsset.exists());
+        assertTrue(cachedAssetMetadata.exists());
+    }
+
+    @Test
+    public void testSweep_ReferencesRemoved_SharedAssetRetained() throws IOException {
+        // setup
+        final File cachedAsset1 = createCachedFile(StringEncoder.sha2hash(ASSET_URL_1));
+        final File cachedAsset2 = createCachedFile(StringEncoder.sha2hash(ASSET_URL_2));
+        assetGarbageCollector.addReferences("message1", Arrays.asList(ASSET_URL_1, ASSET_URL_2));
+        assetGarbageCollector.addReferences("message2", Collections.singletonList(ASSET_URL_1));
+
+        // test
+        assetGarbageCollector.removeReferences("message1");
+        assetGarbageCollector.sweep(assetGarbageCollector.getReferencedHashes());
+
+        // verify
+        assertTrue(cachedAsset1.exists());
+        assertFalse(cachedAsset2.exists());
+    }
+
+    @Test
+    public void testGetReferencedHashes_SharedAssets_HashedOnce() {
+        // setup
+        assetGarbageCollector.addReferences("message1", Arrays.asList(ASSET_URL_1, ASSET_URL_2));
+        assetGarbageCollector.addReferences("message2", Collections.singletonList(ASSET_URL_2));
+
+        // test
+        final Set<String> referencedHashes = assetGarbageCollector.getReferencedHashes();
+
+        // verify
+        assertEquals(new HashSet<>(Arrays.asList(StringEncoder.sha2hash(ASSET_URL_1), StringEncoder.sha2hash(ASSET_URL_2))), referencedHashes);
+    }
+
+    @Test
+    public void testSweep_ReferencesCleared_AllAssetsDeleted() throws IOException {
+        // setup
+        final File cachedAsset = createCachedFile(StringEncoder.sha2hash(ASSET_URL_1));
+        assetGarbageCollector.addReferences("message1", Collections.singletonList(ASSET_URL_1));
+
+        // test
+        assetGarbageCollector.clearReferences();
+        assetGarbageCollector.sweep(assetGarbageCollector.getReferencedHashes());
+
+        // verify
+        assertFalse(cachedAsset.exists());
+    }
+}
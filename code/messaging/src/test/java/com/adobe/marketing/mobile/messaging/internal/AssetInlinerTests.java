@@ -0,0 +1,149 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import android.util.Base64;
+
+import com.adobe.marketing.mobile.services.caching.CacheResult;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetInlinerTests {
+    private static final String CACHE_LOCATION = "/cache/messaging/images";
+    private static final String ICON_URL = "https://www.adobe.com/icon.png";
+    private static final String BANNER_URL = "https://www.adobe.com/banner.jpg";
+    private static final byte[] PNG_CONTENT = new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final String HTML = "<html><body><img src=\"" + ICON_URL + "\"><img src=\"" + BANNER_URL + "\"></body></html>";
+
+    @Mock
+    CacheService mockCacheService;
+    @Mock
+    CacheResult mockIconCacheResult;
+    @Mock
+    CacheResult mockBannerCacheResult;
+    @Mock
+    AssetCacheIndex mockAssetCacheIndex;
+
+    private MockedStatic<Base64> base64MockedStatic;
+    private AssetInliner assetInliner;
+
+    @Before
+    public void setup() {
+        base64MockedStatic = Mockito.mockStatic(Base64.class);
+        base64MockedStatic.when(() -> Base64.encodeToString(any(byte[].class), anyInt())).thenReturn("ZW5jb2RlZA==");
+        when(mockAssetCacheIndex.resolve(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockIconCacheResult.getData()).thenReturn(new ByteArrayInputStream(PNG_CONTENT));
+        final byte[] bannerContent = new byte[2048];
+        bannerContent[0] = (byte) 0xFF;
+        bannerContent[1] = (byte) 0xD8;
+        bannerContent[2] = (byte) 0xFF;
+        when(mockBannerCacheResult.getData()).thenReturn(new ByteArrayInputStream(bannerContent));
+        when(mockCacheService.get(CACHE_LOCATION, ICON_URL)).thenReturn(mockIconCacheResult);
+        when(mockCacheService.get(CACHE_LOCATION, BANNER_URL)).thenReturn(mockBannerCacheResult);
+        assetInliner = new AssetInliner(mockCacheService, CACHE_LOCATION, mockAssetCacheIndex);
+    }
+
+    @After
+    public void tearDown() {
+        base64MockedStatic.close();
+    }
+
+    @Test
+    public void testInline_SmallAssetInlined_LargeAssetKept() {
+        // test
+        final String inlinedHtml = assetInliner.inline(HTML, Arrays.asList(ICON_URL, BANNER_URL), 1024);
+
+        // verify
+        assertEquals("<html><body><img src=\"data:image/png;base64,ZW5jb2RlZA==\"><img src=\"" + BANNER_URL + "\"></body></html>", inlinedHtml);
+    }
+
+    @Test
+    public void testInline_AssetNotCached_HtmlUnchanged() {
+        // setup
+        when(mockCacheService.get(CACHE_LOCATION, ICON_URL)).thenReturn(null);
+
+        // test
+        final String inlinedHtml = assetInliner.inline(HTML, Collections.singletonList(ICON_URL), 1024);
+
+        // verify
+        assertSame(HTML, inlinedHtml);
+    }
+
+    @Test
+    public void testInline_UnknownAssetType_HtmlUnchanged() {
+        // setup
+        when(mockIconCacheResult.getData()).thenReturn(new ByteArrayInputStream("not an image".getBytes(StandardCharsets.UTF_8)));
+
+        // test
+        final String inlinedHtml = assetInliner.inline(HTML, Collections.singletonList(ICON_URL), 1024);
+
+        // verify
+        assertSame(HTML, inlinedHtml);
+    }
+
+    @Test
+    public void testInline_InliningDisabled_HtmlUnchanged() {
+        // test
+        final String inlinedHtml = assetInliner.inline(HTML, Collections.singletonList(ICON_URL), 0);
+
+        // verify
+        assertSame(HTML, inlinedHtml);
+    }
+
+    @Test
+    public void testInline_AssetCachedUnderAnotherUrl_CachedCopyInlined() {
+        // setup
+        final String aliasUrl = "https://cdn.adobe.com/icon.png";
+        when(mockAssetCacheIndex.resolve(aliasUrl)).thenReturn(ICON_URL);
+        final String html = "<div style=\"background-image: url(" + aliasUrl + ")\"></div>";
+
+        // test
+        final String inlinedHtml = assetInliner.inline(html, Collections.singletonList(aliasUrl), 1024);
+
+        // verify
+        assertEquals("<div style=\"background-image: url(data:image/png;base64,ZW5jb2RlZA==)\"></div>", inlinedHtml);
+    }
+
+    @Test
+    public void testGetImageMimeType() {
+        // verify
+        assertEquals("image/png", AssetInliner.getImageMimeType(PNG_CONTENT));
+        assertEquals("image/jpeg", AssetInliner.getImageMimeType(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0}));
+        assertEquals("image/gif", AssetInliner.getImageMimeType("GIF89a".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("image/webp", AssetInliner.getImageMimeType("RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("image/svg+xml", AssetInliner.getImageMimeType("<?xml version=\"1.0\"?><svg></svg>".getBytes(StandardCharsets.UTF_8)));
+        assertNull(AssetInliner.getImageMimeType("<html></html>".getBytes(StandardCharsets.UTF_8)));
+        assertNull(AssetInliner.getImageMimeType(new byte[] {1, 2}));
+    }
+}
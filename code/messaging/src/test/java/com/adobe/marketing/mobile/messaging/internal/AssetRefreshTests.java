@@ -0,0 +1,128 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetRefreshTests {
+    private static final String FIRST_ASSET = "https://www.adobe.com/first.png";
+    private static final String SECOND_ASSET = "https://www.adobe.com/second.png";
+
+    @Mock
+    AssetRefresh.Listener mockListener;
+
+    private AssetFetchRegistry assetFetchRegistry;
+    private AssetRefresh assetRefresh;
+
+    @Before
+    public void setup() {
+        assetFetchRegistry = new AssetFetchRegistry();
+        assetRefresh = new AssetRefresh(0, mockListener);
+    }
+
+    private AssetFetchRegistry.AssetFetch startFetch(final String url) {
+        return assetFetchRegistry.fetch(url, fetch -> {
+            // completed by the test
+        });
+    }
+
+    @Test
+    public void testFinish_DownloadsOfSeveralMessagesPending_ListenerNotifiedOnceAllCompleted() {
+        // setup
+        final AssetFetchRegistry.AssetFetch firstFetch = startFetch(FIRST_ASSET);
+        final AssetFetchRegistry.AssetFetch secondFetch = startFetch(SECOND_ASSET);
+        assetRefresh.add(Collections.singletonList(firstFetch));
+        assetRefresh.add(Collections.singletonList(secondFetch));
+
+        // test
+        assetRefresh.finish();
+        firstFetch.complete(true);
+
+        // verify
+        verify(mockListener, never()).onAssetsDownloaded(any(AssetRefresh.class));
+
+        // test
+        secondFetch.complete(false);
+
+        // verify
+        verify(mockListener, times(1)).onAssetsDownloaded(assetRefresh);
+        assertEquals(2, assetRefresh.getFetchCount());
+    }
+
+    @Test
+    public void testFinish_DownloadsCompletedBeforeFinish_ListenerNotifiedOnFinish() {
+        // setup
+        final List<AssetFetchRegistry.AssetFetch> fetches = Arrays.asList(startFetch(FIRST_ASSET), startFetch(SECOND_ASSET));
+        assetRefresh.add(fetches);
+        for (final AssetFetchRegistry.AssetFetch fetch : fetches) {
+            fetch.complete(true);
+        }
+
+        // verify
+        verify(mockListener, never()).onAssetsDownloaded(any(AssetRefresh.class));
+
+        // test
+        assetRefresh.finish();
+        assetRefresh.finish();
+
+        // verify
+        verify(mockListener, times(1)).onAssetsDownloaded(assetRefresh);
+    }
+
+    @Test
+    public void testFinish_NoDownloads_ListenerNotified() {
+        // test
+        assetRefresh.finish();
+
+        // verify
+        verify(mockListener, times(1)).onAssetsDownloaded(assetRefresh);
+        assertEquals(0, assetRefresh.getFetchCount());
+    }
+
+    @Test
+    public void testGetFirstAssetReadyMillis_FailedThenDownloadedAsset_TimedFromRefreshStart() {
+        // setup
+        assetRefresh = new AssetRefresh(System.nanoTime(), mockListener);
+        final AssetFetchRegistry.AssetFetch firstFetch = startFetch(FIRST_ASSET);
+        final AssetFetchRegistry.AssetFetch secondFetch = startFetch(SECOND_ASSET);
+        assetRefresh.add(Arrays.asList(firstFetch, secondFetch));
+
+        // test
+        firstFetch.complete(false);
+
+        // verify
+        assertEquals(-1, assetRefresh.getFirstAssetReadyMillis());
+
+        // test
+        secondFetch.complete(true);
+        assetRefresh.finish();
+
+        // verify
+        assertTrue(assetRefresh.getFirstAssetReadyMillis() >= 0);
+    }
+}
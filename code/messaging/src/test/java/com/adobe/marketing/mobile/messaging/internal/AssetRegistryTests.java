@@ -0,0 +1,254 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetRegistryTests {
+    private static final String CACHE_LOCATION = "/cache/messaging/images";
+    private static final String CACHED_ASSET = "https://www.adobe.com/cached.png";
+    private static final String PENDING_ASSET = "https://www.adobe.com/pending.png";
+
+    private AssetRegistry assetRegistry;
+
+    @Before
+    public void setup() {
+        assetRegistry = new AssetRegistry(CACHE_LOCATION);
+    }
+
+    @Test
+    public void testRegister_CachedAsset_Ready() {
+        // test
+        final AssetRegistry.AssetEntry entry = assetRegistry.register(CACHED_ASSET, true);
+
+        // verify
+        assertTrue(entry.isDone());
+        assertTrue(entry.isReady());
+        final Map<String, String> readyAssets = assetRegistry.getReadyAssets();
+        assertEquals(1, readyAssets.size());
+        assertEquals(CACHE_LOCATION, readyAssets.get(CACHED_ASSET));
+    }
+
+    @Test
+    public void testRegister_PendingAsset_NotReadyUntilCompleted() {
+        // setup
+        final AssetRegistry.AssetEntry entry = assetRegistry.register(PENDING_ASSET, false);
+        assertTrue(assetRegistry.getReadyAssets().isEmpty());
+
+        // test
+        entry.complete(true);
+
+        // verify
+        assertEquals(CACHE_LOCATION, assetRegistry.getReadyAssets().get(PENDING_ASSET));
+    }
+
+    @Test
+    public void testRegister_PendingAsset_EntryReused() {
+        // setup
+        final AssetRegistry.AssetEntry entry = assetRegistry.register(PENDING_ASSET, false);
+
+        // test
+        final AssetRegistry.AssetEntry reregisteredEntry = assetRegistry.register(PENDING_ASSET, false);
+
+        // verify
+        assertSame(entry, reregisteredEntry);
+    }
+
+    @Test
+    public void testRegister_FailedAsset_NewEntryCreated() {
+        // setup
+        final AssetRegistry.AssetEntry entry = assetRegistry.register(PENDING_ASSET, false);
+        entry.complete(false);
+
+        // test
+        final AssetRegistry.AssetEntry reregisteredEntry = assetRegistry.register(PENDING_ASSET, false);
+
+        // verify
+        assertNotSame(entry, reregisteredEntry);
+        assertFalse(reregisteredEntry.isDone());
+    }
+
+    @Test
+    public void testComplete_FirstCallWins() {
+        // setup
+        final AssetRegistry.AssetEntry entry = assetRegistry.register(PENDING_ASSET, false);
+
+        // test
+        entry.complete(false);
+        entry.complete(true);
+
+        // verify
+        assertTrue(entry.isDone());
+        assertFalse(entry.isReady());
+        assertTrue(assetRegistry.getReadyAssets().isEmpty());
+    }
+
+    @Test
+    public void testMarkCached_PendingAssetReady() {
+        // setup
+        assetRegistry.register(PENDING_ASSET, false);
+
+        // test
+        assetRegistry.markCached(PENDING_ASSET);
+
+        // verify
+        assertEquals(CACHE_LOCATION, assetRegistry.getReadyAssets().get(PENDING_ASSET));
+    }
+
+    @Test
+    public void testAwait_AllAssetsCached() {
+        // setup
+        assetRegistry.register(CACHED_ASSET, true);
+
+        // test
+        final AssetRegistry.Readiness readiness = assetRegistry.await(Collections.singletonList(CACHED_ASSET), 100);
+
+        // verify
+        assertEquals(AssetRegistry.Readiness.CACHED, readiness);
+    }
+
+    @Test
+    public void testAwait_PendingAssetCompletedInTime() {
+        // setup
+        assetRegistry.register(CACHED_ASSET, true);
+        final AssetRegistry.AssetEntry entry = assetRegistry.register(PENDING_ASSET, false);
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (final InterruptedException ignored) {}
+            entry.complete(true);
+        }).start();
+
+        // test
+        final AssetRegistry.Readiness readiness = assetRegistry.await(Arrays.asList(CACHED_ASSET, PENDING_ASSET), 5000);
+
+        // verify
+        assertEquals(AssetRegistry.Readiness.LOADED_AFTER_WAIT, readiness);
+    }
+
+    @Test
+    public void testAwait_PendingAssetTimesOut() {
+        // setup
+        assetRegistry.register(PENDING_ASSET, false);
+
+        // test
+        final long startTime = System.currentTimeMillis();
+        final AssetRegistry.Readiness readiness = assetRegistry.await(Collections.singletonList(PENDING_ASSET), 100);
+
+        // verify
+        assertEquals(AssetRegistry.Readiness.NETWORK_FALLBACK, readiness);
+        assertTrue(System.currentTimeMillis() - startTime < 5000);
+    }
+
+    @Test
+    public void testAwait_FailedAsset_NetworkFallback() {
+        // setup
+        assetRegistry.register(PENDING_ASSET, false).complete(false);
+
+        // test
+        final AssetRegistry.Readiness readiness = assetRegistry.await(Collections.singletonList(PENDING_ASSET), 100);
+
+        // verify
+        assertEquals(AssetRegistry.Readiness.NETWORK_FALLBACK, readiness);
+    }
+
+    @Test
+    public void testAwait_UnknownAssets_Cached() {
+        // test
+        final AssetRegistry.Readiness readiness = assetRegistry.await(Collections.singletonList("https://www.adobe.com/unknown.png"), 100);
+
+        // verify
+        assertEquals(AssetRegistry.Readiness.CACHED, readiness);
+    }
+
+    @Test
+    public void testHasPending_PendingAsset() {
+        // setup
+        assetRegistry.register(CACHED_ASSET, true);
+        final AssetRegistry.AssetEntry entry = assetRegistry.register(PENDING_ASSET, false);
+
+        // verify
+        assertTrue(assetRegistry.hasPending(Arrays.asList(CACHED_ASSET, PENDING_ASSET)));
+        assertFalse(assetRegistry.hasPending(Collections.singletonList(CACHED_ASSET)));
+
+        // test
+        entry.complete(true);
+
+        // verify
+        assertFalse(assetRegistry.hasPending(Arrays.asList(CACHED_ASSET, PENDING_ASSET)));
+    }
+
+    @Test
+    public void testHasPending_UnknownAssets_NotPending() {
+        // verify
+        assertFalse(assetRegistry.hasPending(Collections.singletonList("https://www.adobe.com/unknown.png")));
+        assertFalse(assetRegistry.hasPending(null));
+    }
+
+    @Test
+    public void testRemove_EvictedAsset_NoLongerReady() {
+        // setup
+        assetRegistry.register(CACHED_ASSET, true);
+
+        // test
+        assetRegistry.remove(CACHED_ASSET);
+
+        // verify
+        assertTrue(assetRegistry.getReadyAssets().isEmpty());
+    }
+
+    @Test
+    public void testRetainOnly_UnusedAssetsForgotten() {
+        // setup
+        assetRegistry.register(CACHED_ASSET, true);
+        assetRegistry.register(PENDING_ASSET, true);
+
+        // test
+        assetRegistry.retainOnly(Collections.singletonList(PENDING_ASSET));
+
+        // verify
+        final Map<String, String> readyAssets = assetRegistry.getReadyAssets();
+        assertEquals(1, readyAssets.size());
+        assertEquals(CACHE_LOCATION, readyAssets.get(PENDING_ASSET));
+    }
+
+    @Test
+    public void testRetainReferenced_UnreferencedAssetsForgotten() {
+        // setup
+        assetRegistry.register(CACHED_ASSET, true);
+        assetRegistry.register(PENDING_ASSET, true);
+
+        // test
+        assetRegistry.retainReferenced(Collections.singleton(StringEncoder.sha2hash(CACHED_ASSET)));
+
+        // verify
+        final Map<String, String> readyAssets = assetRegistry.getReadyAssets();
+        assertEquals(1, readyAssets.size());
+        assertEquals(CACHE_LOCATION, readyAssets.get(CACHED_ASSET));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.adobe.marketing.mobile.services.DeviceInforming;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.OutputStream;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AssetTranscoderTests {
+    private static final int MAX_DIMENSION = 1000;
+    private static final byte[] IMAGE_DATA = new byte[100];
+
+    @Mock
+    Bitmap mockDecodedBitmap;
+    @Mock
+    Bitmap mockScaledBitmap;
+    @Mock
+    DeviceInforming mockDeviceInfoService;
+    @Mock
+    DeviceInforming.DisplayInformation mockDisplayInformation;
+
+    private MockedStatic<BitmapFactory> bitmapFactoryMockedStatic;
+    private MockedStatic<Bitmap> bitmapMockedStatic;
+    private AssetTranscoder assetTranscoder;
+
+    @Before
+    public void setup() {
+        bitmapFactoryMockedStatic = Mockito.mockStatic(BitmapFactory.class);
+        bitmapMockedStatic = Mockito.mockStatic(Bitmap.class);
+        bitmapMockedStatic.when(() -> Bitmap.createScaledBitmap(any(Bitmap.class), anyInt(), anyInt(), anyBoolean())).thenReturn(mockScaledBitmap);
+        assetTranscoder = new AssetTranscoder(MAX_DIMENSION);
+    }
+
+    @After
+    public void tearDown() {
+        bitmapFactoryMockedStatic.close();
+        bitmapMockedStatic.close();
+    }
+
+    private void setupImage(final int width, final int height, final String mimeType) {
+        bitmapFactoryMockedStatic.when(() -> BitmapFactory.decodeByteArray(any(byte[].class), anyInt(), anyInt(), any(BitmapFactory.Options.class))).thenAnswer(invocation -> {
+            final BitmapFactory.Options options = invocation.getArgument(3);
+            if (options.inJustDecodeBounds) {
+                options.outWidth = width;
+                options.outHeight = height;
+                options.outMimeType = mimeType;
+                return null;
+            }
+            return mockDecodedBitmap;
+        });
+        when(mockDecodedBitmap.getWidth()).thenReturn(width);
+        when(mockDecodedBitmap.getHeight()).thenReturn(height);
+    }
+
+    private void setupEncodedSize(final Bitmap bitmap, final int encodedSize) {
+        when(bitmap.compress(any(), anyInt(), any(OutputStream.class))).thenAnswer(invocation -> {
+            final OutputStream outputStream = invocation.getArgument(2);
+            outputStream.write(new byte[encodedSize]);
+            return true;
+        });
+    }
+
+    @Test
+    public void testCreate_DisplayInformationAvailable() {
+        // setup
+        when(mockDeviceInfoService.getDisplayInformation()).thenReturn(mockDisplayInformation);
+        when(mockDisplayInformation.getWidthPixels()).thenReturn(1080);
+        when(mockDisplayInformation.getHeightPixels()).thenReturn(2340);
+
+        // test
+        final AssetTranscoder transcoder = AssetTranscoder.create(mockDeviceInfoService);
+
+        // verify
+        assertNotNull(transcoder);
+    }
+
+    @Test
+    public void testCreate_DisplayInformationNotAvailable() {
+        // setup
+        when(mockDeviceInfoService.getDisplayInformation()).thenReturn(null);
+
+        // test
+        final AssetTranscoder transcoder = AssetTranscoder.create(mockDeviceInfoService);
+
+        // verify
+        assertNull(transcoder);
+    }
+
+    @Test
+    public void testTranscode_LargeOpaqueImage_DownscaledToDisplaySize() {
+        // setup
+        setupImage(4000, 3000, "image/jpeg");
+        when(mockScaledBitmap.hasAlpha()).thenReturn(false);
+        setupEncodedSize(mockScaledBitmap, 40);
+
+        // test
+        final byte[] transcodedData = assetTranscoder.transcode(IMAGE_DATA);
+
+        // verify
+        assertArrayEquals(new byte[40], transcodedData);
+        bitmapMockedStatic.verify(() -> Bitmap.createScaledBitmap(mockDecodedBitmap, 1000, 750, true));
+        // the unit tests run below API 30, where the WEBP format is used
+        verify(mockScaledBitmap, times(1)).compress(eq(Bitmap.CompressFormat.WEBP), eq(MessagingConstants.TRANSCODED_IMAGE_QUALITY), any(OutputStream.class));
+        verify(mockScaledBitmap, times(1)).recycle();
+        verify(mockDecodedBitmap, times(1)).recycle();
+    }
+
+    @Test
+    public void testTranscode_TransparentImage_EncodedAsPng() {
+        // setup
+        setupImage(400, 300, "image/png");
+        when(mockDecodedBitmap.hasAlpha()).thenReturn(true);
+        setupEncodedSize(mockDecodedBitmap, 40);
+
+        // test
+        final byte[] transcodedData = assetTranscoder.transcode(IMAGE_DATA);
+
+        // verify the image is not scaled as it already fits the display
+        assertArrayEquals(new byte[40], transcodedData);
+        bitmapMockedStatic.verify(() -> Bitmap.createScaledBitmap(any(Bitmap.class), anyInt(), anyInt(), anyBoolean()), never());
+        verify(mockDecodedBitmap, times(1)).compress(eq(Bitmap.CompressFormat.PNG), eq(100), any(OutputStream.class));
+        verify(mockDecodedBitmap, times(1)).recycle();
+    }
+
+    @Test
+    public void testTranscode_TranscodedImageLarger_OriginalKept() {
+        // setup
+        setupImage(400, 300, "image/jpeg");
+        setupEncodedSize(mockDecodedBitmap, 200);
+
+        // test
+        final byte[] transcodedData = assetTranscoder.transcode(IMAGE_DATA);
+
+        // verify
+        assertNull(transcodedData);
+        verify(mockDecodedBitmap, times(1)).recycle();
+    }
+
+    @Test
+    public void testTranscode_AnimatedGif_NotDecoded() {
+        // setup
+        setupImage(4000, 3000, "image/gif");
+
+        // test
+        final byte[] transcodedData = assetTranscoder.transcode(IMAGE_DATA);
+
+        // verify only the bounds are decoded
+        assertNull(transcodedData);
+        bitmapFactoryMockedStatic.verify(() -> BitmapFactory.decodeByteArray(any(byte[].class), anyInt(), anyInt(), any(BitmapFactory.Options.class)), times(1));
+    }
+
+    @Test
+    public void testTranscode_NotABitmap_OriginalKept() {
+        // setup
+        setupImage(0, 0, null);
+
+        // test
+        final byte[] transcodedData = assetTranscoder.transcode(IMAGE_DATA);
+
+        // verify
+        assertNull(transcodedData);
+    }
+}
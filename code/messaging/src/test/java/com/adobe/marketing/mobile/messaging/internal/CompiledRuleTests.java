@@ -0,0 +1,313 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.adobe.marketing.mobile.ExtensionApi;
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
+import com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence;
+import com.adobe.marketing.mobile.launch.rulesengine.json.JSONRulesParser;
+import com.adobe.marketing.mobile.rulesengine.ConditionEvaluator;
+import com.adobe.marketing.mobile.rulesengine.Context;
+import com.adobe.marketing.mobile.rulesengine.Evaluable;
+import com.adobe.marketing.mobile.rulesengine.LogicalExpression;
+import com.adobe.marketing.mobile.rulesengine.Transformer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CompiledRuleTests {
+    @Mock
+    ExtensionApi mockExtensionApi;
+
+    private static final String CONSEQUENCE = "\"consequences\":[{\"id\":\"messageId\",\"type\":\"cjmiam\",\"detail\":{\"htmlHandle\":\"handle\",\"remoteAssets\":[\"https://www.adobe.com/adobe.png\"],\"mobileParameters\":{\"width\":100,\"uiTakeover\":true}}}]";
+
+    private JSONObject createRuleJson(final String condition) {
+        try {
+            return new JSONObject("{\"version\":1,\"rules\":[{\"condition\":" + condition + "," + CONSEQUENCE + "}]}");
+        } catch (JSONException e) {
+            fail(e.getMessage());
+            return null;
+        }
+    }
+
+    private CompiledRule writeAndRead(final CompiledRule compiledRule) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        compiledRule.write(output);
+        output.flush();
+        return CompiledRule.read(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    private Context createContext(final Object value) {
+        final Transformer transformer = new Transformer();
+        transformer.register("int", e -> {
+            if (e instanceof String) {
+                try {
+                    return Integer.parseInt((String) e);
+                } catch (final NumberFormatException ignored) {
+                    return e;
+                }
+            }
+            return e instanceof Number ? ((Number) e).intValue() : e;
+        });
+        transformer.register("double", e -> {
+            if (e instanceof String) {
+                try {
+                    return Double.parseDouble((String) e);
+                } catch (final NumberFormatException ignored) {
+                    return e;
+                }
+            }
+            return e instanceof Number ? ((Number) e).doubleValue() : e;
+        });
+        transformer.register("bool", e -> e instanceof String ? Boolean.parseBoolean((String) e) : e);
+        transformer.register("string", e -> e == null ? null : String.valueOf(e));
+        return new Context(key -> "value".equals(key) ? value : null, new ConditionEvaluator(ConditionEvaluator.Option.CASE_INSENSITIVE), transformer);
+    }
+
+    /**
+     * Verifies the compiled rule of a matcher evaluates the provided values as the rule created by the core rules parser.
+     */
+    private void verifyEvaluatedAsParsedRule(final String matcher, final String values, final Object... eventValues) {
+        final JSONObject ruleJson = createRuleJson("{\"type\":\"matcher\",\"definition\":{\"key\":\"value\",\"matcher\":\"" + matcher + "\",\"values\":" + values + "}}");
+        final CompiledRule compiledRule = CompiledRule.compile(ruleJson);
+        assertNotNull(compiledRule);
+        final Evaluable compiledCondition = compiledRule.toLaunchRule().getCondition();
+        final List<LaunchRule> parsedRules = JSONRulesParser.parse(ruleJson.toString(), mockExtensionApi);
+        assertNotNull(parsedRules);
+        final Evaluable parsedCondition = parsedRules.get(0).getCondition();
+
+        final List<Boolean> results = new ArrayList<>();
+        for (final Object eventValue : eventValues) {
+            final boolean parsedResult = parsedCondition.evaluate(createContext(eventValue)).isSuccess();
+            final boolean compiledResult = compiledCondition.evaluate(createContext(eventValue)).isSuccess();
+            assertEquals(matcher + " " + values + " evaluated differently for " + eventValue, parsedResult, compiledResult);
+            results.add(compiledResult);
+        }
+        assertTrue(results.contains(true));
+        assertTrue(results.contains(false));
+    }
+
+    @Test
+    public void testCompile_GroupOfMatchers_RoundTrip() throws IOException {
+        // setup
+        final JSONObject ruleJson = createRuleJson("{\"type\":\"group\",\"definition\":{\"logic\":\"and\",\"conditions\":["
+                + "{\"type\":\"matcher\",\"definition\":{\"key\":\"~type\",\"matcher\":\"eq\",\"values\":[\"com.adobe.eventType.generic.track\"]}},"
+                + "{\"type\":\"matcher\",\"definition\":{\"key\":\"launches\",\"matcher\":\"ge\",\"values\":[2, 4.5]}},"
+                + "{\"type\":\"matcher\",\"definition\":{\"key\":\"isLoggedIn\",\"matcher\":\"ne\",\"values\":[false]}}]}}");
+
+        // test
+        final CompiledRule compiledRule = CompiledRule.compile(ruleJson);
+
+        // verify
+        assertNotNull(compiledRule);
+        final LaunchRule launchRule = writeAndRead(compiledRule).toLaunchRule();
+        assertTrue(launchRule.getCondition() instanceof LogicalExpression);
+        final List<RuleConsequence> consequences = launchRule.getConsequenceList();
+        assertEquals(1, consequences.size());
+        assertEquals("messageId", consequences.get(0).getId());
+        assertEquals("cjmiam", consequences.get(0).getType());
+        final Map<String, Object> detail = consequences.get(0).getDetail();
+        assertEquals("handle", detail.get("htmlHandle"));
+        assertEquals(100, ((Map<String, Object>) detail.get("mobileParameters")).get("width"));
+        assertEquals(true, ((Map<String, Object>) detail.get("mobileParameters")).get("uiTakeover"));
+        assertEquals("https://www.adobe.com/adobe.png", ((List<Object>) detail.get("remoteAssets")).get(0));
+    }
+
+    @Test
+    public void testCompile_SingleMatcher() throws IOException {
+        // setup
+        final JSONObject ruleJson = createRuleJson("{\"type\":\"matcher\",\"definition\":{\"key\":\"isLoggedIn\",\"matcher\":\"eq\",\"values\":[\"true\"]}}");
+
+        // test
+        final CompiledRule compiledRule = CompiledRule.compile(ruleJson);
+
+        // verify
+        assertNotNull(compiledRule);
+        final LaunchRule launchRule = writeAndRead(compiledRule).toLaunchRule();
+        assertNotNull(launchRule.getCondition());
+        assertEquals("messageId", launchRule.getConsequenceList().get(0).getId());
+    }
+
+    @Test
+    public void testCompile_HistoricalCondition_NotCompiled() {
+        // setup
+        final JSONObject ruleJson = createRuleJson("{\"type\":\"historical\",\"definition\":{\"events\":[{\"iam.id\":\"messageId\"}],\"matcher\":\"ge\",\"value\":1,\"searchType\":\"any\"}}");
+
+        // test
+        final CompiledRule compiledRule = CompiledRule.compile(ruleJson);
+
+        // verify
+        assertNull(compiledRule);
+    }
+
+    @Test
+    public void testCompile_ExistsMatcher_NotCompiled() {
+        // setup
+        final JSONObject ruleJson = createRuleJson("{\"type\":\"matcher\",\"definition\":{\"key\":\"isLoggedIn\",\"matcher\":\"ex\"}}");
+
+        // test
+        final CompiledRule compiledRule = CompiledRule.compile(ruleJson);
+
+        // verify
+        assertNull(compiledRule);
+    }
+
+    @Test
+    public void testCompile_UnsupportedValue_NotCompiled() {
+        // setup
+        final JSONObject ruleJson = createRuleJson("{\"type\":\"matcher\",\"definition\":{\"key\":\"isLoggedIn\",\"matcher\":\"eq\",\"values\":[{\"nested\":true}]}}");
+
+        // test
+        final CompiledRule compiledRule = CompiledRule.compile(ruleJson);
+
+        // verify
+        assertNull(compiledRule);
+    }
+
+    @Test
+    public void testCompile_NestedGroupWithUnsupportedCondition_NotCompiled() {
+        // setup
+        final JSONObject ruleJson = createRuleJson("{\"type\":\"group\",\"definition\":{\"logic\":\"or\",\"conditions\":["
+                + "{\"type\":\"matcher\",\"definition\":{\"key\":\"isLoggedIn\",\"matcher\":\"eq\",\"values\":[\"true\"]}},"
+                + "{\"type\":\"group\",\"definition\":{\"logic\":\"and\",\"conditions\":[{\"type\":\"matcher\",\"definition\":{\"key\":\"isLoggedIn\",\"matcher\":\"nx\"}}]}}]}}");
+
+        // test
+        final CompiledRule compiledRule = CompiledRule.compile(ruleJson);
+
+        // verify
+        assertNull(compiledRule);
+    }
+
+    @Test
+    public void testCompile_MissingConsequenceDetail_NotCompiled() throws JSONException {
+        // setup
+        final JSONObject ruleJson = new JSONObject("{\"version\":1,\"rules\":[{\"condition\":{\"type\":\"matcher\",\"definition\":{\"key\":\"isLoggedIn\",\"matcher\":\"eq\",\"values\":[\"true\"]}},"
+                + "\"consequences\":[{\"id\":\"messageId\",\"type\":\"cjmiam\"}]}]}");
+
+        // test
+        final CompiledRule compiledRule = CompiledRule.compile(ruleJson);
+
+        // verify
+        assertNull(compiledRule);
+    }
+
+    @Test
+    public void testRead_TruncatedData() throws IOException {
+        // setup
+        final CompiledRule compiledRule = CompiledRule.compile(createRuleJson("{\"type\":\"matcher\",\"definition\":{\"key\":\"isLoggedIn\",\"matcher\":\"eq\",\"values\":[\"true\"]}}"));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        compiledRule.write(output);
+        output.flush();
+        final byte[] data = bytes.toByteArray();
+
+        // test
+        try {
+            CompiledRule.read(ByteBuffer.wrap(data, 0, data.length / 2));
+            fail("Expected the truncated rule to be rejected.");
+        } catch (final BufferUnderflowException | IllegalArgumentException expected) {
+            // verify
+        }
+    }
+
+    @Test
+    public void testToLaunchRule_Equals_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("eq", "[\"abc\"]", "abc", "ABC", "xyz");
+        verifyEvaluatedAsParsedRule("eq", "[3]", 3, 4, "3");
+        verifyEvaluatedAsParsedRule("eq", "[2.5]", 2.5, 3.0);
+        verifyEvaluatedAsParsedRule("eq", "[true]", true, false);
+        verifyEvaluatedAsParsedRule("eq", "[\"a\", \"b\"]", "a", "b", "c");
+    }
+
+    @Test
+    public void testToLaunchRule_NotEquals_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("ne", "[\"abc\"]", "abc", "xyz");
+        verifyEvaluatedAsParsedRule("ne", "[3]", 3, 4);
+        verifyEvaluatedAsParsedRule("ne", "[2.5]", 2.5, 3.0);
+        verifyEvaluatedAsParsedRule("ne", "[true]", true, false);
+    }
+
+    @Test
+    public void testToLaunchRule_GreaterThan_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("gt", "[3]", 2, 3, 4);
+        verifyEvaluatedAsParsedRule("gt", "[2.5]", 2.0, 2.5, 3.0);
+    }
+
+    @Test
+    public void testToLaunchRule_GreaterEqual_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("ge", "[3]", 2, 3, 4);
+        verifyEvaluatedAsParsedRule("ge", "[2.5]", 2.0, 2.5, 3.0);
+    }
+
+    @Test
+    public void testToLaunchRule_LessThan_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("lt", "[3]", 2, 3, 4);
+        verifyEvaluatedAsParsedRule("lt", "[2.5]", 2.0, 2.5, 3.0);
+    }
+
+    @Test
+    public void testToLaunchRule_LessEqual_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("le", "[3]", 2, 3, 4);
+        verifyEvaluatedAsParsedRule("le", "[2.5]", 2.0, 2.5, 3.0);
+    }
+
+    @Test
+    public void testToLaunchRule_Contains_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("co", "[\"ab\"]", "abc", "cab", "xyz");
+    }
+
+    @Test
+    public void testToLaunchRule_NotContains_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("nc", "[\"ab\"]", "abc", "xyz");
+    }
+
+    @Test
+    public void testToLaunchRule_StartsWith_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("sw", "[\"ab\"]", "abc", "cab");
+    }
+
+    @Test
+    public void testToLaunchRule_EndsWith_EvaluatedAsParsedRule() {
+        // test and verify
+        verifyEvaluatedAsParsedRule("ew", "[\"ab\"]", "abc", "cab");
+    }
+}
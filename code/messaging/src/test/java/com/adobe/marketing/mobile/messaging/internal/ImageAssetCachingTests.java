@@ -12,19 +12,29 @@
 package com.adobe.marketing.mobile.messaging.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.adobe.marketing.mobile.messaging.MessagingTimingListener;
+import com.adobe.marketing.mobile.messaging.MessagingTimingStage;
 import com.adobe.marketing.mobile.services.DeviceInforming;
+import com.adobe.marketing.mobile.services.HttpConnecting;
 import com.adobe.marketing.mobile.services.NetworkCallback;
 import com.adobe.marketing.mobile.services.NetworkRequest;
 import com.adobe.marketing.mobile.services.Networking;
 import com.adobe.marketing.mobile.services.ServiceProvider;
 import com.adobe.marketing.mobile.services.caching.CacheEntry;
+import com.adobe.marketing.mobile.services.caching.CacheExpiry;
 import com.adobe.marketing.mobile.services.caching.CacheResult;
 import com.adobe.marketing.mobile.services.caching.CacheService;
 import com.adobe.marketing.mobile.services.ui.UIService;
@@ -39,7 +49,13 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -61,6 +77,10 @@ public class ImageAssetCachingTests {
     DeviceInforming mockDeviceInfoService;
     @Mock
     Networking mockNetworkService;
+    @Mock
+    HttpConnecting mockHttpConnection;
+    @Mock
+    MessagingTimingListener mockTimingListener;
 
     private final static String IMAGE_URL = "https://www.adobe.com/adobe.png";
     private final static String IMAGE_URL2 = "https://www.adobe.com/adobe2.png";
@@ -78,6 +98,8 @@ public class ImageAssetCachingTests {
         reset(mockCacheResult);
         reset(mockDeviceInfoService);
         reset(mockNetworkService);
+        MessagingTimings.reset();
+        new File(testCacheDir, MessagingTestConstants.CACHE_BASE_DIR + File.separator + MessagingTestConstants.ASSET_CACHE_INDEX_FILE).delete();
         if (testCacheDir.exists()) {
             testCacheDir.delete();
         }
@@ -104,6 +126,60 @@ public class ImageAssetCachingTests {
         }
     }
 
+    /**
+     * Backs the mocked {@link CacheService} with a map, so assets are only cached once they have been set.
+     */
+    private void setupCachedAssets() {
+        final Map<String, byte[]> cachedData = new HashMap<>();
+        final Map<String, Map<String, String>> cachedMetadata = new HashMap<>();
+        doAnswer(invocation -> {
+            final CacheEntry cacheEntry = invocation.getArgument(2);
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[64];
+            int bytesRead;
+            while ((bytesRead = cacheEntry.getData().read(buffer)) != -1) {
+                data.write(buffer, 0, bytesRead);
+            }
+            cachedData.put(invocation.getArgument(1), data.toByteArray());
+            cachedMetadata.put(invocation.getArgument(1), cacheEntry.getMetadata());
+            return true;
+        }).when(mockCacheService).set(anyString(), anyString(), any(CacheEntry.class));
+        when(mockCacheService.get(anyString(), anyString())).thenAnswer(invocation -> {
+            final String key = invocation.getArgument(1);
+            final byte[] data = cachedData.get(key);
+            if (data == null) {
+                return null;
+            }
+            return new CacheResult() {
+                @Override
+                public InputStream getData() {
+                    return new ByteArrayInputStream(data);
+                }
+
+                @Override
+                public CacheExpiry getExpiry() {
+                    return CacheExpiry.never();
+                }
+
+                @Override
+                public Map<String, String> getMetadata() {
+                    return cachedMetadata.get(key);
+                }
+            };
+        });
+        when(mockCacheService.remove(anyString(), anyString())).thenAnswer(invocation -> {
+            cachedData.remove(invocation.getArgument(1));
+            cachedMetadata.remove(invocation.getArgument(1));
+            return true;
+        });
+        doAnswer(invocation -> {
+            final NetworkCallback callback = invocation.getArgument(1);
+            callback.call(mockHttpConnection);
+            return null;
+        }).when(mockNetworkService).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+        when(mockHttpConnection.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)));
+    }
+
     @Test
     public void testCacheImageAssets_ValidImageAssetListTriggersRemoteAssetFetch() {
         // setup
@@ -208,4 +284,275 @@ public class ImageAssetCachingTests {
             assertEquals("testCache/messaging/images", assetMap.get(IMAGE_URL2));
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCacheImageAssets_AssetsWithSameContent_StoredOnceAndResolvedToCachedCopy() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final String expectedCacheLocation = "testCache/messaging/images";
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            when(mockHttpConnection.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)));
+            when(mockCacheResult.getData()).thenAnswer(invocation -> new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)));
+            // the cache service consumes the asset data when it is cached
+            doAnswer(invocation -> {
+                final InputStream assetData = ((CacheEntry) invocation.getArgument(2)).getData();
+                final byte[] buffer = new byte[64];
+                try {
+                    while (assetData.read(buffer) != -1) {
+                        // read until the end of the asset data
+                    }
+                } catch (final IOException exception) {
+                    return false;
+                }
+                return true;
+            }).when(mockCacheService).set(anyString(), anyString(), any(CacheEntry.class));
+            doAnswer(invocation -> {
+                final NetworkCallback callback = invocation.getArgument(1);
+                callback.call(mockHttpConnection);
+                return null;
+            }).when(mockNetworkService).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            final List<String> imageAssets = new ArrayList<>();
+            imageAssets.add(IMAGE_URL);
+            imageAssets.add(IMAGE_URL2);
+
+            // test
+            messagingCacheUtilities.cacheImageAssets(imageAssets);
+            final String html = messagingCacheUtilities.resolveCachedAssets("<img src=\"" + IMAGE_URL2 + "\"><img src=\"" + IMAGE_URL + "\">", imageAssets);
+
+            // verify the duplicate copy is removed and the html references the cached copy
+            verify(mockCacheService, times(1)).remove(eq(expectedCacheLocation), eq(IMAGE_URL2));
+            verify(mockCacheService, never()).remove(eq(expectedCacheLocation), eq(IMAGE_URL));
+            assertEquals("<img src=\"" + IMAGE_URL + "\"><img src=\"" + IMAGE_URL + "\">", html);
+            assertEquals(expectedCacheLocation, messagingCacheUtilities.getAssetsMap().get(IMAGE_URL));
+        });
+    }
+
+    @Test
+    public void testResolveCachedAssets_NoDuplicateAssets_HtmlUnchanged() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final List<String> imageAssets = new ArrayList<>();
+            imageAssets.add(IMAGE_URL);
+            final String html = "<img src=\"" + IMAGE_URL + "\">";
+
+            // test
+            final String resolvedHtml = messagingCacheUtilities.resolveCachedAssets(html, imageAssets);
+
+            // verify
+            assertEquals(html, resolvedHtml);
+        });
+    }
+
+    @Test
+    public void testCacheImageAssets_AssetsWithSameContentRefreshedTwice_FreshCachedCopyNotRequestedAgain() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            setupCachedAssets();
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            when(mockHttpConnection.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_CACHE_CONTROL)).thenReturn("max-age=3600");
+            final List<String> imageAssets = new ArrayList<>();
+            imageAssets.add(IMAGE_URL);
+            imageAssets.add(IMAGE_URL2);
+            messagingCacheUtilities.cacheImageAssets(imageAssets);
+            verify(mockCacheService, times(1)).remove(anyString(), eq(IMAGE_URL2));
+
+            // test
+            messagingCacheUtilities.cacheImageAssets(imageAssets);
+
+            // verify the asset sharing its content with the fresh cached copy is not downloaded again
+            verify(mockNetworkService, times(2)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            final String html = messagingCacheUtilities.resolveCachedAssets("<img src=\"" + IMAGE_URL2 + "\">", imageAssets);
+            assertEquals("<img src=\"" + IMAGE_URL + "\">", html);
+        });
+    }
+
+    @Test
+    public void testCacheImageAssets_AssetsWithSameContentRefreshedTwice_CachedCopyRevalidated() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            setupCachedAssets();
+            final ArgumentCaptor<NetworkRequest> networkRequestArgumentCaptor = ArgumentCaptor.forClass(NetworkRequest.class);
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            when(mockHttpConnection.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_ETAG)).thenReturn("etag");
+            final List<String> imageAssets = new ArrayList<>();
+            imageAssets.add(IMAGE_URL);
+            imageAssets.add(IMAGE_URL2);
+            messagingCacheUtilities.cacheImageAssets(imageAssets);
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_MODIFIED);
+
+            // test
+            messagingCacheUtilities.cacheImageAssets(imageAssets);
+
+            // verify the asset sharing its content with the cached copy is revalidated with the cached copy validators
+            verify(mockNetworkService, times(4)).connectAsync(networkRequestArgumentCaptor.capture(), any(NetworkCallback.class));
+            final NetworkRequest aliasRequest = networkRequestArgumentCaptor.getAllValues().get(3);
+            assertEquals(IMAGE_URL2, aliasRequest.getUrl());
+            assertEquals("etag", aliasRequest.getHeaders().get(MessagingConstants.HTTP_HEADER_IF_NONE_MATCH));
+            verify(mockCacheService, times(1)).set(anyString(), eq(IMAGE_URL2), any(CacheEntry.class));
+            final String html = messagingCacheUtilities.resolveCachedAssets("<img src=\"" + IMAGE_URL2 + "\">", imageAssets);
+            assertEquals("<img src=\"" + IMAGE_URL + "\">", html);
+        });
+    }
+
+    @Test
+    public void testCacheImageAssets_AssetsOfSeveralMessagesInOneRefresh_AssetsDownloadedStageRecordedOnce() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            MessagingTimings.reset();
+            MessagingTimings.setListener(mockTimingListener);
+            final List<NetworkCallback> pendingCallbacks = new ArrayList<>();
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_MODIFIED);
+            doAnswer(invocation -> {
+                pendingCallbacks.add(invocation.getArgument(1));
+                return null;
+            }).when(mockNetworkService).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            final List<String> firstMessageAssets = new ArrayList<>();
+            firstMessageAssets.add(IMAGE_URL);
+            final List<String> secondMessageAssets = new ArrayList<>();
+            secondMessageAssets.add(IMAGE_URL2);
+
+            // test
+            messagingCacheUtilities.startAssetRefresh(System.nanoTime());
+            messagingCacheUtilities.cacheImageAssets(firstMessageAssets);
+            messagingCacheUtilities.cacheImageAssets(secondMessageAssets);
+            messagingCacheUtilities.finishAssetRefresh();
+            pendingCallbacks.get(0).call(mockHttpConnection);
+
+            // verify the stage is not recorded until every asset of the refresh is downloaded
+            verify(mockTimingListener, never()).onStageCompleted(eq(MessagingTimingStage.ASSETS_DOWNLOADED), anyLong(), anyLong());
+
+            // test
+            pendingCallbacks.get(1).call(mockHttpConnection);
+
+            // verify
+            verify(mockTimingListener, times(1)).onStageCompleted(eq(MessagingTimingStage.ASSETS_DOWNLOADED), anyLong(), anyLong());
+        });
+    }
+
+    @Test
+    public void testCacheImageAssets_AssetsOfSeveralMessagesInOneRefresh_AssetMetricsReportedOnce() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            AssetDownloadMetrics.reset();
+            final List<Map<String, Object>> reportedMetrics = new ArrayList<>();
+            AssetDownloadMetrics.setReporter(reportedMetrics::add);
+            final List<NetworkCallback> pendingCallbacks = new ArrayList<>();
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_MODIFIED);
+            doAnswer(invocation -> {
+                pendingCallbacks.add(invocation.getArgument(1));
+                return null;
+            }).when(mockNetworkService).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            final List<String> firstMessageAssets = new ArrayList<>();
+            firstMessageAssets.add(IMAGE_URL);
+            final List<String> secondMessageAssets = new ArrayList<>();
+            secondMessageAssets.add(IMAGE_URL2);
+
+            // test
+            messagingCacheUtilities.startAssetRefresh(System.nanoTime());
+            messagingCacheUtilities.cacheImageAssets(firstMessageAssets);
+            messagingCacheUtilities.cacheImageAssets(secondMessageAssets);
+            messagingCacheUtilities.finishAssetRefresh();
+            pendingCallbacks.get(0).call(mockHttpConnection);
+
+            // verify the metrics are not reported until every asset of the refresh is downloaded
+            assertTrue(reportedMetrics.isEmpty());
+
+            // test
+            pendingCallbacks.get(1).call(mockHttpConnection);
+
+            // verify
+            assertEquals(1, reportedMetrics.size());
+            assertEquals(1L, ((Map<String, Object>) reportedMetrics.get(0).get("firstAssetReadyMs")).get("count"));
+            AssetDownloadMetrics.reset();
+        });
+    }
+
+    @Test
+    public void testCacheImageAssets_AssetsDownloaded_AssetCacheIndexPersistedInTheBackground() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final List<Runnable> backgroundTasks = new ArrayList<>();
+            messagingCacheUtilities = new MessagingCacheUtilities(backgroundTasks::add);
+            final File indexFile = new File(testCacheDir, MessagingTestConstants.CACHE_BASE_DIR + File.separator + MessagingTestConstants.ASSET_CACHE_INDEX_FILE);
+            setupCachedAssets();
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            final List<String> imageAssets = new ArrayList<>();
+            imageAssets.add(IMAGE_URL);
+            imageAssets.add(IMAGE_URL2);
+
+            // test
+            messagingCacheUtilities.startAssetRefresh(System.nanoTime());
+            messagingCacheUtilities.cacheImageAssets(imageAssets);
+            messagingCacheUtilities.recordAssetsDisplayed(imageAssets);
+            messagingCacheUtilities.finishAssetRefresh();
+
+            // verify the index is written once, on the background thread
+            assertFalse(indexFile.exists());
+            assertEquals(1, backgroundTasks.size());
+
+            // test
+            backgroundTasks.get(0).run();
+
+            // verify
+            assertTrue(indexFile.exists());
+        });
+    }
+
+    @Test
+    public void testCacheImageAssets_HtmlHandleProvided_AssetsInlinedInTheBackground() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final List<Runnable> backgroundTasks = new ArrayList<>();
+            messagingCacheUtilities = new MessagingCacheUtilities(backgroundTasks::add);
+            final String htmlCacheName = MessagingConstants.CACHE_BASE_DIR + File.separator + MessagingConstants.HTML_CACHE_SUBDIRECTORY;
+            setupCachedAssets();
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            final String htmlHandle = messagingCacheUtilities.cacheHtml("<html><body><img src=\"" + IMAGE_URL + "\"></body></html>");
+            final List<String> imageAssets = new ArrayList<>();
+            imageAssets.add(IMAGE_URL);
+
+            // test
+            messagingCacheUtilities.cacheImageAssets(imageAssets, htmlHandle);
+
+            // verify the html is not read on the calling thread, it was only read once when it was cached
+            verify(mockCacheService, times(1)).get(eq(htmlCacheName), eq(htmlHandle));
+
+            // test
+            runBackgroundTasks(backgroundTasks);
+
+            // verify
+            verify(mockCacheService, times(2)).get(eq(htmlCacheName), eq(htmlHandle));
+        });
+    }
+
+    @Test
+    public void testCacheImageAssets_HtmlAndAssetsUnchanged_InlinedHtmlNotRebuilt() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final List<Runnable> backgroundTasks = new ArrayList<>();
+            messagingCacheUtilities = new MessagingCacheUtilities(backgroundTasks::add);
+            final String htmlCacheName = MessagingConstants.CACHE_BASE_DIR + File.separator + MessagingConstants.HTML_CACHE_SUBDIRECTORY;
+            setupCachedAssets();
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            final String htmlHandle = messagingCacheUtilities.cacheHtml("<html><body><img src=\"" + IMAGE_URL + "\"></body></html>");
+            messagingCacheUtilities.addHtmlReference("contentKey", htmlHandle);
+            final List<String> imageAssets = new ArrayList<>();
+            imageAssets.add(IMAGE_URL);
+            messagingCacheUtilities.cacheImageAssets(imageAssets, htmlHandle);
+            runBackgroundTasks(backgroundTasks);
+
+            // test
+            messagingCacheUtilities.cacheImageAssets(imageAssets, htmlHandle);
+            runBackgroundTasks(backgroundTasks);
+
+            // verify the html is only read when it is cached and when it is first inlined
+            verify(mockCacheService, times(2)).get(eq(htmlCacheName), eq(htmlHandle));
+        });
+    }
+
+    private static void runBackgroundTasks(final List<Runnable> backgroundTasks) {
+        while (!backgroundTasks.isEmpty()) {
+            backgroundTasks.remove(0).run();
+        }
+    }
+}
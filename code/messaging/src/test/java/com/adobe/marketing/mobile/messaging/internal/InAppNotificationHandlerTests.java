@@ -13,13 +13,21 @@
 package com.adobe.marketing.mobile.messaging.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -48,6 +56,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockedConstruction;
 import org.mockito.MockedStatic;
@@ -57,9 +66,14 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RunWith(MockitoJUnitRunner.class)
 public class InAppNotificationHandlerTests {
@@ -199,16 +213,52 @@ public class InAppNotificationHandlerTests {
 
                 // test
                 inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+                inAppNotificationHandler.flushPropositionCache();
 
                 // verify proposition cached
-                verify(mockMessagingCacheUtilities, times(1)).cachePropositions(any(List.class));
+                verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(anyBoolean(), any(List.class));
 
                 // verify assets cached
-                verify(mockMessagingCacheUtilities, times(1)).cacheImageAssets(any(List.class));
+                verify(mockMessagingCacheUtilities, times(1)).cacheImageAssets(any(List.class), any());
 
-                // verify rules replaced
-                verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
+                // verify rules added as no rules were previously loaded
+                verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
                 assertEquals(1, listArgumentCaptor.getValue().size());
+
+                // verify timings dispatched once the propositions are processed
+                verify(mockMessagingExtension, times(1)).dispatchTimingsEvent();
+            }
+        });
+    }
+
+    @Test
+    public void test_handleEdgePersonalizationNotification_ValidIAMPayloadPresent_Then_AssetReferencesRegisteredAndUnusedAssetsCollected() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+                List<LaunchRule> launchRules = new ArrayList<>();
+                LaunchRule mockLaunchRule = mock(LaunchRule.class);
+                launchRules.add(mockLaunchRule);
+                when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+
+                MessageTestConfig config = new MessageTestConfig();
+                config.count = 1;
+                List<Map<String, Object>> payload = MessagingTestUtils.generateMessagePayload(config);
+                Map<String, Object> eventData = new HashMap<>();
+                eventData.put("payload", payload);
+                eventData.put("requestEventId", "TESTING_ID");
+                Event mockEvent = mock(Event.class);
+                when(mockEvent.getEventData()).thenReturn(eventData);
+
+                // test
+                inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+
+                // verify the assets of the loaded message are referenced before unused assets are collected
+                InOrder inOrder = Mockito.inOrder(mockMessagingCacheUtilities);
+                inOrder.verify(mockMessagingCacheUtilities, times(1)).addAssetReferences(anyString(), any());
+                inOrder.verify(mockMessagingCacheUtilities, times(1)).collectUnusedAssets();
+                verify(mockMessagingCacheUtilities, times(0)).removeAssetReferences(anyString());
             }
         });
     }
@@ -234,15 +284,20 @@ public class InAppNotificationHandlerTests {
 
                 // test
                 inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+                inAppNotificationHandler.flushPropositionCache();
 
                 // verify proposition cached
-                verify(mockMessagingCacheUtilities, times(1)).cachePropositions(any(List.class));
+                verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(anyBoolean(), any(List.class));
 
-                // verify assets cached
-                verify(mockMessagingCacheUtilities, times(3)).cacheImageAssets(any(List.class));
+                // verify assets cached, the assets of every message are tracked as one refresh
+                InOrder inOrder = Mockito.inOrder(mockMessagingCacheUtilities);
+                inOrder.verify(mockMessagingCacheUtilities, times(1)).startAssetRefresh(anyLong());
+                inOrder.verify(mockMessagingCacheUtilities, times(3)).cacheImageAssets(any(List.class), any());
+                inOrder.verify(mockMessagingCacheUtilities, times(1)).finishAssetRefresh();
 
-                // verify rules replaced
-                verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
+                // verify rules added as no rules were previously loaded
+                verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
                 assertEquals(3, listArgumentCaptor.getValue().size());
 
                 // mock a second personalization event containing the same requestId
@@ -255,15 +310,16 @@ public class InAppNotificationHandlerTests {
 
                 // test
                 inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+                inAppNotificationHandler.flushPropositionCache();
 
                 // verify propositions cached again incrementing number of times by 1
-                verify(mockMessagingCacheUtilities, times(2)).cachePropositions(any(List.class));
+                verify(mockMessagingCacheUtilities, times(2)).updateCachedPropositions(anyBoolean(), any(List.class));
 
                 // verify assets cached 4 additional times as 4 new propositions were received
-                verify(mockMessagingCacheUtilities, times(7)).cacheImageAssets(any(List.class));
+                verify(mockMessagingCacheUtilities, times(7)).cacheImageAssets(any(List.class), any());
 
                 // verify new rules were added and not replaced as the request event id is the same for both personalization events
-                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
+                verify(mockMessagingRulesEngine, times(2)).addRules(listArgumentCaptor.capture());
                 assertEquals(4, listArgumentCaptor.getValue().size());
 
                 // verify 7 rules in total have been loaded
@@ -293,15 +349,17 @@ public class InAppNotificationHandlerTests {
 
                 // test
                 inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+                inAppNotificationHandler.flushPropositionCache();
 
                 // verify proposition cached
-                verify(mockMessagingCacheUtilities, times(1)).cachePropositions(any(List.class));
+                verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(anyBoolean(), any(List.class));
 
                 // verify assets cached for 3 rules
-                verify(mockMessagingCacheUtilities, times(3)).cacheImageAssets(any(List.class));
+                verify(mockMessagingCacheUtilities, times(3)).cacheImageAssets(any(List.class), any());
 
-                // verify rules replaced
-                verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
+                // verify rules added as no rules were previously loaded
+                verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
                 assertEquals(3, listArgumentCaptor.getValue().size());
             }
         });
@@ -334,15 +392,17 @@ public class InAppNotificationHandlerTests {
 
                 // test
                 inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+                inAppNotificationHandler.flushPropositionCache();
 
                 // verify proposition cached
-                verify(mockMessagingCacheUtilities, times(1)).cachePropositions(any(List.class));
+                verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(anyBoolean(), any(List.class));
 
                 // verify assets cached for 2 rules
-                verify(mockMessagingCacheUtilities, times(2)).cacheImageAssets(any(List.class));
+                verify(mockMessagingCacheUtilities, times(2)).cacheImageAssets(any(List.class), any());
 
-                // verify rules replaced
-                verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
+                // verify rules added as no rules were previously loaded
+                verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
                 assertEquals(3, listArgumentCaptor.getValue().size());
 
             }
@@ -371,15 +431,17 @@ public class InAppNotificationHandlerTests {
 
                 // test
                 inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+                inAppNotificationHandler.flushPropositionCache();
 
                 // verify proposition cached
-                verify(mockMessagingCacheUtilities, times(1)).cachePropositions(any(List.class));
+                verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(anyBoolean(), any(List.class));
 
                 // verify assets cached
-                verify(mockMessagingCacheUtilities, times(1)).cacheImageAssets(any(List.class));
+                verify(mockMessagingCacheUtilities, times(1)).cacheImageAssets(any(List.class), any());
 
-                // verify rules replaced
-                verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
+                // verify rules added as no rules were previously loaded
+                verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
                 assertEquals(1, listArgumentCaptor.getValue().size());
             }
         });
@@ -407,15 +469,17 @@ public class InAppNotificationHandlerTests {
 
                 // test
                 inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+                inAppNotificationHandler.flushPropositionCache();
 
                 // verify proposition cached
-                verify(mockMessagingCacheUtilities, times(1)).cachePropositions(any(List.class));
+                verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(anyBoolean(), any(List.class));
 
                 // verify assets cached
-                verify(mockMessagingCacheUtilities, times(1)).cacheImageAssets(any(List.class));
+                verify(mockMessagingCacheUtilities, times(1)).cacheImageAssets(any(List.class), any());
 
-                // verify rules replaced
-                verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
+                // verify rules added as no rules were previously loaded
+                verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
                 assertEquals(1, listArgumentCaptor.getValue().size());
             }
         });
@@ -443,16 +507,17 @@ public class InAppNotificationHandlerTests {
 
                 // test
                 inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+                inAppNotificationHandler.flushPropositionCache();
 
                 // verify proposition not cached
-                verify(mockMessagingCacheUtilities, times(0)).cachePropositions(any(List.class));
+                verify(mockMessagingCacheUtilities, times(0)).updateCachedPropositions(anyBoolean(), any(List.class));
 
                 // verify no assets cached
-                verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class));
+                verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class), any());
 
-                // verify empty rules replaced
-                verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
-                assertEquals(0, listArgumentCaptor.getValue().size());
+                // verify rules engine untouched as no rules were loaded
+                verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+                verify(mockMessagingRulesEngine, times(0)).addRules(anyList());
             }
         });
     }
@@ -473,19 +538,20 @@ public class InAppNotificationHandlerTests {
 
             // test
             inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+            inAppNotificationHandler.flushPropositionCache();
 
             // verify cached propositions cleared
-            verify(mockMessagingCacheUtilities, times(1)).cachePropositions(eq(null));
+            verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(eq(true), eq(new ArrayList<>()));
 
             // verify no assets cached
-            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class), any());
 
             // verify cache not cleared
             verify(mockMessagingCacheUtilities, times(0)).clearCachedData();
 
-            // verify empty rules replaced
-            verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
-            assertEquals(0, listArgumentCaptor.getValue().size());
+            // verify rules engine untouched as no rules were loaded
+            verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+            verify(mockMessagingRulesEngine, times(0)).addRules(anyList());
         });
     }
 
@@ -502,19 +568,20 @@ public class InAppNotificationHandlerTests {
 
             // test
             inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+            inAppNotificationHandler.flushPropositionCache();
 
             // verify no proposition cached
-            verify(mockMessagingCacheUtilities, times(0)).cachePropositions(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).updateCachedPropositions(anyBoolean(), any(List.class));
 
             // verify no assets cached
-            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class), any());
 
             // verify cache not cleared
             verify(mockMessagingCacheUtilities, times(0)).clearCachedData();
 
-            // verify empty rules replaced
-            verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
-            assertEquals(0, listArgumentCaptor.getValue().size());
+            // verify rules engine untouched as no rules were loaded
+            verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+            verify(mockMessagingRulesEngine, times(0)).addRules(anyList());
         });
     }
 
@@ -535,16 +602,17 @@ public class InAppNotificationHandlerTests {
 
             // test
             inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+            inAppNotificationHandler.flushPropositionCache();
 
             // verify proposition not cached
-            verify(mockMessagingCacheUtilities, times(0)).cachePropositions(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).updateCachedPropositions(anyBoolean(), any(List.class));
 
             // verify no assets cached
-            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class), any());
 
-            // verify empty rules replaced
-            verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
-            assertEquals(0, listArgumentCaptor.getValue().size());
+            // verify rules engine untouched as no rules were loaded
+            verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+            verify(mockMessagingRulesEngine, times(0)).addRules(anyList());
         });
     }
 
@@ -564,16 +632,17 @@ public class InAppNotificationHandlerTests {
 
             // test
             inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+            inAppNotificationHandler.flushPropositionCache();
 
             // verify no proposition cached
-            verify(mockMessagingCacheUtilities, times(0)).cachePropositions(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).updateCachedPropositions(anyBoolean(), any(List.class));
 
             // verify no assets cached
-            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class), any());
 
-            // verify empty rules replaced
-            verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
-            assertEquals(0, listArgumentCaptor.getValue().size());
+            // verify rules engine untouched as no rules were loaded
+            verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+            verify(mockMessagingRulesEngine, times(0)).addRules(anyList());
         });
     }
 
@@ -593,16 +662,17 @@ public class InAppNotificationHandlerTests {
 
             // test
             inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+            inAppNotificationHandler.flushPropositionCache();
 
             // verify no proposition cached
-            verify(mockMessagingCacheUtilities, times(0)).cachePropositions(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).updateCachedPropositions(anyBoolean(), any(List.class));
 
             // verify no assets cached
-            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class), any());
 
-            // verify empty rules replaced
-            verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
-            assertEquals(0, listArgumentCaptor.getValue().size());
+            // verify rules engine untouched as no rules were loaded
+            verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+            verify(mockMessagingRulesEngine, times(0)).addRules(anyList());
         });
     }
 
@@ -622,16 +692,119 @@ public class InAppNotificationHandlerTests {
 
             // test
             inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+            inAppNotificationHandler.flushPropositionCache();
 
             // verify no proposition cached
-            verify(mockMessagingCacheUtilities, times(0)).cachePropositions(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).updateCachedPropositions(anyBoolean(), any(List.class));
 
             // verify no assets cached
-            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class));
+            verify(mockMessagingCacheUtilities, times(0)).cacheImageAssets(any(List.class), any());
 
-            // verify empty rules replaced
-            verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
-            assertEquals(0, listArgumentCaptor.getValue().size());
+            // verify rules engine untouched as no rules were loaded
+            verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+            verify(mockMessagingRulesEngine, times(0)).addRules(anyList());
+        });
+    }
+
+    @Test
+    public void test_handleEdgePersonalizationNotification_NewRequestWithUnchangedPayload_Then_LoadedRulesNotUpdated() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+                List<LaunchRule> launchRules = new ArrayList<>();
+                LaunchRule mockLaunchRule = mock(LaunchRule.class);
+                launchRules.add(mockLaunchRule);
+                when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+
+                MessageTestConfig config = new MessageTestConfig();
+                config.count = 3;
+                List<Map<String, Object>> payload = MessagingTestUtils.generateMessagePayload(config);
+                Map<String, Object> eventData = new HashMap<>();
+                eventData.put("payload", payload);
+                eventData.put("requestEventId", "TESTING_ID");
+                Event mockEvent = mock(Event.class);
+                when(mockEvent.getEventData()).thenReturn(eventData);
+                inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+
+                // start a new personalization request
+                inAppNotificationHandler.fetchMessages();
+                ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+                verify(mockExtensionApi, times(2)).dispatch(eventCaptor.capture());
+                Map<String, Object> refreshedEventData = new HashMap<>();
+                refreshedEventData.put("payload", payload);
+                refreshedEventData.put("requestEventId", eventCaptor.getAllValues().get(1).getUniqueIdentifier());
+                when(mockEvent.getEventData()).thenReturn(refreshedEventData);
+
+                // test
+                inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+
+                // verify rules were only added for the first request
+                verify(mockMessagingRulesEngine, times(1)).addRules(anyList());
+                verify(mockMessagingRulesEngine, times(0)).replaceRules(anyList());
+
+                // verify unchanged rules were not parsed again
+                ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(3));
+
+                // verify no rules delta event dispatched for the second request
+                verify(mockExtensionApi, times(2)).dispatch(any(Event.class));
+                assertEquals(3, inAppNotificationHandler.getRuleCount());
+            }
+        });
+    }
+
+    @Test
+    public void test_handleEdgePersonalizationNotification_NewRequestWithRemovedMessage_Then_LoadedRulesReplaced() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+                List<LaunchRule> launchRules = new ArrayList<>();
+                LaunchRule mockLaunchRule = mock(LaunchRule.class);
+                launchRules.add(mockLaunchRule);
+                when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+
+                MessageTestConfig config = new MessageTestConfig();
+                config.count = 3;
+                List<Map<String, Object>> payload = MessagingTestUtils.generateMessagePayload(config);
+                Map<String, Object> eventData = new HashMap<>();
+                eventData.put("payload", payload);
+                eventData.put("requestEventId", "TESTING_ID");
+                Event mockEvent = mock(Event.class);
+                when(mockEvent.getEventData()).thenReturn(eventData);
+                inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+
+                // remove the last message from the proposition
+                Map<String, Object> updatedProposition = new HashMap<>(payload.get(0));
+                List<Map<String, Object>> updatedItems = new ArrayList<>((List<Map<String, Object>>) updatedProposition.get("items"));
+                updatedItems.remove(2);
+                updatedProposition.put("items", updatedItems);
+                List<Map<String, Object>> updatedPayload = new ArrayList<>();
+                updatedPayload.add(updatedProposition);
+
+                // start a new personalization request
+                inAppNotificationHandler.fetchMessages();
+                ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+                verify(mockExtensionApi, times(2)).dispatch(eventCaptor.capture());
+                Map<String, Object> refreshedEventData = new HashMap<>();
+                refreshedEventData.put("payload", updatedPayload);
+                refreshedEventData.put("requestEventId", eventCaptor.getAllValues().get(1).getUniqueIdentifier());
+                when(mockEvent.getEventData()).thenReturn(refreshedEventData);
+
+                // test
+                inAppNotificationHandler.handleEdgePersonalizationNotification(mockEvent);
+
+                // verify rules replaced with the remaining rules
+                verify(mockMessagingRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
+                assertEquals(2, listArgumentCaptor.getValue().size());
+                assertEquals(2, inAppNotificationHandler.getRuleCount());
+
+                // verify rules delta event dispatched
+                verify(mockExtensionApi, times(3)).dispatch(eventCaptor.capture());
+                Event deltaEvent = eventCaptor.getValue();
+                assertEquals("com.adobe.eventSource.debug", deltaEvent.getSource());
+                assertEquals(0, ((List) deltaEvent.getEventData().get("addedMessageIds")).size());
+                assertEquals(1, ((List) deltaEvent.getEventData().get("removedMessageIds")).size());
+                assertEquals(2, deltaEvent.getEventData().get("retainedCount"));
+            }
         });
     }
 
@@ -663,12 +836,13 @@ public class InAppNotificationHandlerTests {
 
                 // test
                 inAppNotificationHandler = new InAppNotificationHandler(mockMessagingExtension, mockExtensionApi, mockMessagingRulesEngine, mockMessagingCacheUtilities, "TESTING_ID");
+                inAppNotificationHandler.flushPropositionCache();
 
                 // verify proposition not cached as we are loading cached propositions
-                verify(mockMessagingCacheUtilities, times(0)).cachePropositions(any(List.class));
+                verify(mockMessagingCacheUtilities, times(0)).updateCachedPropositions(anyBoolean(), any(List.class));
 
                 // verify assets cached
-                verify(mockMessagingCacheUtilities, times(5)).cacheImageAssets(any(List.class));
+                verify(mockMessagingCacheUtilities, times(5)).cacheImageAssets(any(List.class), any());
 
                 // verify cached rules added
                 verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
@@ -677,6 +851,168 @@ public class InAppNotificationHandlerTests {
         });
     }
 
+    @Test
+    public void test_cachedPropositions_warmLoadedInBackground_Then_RulesAddedWhenDeferredEventsTaken() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+                List<LaunchRule> launchRules = new ArrayList<>();
+                LaunchRule mockLaunchRule = mock(LaunchRule.class);
+                launchRules.add(mockLaunchRule);
+                when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+
+                MessageTestConfig config = new MessageTestConfig();
+                config.count = 3;
+                List<PropositionPayload> payload = null;
+                try {
+                    payload = MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config));
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+                when(mockMessagingCacheUtilities.getCachedPropositions()).thenReturn(payload);
+                final List<Runnable> warmLoadTasks = new ArrayList<>();
+                Event mockEvent = mock(Event.class);
+
+                // test
+                inAppNotificationHandler = new InAppNotificationHandler(mockMessagingExtension, mockExtensionApi, mockMessagingRulesEngine, mockMessagingCacheUtilities, "TESTING_ID", warmLoadTasks::add);
+
+                // verify events deferred and no rules added while the warm-load is pending
+                assertEquals(1, warmLoadTasks.size());
+                assertTrue(inAppNotificationHandler.deferUntilWarmLoaded(mockEvent));
+                verify(mockMessagingRulesEngine, times(0)).addRules(anyList());
+
+                // test
+                warmLoadTasks.get(0).run();
+
+                // verify completion event dispatched with the warm-load metrics
+                ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+                verify(mockExtensionApi, times(1)).dispatch(eventCaptor.capture());
+                Event warmLoadCompleteEvent = eventCaptor.getValue();
+                assertEquals(MessagingConstants.EventType.MESSAGING, warmLoadCompleteEvent.getType());
+                assertEquals(MessagingConstants.EventSource.DEBUG, warmLoadCompleteEvent.getSource());
+                assertEquals(3, warmLoadCompleteEvent.getEventData().get("propositionCount"));
+                assertTrue(warmLoadCompleteEvent.getEventData().containsKey("durationMs"));
+                assertFalse(inAppNotificationHandler.deferUntilWarmLoaded(mock(Event.class)));
+
+                // test
+                List<Event> deferredEvents = inAppNotificationHandler.takeDeferredRulesEvents();
+
+                // verify deferred events returned and cached rules added
+                assertEquals(1, deferredEvents.size());
+                assertSame(mockEvent, deferredEvents.get(0));
+                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
+                assertEquals(3, listArgumentCaptor.getValue().size());
+                assertTrue(inAppNotificationHandler.takeDeferredRulesEvents().isEmpty());
+                verify(mockMessagingRulesEngine, times(1)).addRules(anyList());
+            }
+        });
+    }
+
+    @Test
+    public void test_cachedPropositions_htmlMovedToCache_Then_WarmLoadedRulesReusedWhenApplied() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+                List<LaunchRule> launchRules = new ArrayList<>();
+                launchRules.add(mock(LaunchRule.class));
+                when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+                when(mockMessagingCacheUtilities.cacheHtml(anyString())).thenReturn("mockHtmlHandle");
+                final RuleSnapshot mockRuleSnapshot = mock(RuleSnapshot.class);
+                when(mockMessagingCacheUtilities.getRuleSnapshot()).thenReturn(mockRuleSnapshot);
+
+                // the cached propositions contain the items whose html was moved to the cache
+                MessageTestConfig config = new MessageTestConfig();
+                config.count = 2;
+                final List<PropositionPayload> cachedPropositions = new ArrayList<>();
+                try {
+                    for (final PropositionPayload proposition : MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config))) {
+                        final List<Map<String, Object>> cachedItems = new ArrayList<>();
+                        for (final PayloadItem payloadItem : proposition.items) {
+                            final PayloadItem externalizedItem = ParsedPropositionItem.create(proposition.propositionInfo, payloadItem, ParsedPropositionItem.getContentKey(payloadItem), mockMessagingCacheUtilities, mockExtensionApi).payloadItem;
+                            final Map<String, Object> data = new HashMap<>();
+                            data.put("id", externalizedItem.data.id);
+                            data.put("content", externalizedItem.data.content);
+                            final Map<String, Object> item = new HashMap<>();
+                            item.put("id", externalizedItem.id);
+                            item.put("schema", externalizedItem.schema);
+                            item.put("data", data);
+                            cachedItems.add(item);
+                        }
+                        cachedPropositions.add(PropositionPayload.create(proposition.propositionInfo, cachedItems));
+                    }
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+                when(mockMessagingCacheUtilities.getCachedPropositions()).thenReturn(cachedPropositions);
+                final List<Runnable> warmLoadTasks = new ArrayList<>();
+                inAppNotificationHandler = new InAppNotificationHandler(mockMessagingExtension, mockExtensionApi, mockMessagingRulesEngine, mockMessagingCacheUtilities, "TESTING_ID", warmLoadTasks::add);
+                warmLoadTasks.get(0).run();
+                ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(4));
+                verify(mockRuleSnapshot, times(2)).restore(any(PropositionInfo.class), any(PayloadItem.class), anyString());
+
+                // test
+                inAppNotificationHandler.takeDeferredRulesEvents();
+
+                // verify the rules parsed by the warm-load are loaded without being parsed or restored again
+                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
+                assertEquals(2, listArgumentCaptor.getValue().size());
+                ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(4));
+                verify(mockRuleSnapshot, times(2)).restore(any(PropositionInfo.class), any(PayloadItem.class), anyString());
+            }
+        });
+    }
+
+    @Test
+    public void test_cachedPropositions_noDeferredEvents_Then_CompletionEventNotDispatched() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            when(mockMessagingCacheUtilities.getCachedPropositions()).thenReturn(null);
+            final List<Runnable> warmLoadTasks = new ArrayList<>();
+
+            // test
+            inAppNotificationHandler = new InAppNotificationHandler(mockMessagingExtension, mockExtensionApi, mockMessagingRulesEngine, mockMessagingCacheUtilities, "TESTING_ID", warmLoadTasks::add);
+            warmLoadTasks.get(0).run();
+
+            // verify
+            verify(mockExtensionApi, times(0)).dispatch(any(Event.class));
+            assertFalse(inAppNotificationHandler.deferUntilWarmLoaded(mock(Event.class)));
+            assertTrue(inAppNotificationHandler.takeDeferredRulesEvents().isEmpty());
+            verify(mockMessagingRulesEngine, times(0)).addRules(anyList());
+        });
+    }
+
+    @Test
+    public void test_cachedPropositions_warmLoadExecutorUnavailable_Then_CacheLoadedImmediately() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+                List<LaunchRule> launchRules = new ArrayList<>();
+                launchRules.add(mock(LaunchRule.class));
+                when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+
+                MessageTestConfig config = new MessageTestConfig();
+                config.count = 2;
+                List<PropositionPayload> payload = null;
+                try {
+                    payload = MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config));
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+                when(mockMessagingCacheUtilities.getCachedPropositions()).thenReturn(payload);
+
+                // test
+                inAppNotificationHandler = new InAppNotificationHandler(mockMessagingExtension, mockExtensionApi, mockMessagingRulesEngine, mockMessagingCacheUtilities, "TESTING_ID", runnable -> {
+                    throw new RejectedExecutionException();
+                });
+
+                // verify cached rules added without deferring events
+                verify(mockMessagingRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
+                assertEquals(2, listArgumentCaptor.getValue().size());
+                assertFalse(inAppNotificationHandler.deferUntilWarmLoaded(mock(Event.class)));
+            }
+        });
+    }
+
     // ========================================================================================
     // createInAppMessage
     // ========================================================================================
@@ -704,6 +1040,124 @@ public class InAppNotificationHandlerTests {
         });
     }
 
+    @Test
+    public void test_createInAppMessage_HtmlLoadedFromCache() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            final List<RuleConsequence> constructedConsequences = new ArrayList<>();
+            try (MockedConstruction<InternalMessage> mockedConstruction = Mockito.mockConstruction(InternalMessage.class, (mock, context) -> constructedConsequences.add((RuleConsequence) context.arguments().get(1)))) {
+                Map<String, Object> details = new HashMap<>();
+                Map<String, Object> mobileParameters = new HashMap<>();
+                String html = "<html><head></head><body>cached html</body></html>";
+                when(mockMessagingCacheUtilities.getCachedHtml("mockHtmlHandle")).thenReturn(html);
+
+                details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS, new ArrayList<String>());
+                details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_MOBILE_PARAMETERS, mobileParameters);
+                details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE, "mockHtmlHandle");
+                RuleConsequence consequence = new RuleConsequence("123456789", MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_CJM_VALUE, details);
+
+                // test
+                inAppNotificationHandler.createInAppMessage(consequence);
+
+                // verify html read from the cache and passed to the InternalMessage
+                verify(mockMessagingCacheUtilities, times(1)).getCachedHtml(eq("mockHtmlHandle"));
+                assertEquals(1, constructedConsequences.size());
+                Map<String, Object> constructedDetails = constructedConsequences.get(0).getDetail();
+                assertEquals(html, constructedDetails.get(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML));
+                assertEquals(false, constructedDetails.containsKey(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE));
+                verify(mockedConstruction.constructed().get(0), times(1)).show(eq(true));
+            }
+        });
+    }
+
+    @Test
+    public void test_createInAppMessage_AssetsPending_AssetsAwaitedOffTheCallingThread() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            final List<String> remoteAssets = Collections.singletonList("https://www.adobe.com/pending.png");
+            final CountDownLatch assetsReady = new CountDownLatch(1);
+            final AtomicReference<Thread> waitingThread = new AtomicReference<>();
+            when(mockMessagingCacheUtilities.hasPendingAssets(remoteAssets)).thenReturn(true);
+            when(mockMessagingCacheUtilities.awaitAssets(eq(remoteAssets), anyLong())).thenAnswer(invocation -> {
+                waitingThread.set(Thread.currentThread());
+                assetsReady.await(5, TimeUnit.SECONDS);
+                return AssetRegistry.Readiness.LOADED_AFTER_WAIT;
+            });
+
+            Map<String, Object> details = new HashMap<>();
+            details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS, remoteAssets);
+            details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_MOBILE_PARAMETERS, new HashMap<String, Object>());
+            details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML, "<html><head></head><body><img src=\"https://www.adobe.com/pending.png\"></body></html>");
+            RuleConsequence consequence = new RuleConsequence("123456789", MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_CJM_VALUE, details);
+
+            // test
+            inAppNotificationHandler.createInAppMessage(consequence);
+
+            // verify the calling thread did not wait for the pending assets
+            verify(mockMessagingCacheUtilities, never()).getAssetsMap();
+
+            // test
+            assetsReady.countDown();
+
+            // verify the message is created once the assets are ready
+            verify(mockMessagingCacheUtilities, timeout(5000)).getAssetsMap();
+            assertNotSame(Thread.currentThread(), waitingThread.get());
+        });
+    }
+
+    @Test
+    public void test_createInAppMessage_AssetsOfSeveralMessagesPending_AssetsAwaitedOnOneThread() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            final List<String> remoteAssets = Collections.singletonList("https://www.adobe.com/pending.png");
+            final List<Thread> waitingThreads = Collections.synchronizedList(new ArrayList<>());
+            when(mockMessagingCacheUtilities.hasPendingAssets(remoteAssets)).thenReturn(true);
+            when(mockMessagingCacheUtilities.awaitAssets(eq(remoteAssets), anyLong())).thenAnswer(invocation -> {
+                waitingThreads.add(Thread.currentThread());
+                return AssetRegistry.Readiness.LOADED_AFTER_WAIT;
+            });
+
+            Map<String, Object> details = new HashMap<>();
+            details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS, remoteAssets);
+            details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_MOBILE_PARAMETERS, new HashMap<String, Object>());
+            details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML, "<html><head></head><body><img src=\"https://www.adobe.com/pending.png\"></body></html>");
+            RuleConsequence consequence = new RuleConsequence("123456789", MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_CJM_VALUE, details);
+
+            // test
+            inAppNotificationHandler.createInAppMessage(consequence);
+            inAppNotificationHandler.createInAppMessage(consequence);
+
+            // verify both messages waited for their assets on the same asset wait thread
+            verify(mockMessagingCacheUtilities, timeout(5000).times(2)).getAssetsMap();
+            assertEquals(2, waitingThreads.size());
+            assertSame(waitingThreads.get(0), waitingThreads.get(1));
+            assertNotSame(Thread.currentThread(), waitingThreads.get(0));
+        });
+    }
+
+    @Test
+    public void test_createInAppMessage_HtmlNotCached_MessageDropped() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            try (MockedConstruction<InternalMessage> mockedConstruction = Mockito.mockConstruction(InternalMessage.class)) {
+                Map<String, Object> details = new HashMap<>();
+                when(mockMessagingCacheUtilities.getCachedHtml("mockHtmlHandle")).thenReturn(null);
+
+                details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS, new ArrayList<String>());
+                details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_MOBILE_PARAMETERS, new HashMap<String, Object>());
+                details.put(MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_DETAIL_KEY_HTML_HANDLE, "mockHtmlHandle");
+                RuleConsequence consequence = new RuleConsequence("123456789", MessagingConstants.EventDataKeys.RulesEngine.MESSAGE_CONSEQUENCE_CJM_VALUE, details);
+
+                // test
+                inAppNotificationHandler.createInAppMessage(consequence);
+
+                // verify no empty message is created
+                verify(mockMessagingCacheUtilities, times(1)).getCachedHtml(eq("mockHtmlHandle"));
+                assertEquals(0, mockedConstruction.constructed().size());
+            }
+        });
+    }
+
     @Test
     public void test_createInAppMessage_EmptyConsequenceType() {
         runUsingMockedServiceProvider(() -> {
@@ -0,0 +1,148 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.adobe.marketing.mobile.ExtensionApi;
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRulesEngine;
+import com.adobe.marketing.mobile.launch.rulesengine.json.JSONRulesParser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class InAppRuleSetTests {
+    @Mock
+    ExtensionApi mockExtensionApi;
+    @Mock
+    LaunchRulesEngine mockLaunchRulesEngine;
+
+    private ArgumentCaptor<List<LaunchRule>> listArgumentCaptor = ArgumentCaptor.forClass(List.class);
+    private InAppRuleSet inAppRuleSet;
+
+    @Before
+    public void setup() {
+        inAppRuleSet = new InAppRuleSet(mockLaunchRulesEngine);
+    }
+
+    private List<ParsedPropositionItem> generateParsedItems(final int count) {
+        final List<ParsedPropositionItem> parsedItems = new ArrayList<>();
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenAnswer(invocation -> Collections.singletonList(mock(LaunchRule.class)));
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = count;
+            final PropositionPayload propositionPayload = MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config)).get(0);
+            for (final PayloadItem payloadItem : propositionPayload.items) {
+                parsedItems.add(ParsedPropositionItem.create(propositionPayload.propositionInfo, payloadItem, mockExtensionApi));
+            }
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+        return parsedItems;
+    }
+
+    @Test
+    public void testApply_NoLoadedRules_RulesAdded() {
+        // setup
+        final List<ParsedPropositionItem> parsedItems = generateParsedItems(3);
+
+        // test
+        final InAppRuleSet.Delta delta = inAppRuleSet.apply(parsedItems, true);
+
+        // verify
+        verify(mockLaunchRulesEngine, times(1)).addRules(listArgumentCaptor.capture());
+        verify(mockLaunchRulesEngine, times(0)).replaceRules(anyList());
+        assertEquals(3, listArgumentCaptor.getValue().size());
+        assertEquals(3, delta.added.size());
+        assertEquals(0, delta.removed.size());
+        assertEquals(0, delta.retained);
+        assertEquals(3, inAppRuleSet.size());
+    }
+
+    @Test
+    public void testApply_UnchangedRules_RulesEngineNotUpdated() {
+        // setup
+        final List<ParsedPropositionItem> parsedItems = generateParsedItems(3);
+        inAppRuleSet.apply(parsedItems, true);
+
+        // test
+        final InAppRuleSet.Delta delta = inAppRuleSet.apply(parsedItems, true);
+
+        // verify
+        verify(mockLaunchRulesEngine, times(1)).addRules(anyList());
+        verify(mockLaunchRulesEngine, times(0)).replaceRules(anyList());
+        assertTrue(delta.isEmpty());
+        assertEquals(3, delta.retained);
+        assertEquals(3, inAppRuleSet.size());
+    }
+
+    @Test
+    public void testApply_RemovedRule_RulesReplaced() {
+        // setup
+        final List<ParsedPropositionItem> parsedItems = generateParsedItems(3);
+        inAppRuleSet.apply(parsedItems, true);
+        final ParsedPropositionItem removedItem = parsedItems.remove(2);
+
+        // test
+        final InAppRuleSet.Delta delta = inAppRuleSet.apply(parsedItems, true);
+
+        // verify
+        verify(mockLaunchRulesEngine, times(1)).replaceRules(listArgumentCaptor.capture());
+        assertEquals(2, listArgumentCaptor.getValue().size());
+        assertEquals(0, delta.added.size());
+        assertEquals(1, delta.removed.size());
+        assertEquals(removedItem, delta.removed.get(0));
+        assertEquals(2, delta.retained);
+        assertEquals(2, inAppRuleSet.size());
+    }
+
+    @Test
+    public void testApply_AppendedRules_OnlyNewRulesAdded() {
+        // setup
+        final List<ParsedPropositionItem> parsedItems = generateParsedItems(2);
+        inAppRuleSet.apply(parsedItems, true);
+        final List<ParsedPropositionItem> appendedItems = new ArrayList<>(parsedItems);
+        appendedItems.addAll(generateParsedItems(1));
+
+        // test
+        final InAppRuleSet.Delta delta = inAppRuleSet.apply(appendedItems, false);
+
+        // verify
+        verify(mockLaunchRulesEngine, times(2)).addRules(listArgumentCaptor.capture());
+        verify(mockLaunchRulesEngine, times(0)).replaceRules(anyList());
+        assertEquals(1, listArgumentCaptor.getValue().size());
+        assertEquals(1, delta.added.size());
+        assertEquals(2, delta.retained);
+        assertEquals(3, inAppRuleSet.size());
+    }
+}
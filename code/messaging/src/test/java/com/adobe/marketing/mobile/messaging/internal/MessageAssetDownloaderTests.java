@@ -11,7 +11,9 @@
 
 package com.adobe.marketing.mobile.messaging.internal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -37,6 +39,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
@@ -44,11 +47,17 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
 public class MessageAssetDownloaderTests {
@@ -159,7 +168,8 @@ public class MessageAssetDownloaderTests {
             // test
             messageAssetsDownloader.downloadAssetCollection();
             // verify
-            verify(mockCacheService, times(1)).get(eq(expectedCacheLocation), eq(assetUrl));
+            // the cached asset is read for the conditional request headers and for its size once cached
+            verify(mockCacheService, times(2)).get(eq(expectedCacheLocation), eq(assetUrl));
             verify(mockNetworkService, times(1)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
             // verify asset cached
             verify(mockCacheService, times(1)).set(eq(expectedCacheLocation), eq(assetUrl), any(CacheEntry.class));
@@ -182,7 +192,8 @@ public class MessageAssetDownloaderTests {
             // test
             messageAssetsDownloader.downloadAssetCollection();
             // verify
-            verify(mockCacheService, times(1)).get(eq(expectedCacheLocation), eq(assetUrl));
+            // the cached asset is read for the conditional request headers and for its size once cached
+            verify(mockCacheService, times(2)).get(eq(expectedCacheLocation), eq(assetUrl));
             verify(mockNetworkService, times(1)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
             // verify asset not cached
             verify(mockCacheService, times(0)).set(eq(expectedCacheLocation), eq(assetUrl), any(CacheEntry.class));
@@ -190,7 +201,7 @@ public class MessageAssetDownloaderTests {
     }
 
     @Test
-    public void testDownloadAssetCollection_when_assetInCacheIsNotForActiveMessage_then_cachedAssetIsDeleted() throws
+    public void testDownloadAssetCollection_when_assetInCacheIsNotForActiveMessage_then_cachedAssetIsRetained() throws
             Exception {
         // setup
         final File existingCacheDir = new File("testCache/messaging/images/d38a46f6-4f43-435a-a862-4038c27b90a1");
@@ -212,13 +223,15 @@ public class MessageAssetDownloaderTests {
             // test
             messageAssetsDownloader.downloadAssetCollection();
             // verify
-            verify(mockCacheService, times(1)).get(eq(expectedCacheLocation), eq(assetUrl));
+            // the cached asset is read for the conditional request headers and for its size once cached
+            verify(mockCacheService, times(2)).get(eq(expectedCacheLocation), eq(assetUrl));
             verify(mockNetworkService, times(1)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
             // verify new asset cached
             verify(mockCacheService, times(1)).set(eq(expectedCacheLocation), eq(assetUrl), any(CacheEntry.class));
-            // verify non matching cached asset deleted
-            assertEquals(false, existingCachedFile.exists());
+            // verify non matching cached asset retained, it is removed by the asset garbage collector if no loaded message uses it
+            assertEquals(true, existingCachedFile.exists());
         });
+        existingCachedFile.delete();
     }
 
     @Test
@@ -243,4 +256,381 @@ public class MessageAssetDownloaderTests {
             verify(mockCacheService, times(0)).set(eq(expectedCacheLocation), eq(assetUrl), any(CacheEntry.class));
         });
     }
+
+    @Test
+    public void testDownloadAssetCollection_when_concurrentDownloadsLimited_then_downloadsQueued() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            assets.add("https://www.adobe.com/banner.png");
+            final ArrayList<NetworkCallback> pendingCallbacks = new ArrayList<>();
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_MODIFIED);
+            doAnswer((Answer<Void>) invocation -> {
+                pendingCallbacks.add(invocation.getArgument(1));
+                return null;
+            }).when(mockNetworkService)
+                    .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            messageAssetsDownloader = new MessageAssetDownloader(assets, new AssetDownloadScheduler(1), new AssetFetchRegistry(), null);
+
+            // test
+            messageAssetsDownloader.downloadAssetCollection();
+
+            // verify only one download is started until it completes
+            verify(mockNetworkService, times(1)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            pendingCallbacks.get(0).call(mockHttpConnection);
+            verify(mockNetworkService, times(2)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+        });
+    }
+
+    @Test
+    public void testDownloadAssetCollection_when_assetAlreadyBeingDownloaded_then_inFlightDownloadShared() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final ArrayList<NetworkCallback> pendingCallbacks = new ArrayList<>();
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            when(mockHttpConnection.getInputStream()).thenReturn(new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)));
+            doAnswer((Answer<Void>) invocation -> {
+                pendingCallbacks.add(invocation.getArgument(1));
+                return null;
+            }).when(mockNetworkService)
+                    .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            final AssetDownloadScheduler scheduler = new AssetDownloadScheduler();
+            final AssetFetchRegistry registry = new AssetFetchRegistry();
+
+            // test
+            new MessageAssetDownloader(assets, scheduler, registry, null).downloadAssetCollection();
+            new MessageAssetDownloader(assets, scheduler, registry, null).downloadAssetCollection();
+
+            // verify the asset is requested once while the first download is in flight
+            verify(mockNetworkService, times(1)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            assertEquals(1, registry.getInFlightCount());
+            pendingCallbacks.get(0).call(mockHttpConnection);
+            verify(mockCacheService, times(1)).set(eq(expectedCacheLocation), eq(assetUrl), any(CacheEntry.class));
+            assertEquals(0, registry.getInFlightCount());
+
+            // a later request downloads the asset again
+            new MessageAssetDownloader(assets, scheduler, registry, null).downloadAssetCollection();
+            verify(mockNetworkService, times(2)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+        });
+    }
+
+    @Test
+    public void testDownloadAssetCollection_when_cachedAssetIsFresh_then_assetIsNotRequested() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final HashMap<String, String> cachedMetadata = new HashMap<>();
+            cachedMetadata.put(MessagingConstants.METADATA_FRESH_UNTIL, String.valueOf(System.currentTimeMillis() + 60000));
+            when(mockCacheResult.getMetadata()).thenReturn(cachedMetadata);
+
+            // test
+            messageAssetsDownloader.downloadAssetCollection();
+
+            // verify
+            verify(mockNetworkService, times(0)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            verify(mockCacheService, times(0)).set(anyString(), anyString(), any(CacheEntry.class));
+        });
+    }
+
+    @Test
+    public void testDownloadAssetCollection_when_responseHasMaxAge_then_freshnessStoredInMetadata() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            when(mockHttpConnection.getInputStream()).thenReturn(new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)));
+            when(mockHttpConnection.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_CACHE_CONTROL)).thenReturn("max-age=3600");
+            doAnswer((Answer<Void>) invocation -> {
+                NetworkCallback callback = invocation.getArgument(1);
+                callback.call(mockHttpConnection);
+                return null;
+            }).when(mockNetworkService)
+                    .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            final ArgumentCaptor<CacheEntry> cacheEntryCaptor = ArgumentCaptor.forClass(CacheEntry.class);
+            final long startTime = System.currentTimeMillis();
+
+            // test
+            messageAssetsDownloader.downloadAssetCollection();
+
+            // verify
+            verify(mockCacheService, times(1)).set(eq(expectedCacheLocation), eq(assetUrl), cacheEntryCaptor.capture());
+            final long freshUntil = Long.parseLong(cacheEntryCaptor.getValue().getMetadata().get(MessagingConstants.METADATA_FRESH_UNTIL));
+            assertTrue(freshUntil >= startTime + 3600000);
+            assertTrue(freshUntil <= System.currentTimeMillis() + 3600000);
+        });
+    }
+
+    @Test
+    public void testDownloadAssetCollection_when_staleAssetRevalidatedWithMaxAge_then_freshnessUpdated() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final HashMap<String, String> cachedMetadata = new HashMap<>();
+            cachedMetadata.put(MessagingConstants.HTTP_HEADER_ETAG, "etag");
+            cachedMetadata.put(MessagingConstants.METADATA_FRESH_UNTIL, "0");
+            when(mockCacheResult.getMetadata()).thenReturn(cachedMetadata);
+            when(mockCacheResult.getData()).thenAnswer(invocation -> new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)));
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_MODIFIED);
+            when(mockHttpConnection.getResponsePropertyValue(MessagingConstants.HTTP_HEADER_CACHE_CONTROL)).thenReturn("max-age=3600");
+            doAnswer((Answer<Void>) invocation -> {
+                NetworkCallback callback = invocation.getArgument(1);
+                callback.call(mockHttpConnection);
+                return null;
+            }).when(mockNetworkService)
+                    .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            final ArgumentCaptor<CacheEntry> cacheEntryCaptor = ArgumentCaptor.forClass(CacheEntry.class);
+
+            // test
+            messageAssetsDownloader.downloadAssetCollection();
+
+            // verify the cached asset is stored again with its updated freshness
+            verify(mockNetworkService, times(1)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            verify(mockCacheService, times(1)).set(eq(expectedCacheLocation), eq(assetUrl), cacheEntryCaptor.capture());
+            final Map<String, String> metadata = cacheEntryCaptor.getValue().getMetadata();
+            assertEquals("etag", metadata.get(MessagingConstants.HTTP_HEADER_ETAG));
+            assertTrue(AssetCachePolicy.isFresh(metadata, System.currentTimeMillis()));
+        });
+    }
+
+    @Test
+    public void testDownloadAssetCollection_when_imageTranscoded_then_transcodedImageIsCached() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final byte[] downloadedData = "downloadedImage".getBytes(StandardCharsets.UTF_8);
+            final byte[] transcodedData = "image".getBytes(StandardCharsets.UTF_8);
+            final AssetTranscoder mockAssetTranscoder = Mockito.mock(AssetTranscoder.class);
+            when(mockAssetTranscoder.transcode(any(byte[].class))).thenReturn(transcodedData);
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            when(mockHttpConnection.getInputStream()).thenReturn(new ByteArrayInputStream(downloadedData));
+            doAnswer((Answer<Void>) invocation -> {
+                NetworkCallback callback = invocation.getArgument(1);
+                callback.call(mockHttpConnection);
+                return null;
+            }).when(mockNetworkService)
+                    .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            final ArgumentCaptor<CacheEntry> cacheEntryCaptor = ArgumentCaptor.forClass(CacheEntry.class);
+            messageAssetsDownloader = new MessageAssetDownloader(assets, new AssetDownloadScheduler(), new AssetFetchRegistry(), null, null, mockAssetTranscoder);
+
+            // test
+            messageAssetsDownloader.downloadAssetCollection();
+
+            // verify
+            verify(mockAssetTranscoder, times(1)).transcode(eq(downloadedData));
+            verify(mockCacheService, times(1)).set(eq(expectedCacheLocation), eq(assetUrl), cacheEntryCaptor.capture());
+            try {
+                final byte[] cachedData = new byte[transcodedData.length + 1];
+                final int cachedLength = cacheEntryCaptor.getValue().getData().read(cachedData);
+                assertEquals(transcodedData.length, cachedLength);
+                assertEquals("image", new String(cachedData, 0, cachedLength, StandardCharsets.UTF_8));
+            } catch (final IOException exception) {
+                throw new AssertionError(exception);
+            }
+        });
+    }
+
+    @Test
+    public void testDownloadAssetCollection_when_downloadInterrupted_then_resumedFromReceivedBytes() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final byte[] assetData = createAssetData(300 * 1024);
+            final AssetServerStandIn assetServer = new AssetServerStandIn(assetData, "\"v1\"");
+            assetServer.interruptAfterBytes = 100 * 1024;
+            when(mockServiceProvider.getNetworkService()).thenReturn(assetServer);
+            final List<byte[]> cachedData = captureCachedData();
+
+            // test
+            messageAssetsDownloader.downloadAssetCollection();
+            assetServer.interruptAfterBytes = -1;
+            new MessageAssetDownloader(assets).downloadAssetCollection();
+
+            // verify the second request only asks for the missing bytes
+            assertEquals(2, assetServer.requests.size());
+            assertEquals("bytes=102400-", assetServer.requests.get(1).getHeaders().get(MessagingConstants.HTTP_HEADER_RANGE));
+            assertEquals("\"v1\"", assetServer.requests.get(1).getHeaders().get(MessagingConstants.HTTP_HEADER_IF_RANGE));
+            assertEquals(1, cachedData.size());
+            assertArrayEquals(assetData, cachedData.get(0));
+        });
+    }
+
+    @Test
+    public void testDownloadAssetCollection_when_assetChangedBeforeResume_then_wholeAssetDownloaded() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            final byte[] assetData = createAssetData(300 * 1024);
+            final AssetServerStandIn assetServer = new AssetServerStandIn(assetData, "\"v1\"");
+            assetServer.interruptAfterBytes = 100 * 1024;
+            when(mockServiceProvider.getNetworkService()).thenReturn(assetServer);
+            final List<byte[]> cachedData = captureCachedData();
+
+            // test
+            messageAssetsDownloader.downloadAssetCollection();
+            final byte[] changedAssetData = createAssetData(280 * 1024);
+            assetServer.assetData = changedAssetData;
+            assetServer.eTag = "\"v2\"";
+            assetServer.interruptAfterBytes = -1;
+            new MessageAssetDownloader(assets).downloadAssetCollection();
+
+            // verify
+            assertEquals(2, assetServer.requests.size());
+            assertEquals(1, cachedData.size());
+            assertArrayEquals(changedAssetData, cachedData.get(0));
+        });
+    }
+
+    @Test
+    public void testDownloadAssetCollection_when_downloadFailedRecently_then_assetIsNotRequested() {
+        // setup
+        setupServiceProviderMockAndRunTest(() -> {
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_FOUND);
+            doAnswer((Answer<Void>) invocation -> {
+                NetworkCallback callback = invocation.getArgument(1);
+                callback.call(mockHttpConnection);
+                return null;
+            }).when(mockNetworkService)
+                    .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            final AssetDownloadBackoff assetDownloadBackoff = new AssetDownloadBackoff(60000, 60000);
+
+            // test
+            new MessageAssetDownloader(assets, new AssetDownloadScheduler(), new AssetFetchRegistry(), null, assetDownloadBackoff, null).downloadAssetCollection();
+            new MessageAssetDownloader(assets, new AssetDownloadScheduler(), new AssetFetchRegistry(), null, assetDownloadBackoff, null).downloadAssetCollection();
+
+            // verify
+            verify(mockNetworkService, times(1)).connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+            assertTrue(assetDownloadBackoff.isBackingOff(assetUrl, System.currentTimeMillis()));
+        });
+    }
+
+    @Test
+    public void testDownloadAssetCollection_when_assetDownloaded_then_metricsRecorded() {
+        // setup
+        AssetDownloadMetrics.reset();
+        setupServiceProviderMockAndRunTest(() -> {
+            when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+            when(mockHttpConnection.getInputStream()).thenReturn(new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)));
+            doAnswer((Answer<Void>) invocation -> {
+                NetworkCallback callback = invocation.getArgument(1);
+                callback.call(mockHttpConnection);
+                return null;
+            }).when(mockNetworkService)
+                    .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+
+            // test
+            messageAssetsDownloader.downloadAssetCollection();
+
+            // verify
+            final Map<String, Object> metrics = AssetDownloadMetrics.getMetrics();
+            assertEquals(1L, metrics.get("requestsIssued"));
+            assertEquals(1L, metrics.get("downloaded"));
+            assertEquals(0L, metrics.get("failed"));
+            assertEquals(9L, metrics.get("bytesDownloaded"));
+            assertEquals(1L, ((Map<String, Object>) metrics.get("downloadLatencyMs")).get("count"));
+            // the first asset latency is recorded once per refresh by the caller
+            assertEquals(0L, ((Map<String, Object>) metrics.get("firstAssetReadyMs")).get("count"));
+        });
+        AssetDownloadMetrics.reset();
+    }
+
+    private static byte[] createAssetData(final int size) {
+        final byte[] assetData = new byte[size];
+        for (int i = 0; i < size; i++) {
+            assetData[i] = (byte) (i * 31 + size);
+        }
+        return assetData;
+    }
+
+    private List<byte[]> captureCachedData() {
+        final List<byte[]> cachedData = new ArrayList<>();
+        when(mockCacheService.set(anyString(), anyString(), any(CacheEntry.class))).thenAnswer(invocation -> {
+            final CacheEntry cacheEntry = invocation.getArgument(2);
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = cacheEntry.getData().read(buffer)) != -1) {
+                data.write(buffer, 0, bytesRead);
+            }
+            cachedData.add(data.toByteArray());
+            return true;
+        });
+        return cachedData;
+    }
+
+    /**
+     * Local stand-in for an asset server supporting range requests. Responses are delivered synchronously and the response
+     * body can be interrupted after a number of bytes, like a dropped connection.
+     */
+    private static class AssetServerStandIn implements Networking {
+        final List<NetworkRequest> requests = new ArrayList<>();
+        byte[] assetData;
+        String eTag;
+        int interruptAfterBytes = -1;
+
+        AssetServerStandIn(final byte[] assetData, final String eTag) {
+            this.assetData = assetData;
+            this.eTag = eTag;
+        }
+
+        @Override
+        public void connectAsync(final NetworkRequest request, final NetworkCallback callback) {
+            requests.add(request);
+            final Map<String, String> requestHeaders = request.getHeaders() != null ? request.getHeaders() : new HashMap<>();
+            final String range = requestHeaders.get(MessagingConstants.HTTP_HEADER_RANGE);
+            final boolean partial = range != null && eTag.equals(requestHeaders.get(MessagingConstants.HTTP_HEADER_IF_RANGE));
+            final int start = partial ? Integer.parseInt(range.substring("bytes=".length(), range.length() - 1)) : 0;
+
+            final Map<String, String> responseHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            responseHeaders.put(MessagingConstants.HTTP_HEADER_ETAG, eTag);
+            responseHeaders.put(MessagingConstants.HTTP_HEADER_ACCEPT_RANGES, "bytes");
+            responseHeaders.put(MessagingConstants.HTTP_HEADER_CONTENT_LENGTH, String.valueOf(assetData.length - start));
+            if (partial) {
+                responseHeaders.put(MessagingConstants.HTTP_HEADER_CONTENT_RANGE, "bytes " + start + "-" + (assetData.length - 1) + "/" + assetData.length);
+            }
+            final int bodyLength = interruptAfterBytes >= 0 ? Math.min(interruptAfterBytes, assetData.length - start) : assetData.length - start;
+            final boolean interrupted = interruptAfterBytes >= 0;
+            final ByteArrayInputStream bodyData = new ByteArrayInputStream(assetData, start, bodyLength);
+            final InputStream body = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    final byte[] buffer = new byte[1];
+                    return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+                }
+
+                @Override
+                public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                    final int bytesRead = bodyData.read(buffer, offset, length);
+                    if (bytesRead == -1 && interrupted) {
+                        // the connection dropped before the whole body was received
+                        throw new IOException("Connection reset");
+                    }
+                    return bytesRead;
+                }
+            };
+
+            callback.call(new HttpConnecting() {
+                @Override
+                public InputStream getInputStream() {
+                    return body;
+                }
+
+                @Override
+                public InputStream getErrorStream() {
+                    return null;
+                }
+
+                @Override
+                public int getResponseCode() {
+                    return partial ? HttpURLConnection.HTTP_PARTIAL : HttpURLConnection.HTTP_OK;
+                }
+
+                @Override
+                public String getResponseMessage() {
+                    return null;
+                }
+
+                @Override
+                public String getResponsePropertyValue(final String responsePropertyKey) {
+                    return responseHeaders.get(responsePropertyKey);
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,192 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import com.adobe.marketing.mobile.services.caching.CacheResult;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class MessagePrerendererTests {
+    private static final String HTML = "<html><body><img src=\"https://www.adobe.com/logo.png\"></body></html>";
+    private static final String ASSET_URL = "https://www.adobe.com/logo.png";
+    private static final String CACHE_LOCATION = "/cache/messaging/images";
+    private static final long DEADLINE_MS = 1500;
+
+    @Mock
+    Handler mockHandler;
+    @Mock
+    WebViewPool.WebViewFactory mockWebViewFactory;
+    @Mock
+    WebView mockWebView;
+    @Mock
+    WebSettings mockWebSettings;
+    @Mock
+    CacheService mockCacheService;
+    @Mock
+    CacheResult mockCacheResult;
+    @Mock
+    Runnable mockOnRendered;
+
+    private MessagePrerenderer messagePrerenderer;
+    private Runnable deadline;
+
+    @Before
+    public void setup() {
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return true;
+        }).when(mockHandler).post(any(Runnable.class));
+        doAnswer(invocation -> {
+            deadline = invocation.getArgument(0);
+            return true;
+        }).when(mockHandler).postDelayed(any(Runnable.class), anyLong());
+        when(mockWebViewFactory.create()).thenReturn(mockWebView);
+        when(mockWebView.getSettings()).thenReturn(mockWebSettings);
+        messagePrerenderer = new MessagePrerenderer(mockHandler, mockWebViewFactory, mockCacheService);
+    }
+
+    private WebViewClient prerender(final Map<String, String> assetMap) {
+        messagePrerenderer.prerender(HTML, assetMap, DEADLINE_MS, mockOnRendered);
+        final ArgumentCaptor<WebViewClient> webViewClientCaptor = ArgumentCaptor.forClass(WebViewClient.class);
+        verify(mockWebView, times(1)).setWebViewClient(webViewClientCaptor.capture());
+        return webViewClientCaptor.getValue();
+    }
+
+    @Test
+    public void testPrerender_PageFinished_MessageShownOnce() {
+        // setup
+        final WebViewClient webViewClient = prerender(Collections.emptyMap());
+        verify(mockWebView, times(1)).loadDataWithBaseURL(isNull(), eq(HTML), eq("text/html"), eq("UTF-8"), isNull());
+        verify(mockHandler, times(1)).postDelayed(any(Runnable.class), eq(DEADLINE_MS));
+        verify(mockOnRendered, never()).run();
+
+        // test
+        webViewClient.onPageFinished(mockWebView, null);
+        deadline.run();
+
+        // verify
+        verify(mockOnRendered, times(1)).run();
+        verify(mockWebView, times(1)).destroy();
+    }
+
+    @Test
+    public void testPrerender_DeadlinePassed_MessageShownOnce() {
+        // setup
+        final WebViewClient webViewClient = prerender(Collections.emptyMap());
+
+        // test
+        deadline.run();
+        webViewClient.onPageFinished(mockWebView, null);
+
+        // verify
+        verify(mockOnRendered, times(1)).run();
+        verify(mockWebView, times(1)).destroy();
+    }
+
+    @Test
+    public void testPrerender_WarmWebViewAvailable_WarmWebViewUsed() {
+        // setup
+        final WebViewPool mockWebViewPool = mock(WebViewPool.class);
+        when(mockWebViewPool.acquire()).thenReturn(mockWebView);
+        messagePrerenderer.setWebViewPool(mockWebViewPool);
+
+        // test
+        final WebViewClient webViewClient = prerender(Collections.emptyMap());
+        webViewClient.onPageFinished(mockWebView, null);
+
+        // verify
+        verify(mockWebViewFactory, never()).create();
+        verify(mockOnRendered, times(1)).run();
+        verify(mockWebView, times(1)).destroy();
+    }
+
+    @Test
+    public void testPrerender_NoWarmWebView_WebViewCreated() {
+        // setup
+        final WebViewPool mockWebViewPool = mock(WebViewPool.class);
+        messagePrerenderer.setWebViewPool(mockWebViewPool);
+
+        // test
+        prerender(Collections.emptyMap());
+
+        // verify
+        verify(mockWebViewPool, times(1)).acquire();
+        verify(mockWebViewFactory, times(1)).create();
+    }
+
+    @Test
+    public void testPrerender_WebViewUnavailable_MessageShown() {
+        // setup
+        when(mockWebViewFactory.create()).thenThrow(new IllegalStateException("no WebView"));
+
+        // test
+        messagePrerenderer.prerender(HTML, Collections.emptyMap(), DEADLINE_MS, mockOnRendered);
+
+        // verify
+        verify(mockOnRendered, times(1)).run();
+    }
+
+    @Test
+    public void testShouldInterceptRequest_CachedAsset_LoadedFromCache() {
+        // setup
+        when(mockCacheResult.getData()).thenReturn(new ByteArrayInputStream(new byte[] {(byte) 0x89, 'P', 'N', 'G'}));
+        when(mockCacheService.get(CACHE_LOCATION, ASSET_URL)).thenReturn(mockCacheResult);
+        final WebViewClient webViewClient = prerender(Collections.singletonMap(ASSET_URL, CACHE_LOCATION));
+        final WebResourceRequest cachedAssetRequest = mockRequest(ASSET_URL);
+        final WebResourceRequest remoteAssetRequest = mockRequest("https://www.adobe.com/font.woff2");
+
+        // test & verify
+        assertNotNull(webViewClient.shouldInterceptRequest(mockWebView, cachedAssetRequest));
+        assertNull(webViewClient.shouldInterceptRequest(mockWebView, remoteAssetRequest));
+        verify(mockCacheService, times(1)).get(anyString(), anyString());
+    }
+
+    private WebResourceRequest mockRequest(final String url) {
+        final Uri uri = mock(Uri.class);
+        when(uri.toString()).thenReturn(url);
+        final WebResourceRequest request = mock(WebResourceRequest.class);
+        when(request.getUrl()).thenReturn(uri);
+        return request;
+    }
+}
@@ -14,6 +14,7 @@ package com.adobe.marketing.mobile.messaging.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -21,6 +22,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.reset;
@@ -34,6 +36,7 @@ import com.adobe.marketing.mobile.Event;
 import com.adobe.marketing.mobile.EventSource;
 import com.adobe.marketing.mobile.EventType;
 import com.adobe.marketing.mobile.ExtensionApi;
+import com.adobe.marketing.mobile.LoggingMode;
 import com.adobe.marketing.mobile.MessagingEdgeEventType;
 import com.adobe.marketing.mobile.MobileCore;
 import com.adobe.marketing.mobile.SharedStateResolution;
@@ -42,6 +45,7 @@ import com.adobe.marketing.mobile.SharedStateStatus;
 import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
 import com.adobe.marketing.mobile.launch.rulesengine.LaunchRulesEngine;
 import com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence;
+import com.adobe.marketing.mobile.messaging.MessagingTimingStage;
 import com.adobe.marketing.mobile.messaging.PushTrackingStatus;
 import com.adobe.marketing.mobile.services.DeviceInforming;
 import com.adobe.marketing.mobile.services.Log;
@@ -62,6 +66,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
@@ -197,6 +202,50 @@ public class MessagingExtensionTests {
         });
     }
 
+    // ========================================================================================
+    // dispatchTimingsEvent
+    // ========================================================================================
+    @Test
+    public void test_dispatchTimingsEvent_debugLogLevel_timingsDispatchedInDebugEvent() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+            Log.setLogLevel(LoggingMode.DEBUG);
+
+            try {
+                // test
+                messagingExtension.dispatchTimingsEvent();
+
+                // verify
+                verify(mockExtensionApi, times(1)).dispatch(eventCaptor.capture());
+                final Event timingsEvent = eventCaptor.getValue();
+                assertEquals(MessagingTestConstants.EventName.TIMINGS_EVENT, timingsEvent.getName());
+                assertEquals(MessagingTestConstants.EventType.MESSAGING, timingsEvent.getType());
+                assertEquals(MessagingTestConstants.EventSource.DEBUG, timingsEvent.getSource());
+                final Map<String, Object> timings = (Map<String, Object>) timingsEvent.getEventData().get(MessagingTestConstants.EventDataKeys.Messaging.TimingsDataKeys.TIMINGS);
+                assertNotNull(timings);
+                assertTrue(timings.containsKey("extensionCreated"));
+                verify(mockExtensionApi, times(0)).createSharedState(any(), any());
+            } finally {
+                Log.setLogLevel(LoggingMode.ERROR);
+            }
+        });
+    }
+
+    @Test
+    public void test_dispatchTimingsEvent_errorLogLevel_timingsNotDispatched() {
+        runUsingMockedServiceProvider(() -> {
+            // setup
+            Log.setLogLevel(LoggingMode.ERROR);
+
+            // test
+            messagingExtension.dispatchTimingsEvent();
+
+            // verify
+            verify(mockExtensionApi, times(0)).dispatch(any());
+        });
+    }
+
 
     // ========================================================================================
     // getName
@@ -250,6 +299,26 @@ public class MessagingExtensionTests {
         });
     }
 
+    @Test
+    public void test_readyForEvent_when_firstReady_then_readyForEventsStageCompleted() {
+        // setup
+        runUsingMockedServiceProvider(() -> {
+            when(mockExtensionApi.getSharedState(eq(MessagingConstants.SharedState.Configuration.EXTENSION_NAME), any(Event.class), anyBoolean(), any(SharedStateResolution.class))).thenReturn(mockConfigData);
+            when(mockExtensionApi.getXDMSharedState(eq(MessagingConstants.SharedState.EdgeIdentity.EXTENSION_NAME), any(Event.class), anyBoolean(), any(SharedStateResolution.class))).thenReturn(mockEdgeIdentityData);
+            assertEquals(-1, MessagingTimings.getCompletionTime(MessagingTimingStage.READY_FOR_EVENTS));
+
+            Event testEvent = new Event.Builder("Test event", EventType.CONFIGURATION, EventSource.RESPONSE_CONTENT)
+                    .build();
+
+            // test
+            assertTrue(messagingExtension.readyForEvent(testEvent));
+
+            // verify
+            assertNotEquals(-1, MessagingTimings.getCompletionTime(MessagingTimingStage.READY_FOR_EVENTS));
+            verify(mockInAppNotificationHandler, times(1)).fetchMessages();
+        });
+    }
+
     @Test
     public void test_readyForEvent_when_eventReceived_and_configurationSharedStateNotReady_then_readyForEventIsFalse() {
         // setup
@@ -303,6 +372,42 @@ public class MessagingExtensionTests {
         });
     }
 
+    @Test
+    public void test_handleWildcardEvents_when_warmLoadPending_then_eventDeferred() {
+        // setup
+        runUsingMockedServiceProvider(() -> {
+            Event mockEvent = mock(Event.class);
+            when(mockInAppNotificationHandler.deferUntilWarmLoaded(mockEvent)).thenReturn(true);
+
+            // test
+            messagingExtension.handleWildcardEvents(mockEvent);
+
+            // verify rules engine does not process event
+            verify(mockMessagingRulesEngine, times(0)).processEvent(any(Event.class));
+        });
+    }
+
+    @Test
+    public void test_handleWildcardEvents_when_deferredEventsPresent_then_deferredEventsProcessedFirst() {
+        // setup
+        runUsingMockedServiceProvider(() -> {
+            Event mockDeferredEvent = mock(Event.class);
+            Event mockEvent = mock(Event.class);
+            List<Event> deferredEvents = new ArrayList<>();
+            deferredEvents.add(mockDeferredEvent);
+            when(mockInAppNotificationHandler.deferUntilWarmLoaded(mockEvent)).thenReturn(false);
+            when(mockInAppNotificationHandler.takeDeferredRulesEvents()).thenReturn(deferredEvents);
+
+            // test
+            messagingExtension.handleWildcardEvents(mockEvent);
+
+            // verify rules engine processes the deferred event before the received event
+            InOrder inOrder = inOrder(mockMessagingRulesEngine);
+            inOrder.verify(mockMessagingRulesEngine, times(1)).processEvent(eq(mockDeferredEvent));
+            inOrder.verify(mockMessagingRulesEngine, times(1)).processEvent(eq(mockEvent));
+        });
+    }
+
     // =================================================================================================================
     // handleRuleEngineResponseEvents
     // =================================================================================================================
@@ -0,0 +1,128 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.adobe.marketing.mobile.messaging.MessagingTimingListener;
+import com.adobe.marketing.mobile.messaging.MessagingTimingStage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class MessagingTimingsTests {
+    @Mock
+    MessagingTimingListener mockListener;
+
+    @Before
+    public void setup() {
+        MessagingTimings.reset();
+    }
+
+    @After
+    public void tearDown() {
+        MessagingTimings.reset();
+    }
+
+    @Test
+    public void testStageCompleted_ListenerNotified() {
+        // setup
+        final long startTime = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(100);
+        MessagingTimings.start(startTime);
+        MessagingTimings.setListener(mockListener);
+
+        // test
+        MessagingTimings.stageCompleted(MessagingTimingStage.EXTENSION_CREATED, startTime);
+
+        // verify
+        verify(mockListener, times(1)).onStageCompleted(eq(MessagingTimingStage.EXTENSION_CREATED), longThat(elapsed -> elapsed >= 100), longThat(duration -> duration >= 100));
+    }
+
+    @Test
+    public void testSetListener_CompletedStagesNotified() {
+        // setup
+        MessagingTimings.stageCompleted(MessagingTimingStage.CACHE_LOADED, System.nanoTime());
+
+        // test
+        MessagingTimings.setListener(mockListener);
+
+        // verify
+        verify(mockListener, times(1)).onStageCompleted(eq(MessagingTimingStage.CACHE_LOADED), anyLong(), anyLong());
+        verify(mockListener, never()).onStageCompleted(eq(MessagingTimingStage.RULES_LOADED), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testStageCompleted_ListenerThrows_StageRecorded() {
+        // setup
+        doThrow(new IllegalStateException("listener failure")).when(mockListener).onStageCompleted(eq(MessagingTimingStage.RULES_LOADED), anyLong(), anyLong());
+        MessagingTimings.setListener(mockListener);
+
+        // test
+        MessagingTimings.stageCompleted(MessagingTimingStage.RULES_LOADED, System.nanoTime());
+
+        // verify
+        verify(mockListener, times(1)).onStageCompleted(eq(MessagingTimingStage.RULES_LOADED), anyLong(), anyLong());
+        assertNotEquals(-1, MessagingTimings.getCompletionTime(MessagingTimingStage.RULES_LOADED));
+    }
+
+    @Test
+    public void testGetTimings() {
+        // setup
+        final long startTime = System.nanoTime();
+        MessagingTimings.start(startTime);
+        MessagingTimings.stageCompleted(MessagingTimingStage.FETCH_MESSAGES_DISPATCHED, startTime);
+        MessagingTimings.stageCompleted(MessagingTimingStage.DECISIONS_RECEIVED, MessagingTimings.getCompletionTime(MessagingTimingStage.FETCH_MESSAGES_DISPATCHED));
+
+        // test
+        final Map<String, Object> timings = MessagingTimings.getTimings();
+
+        // verify
+        assertEquals(2, timings.size());
+        final Map<String, Object> fetchTiming = (Map<String, Object>) timings.get("fetchMessagesDispatched");
+        assertTrue(fetchTiming.get(MessagingTestConstants.EventDataKeys.Messaging.TimingsDataKeys.ELAPSED_MS) instanceof Long);
+        assertTrue(fetchTiming.get(MessagingTestConstants.EventDataKeys.Messaging.TimingsDataKeys.DURATION_MS) instanceof Long);
+        assertTrue(timings.containsKey("decisionsReceived"));
+    }
+
+    @Test
+    public void testStart_RecordedStagesCleared() {
+        // setup
+        MessagingTimings.stageCompleted(MessagingTimingStage.ASSETS_DOWNLOADED, System.nanoTime());
+
+        // test
+        MessagingTimings.start(System.nanoTime());
+        MessagingTimings.stageCompleted(MessagingTimingStage.EXTENSION_CREATED, System.nanoTime());
+
+        // verify
+        assertEquals(-1, MessagingTimings.getCompletionTime(MessagingTimingStage.ASSETS_DOWNLOADED));
+        assertFalse(MessagingTimings.getTimings().containsKey("assetsDownloaded"));
+        assertTrue(MessagingTimings.getTimings().containsKey("extensionCreated"));
+    }
+}
@@ -0,0 +1,236 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.adobe.marketing.mobile.ExtensionApi;
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
+import com.adobe.marketing.mobile.launch.rulesengine.json.JSONRulesParser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class ParsedPropositionItemTests {
+    @Mock
+    ExtensionApi mockExtensionApi;
+    @Mock
+    LaunchRule mockLaunchRule;
+    @Mock
+    MessagingCacheUtilities mockMessagingCacheUtilities;
+
+    private PropositionPayload generatePropositionPayload(final MessageTestConfig config) {
+        try {
+            return MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config)).get(0);
+        } catch (Exception e) {
+            fail(e.getMessage());
+            return null;
+        }
+    }
+
+    @Test
+    public void testCreate_ValidItem() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            final List<LaunchRule> launchRules = new ArrayList<>();
+            launchRules.add(mockLaunchRule);
+            when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = 1;
+            final PropositionPayload propositionPayload = generatePropositionPayload(config);
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+
+            // test
+            final ParsedPropositionItem parsedItem = ParsedPropositionItem.create(propositionPayload.propositionInfo, payloadItem, mockExtensionApi);
+
+            // verify
+            assertNotNull(parsedItem);
+            assertSame(mockLaunchRule, parsedItem.rule);
+            assertSame(propositionPayload.propositionInfo, parsedItem.propositionInfo);
+            assertNotNull(parsedItem.messageId);
+            assertEquals(1, parsedItem.remoteAssets.size());
+            assertEquals("https://www.adobe.com/adobe.png", parsedItem.remoteAssets.get(0));
+            // verify the original content is handed to the rules parser exactly once
+            ignored.verify(() -> JSONRulesParser.parse(eq(payloadItem.data.content), any(ExtensionApi.class)), times(1));
+        }
+    }
+
+    @Test
+    public void testCreate_MissingMessageId() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            final List<LaunchRule> launchRules = new ArrayList<>();
+            launchRules.add(mockLaunchRule);
+            when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = 1;
+            config.isMissingMessageId = true;
+            final PropositionPayload propositionPayload = generatePropositionPayload(config);
+
+            // test
+            final ParsedPropositionItem parsedItem = ParsedPropositionItem.create(propositionPayload.propositionInfo, propositionPayload.items.get(0), mockExtensionApi);
+
+            // verify
+            assertNotNull(parsedItem);
+            assertNull(parsedItem.messageId);
+            assertEquals(1, parsedItem.remoteAssets.size());
+        }
+    }
+
+    @Test
+    public void testCreate_MissingRulesKey() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            final List<LaunchRule> launchRules = new ArrayList<>();
+            launchRules.add(mockLaunchRule);
+            when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = 1;
+            config.isMissingRulesKey = true;
+            final PropositionPayload propositionPayload = generatePropositionPayload(config);
+
+            // test
+            final ParsedPropositionItem parsedItem = ParsedPropositionItem.create(propositionPayload.propositionInfo, propositionPayload.items.get(0), mockExtensionApi);
+
+            // verify
+            assertNotNull(parsedItem);
+            assertNull(parsedItem.messageId);
+            assertNull(parsedItem.remoteAssets);
+        }
+    }
+
+    @Test
+    public void testCreate_MalformedContent() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = 1;
+            config.isMissingMessageDetail = true;
+            final PropositionPayload propositionPayload = generatePropositionPayload(config);
+
+            // test
+            final ParsedPropositionItem parsedItem = ParsedPropositionItem.create(propositionPayload.propositionInfo, propositionPayload.items.get(0), mockExtensionApi);
+
+            // verify
+            assertNull(parsedItem);
+            ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(0));
+        }
+    }
+
+    @Test
+    public void testCreate_RulesParserReturnsNull() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(null);
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = 1;
+            final PropositionPayload propositionPayload = generatePropositionPayload(config);
+
+            // test
+            final ParsedPropositionItem parsedItem = ParsedPropositionItem.create(propositionPayload.propositionInfo, propositionPayload.items.get(0), mockExtensionApi);
+
+            // verify
+            assertNull(parsedItem);
+        }
+    }
+
+    @Test
+    public void testCreate_HtmlMovedToCache() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            final List<LaunchRule> launchRules = new ArrayList<>();
+            launchRules.add(mockLaunchRule);
+            when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+            when(mockMessagingCacheUtilities.cacheHtml(anyString())).thenReturn("mockHtmlHandle");
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = 1;
+            final PropositionPayload propositionPayload = generatePropositionPayload(config);
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+            final String contentKey = ParsedPropositionItem.getContentKey(payloadItem);
+
+            // test
+            final ParsedPropositionItem parsedItem = ParsedPropositionItem.create(propositionPayload.propositionInfo, payloadItem, contentKey, mockMessagingCacheUtilities, mockExtensionApi);
+
+            // verify html cached and replaced by its handle in the loaded item
+            assertNotNull(parsedItem);
+            verify(mockMessagingCacheUtilities, times(1)).cacheHtml(contains("Hello from InApp campaign"));
+            assertEquals(contentKey, parsedItem.contentKey);
+            assertNotSame(payloadItem, parsedItem.payloadItem);
+            assertFalse(parsedItem.payloadItem.data.content.contains("Hello from InApp campaign"));
+            assertTrue(parsedItem.payloadItem.data.content.contains("mockHtmlHandle"));
+            assertNotNull(parsedItem.messageId);
+            assertEquals(1, parsedItem.remoteAssets.size());
+            ignored.verify(() -> JSONRulesParser.parse(eq(parsedItem.payloadItem.data.content), any(ExtensionApi.class)), times(1));
+
+            // verify the externalized item keeps the content key of the original content
+            final ParsedPropositionItem reloadedItem = ParsedPropositionItem.create(propositionPayload.propositionInfo, parsedItem.payloadItem, ParsedPropositionItem.getContentKey(parsedItem.payloadItem), mockMessagingCacheUtilities, mockExtensionApi);
+            assertNotNull(reloadedItem);
+            assertEquals(contentKey, reloadedItem.contentKey);
+            assertSame(parsedItem.payloadItem, reloadedItem.payloadItem);
+            verify(mockMessagingCacheUtilities, times(1)).cacheHtml(anyString());
+        }
+    }
+
+    @Test
+    public void testCreate_HtmlNotCached_HtmlKeptInMemory() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            final List<LaunchRule> launchRules = new ArrayList<>();
+            launchRules.add(mockLaunchRule);
+            when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+            when(mockMessagingCacheUtilities.cacheHtml(anyString())).thenReturn(null);
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = 1;
+            final PropositionPayload propositionPayload = generatePropositionPayload(config);
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+
+            // test
+            final ParsedPropositionItem parsedItem = ParsedPropositionItem.create(propositionPayload.propositionInfo, payloadItem, ParsedPropositionItem.getContentKey(payloadItem), mockMessagingCacheUtilities, mockExtensionApi);
+
+            // verify
+            assertNotNull(parsedItem);
+            assertSame(payloadItem, parsedItem.payloadItem);
+            ignored.verify(() -> JSONRulesParser.parse(eq(payloadItem.data.content), any(ExtensionApi.class)), times(1));
+        }
+    }
+
+    @Test
+    public void testCreate_NullPayloadItem() {
+        // test
+        final ParsedPropositionItem parsedItem = ParsedPropositionItem.create(null, null, mockExtensionApi);
+
+        // verify
+        assertNull(parsedItem);
+    }
+}
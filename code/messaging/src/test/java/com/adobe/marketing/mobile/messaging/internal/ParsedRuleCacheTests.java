@@ -0,0 +1,307 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+import com.adobe.marketing.mobile.ExtensionApi;
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
+import com.adobe.marketing.mobile.launch.rulesengine.json.JSONRulesParser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class ParsedRuleCacheTests {
+    @Mock
+    ExtensionApi mockExtensionApi;
+    @Mock
+    LaunchRule mockLaunchRule;
+    @Mock
+    MessagingCacheUtilities mockMessagingCacheUtilities;
+    private ParsedRuleCache parsedRuleCache;
+    private PropositionPayload propositionPayload;
+
+    @Before
+    public void setup() {
+        parsedRuleCache = new ParsedRuleCache(mockMessagingCacheUtilities);
+        final MessageTestConfig config = new MessageTestConfig();
+        config.count = 1;
+        try {
+            propositionPayload = MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config)).get(0);
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private PayloadItem copyItem(final PayloadItem payloadItem, final String content) {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("id", payloadItem.data.id);
+        data.put("content", content);
+        final Map<String, Object> item = new HashMap<>();
+        item.put("id", payloadItem.id);
+        item.put("schema", payloadItem.schema);
+        item.put("data", data);
+        try {
+            return new PayloadItem(item);
+        } catch (Exception e) {
+            fail(e.getMessage());
+            return null;
+        }
+    }
+
+    private void mockRulesParser() {
+        final List<LaunchRule> launchRules = new ArrayList<>();
+        launchRules.add(mockLaunchRule);
+        when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+    }
+
+    @Test
+    public void testGetOrParse_UnchangedContentIsNotParsedAgain() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            mockRulesParser();
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+            final PayloadItem refreshedItem = copyItem(payloadItem, payloadItem.data.content);
+
+            // test
+            final ParsedPropositionItem firstItem = parsedRuleCache.getOrParse(propositionPayload.propositionInfo, payloadItem, mockExtensionApi);
+            parsedRuleCache.startNewGeneration();
+            final ParsedPropositionItem secondItem = parsedRuleCache.getOrParse(propositionPayload.propositionInfo, refreshedItem, mockExtensionApi);
+
+            // verify
+            assertNotNull(firstItem);
+            assertSame(firstItem, secondItem);
+            assertEquals(1, parsedRuleCache.size());
+            ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(1));
+        }
+    }
+
+    @Test
+    public void testGetOrParse_HtmlRemovedFromCache_ParsedAgain() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            mockRulesParser();
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+            parsedRuleCache.getOrParse(propositionPayload.propositionInfo, payloadItem, mockExtensionApi);
+            when(mockMessagingCacheUtilities.isHtmlRemoved(any())).thenReturn(true);
+
+            // test
+            parsedRuleCache.startNewGeneration();
+            parsedRuleCache.getOrParse(propositionPayload.propositionInfo, copyItem(payloadItem, payloadItem.data.content), mockExtensionApi);
+
+            // verify
+            ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(2));
+        }
+    }
+
+    @Test
+    public void testGetOrParse_ItemInRuleSnapshot_RestoredWithoutParsing() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+            final ParsedPropositionItem restoredItem = Mockito.mock(ParsedPropositionItem.class);
+            final RuleSnapshot mockRuleSnapshot = Mockito.mock(RuleSnapshot.class);
+            when(mockRuleSnapshot.restore(propositionPayload.propositionInfo, payloadItem, ParsedPropositionItem.getContentKey(payloadItem))).thenReturn(restoredItem);
+            when(mockMessagingCacheUtilities.getRuleSnapshot()).thenReturn(mockRuleSnapshot);
+
+            // test
+            final ParsedPropositionItem parsedItem = parsedRuleCache.getOrParse(propositionPayload.propositionInfo, payloadItem, mockExtensionApi);
+
+            // verify
+            assertSame(restoredItem, parsedItem);
+            ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(0));
+        }
+    }
+
+    @Test
+    public void testGetOrParse_ItemNotInRuleSnapshot_Parsed() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            mockRulesParser();
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+            final RuleSnapshot mockRuleSnapshot = Mockito.mock(RuleSnapshot.class);
+            when(mockMessagingCacheUtilities.getRuleSnapshot()).thenReturn(mockRuleSnapshot);
+
+            // test
+            final ParsedPropositionItem parsedItem = parsedRuleCache.getOrParse(propositionPayload.propositionInfo, payloadItem, mockExtensionApi);
+
+            // verify
+            assertNotNull(parsedItem);
+            assertSame(mockLaunchRule, parsedItem.rule);
+            ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(1));
+        }
+    }
+
+    @Test
+    public void testGetOrParse_ChangedContentIsParsed() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            mockRulesParser();
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+            final PayloadItem changedItem = copyItem(payloadItem, payloadItem.data.content.replace("Hello from", "Hi from"));
+
+            // test
+            parsedRuleCache.getOrParse(propositionPayload.propositionInfo, payloadItem, mockExtensionApi);
+            parsedRuleCache.startNewGeneration();
+            final ParsedPropositionItem changedParsedItem = parsedRuleCache.getOrParse(propositionPayload.propositionInfo, changedItem, mockExtensionApi);
+
+            // verify
+            assertNotNull(changedParsedItem);
+            ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(2));
+        }
+    }
+
+    @Test
+    public void testGetOrParse_ReusedRuleIsBoundToNewPropositionInfo() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            mockRulesParser();
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+            final Map<String, Object> scopeDetails = new HashMap<>();
+            scopeDetails.put("correlationID", "newCorrelationId");
+            final Map<String, Object> propositionInfoMap = new HashMap<>();
+            propositionInfoMap.put("id", "newId");
+            propositionInfoMap.put("scope", "newScope");
+            propositionInfoMap.put("scopeDetails", scopeDetails);
+            PropositionInfo newPropositionInfo = null;
+            try {
+                newPropositionInfo = PropositionInfo.create(propositionInfoMap);
+            } catch (Exception e) {
+                fail(e.getMessage());
+            }
+
+            // test
+            final ParsedPropositionItem firstItem = parsedRuleCache.getOrParse(propositionPayload.propositionInfo, payloadItem, mockExtensionApi);
+            parsedRuleCache.startNewGeneration();
+            final ParsedPropositionItem secondItem = parsedRuleCache.getOrParse(newPropositionInfo, payloadItem, mockExtensionApi);
+
+            // verify
+            assertNotSame(firstItem, secondItem);
+            assertSame(firstItem.rule, secondItem.rule);
+            assertSame(newPropositionInfo, secondItem.propositionInfo);
+            assertSame(propositionPayload.propositionInfo, firstItem.propositionInfo);
+            ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(1));
+        }
+    }
+
+    @Test
+    public void testStartNewGeneration_UnreferencedEntriesAreEvicted() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            mockRulesParser();
+            final PayloadItem payloadItem = propositionPayload.items.get(0);
+            parsedRuleCache.getOrParse(propositionPayload.propositionInfo, payloadItem, mockExtensionApi);
+
+            // test
+            parsedRuleCache.startNewGeneration();
+            assertEquals(1, parsedRuleCache.size());
+            parsedRuleCache.startNewGeneration();
+
+            // verify
+            assertEquals(0, parsedRuleCache.size());
+            parsedRuleCache.getOrParse(propositionPayload.propositionInfo, payloadItem, mockExtensionApi);
+            ignored.verify(() -> JSONRulesParser.parse(anyString(), any(ExtensionApi.class)), times(2));
+        }
+    }
+
+    @Test
+    public void testGetOrParse_InvalidItemIsNotCached() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(null);
+
+            // test
+            final ParsedPropositionItem parsedItem = parsedRuleCache.getOrParse(propositionPayload.propositionInfo, propositionPayload.items.get(0), mockExtensionApi);
+
+            // verify
+            assertNull(parsedItem);
+            assertEquals(0, parsedRuleCache.size());
+        }
+    }
+
+    @Test
+    public void testGetOrParseAll_ParsedInParallel_ResultsInPayloadOrder() {
+        // setup
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        parsedRuleCache = new ParsedRuleCache(mockMessagingCacheUtilities, executorService);
+        final MessageTestConfig config = new MessageTestConfig();
+        config.count = 10;
+        List<PropositionPayload> propositions = null;
+        try {
+            propositions = MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config));
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+
+        // test, the rules are parsed by the core rules parser on the worker threads
+        final List<ParsedPropositionItem> parsedItems = parsedRuleCache.getOrParseAll(propositions, mockExtensionApi, 2);
+
+        // verify
+        final List<PayloadItem> payloadItems = propositions.get(0).items;
+        assertEquals(10, parsedItems.size());
+        for (int index = 0; index < payloadItems.size(); index++) {
+            assertNotNull(parsedItems.get(index));
+            assertSame(payloadItems.get(index), parsedItems.get(index).payloadItem);
+        }
+        assertEquals(10, parsedRuleCache.size());
+
+        // verify unchanged items are reused on the next request
+        parsedRuleCache.startNewGeneration();
+        final List<ParsedPropositionItem> reusedItems = parsedRuleCache.getOrParseAll(propositions, mockExtensionApi, 2);
+        for (int index = 0; index < payloadItems.size(); index++) {
+            assertSame(parsedItems.get(index), reusedItems.get(index));
+        }
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testGetOrParseAll_BelowThreshold_ParsedSerially() {
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            // setup
+            mockRulesParser();
+            final ExecutorService mockExecutorService = Mockito.mock(ExecutorService.class);
+            parsedRuleCache = new ParsedRuleCache(mockMessagingCacheUtilities, mockExecutorService);
+            final List<PropositionPayload> propositions = new ArrayList<>();
+            propositions.add(propositionPayload);
+
+            // test
+            final List<ParsedPropositionItem> parsedItems = parsedRuleCache.getOrParseAll(propositions, mockExtensionApi, 2);
+
+            // verify
+            assertEquals(1, parsedItems.size());
+            assertSame(mockLaunchRule, parsedItems.get(0).rule);
+            Mockito.verifyNoInteractions(mockExecutorService);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class PropositionCacheCodecTests {
+
+    private List<PropositionPayload> generatePropositionPayloads(final int count) {
+        final List<PropositionPayload> propositions = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                final MessageTestConfig config = new MessageTestConfig();
+                config.count = 2;
+                propositions.addAll(MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config)));
+            }
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+        return propositions;
+    }
+
+    private void assertPropositionsEqual(final List<PropositionPayload> expected, final List<PropositionPayload> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final PropositionPayload expectedProposition = expected.get(i);
+            final PropositionPayload actualProposition = actual.get(i);
+            assertEquals(expectedProposition.propositionInfo.id, actualProposition.propositionInfo.id);
+            assertEquals(expectedProposition.propositionInfo.scope, actualProposition.propositionInfo.scope);
+            assertEquals(expectedProposition.propositionInfo.scopeDetails, actualProposition.propositionInfo.scopeDetails);
+            assertEquals(expectedProposition.propositionInfo.correlationId, actualProposition.propositionInfo.correlationId);
+            assertEquals(expectedProposition.propositionInfo.activityId, actualProposition.propositionInfo.activityId);
+            assertEquals(expectedProposition.items.size(), actualProposition.items.size());
+            for (int j = 0; j < expectedProposition.items.size(); j++) {
+                final PayloadItem expectedItem = expectedProposition.items.get(j);
+                final PayloadItem actualItem = actualProposition.items.get(j);
+                assertEquals(expectedItem.id, actualItem.id);
+                assertEquals(expectedItem.schema, actualItem.schema);
+                assertEquals(expectedItem.data.id, actualItem.data.id);
+                assertEquals(expectedItem.data.content, actualItem.data.content);
+            }
+        }
+    }
+
+    @Test
+    public void testEncodeDecode_RoundTrip() {
+        // setup
+        final List<PropositionPayload> propositions = generatePropositionPayloads(3);
+
+        // test
+        final byte[] encoded = PropositionCacheCodec.encode(propositions);
+
+        // verify
+        assertNotNull(encoded);
+        assertTrue(PropositionCacheCodec.isEncoded(encoded));
+        final List<PropositionPayload> decoded = PropositionCacheCodec.decode(ByteBuffer.wrap(encoded));
+        assertNotNull(decoded);
+        assertPropositionsEqual(propositions, decoded);
+    }
+
+    @Test
+    public void testEncodeDecode_TypedScopeDetailsValuesPreserved() throws Exception {
+        // setup
+        final Map<String, Object> activity = new HashMap<>();
+        activity.put("id", "activityId");
+        activity.put("priority", 5);
+        final Map<String, Object> scopeDetails = new HashMap<>();
+        scopeDetails.put("decisionProvider", "AJO");
+        scopeDetails.put("correlationID", "correlationId");
+        scopeDetails.put("activity", activity);
+        scopeDetails.put("timestamp", 1672531200000L);
+        scopeDetails.put("ratio", 0.25d);
+        scopeDetails.put("enabled", true);
+        scopeDetails.put("empty", null);
+        scopeDetails.put("characteristics", Arrays.asList("a", 1, false));
+        final Map<String, Object> propositionInfoMap = new HashMap<>();
+        propositionInfoMap.put("id", "propositionId");
+        propositionInfoMap.put("scope", "mobileapp://mock_applicationId");
+        propositionInfoMap.put("scopeDetails", scopeDetails);
+        final Map<String, Object> data = new HashMap<>();
+        data.put("id", "dataId");
+        data.put("content", "{\"version\":1,\"rules\":[]} é中");
+        final Map<String, Object> item = new HashMap<>();
+        item.put("id", "itemId");
+        item.put("schema", "https://ns.adobe.com/personalization/json-content-item");
+        item.put("data", data);
+        final List<Map<String, Object>> items = new ArrayList<>();
+        items.add(item);
+        final List<PropositionPayload> propositions = new ArrayList<>();
+        propositions.add(PropositionPayload.create(PropositionInfo.create(propositionInfoMap), items));
+
+        // test
+        final List<PropositionPayload> decoded = PropositionCacheCodec.decode(ByteBuffer.wrap(PropositionCacheCodec.encode(propositions)));
+
+        // verify
+        assertNotNull(decoded);
+        assertPropositionsEqual(propositions, decoded);
+        final Map<String, Object> decodedScopeDetails = decoded.get(0).propositionInfo.scopeDetails;
+        assertEquals(1672531200000L, decodedScopeDetails.get("timestamp"));
+        assertEquals(0.25d, decodedScopeDetails.get("ratio"));
+        assertEquals(true, decodedScopeDetails.get("enabled"));
+        assertTrue(decodedScopeDetails.containsKey("empty"));
+        assertEquals(5, ((Map<String, Object>) decodedScopeDetails.get("activity")).get("priority"));
+    }
+
+    @Test
+    public void testEncodeDecode_UnsupportedScopeDetailsValues_CachedAsStrings() throws Exception {
+        // setup
+        final Map<String, Object> activity = new HashMap<>();
+        activity.put("id", "activityId");
+        activity.put("score", new java.math.BigDecimal("1.5"));
+        activity.put("tags", new Object[] {"a", (short) 2});
+        final Map<String, Object> scopeDetails = new HashMap<>();
+        scopeDetails.put("activity", activity);
+        scopeDetails.put("nested", Arrays.asList(Arrays.asList('x', 1)));
+        final Map<String, Object> propositionInfoMap = new HashMap<>();
+        propositionInfoMap.put("id", "propositionId");
+        propositionInfoMap.put("scope", "mobileapp://mock_applicationId");
+        propositionInfoMap.put("scopeDetails", scopeDetails);
+        final Map<String, Object> data = new HashMap<>();
+        data.put("id", "dataId");
+        data.put("content", "{\"version\":1,\"rules\":[]}");
+        final Map<String, Object> item = new HashMap<>();
+        item.put("id", "itemId");
+        item.put("schema", "https://ns.adobe.com/personalization/json-content-item");
+        item.put("data", data);
+        final List<Map<String, Object>> items = new ArrayList<>();
+        items.add(item);
+        final List<PropositionPayload> propositions = new ArrayList<>();
+        propositions.add(PropositionPayload.create(PropositionInfo.create(propositionInfoMap), items));
+
+        // test
+        final byte[] encoded = PropositionCacheCodec.encode(propositions);
+
+        // verify the propositions are cached, unsupported values are kept as strings
+        assertNotNull(encoded);
+        final List<PropositionPayload> decoded = PropositionCacheCodec.decode(ByteBuffer.wrap(encoded));
+        assertNotNull(decoded);
+        assertEquals(1, decoded.size());
+        final Map<String, Object> decodedScopeDetails = decoded.get(0).propositionInfo.scopeDetails;
+        final Map<String, Object> decodedActivity = (Map<String, Object>) decodedScopeDetails.get("activity");
+        assertEquals("activityId", decodedActivity.get("id"));
+        assertEquals("1.5", decodedActivity.get("score"));
+        assertEquals(Arrays.asList("a", "2"), decodedActivity.get("tags"));
+        assertEquals(Arrays.asList(Arrays.asList("x", 1)), decodedScopeDetails.get("nested"));
+    }
+
+    @Test
+    public void testDecode_DirectBuffer_BufferNotConsumed() {
+        // setup
+        final List<PropositionPayload> propositions = generatePropositionPayloads(3);
+        final byte[] encoded = PropositionCacheCodec.encode(propositions);
+        final ByteBuffer directBuffer = ByteBuffer.allocateDirect(encoded.length);
+        directBuffer.put(encoded);
+        directBuffer.flip();
+
+        // test
+        final List<PropositionPayload> decoded = PropositionCacheCodec.decode(directBuffer);
+
+        // verify
+        assertNotNull(decoded);
+        assertPropositionsEqual(propositions, decoded);
+        assertEquals(0, directBuffer.position());
+    }
+
+    @Test
+    public void testDecode_CorruptedPayload_ReturnsNull() {
+        // setup
+        final byte[] encoded = PropositionCacheCodec.encode(generatePropositionPayloads(1));
+        encoded[encoded.length - 10] ^= 0x1;
+
+        // test
+        final List<PropositionPayload> decoded = PropositionCacheCodec.decode(ByteBuffer.wrap(encoded));
+
+        // verify
+        assertNull(decoded);
+    }
+
+    @Test
+    public void testDecode_TruncatedPayload_ReturnsNull() {
+        // setup
+        final byte[] encoded = PropositionCacheCodec.encode(generatePropositionPayloads(1));
+
+        // test
+        final List<PropositionPayload> decoded = PropositionCacheCodec.decode(ByteBuffer.wrap(Arrays.copyOf(encoded, encoded.length / 2)));
+
+        // verify
+        assertNull(decoded);
+    }
+
+    @Test
+    public void testDecode_UnsupportedVersion_ReturnsNull() {
+        // setup
+        final byte[] encoded = PropositionCacheCodec.encode(generatePropositionPayloads(1));
+        encoded[4] = 99;
+
+        // test
+        final List<PropositionPayload> decoded = PropositionCacheCodec.decode(ByteBuffer.wrap(encoded));
+
+        // verify
+        assertNull(decoded);
+    }
+
+    @Test
+    public void testIsEncoded_JavaSerializedData_ReturnsFalse() throws Exception {
+        // setup
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
+        objectOutputStream.writeObject(new ArrayList<>(generatePropositionPayloads(1)));
+        objectOutputStream.close();
+
+        // test
+        final boolean isEncoded = PropositionCacheCodec.isEncoded(outputStream.toByteArray());
+
+        // verify
+        assertFalse(isEncoded);
+        assertFalse(PropositionCacheCodec.isEncoded(null));
+        assertFalse(PropositionCacheCodec.isEncoded(new byte[2]));
+    }
+
+    @Test
+    public void testEncode_EmptyList() {
+        // test
+        final byte[] encoded = PropositionCacheCodec.encode(new ArrayList<>());
+
+        // verify
+        assertNotNull(encoded);
+        final List<PropositionPayload> decoded = PropositionCacheCodec.decode(ByteBuffer.wrap(encoded));
+        assertNotNull(decoded);
+        assertTrue(decoded.isEmpty());
+    }
+}
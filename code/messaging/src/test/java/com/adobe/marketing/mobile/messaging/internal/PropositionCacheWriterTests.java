@@ -0,0 +1,212 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class PropositionCacheWriterTests {
+    @Mock
+    MessagingCacheUtilities mockMessagingCacheUtilities;
+
+    private ScheduledExecutorService executorService;
+
+    @Before
+    public void setup() {
+        executorService = new ScheduledThreadPoolExecutor(1);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private List<PropositionPayload> generatePropositions(final int count) {
+        final List<PropositionPayload> propositions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            propositions.add(mock(PropositionPayload.class));
+        }
+        return propositions;
+    }
+
+    @Test
+    public void testSchedule_RapidUpdatesCoalescedIntoOneWrite() {
+        // setup
+        final PropositionCacheWriter propositionCacheWriter = new PropositionCacheWriter(mockMessagingCacheUtilities, executorService, 60000);
+        final List<PropositionPayload> firstChunk = generatePropositions(1);
+        final List<PropositionPayload> secondChunk = generatePropositions(2);
+        final ArgumentCaptor<List<PropositionPayload>> listArgumentCaptor = ArgumentCaptor.forClass(List.class);
+
+        // test
+        propositionCacheWriter.schedule(true, firstChunk);
+        propositionCacheWriter.schedule(false, secondChunk);
+        propositionCacheWriter.flush();
+
+        // verify a single update containing both chunks is written
+        verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(eq(true), listArgumentCaptor.capture());
+        assertEquals(3, listArgumentCaptor.getValue().size());
+        assertSame(firstChunk.get(0), listArgumentCaptor.getValue().get(0));
+        assertSame(secondChunk.get(1), listArgumentCaptor.getValue().get(2));
+    }
+
+    @Test
+    public void testSchedule_ClearDiscardsPendingPropositions() {
+        // setup
+        final PropositionCacheWriter propositionCacheWriter = new PropositionCacheWriter(mockMessagingCacheUtilities, executorService, 60000);
+        final List<PropositionPayload> propositions = generatePropositions(1);
+        final ArgumentCaptor<List<PropositionPayload>> listArgumentCaptor = ArgumentCaptor.forClass(List.class);
+
+        // test
+        propositionCacheWriter.schedule(false, generatePropositions(2));
+        propositionCacheWriter.schedule(true, propositions);
+        propositionCacheWriter.flush();
+
+        // verify
+        verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(eq(true), listArgumentCaptor.capture());
+        assertEquals(1, listArgumentCaptor.getValue().size());
+        assertSame(propositions.get(0), listArgumentCaptor.getValue().get(0));
+    }
+
+    @Test
+    public void testSchedule_WritesCopyOfPropositions() {
+        // setup
+        final PropositionCacheWriter propositionCacheWriter = new PropositionCacheWriter(mockMessagingCacheUtilities, executorService, 60000);
+        final List<PropositionPayload> propositions = generatePropositions(2);
+        final ArgumentCaptor<List<PropositionPayload>> listArgumentCaptor = ArgumentCaptor.forClass(List.class);
+
+        // test
+        propositionCacheWriter.schedule(false, propositions);
+        propositions.clear();
+        propositionCacheWriter.flush();
+
+        // verify
+        verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(eq(false), listArgumentCaptor.capture());
+        assertEquals(2, listArgumentCaptor.getValue().size());
+    }
+
+    @Test
+    public void testSchedule_WrittenInBackgroundAfterDelay() {
+        // setup
+        final PropositionCacheWriter propositionCacheWriter = new PropositionCacheWriter(mockMessagingCacheUtilities, executorService, 10);
+
+        // test
+        propositionCacheWriter.schedule(false, generatePropositions(1));
+        propositionCacheWriter.schedule(false, generatePropositions(3));
+
+        // verify
+        verify(mockMessagingCacheUtilities, timeout(2000).times(1)).updateCachedPropositions(eq(false), any(List.class));
+    }
+
+    @Test
+    public void testSchedule_ClearOnly_EmptyUpdateWritten() {
+        // setup
+        final PropositionCacheWriter propositionCacheWriter = new PropositionCacheWriter(mockMessagingCacheUtilities, executorService, 60000);
+
+        // test
+        propositionCacheWriter.schedule(true, null);
+        propositionCacheWriter.flush();
+
+        // verify
+        verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(eq(true), eq(new ArrayList<>()));
+    }
+
+    @Test
+    public void testFlush_NoPendingUpdate_NothingWritten() {
+        // setup
+        final PropositionCacheWriter propositionCacheWriter = new PropositionCacheWriter(mockMessagingCacheUtilities, executorService, 60000);
+        propositionCacheWriter.schedule(false, generatePropositions(1));
+        propositionCacheWriter.flush();
+
+        // test
+        propositionCacheWriter.flush();
+
+        // verify
+        verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(anyBoolean(), any(List.class));
+    }
+
+    @Test
+    public void testSchedule_ExecutorUnavailable_WrittenImmediately() {
+        // setup
+        executorService.shutdownNow();
+        final PropositionCacheWriter propositionCacheWriter = new PropositionCacheWriter(mockMessagingCacheUtilities, executorService, 60000);
+
+        // test
+        propositionCacheWriter.schedule(false, generatePropositions(1));
+
+        // verify
+        verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(eq(false), any(List.class));
+    }
+
+    @Test
+    public void testScheduleRuleSnapshot_WrittenAfterPropositions() {
+        // setup
+        final PropositionCacheWriter propositionCacheWriter = new PropositionCacheWriter(mockMessagingCacheUtilities, executorService, 60000);
+        final List<ParsedPropositionItem> loadedItems = new ArrayList<>();
+        loadedItems.add(mock(ParsedPropositionItem.class));
+
+        // test
+        propositionCacheWriter.schedule(true, generatePropositions(1));
+        propositionCacheWriter.scheduleRuleSnapshot(loadedItems);
+        propositionCacheWriter.flush();
+
+        // verify
+        final InOrder inOrder = inOrder(mockMessagingCacheUtilities);
+        inOrder.verify(mockMessagingCacheUtilities, times(1)).updateCachedPropositions(eq(true), any(List.class));
+        inOrder.verify(mockMessagingCacheUtilities, times(1)).cacheRuleSnapshot(eq(loadedItems));
+    }
+
+    @Test
+    public void testScheduleRuleSnapshot_LatestSnapshotWritten() {
+        // setup
+        final PropositionCacheWriter propositionCacheWriter = new PropositionCacheWriter(mockMessagingCacheUtilities, executorService, 60000);
+        final List<ParsedPropositionItem> firstItems = new ArrayList<>();
+        firstItems.add(mock(ParsedPropositionItem.class));
+        final List<ParsedPropositionItem> latestItems = new ArrayList<>();
+        latestItems.add(mock(ParsedPropositionItem.class));
+        latestItems.add(mock(ParsedPropositionItem.class));
+
+        // test
+        propositionCacheWriter.scheduleRuleSnapshot(firstItems);
+        propositionCacheWriter.scheduleRuleSnapshot(latestItems);
+        latestItems.clear();
+        propositionCacheWriter.flush();
+
+        // verify only the latest items are written and the propositions are not updated
+        final ArgumentCaptor<List<ParsedPropositionItem>> itemsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockMessagingCacheUtilities, times(1)).cacheRuleSnapshot(itemsCaptor.capture());
+        assertEquals(2, itemsCaptor.getValue().size());
+        verify(mockMessagingCacheUtilities, times(0)).updateCachedPropositions(anyBoolean(), any(List.class));
+    }
+}
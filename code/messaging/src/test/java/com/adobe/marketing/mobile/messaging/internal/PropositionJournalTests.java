@@ -0,0 +1,234 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class PropositionJournalTests {
+    private File journalFile;
+
+    @Before
+    public void setup() throws IOException {
+        journalFile = File.createTempFile("propositions", ".journal");
+        journalFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        journalFile.delete();
+    }
+
+    private List<PropositionPayload> generatePropositions(final int itemCount) {
+        final List<PropositionPayload> propositions = new ArrayList<>();
+        try {
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = itemCount;
+            propositions.addAll(MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config)));
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+        return propositions;
+    }
+
+    @Test
+    public void testReplay_AddRecords_PropositionsRebuiltInOrder() {
+        // setup
+        final PropositionJournal propositionJournal = new PropositionJournal(journalFile);
+        final List<PropositionPayload> firstChunk = generatePropositions(1);
+        final List<PropositionPayload> secondChunk = generatePropositions(2);
+        assertTrue(propositionJournal.appendPropositions(firstChunk));
+        assertTrue(propositionJournal.appendPropositions(secondChunk));
+
+        // test
+        final List<PropositionPayload> propositions = new PropositionJournal(journalFile).replay();
+
+        // verify
+        assertNotNull(propositions);
+        assertEquals(2, propositions.size());
+        assertEquals(firstChunk.get(0).items.get(0).data.content, propositions.get(0).items.get(0).data.content);
+        assertEquals(secondChunk.get(0).items.get(1).data.content, propositions.get(1).items.get(1).data.content);
+    }
+
+    @Test
+    public void testReplay_ClearRecord_PreviousPropositionsDiscarded() {
+        // setup
+        final PropositionJournal propositionJournal = new PropositionJournal(journalFile);
+        final List<PropositionPayload> lastChunk = generatePropositions(3);
+        propositionJournal.appendPropositions(generatePropositions(1));
+        propositionJournal.appendClear();
+        propositionJournal.appendPropositions(lastChunk);
+
+        // test
+        final List<PropositionPayload> propositions = new PropositionJournal(journalFile).replay();
+
+        // verify
+        assertNotNull(propositions);
+        assertEquals(1, propositions.size());
+        assertEquals(3, propositions.get(0).items.size());
+        assertEquals(lastChunk.get(0).items.get(2).data.content, propositions.get(0).items.get(2).data.content);
+    }
+
+    @Test
+    public void testReplay_IncompleteLastRecord_RecordDiscarded() throws IOException {
+        // setup
+        final PropositionJournal propositionJournal = new PropositionJournal(journalFile);
+        propositionJournal.appendPropositions(generatePropositions(1));
+        final long validLength = journalFile.length();
+        propositionJournal.appendPropositions(generatePropositions(2));
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(journalFile, "rw")) {
+            randomAccessFile.setLength(journalFile.length() - 20);
+        }
+
+        // test
+        final List<PropositionPayload> propositions = new PropositionJournal(journalFile).replay();
+
+        // verify
+        assertNotNull(propositions);
+        assertEquals(1, propositions.size());
+        assertEquals(1, propositions.get(0).items.size());
+        assertEquals(validLength, journalFile.length());
+    }
+
+    @Test
+    public void testReplay_UnknownFormat_JournalDeleted() throws IOException {
+        // setup
+        try (FileOutputStream fileOutputStream = new FileOutputStream(journalFile)) {
+            fileOutputStream.write("not a journal".getBytes("UTF-8"));
+        }
+
+        // test
+        final List<PropositionPayload> propositions = new PropositionJournal(journalFile).replay();
+
+        // verify
+        assertNull(propositions);
+        assertFalse(journalFile.exists());
+    }
+
+    @Test
+    public void testReplay_NoJournal_ReturnsNull() {
+        // test
+        final List<PropositionPayload> propositions = new PropositionJournal(journalFile).replay();
+
+        // verify
+        assertNull(propositions);
+    }
+
+    @Test
+    public void testCompact_ClearedRecordsRemoved() {
+        // setup
+        final PropositionJournal propositionJournal = new PropositionJournal(journalFile, 0);
+        final List<PropositionPayload> lastChunk = generatePropositions(2);
+        propositionJournal.appendPropositions(generatePropositions(3));
+        propositionJournal.appendPropositions(generatePropositions(3));
+        propositionJournal.appendClear();
+        propositionJournal.appendPropositions(lastChunk);
+        final long journalLength = journalFile.length();
+        assertTrue(propositionJournal.needsCompaction());
+
+        // test
+        assertTrue(propositionJournal.compact());
+
+        // verify
+        assertTrue(journalFile.length() < journalLength);
+        assertFalse(propositionJournal.needsCompaction());
+        final List<PropositionPayload> propositions = new PropositionJournal(journalFile).replay();
+        assertNotNull(propositions);
+        assertEquals(1, propositions.size());
+        assertEquals(lastChunk.get(0).items.get(1).data.content, propositions.get(0).items.get(1).data.content);
+    }
+
+    @Test
+    public void testNeedsCompaction_JournalBelowThreshold_ReturnsFalse() {
+        // setup
+        final PropositionJournal propositionJournal = new PropositionJournal(journalFile);
+        propositionJournal.appendPropositions(generatePropositions(1));
+        propositionJournal.appendClear();
+        propositionJournal.appendPropositions(generatePropositions(1));
+
+        // test
+        final boolean needsCompaction = propositionJournal.needsCompaction();
+
+        // verify
+        assertFalse(needsCompaction);
+    }
+
+    @Test
+    public void testRewrite_ReplacesJournal() {
+        // setup
+        final PropositionJournal propositionJournal = new PropositionJournal(journalFile);
+        final List<PropositionPayload> rewrittenPropositions = generatePropositions(2);
+        propositionJournal.appendPropositions(generatePropositions(1));
+
+        // test
+        assertTrue(propositionJournal.rewrite(rewrittenPropositions));
+
+        // verify
+        final List<PropositionPayload> propositions = new PropositionJournal(journalFile).replay();
+        assertNotNull(propositions);
+        assertEquals(1, propositions.size());
+        assertEquals(rewrittenPropositions.get(0).items.get(0).data.content, propositions.get(0).items.get(0).data.content);
+        assertFalse(new File(journalFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testRewrite_MissingDirectory_DirectoryCreated() throws IOException {
+        // setup
+        final File journalDirectory = File.createTempFile("messaging", "");
+        journalDirectory.delete();
+        final File nestedJournalFile = new File(journalDirectory, "propositions.journal");
+        final PropositionJournal propositionJournal = new PropositionJournal(nestedJournalFile);
+
+        // test
+        final boolean rewritten = propositionJournal.rewrite(generatePropositions(1));
+
+        // verify
+        assertTrue(rewritten);
+        final List<PropositionPayload> propositions = new PropositionJournal(nestedJournalFile).replay();
+        assertNotNull(propositions);
+        assertEquals(1, propositions.size());
+        nestedJournalFile.delete();
+        journalDirectory.delete();
+    }
+
+    @Test
+    public void testDelete() {
+        // setup
+        final PropositionJournal propositionJournal = new PropositionJournal(journalFile);
+        propositionJournal.appendPropositions(generatePropositions(1));
+
+        // test
+        propositionJournal.delete();
+
+        // verify
+        assertFalse(propositionJournal.exists());
+        assertNull(propositionJournal.replay());
+    }
+}
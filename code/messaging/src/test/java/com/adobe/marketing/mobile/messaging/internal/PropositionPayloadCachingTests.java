@@ -11,7 +11,9 @@
 
 package com.adobe.marketing.mobile.messaging.internal;
 
+import com.adobe.marketing.mobile.services.DeviceInforming;
 import com.adobe.marketing.mobile.services.ServiceProvider;
+import com.adobe.marketing.mobile.services.caching.CacheEntry;
 import com.adobe.marketing.mobile.services.caching.CacheResult;
 import com.adobe.marketing.mobile.services.caching.CacheService;
 
@@ -28,6 +30,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockedConstruction;
 import org.mockito.MockedStatic;
@@ -37,10 +40,13 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -56,6 +62,8 @@ public class PropositionPayloadCachingTests {
     CacheResult mockCacheResult;
     @Mock
     PropositionPayload mockPropositionPayload;
+    @Mock
+    DeviceInforming mockDeviceInfoService;
 
     private MessagingCacheUtilities messagingCacheUtilities;
     private InputStream propositionInputStream;
@@ -97,6 +105,18 @@ public class PropositionPayloadCachingTests {
         Mockito.reset(mockCacheResult);
     }
 
+    private List<PropositionPayload> generatePropositions(final int itemCount) {
+        final List<PropositionPayload> propositions = new ArrayList<>();
+        try {
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = itemCount;
+            propositions.addAll(MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config)));
+        } catch (final Exception exception) {
+            fail(exception.getMessage());
+        }
+        return propositions;
+    }
+
     void runWithMockedServiceProvider(final Runnable runnable) {
         try (MockedStatic<ServiceProvider> serviceProviderMockedStatic = Mockito.mockStatic(ServiceProvider.class)) {
             serviceProviderMockedStatic.when(ServiceProvider::getInstance).thenReturn(mockServiceProvider);
@@ -126,6 +146,61 @@ public class PropositionPayloadCachingTests {
         });
     }
 
+    @Test
+    public void testGetCachedPropositionPayload_LegacyFormat_MigratedToCurrentFormat() {
+        runWithMockedServiceProvider(() -> {
+            // setup
+            when(mockCacheService.get(anyString(), anyString())).thenReturn(mockCacheResult);
+            when(mockCacheResult.getMetadata()).thenReturn(fakeMetaData);
+            when(mockCacheResult.getData()).thenReturn(propositionInputStream);
+            final ArgumentCaptor<CacheEntry> cacheEntryCaptor = ArgumentCaptor.forClass(CacheEntry.class);
+
+            // test
+            final List<PropositionPayload> retrievedPayload = messagingCacheUtilities.getCachedPropositions();
+
+            // verify
+            assertNotNull(retrievedPayload);
+            assertEquals(1, retrievedPayload.size());
+            verify(mockCacheService, times(1)).set(eq(MessagingConstants.CACHE_BASE_DIR), eq(MessagingConstants.PROPOSITIONS_CACHE_SUBDIRECTORY), cacheEntryCaptor.capture());
+            try {
+                final byte[] migratedBytes = new byte[PropositionCacheCodec.HEADER_LENGTH];
+                assertEquals(PropositionCacheCodec.HEADER_LENGTH, cacheEntryCaptor.getValue().getData().read(migratedBytes));
+                assertTrue(PropositionCacheCodec.isEncoded(migratedBytes));
+            } catch (final IOException exception) {
+                fail(exception.getMessage());
+            }
+        });
+    }
+
+    @Test
+    public void testGetCachedPropositionPayload_CurrentFormat() {
+        runWithMockedServiceProvider(() -> {
+            // setup
+            final List<PropositionPayload> propositions = new ArrayList<>();
+            try {
+                final MessageTestConfig config = new MessageTestConfig();
+                config.count = 2;
+                propositions.addAll(MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config)));
+            } catch (final Exception exception) {
+                fail(exception.getMessage());
+            }
+            when(mockCacheService.get(anyString(), anyString())).thenReturn(mockCacheResult);
+            when(mockCacheResult.getMetadata()).thenReturn(fakeMetaData);
+            when(mockCacheResult.getData()).thenReturn(new ByteArrayInputStream(PropositionCacheCodec.encode(propositions)));
+
+            // test
+            final List<PropositionPayload> retrievedPayload = messagingCacheUtilities.getCachedPropositions();
+
+            // verify
+            assertNotNull(retrievedPayload);
+            assertEquals(1, retrievedPayload.size());
+            assertEquals(2, retrievedPayload.get(0).items.size());
+            assertEquals(propositions.get(0).items.get(1).data.content, retrievedPayload.get(0).items.get(1).data.content);
+            // no migration needed
+            verify(mockCacheService, times(0)).set(anyString(), anyString(), any());
+        });
+    }
+
     @Test
     public void testGetCachedPropositionPayload_ReturnsNullPayload_WhenNoPropositionsCached() {
         runWithMockedServiceProvider(() -> {
@@ -194,6 +269,78 @@ public class PropositionPayloadCachingTests {
         });
     }
 
+    @Test
+    public void testUpdateCachedPropositions_JournalAvailable_ChangesAppendedToJournal() throws Exception {
+        // setup
+        final File cacheDirectory = Files.createTempDirectory("cache").toFile();
+        final List<PropositionPayload> firstChunk = generatePropositions(1);
+        final List<PropositionPayload> secondChunk = generatePropositions(2);
+        try (MockedStatic<ServiceProvider> serviceProviderMockedStatic = Mockito.mockStatic(ServiceProvider.class)) {
+            serviceProviderMockedStatic.when(ServiceProvider::getInstance).thenReturn(mockServiceProvider);
+            when(mockServiceProvider.getCacheService()).thenReturn(mockCacheService);
+            when(mockServiceProvider.getDeviceInfoService()).thenReturn(mockDeviceInfoService);
+            when(mockDeviceInfoService.getApplicationCacheDir()).thenReturn(cacheDirectory);
+            messagingCacheUtilities = new MessagingCacheUtilities();
+
+            // test
+            messagingCacheUtilities.updateCachedPropositions(true, firstChunk);
+            messagingCacheUtilities.updateCachedPropositions(false, secondChunk);
+
+            // verify
+            final List<PropositionPayload> retrievedPayload = messagingCacheUtilities.getCachedPropositions();
+            assertNotNull(retrievedPayload);
+            assertEquals(2, retrievedPayload.size());
+            assertEquals(secondChunk.get(0).items.get(1).data.content, retrievedPayload.get(1).items.get(1).data.content);
+            assertTrue(new File(cacheDirectory, MessagingConstants.CACHE_BASE_DIR + File.separator + MessagingConstants.PROPOSITIONS_JOURNAL_FILE).isFile());
+            verify(mockCacheService, times(0)).set(anyString(), anyString(), any());
+            verify(mockCacheService, times(0)).get(anyString(), anyString());
+
+            // test clear
+            messagingCacheUtilities.updateCachedPropositions(true, null);
+
+            // verify
+            assertTrue(messagingCacheUtilities.getCachedPropositions().isEmpty());
+        } finally {
+            messagingCacheUtilities.clearCachedData();
+            new File(cacheDirectory, MessagingConstants.CACHE_BASE_DIR).delete();
+            cacheDirectory.delete();
+        }
+    }
+
+    @Test
+    public void testUpdateCachedPropositions_JournalUnavailable_CachedPropositionsRewritten() {
+        runWithMockedServiceProvider(() -> {
+            // setup
+            final List<PropositionPayload> cachedPropositions = generatePropositions(1);
+            final List<PropositionPayload> addedPropositions = generatePropositions(2);
+            when(mockCacheService.get(anyString(), anyString())).thenReturn(mockCacheResult);
+            when(mockCacheResult.getMetadata()).thenReturn(fakeMetaData);
+            when(mockCacheResult.getData()).thenReturn(new ByteArrayInputStream(PropositionCacheCodec.encode(cachedPropositions)));
+            final ArgumentCaptor<CacheEntry> cacheEntryCaptor = ArgumentCaptor.forClass(CacheEntry.class);
+
+            // test
+            messagingCacheUtilities.updateCachedPropositions(false, addedPropositions);
+
+            // verify the existing and the added propositions are cached
+            verify(mockCacheService, times(1)).set(eq(MessagingConstants.CACHE_BASE_DIR), eq(MessagingConstants.PROPOSITIONS_CACHE_SUBDIRECTORY), cacheEntryCaptor.capture());
+            try {
+                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                final InputStream cachedData = cacheEntryCaptor.getValue().getData();
+                final byte[] buffer = new byte[8192];
+                int bytesRead;
+                while ((bytesRead = cachedData.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, bytesRead);
+                }
+                final List<PropositionPayload> writtenPropositions = PropositionCacheCodec.decode(ByteBuffer.wrap(outputStream.toByteArray()));
+                assertNotNull(writtenPropositions);
+                assertEquals(2, writtenPropositions.size());
+                assertEquals(addedPropositions.get(0).items.get(1).data.content, writtenPropositions.get(1).items.get(1).data.content);
+            } catch (final IOException exception) {
+                fail(exception.getMessage());
+            }
+        });
+    }
+
     @Test
     public void testClearCache() {
         runWithMockedServiceProvider(() -> {
@@ -203,6 +350,48 @@ public class PropositionPayloadCachingTests {
             // verify
             verify(mockCacheService, times(1)).remove(eq(MessagingConstants.CACHE_BASE_DIR), eq(MessagingConstants.PROPOSITIONS_CACHE_SUBDIRECTORY));
             verify(mockCacheService, times(1)).remove(eq(MessagingConstants.CACHE_BASE_DIR), eq(MessagingConstants.IMAGES_CACHE_SUBDIRECTORY));
+            verify(mockCacheService, times(1)).remove(eq(MessagingConstants.CACHE_BASE_DIR), eq(MessagingConstants.HTML_CACHE_SUBDIRECTORY));
+        });
+    }
+
+    @Test
+    public void testRemoveHtmlReference_LastOwnerRemoved_HtmlRemoved() {
+        runWithMockedServiceProvider(() -> {
+            // setup
+            final String htmlCacheName = MessagingConstants.CACHE_BASE_DIR + File.separator + MessagingConstants.HTML_CACHE_SUBDIRECTORY;
+            messagingCacheUtilities.addHtmlReference("contentKey1", "htmlHandle");
+            messagingCacheUtilities.addHtmlReference("contentKey2", "htmlHandle");
+
+            // test
+            messagingCacheUtilities.removeHtmlReference("contentKey1");
+
+            // verify the html is kept while another loaded message uses it
+            verify(mockCacheService, times(0)).remove(eq(htmlCacheName), anyString());
+            assertFalse(messagingCacheUtilities.isHtmlRemoved("htmlHandle"));
+
+            // test
+            messagingCacheUtilities.removeHtmlReference("contentKey2");
+
+            // verify
+            verify(mockCacheService, times(1)).remove(eq(htmlCacheName), eq("htmlHandle"));
+            verify(mockCacheService, times(1)).remove(eq(htmlCacheName), eq("htmlHandle.inlined"));
+            assertTrue(messagingCacheUtilities.isHtmlRemoved("htmlHandle"));
+        });
+    }
+
+    @Test
+    public void testAddHtmlReference_HtmlChanged_PreviousHtmlRemoved() {
+        runWithMockedServiceProvider(() -> {
+            // setup
+            final String htmlCacheName = MessagingConstants.CACHE_BASE_DIR + File.separator + MessagingConstants.HTML_CACHE_SUBDIRECTORY;
+            messagingCacheUtilities.addHtmlReference("contentKey", "htmlHandle");
+
+            // test
+            messagingCacheUtilities.addHtmlReference("contentKey", "updatedHtmlHandle");
+
+            // verify
+            verify(mockCacheService, times(1)).remove(eq(htmlCacheName), eq("htmlHandle"));
+            verify(mockCacheService, times(0)).remove(eq(htmlCacheName), eq("updatedHtmlHandle"));
         });
     }
 }
\ No newline at end of file
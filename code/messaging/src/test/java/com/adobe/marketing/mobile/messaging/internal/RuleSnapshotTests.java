@@ -0,0 +1,218 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import com.adobe.marketing.mobile.ExtensionApi;
+import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
+import com.adobe.marketing.mobile.launch.rulesengine.json.JSONRulesParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RuleSnapshotTests {
+    private static final String CORE_VERSION = "2.5.0";
+
+    @Mock
+    ExtensionApi mockExtensionApi;
+    @Mock
+    LaunchRule mockLaunchRule;
+
+    private File snapshotFile;
+
+    @Before
+    public void setup() throws IOException {
+        snapshotFile = File.createTempFile("rules", ".snapshot");
+        snapshotFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        snapshotFile.delete();
+    }
+
+    private List<ParsedPropositionItem> generateParsedItems(final PropositionPayload proposition) {
+        final List<ParsedPropositionItem> parsedItems = new ArrayList<>();
+        try (MockedStatic<JSONRulesParser> ignored = Mockito.mockStatic(JSONRulesParser.class)) {
+            final List<LaunchRule> launchRules = new ArrayList<>();
+            launchRules.add(mockLaunchRule);
+            when(JSONRulesParser.parse(anyString(), any(ExtensionApi.class))).thenReturn(launchRules);
+            for (final PayloadItem payloadItem : proposition.items) {
+                parsedItems.add(ParsedPropositionItem.create(proposition.propositionInfo, payloadItem, mockExtensionApi));
+            }
+        }
+        return parsedItems;
+    }
+
+    private PropositionPayload generateProposition(final int itemCount) {
+        try {
+            final MessageTestConfig config = new MessageTestConfig();
+            config.count = itemCount;
+            return MessagingUtils.getPropositionPayloads(MessagingTestUtils.generateMessagePayload(config)).get(0);
+        } catch (Exception e) {
+            fail(e.getMessage());
+            return null;
+        }
+    }
+
+    @Test
+    public void testRestore_WrittenItems_RulesRebuiltWithoutParsing() {
+        // setup
+        final PropositionPayload proposition = generateProposition(2);
+        final List<ParsedPropositionItem> parsedItems = generateParsedItems(proposition);
+        assertTrue(new RuleSnapshot(snapshotFile, CORE_VERSION).write(parsedItems));
+        final PayloadItem payloadItem = proposition.items.get(1);
+
+        // test
+        try (MockedStatic<JSONRulesParser> rulesParser = Mockito.mockStatic(JSONRulesParser.class)) {
+            final ParsedPropositionItem restoredItem = new RuleSnapshot(snapshotFile, CORE_VERSION).restore(proposition.propositionInfo, payloadItem, ParsedPropositionItem.getContentKey(payloadItem));
+
+            // verify
+            assertNotNull(restoredItem);
+            assertSame(payloadItem, restoredItem.payloadItem);
+            assertSame(proposition.propositionInfo, restoredItem.propositionInfo);
+            assertEquals(parsedItems.get(1).contentKey, restoredItem.contentKey);
+            assertEquals(parsedItems.get(1).messageId, restoredItem.messageId);
+            assertEquals(parsedItems.get(1).remoteAssets, restoredItem.remoteAssets);
+            assertNotNull(restoredItem.rule);
+            assertEquals(parsedItems.get(1).messageId, restoredItem.rule.getConsequenceList().get(0).getId());
+            rulesParser.verifyNoInteractions();
+        }
+    }
+
+    @Test
+    public void testRestore_DifferentProposition_NotRestored() throws Exception {
+        // setup
+        final PropositionPayload proposition = generateProposition(1);
+        assertTrue(new RuleSnapshot(snapshotFile, CORE_VERSION).write(generateParsedItems(proposition)));
+        final PayloadItem payloadItem = proposition.items.get(0);
+        final Map<String, Object> propositionInfoMap = new HashMap<>();
+        propositionInfoMap.put("id", "otherPropositionId");
+        propositionInfoMap.put("scope", proposition.propositionInfo.scope);
+        propositionInfoMap.put("scopeDetails", proposition.propositionInfo.scopeDetails);
+        final PropositionInfo otherPropositionInfo = PropositionInfo.create(propositionInfoMap);
+
+        // test
+        final ParsedPropositionItem restoredItem = new RuleSnapshot(snapshotFile, CORE_VERSION).restore(otherPropositionInfo, payloadItem, ParsedPropositionItem.getContentKey(payloadItem));
+
+        // verify
+        assertNull(restoredItem);
+    }
+
+    @Test
+    public void testRestore_UnknownItem_NotRestored() {
+        // setup
+        assertTrue(new RuleSnapshot(snapshotFile, CORE_VERSION).write(generateParsedItems(generateProposition(1))));
+        final PropositionPayload otherProposition = generateProposition(1);
+        final PayloadItem payloadItem = otherProposition.items.get(0);
+
+        // test
+        final ParsedPropositionItem restoredItem = new RuleSnapshot(snapshotFile, CORE_VERSION).restore(otherProposition.propositionInfo, payloadItem, ParsedPropositionItem.getContentKey(payloadItem));
+
+        // verify
+        assertNull(restoredItem);
+    }
+
+    @Test
+    public void testRestore_VersionMismatch_SnapshotDiscarded() throws IOException {
+        // setup
+        final PropositionPayload proposition = generateProposition(1);
+        assertTrue(new RuleSnapshot(snapshotFile, CORE_VERSION).write(generateParsedItems(proposition)));
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(snapshotFile, "rw");
+        randomAccessFile.seek(4);
+        randomAccessFile.writeByte(99);
+        randomAccessFile.close();
+        final PayloadItem payloadItem = proposition.items.get(0);
+
+        // test
+        final ParsedPropositionItem restoredItem = new RuleSnapshot(snapshotFile, CORE_VERSION).restore(proposition.propositionInfo, payloadItem, ParsedPropositionItem.getContentKey(payloadItem));
+
+        // verify
+        assertNull(restoredItem);
+        assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void testRestore_CoreVersionMismatch_SnapshotDiscarded() {
+        // setup
+        final PropositionPayload proposition = generateProposition(1);
+        assertTrue(new RuleSnapshot(snapshotFile, "2.4.0").write(generateParsedItems(proposition)));
+        final PayloadItem payloadItem = proposition.items.get(0);
+
+        // test
+        final ParsedPropositionItem restoredItem = new RuleSnapshot(snapshotFile, CORE_VERSION).restore(proposition.propositionInfo, payloadItem, ParsedPropositionItem.getContentKey(payloadItem));
+
+        // verify
+        assertNull(restoredItem);
+        assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void testRestore_CorruptedSnapshot_SnapshotDiscarded() throws IOException {
+        // setup
+        final PropositionPayload proposition = generateProposition(1);
+        assertTrue(new RuleSnapshot(snapshotFile, CORE_VERSION).write(generateParsedItems(proposition)));
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(snapshotFile, "rw");
+        randomAccessFile.seek(randomAccessFile.length() - 1);
+        final byte lastByte = randomAccessFile.readByte();
+        randomAccessFile.seek(randomAccessFile.length() - 1);
+        randomAccessFile.writeByte(lastByte ^ 0xFF);
+        randomAccessFile.close();
+        final PayloadItem payloadItem = proposition.items.get(0);
+
+        // test
+        final ParsedPropositionItem restoredItem = new RuleSnapshot(snapshotFile, CORE_VERSION).restore(proposition.propositionInfo, payloadItem, ParsedPropositionItem.getContentKey(payloadItem));
+
+        // verify
+        assertNull(restoredItem);
+        assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void testWrite_NoCompiledRules_SnapshotDeleted() {
+        // setup
+        final RuleSnapshot ruleSnapshot = new RuleSnapshot(snapshotFile, CORE_VERSION);
+        assertTrue(ruleSnapshot.write(generateParsedItems(generateProposition(1))));
+        assertTrue(snapshotFile.exists());
+
+        // test
+        assertTrue(ruleSnapshot.write(new ArrayList<>()));
+
+        // verify
+        assertFalse(snapshotFile.exists());
+    }
+}
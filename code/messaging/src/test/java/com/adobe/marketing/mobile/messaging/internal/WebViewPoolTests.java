@@ -0,0 +1,211 @@
+/*
+  Copyright 2023 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.messaging.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ComponentCallbacks2;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.webkit.WebView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class WebViewPoolTests {
+    @Mock
+    Handler mockHandler;
+    @Mock
+    MessageQueue mockMessageQueue;
+    @Mock
+    WebViewPool.WebViewFactory mockWebViewFactory;
+    @Mock
+    WebView mockWebView;
+
+    private MockedStatic<Looper> looperMockedStatic;
+    private WebViewPool webViewPool;
+
+    @Before
+    public void setup() {
+        looperMockedStatic = Mockito.mockStatic(Looper.class);
+        looperMockedStatic.when(Looper::myQueue).thenReturn(mockMessageQueue);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return true;
+        }).when(mockHandler).post(any(Runnable.class));
+        when(mockWebViewFactory.create()).thenReturn(mockWebView);
+        webViewPool = new WebViewPool(mockHandler, mockWebViewFactory);
+    }
+
+    @After
+    public void tearDown() {
+        looperMockedStatic.close();
+    }
+
+    @Test
+    public void testPrewarm_WebViewsCreatedOnePerIdlePass() {
+        // setup
+        webViewPool.setSize(2);
+
+        // test
+        webViewPool.prewarm();
+
+        // verify
+        verify(mockMessageQueue, times(1)).addIdleHandler(any(MessageQueue.IdleHandler.class));
+        verify(mockWebViewFactory, never()).create();
+        assertTrue(webViewPool.fillOnIdle());
+        assertFalse(webViewPool.fillOnIdle());
+        assertEquals(2, webViewPool.getWarmCount());
+        verify(mockWebViewFactory, times(2)).create();
+    }
+
+    @Test
+    public void testPrewarm_PoolDisabled_NothingScheduled() {
+        // test
+        webViewPool.prewarm();
+
+        // verify
+        verify(mockMessageQueue, never()).addIdleHandler(any(MessageQueue.IdleHandler.class));
+    }
+
+    @Test
+    public void testPrewarm_PoolSizeCapped() {
+        // setup
+        webViewPool.setSize(10);
+        webViewPool.prewarm();
+
+        // test
+        while (webViewPool.fillOnIdle()) {
+            // fill the pool
+        }
+
+        // verify
+        assertEquals(MessagingConstants.MAX_WEBVIEW_POOL_SIZE, webViewPool.getWarmCount());
+    }
+
+    @Test
+    public void testLease_WarmWebViewReleased_SlotRefilledOnRelease() {
+        // setup
+        webViewPool.setSize(1);
+        webViewPool.prewarm();
+        webViewPool.fillOnIdle();
+
+        // test
+        webViewPool.lease();
+
+        // verify the displayed message holds the slot
+        verify(mockWebView, times(1)).destroy();
+        assertEquals(0, webViewPool.getWarmCount());
+        assertFalse(webViewPool.fillOnIdle());
+
+        // test
+        webViewPool.release();
+
+        // verify
+        verify(mockMessageQueue, times(2)).addIdleHandler(any(MessageQueue.IdleHandler.class));
+        assertFalse(webViewPool.fillOnIdle());
+        assertEquals(1, webViewPool.getWarmCount());
+    }
+
+    @Test
+    public void testAcquire_WarmWebView_ReturnedAndSlotRefilled() {
+        // setup
+        webViewPool.setSize(1);
+        webViewPool.prewarm();
+        webViewPool.fillOnIdle();
+
+        // test
+        final WebView acquiredWebView = webViewPool.acquire();
+
+        // verify the caller owns the warm WebView
+        assertSame(mockWebView, acquiredWebView);
+        verify(mockWebView, never()).destroy();
+        assertEquals(0, webViewPool.getWarmCount());
+        verify(mockMessageQueue, times(2)).addIdleHandler(any(MessageQueue.IdleHandler.class));
+        assertFalse(webViewPool.fillOnIdle());
+        assertEquals(1, webViewPool.getWarmCount());
+    }
+
+    @Test
+    public void testAcquire_NoWarmWebView_ReturnsNull() {
+        // test & verify
+        assertNull(webViewPool.acquire());
+    }
+
+    @Test
+    public void testOnTrimMemory_RunningLow_PoolDrained() {
+        // setup
+        webViewPool.setSize(1);
+        webViewPool.prewarm();
+        webViewPool.fillOnIdle();
+
+        // test
+        webViewPool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        // verify
+        verify(mockWebView, times(1)).destroy();
+        assertEquals(0, webViewPool.getWarmCount());
+    }
+
+    @Test
+    public void testOnTrimMemory_PendingFill_IdleHandlerRemoved() {
+        // setup
+        webViewPool.setSize(2);
+        webViewPool.prewarm();
+        webViewPool.fillOnIdle();
+
+        // test
+        webViewPool.onLowMemory();
+
+        // verify
+        verify(mockMessageQueue, times(1)).removeIdleHandler(any(MessageQueue.IdleHandler.class));
+        assertEquals(0, webViewPool.getWarmCount());
+    }
+
+    @Test
+    public void testSetSize_Zero_PoolDrained() {
+        // setup
+        final WebView otherWebView = mock(WebView.class);
+        when(mockWebViewFactory.create()).thenReturn(mockWebView, otherWebView);
+        webViewPool.setSize(2);
+        webViewPool.prewarm();
+        webViewPool.fillOnIdle();
+        webViewPool.fillOnIdle();
+
+        // test
+        webViewPool.setSize(0);
+
+        // verify
+        verify(mockWebView, times(1)).destroy();
+        verify(otherWebView, times(1)).destroy();
+        assertEquals(0, webViewPool.getWarmCount());
+    }
+}
@@ -20,6 +20,9 @@ public class MessagingTestConstants {
     static final String PROPOSITIONS_CACHE_SUBDIRECTORY = "propositions";
     static final String IMAGES_CACHE_SUBDIRECTORY = "images";
     static final String CACHE_BASE_DIR = "messaging";
+    static final String PROPOSITIONS_JOURNAL_FILE = "propositions.journal";
+    static final String RULE_SNAPSHOT_FILE = "rules.snapshot";
+    static final String ASSET_CACHE_INDEX_FILE = "images.index";
     static final String EXTENSION_NAME = "com.adobe.messaging";
 
     public static final class EventType {
@@ -38,6 +41,7 @@ public class MessagingTestConstants {
         public static final String PUSH_TRACKING_EDGE_EVENT = "Push tracking edge event";
         public static final String PUSH_PROFILE_EDGE_EVENT = "Push notification profile edge event";
         public static final String REFRESH_MESSAGES_EVENT = "Refresh in-app messages";
+        public static final String TIMINGS_EVENT = "Messaging extension timings";
 
         private EventName() {
         }
@@ -52,6 +56,7 @@ public class MessagingTestConstants {
         public static final String UNREGISTER = "com.adobe.eventSource.unregister";
         public static final String PERSONALIZATION_DECISIONS = "personalization:decisions";
         public static final String REQUEST_CONTENT = "com.adobe.eventSource.requestContent";
+        public static final String DEBUG = "com.adobe.eventSource.debug";
 
         private EventSource() {
         }
@@ -126,6 +131,12 @@ public class MessagingTestConstants {
             private Messaging() {
             }
 
+            public static final class TimingsDataKeys {
+                public static final String TIMINGS = "timings";
+                public static final String ELAPSED_MS = "elapsedMs";
+                public static final String DURATION_MS = "durationMs";
+            }
+
             public static final class XDMDataKeys {
                 public static final String XDM_DATA_ACTION_ID = "actionID";
                 public static final String XDM_DATA_CUSTOM_ACTION = "customAction";
@@ -193,6 +193,12 @@ public class MessagingTestUtils {
         final CacheService cacheService = ServiceProvider.getInstance().getCacheService();
         cacheService.remove(MessagingTestConstants.CACHE_NAME, MessagingTestConstants.IMAGES_CACHE_SUBDIRECTORY);
         cacheService.remove(MessagingTestConstants.CACHE_NAME, MessagingTestConstants.PROPOSITIONS_CACHE_SUBDIRECTORY);
+        final File applicationCacheDir = ServiceProvider.getInstance().getDeviceInfoService().getApplicationCacheDir();
+        if (applicationCacheDir != null) {
+            new File(applicationCacheDir, MessagingTestConstants.CACHE_BASE_DIR + File.separator + MessagingTestConstants.PROPOSITIONS_JOURNAL_FILE).delete();
+            new File(applicationCacheDir, MessagingTestConstants.CACHE_BASE_DIR + File.separator + MessagingTestConstants.RULE_SNAPSHOT_FILE).delete();
+            new File(applicationCacheDir, MessagingTestConstants.CACHE_BASE_DIR + File.separator + MessagingTestConstants.ASSET_CACHE_INDEX_FILE).delete();
+        }
     }
 
     /**